@@ -0,0 +1,16 @@
+package com.sky.constant;
+
+/**
+ * 缓存名称常量
+ */
+public class CacheConstant {
+
+    //分类下的菜品
+    public static final String DISH_CACHE = "dish";
+
+    //分类下的套餐
+    public static final String SETMEAL_CACHE = "SetMealCache";
+
+    //套餐包含的菜品
+    public static final String SETMEAL_DISH_CACHE = "setmealDish";
+}
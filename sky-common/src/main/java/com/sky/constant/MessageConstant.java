@@ -25,5 +25,15 @@ public class MessageConstant {
     public static final String ORDER_STATUS_ERROR = "订单状态错误";
     public static final String ORDER_NOT_FOUND = "订单不存在";
     public static final String EXIT_OK = "退出成功";
+    public static final String SHOPPING_CART_BUSY = "购物车繁忙，请稍后再试";
+    public static final String ORDER_SUBMITTING = "订单正在提交，请勿重复提交";
+    public static final String ITEM_NOT_ON_SALE = "已停售，请从购物车中删除后再下单";
+    public static final String ORDER_AMOUNT_ERROR = "订单金额有误，请刷新后重新下单";
+    public static final String REPORT_DATE_RANGE_ERROR = "报表日期范围有误";
+    public static final String REPORT_EXPORT_FAILED = "报表导出失败";
+    public static final String REPORT_FORMAT_ERROR = "不支持的报表格式";
+    public static final String REPORT_JOB_BUSY = "报表任务过多，请稍后再试";
+    public static final String REPORT_JOB_NOT_FOUND = "报表任务不存在或已过期";
+    public static final String REPORT_NOT_READY = "报表尚未生成";
 
 }
@@ -0,0 +1,37 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Component
+@ConfigurationProperties(prefix = "sky.explain")
+@Data
+public class ExplainProperties {
+
+    /**
+     * 启动时是否对所有mapper语句执行EXPLAIN，只应在本地或测试数据库上开启
+     */
+    private boolean enabled = false;
+
+    /**
+     * 热点表出现全表扫描时是否中止启动
+     */
+    private boolean failOnScan = true;
+
+    /**
+     * 不允许全表扫描的热点表
+     */
+    private List<String> hotTables = new ArrayList<>(Arrays.asList(
+            "orders", "order_detail", "shopping_cart", "user", "address_book"));
+
+    /**
+     * 允许全表扫描的语句id，例如 com.sky.mapper.OrderMapper.selectXxx
+     */
+    private List<String> allowedScans = new ArrayList<>();
+
+}
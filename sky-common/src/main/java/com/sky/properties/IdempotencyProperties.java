@@ -0,0 +1,22 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.idempotency")
+@Data
+public class IdempotencyProperties {
+
+    /**
+     * 请求处理中占位的过期时间（秒），节点宕机时占位过期后可以重试
+     */
+    private long pendingTtlSeconds = 30;
+
+    /**
+     * 处理结果的保存时间（秒），在此期间重复请求返回同一个结果
+     */
+    private long responseTtlSeconds = 24 * 3600;
+
+}
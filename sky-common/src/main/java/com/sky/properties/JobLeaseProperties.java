@@ -0,0 +1,27 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.job")
+@Data
+public class JobLeaseProperties {
+
+    /**
+     * 是否只让持有租约的节点执行定时任务，单节点部署时可以关闭
+     */
+    private boolean leaseEnabled = true;
+
+    /**
+     * 租约有效期（毫秒），持有者每次执行任务时续期，宕机后超过这个时间由其他节点接管
+     */
+    private long leaseMillis = 30000;
+
+    /**
+     * 当前节点标识，为空时使用 进程号@主机名 加随机后缀
+     */
+    private String nodeId;
+
+}
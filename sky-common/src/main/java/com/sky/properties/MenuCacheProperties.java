@@ -0,0 +1,77 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cache")
+@Data
+public class MenuCacheProperties {
+
+    /**
+     * 本地缓存每个缓存名称下最多保存的条目数
+     */
+    private long localMaxSize = 1000;
+
+    /**
+     * 本地缓存写入后的过期时间（秒），作为丢失失效通知时的兜底
+     */
+    private long localTtlSeconds = 300;
+
+    /**
+     * Redis缓存过期时间（秒），作为删除缓存失败时的兜底，0表示不过期
+     */
+    private long redisTtlSeconds = 3600;
+
+    /**
+     * 软过期时间（秒），超过后先返回旧值再在后台刷新，0表示不启用
+     */
+    private long softTtlSeconds = 0;
+
+    /**
+     * 提前刷新系数，越大越早开始刷新
+     */
+    private double earlyRefreshBeta = 1.0;
+
+    /**
+     * 节点之间加载锁的过期时间（毫秒）
+     */
+    private long lockTimeoutMillis = 3000;
+
+    /**
+     * 没拿到加载锁时等待其他节点加载完成的最长时间（毫秒）
+     */
+    private long lockWaitMillis = 2000;
+
+    /**
+     * 等待其他节点加载时查询Redis的间隔（毫秒）
+     */
+    private long lockRetryMillis = 20;
+
+    /**
+     * 缓存失效通知的Redis频道
+     */
+    private String invalidationChannel = "sky:cache:invalidation";
+
+    /**
+     * Redis缓存值的序列化方式：compact（紧凑JSON，默认）、json、jdk
+     */
+    private String serializer = "compact";
+
+    /**
+     * compact序列化时超过该字节数才压缩
+     */
+    private int compressThreshold = 512;
+
+    /**
+     * 菜单缓存失效后延迟多久重新加载价格索引（毫秒），合并短时间内的多次失效
+     */
+    private long priceIndexRefreshDelayMillis = 1000;
+
+    /**
+     * 价格索引定时全量刷新的间隔（毫秒），作为丢失失效通知时的兜底
+     */
+    private long priceIndexRefreshIntervalMillis = 60000;
+
+}
@@ -0,0 +1,42 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.metrics")
+@Data
+public class MetricsProperties {
+
+    /**
+     * 是否统计每条mapper语句的耗时和行数
+     */
+    private boolean sqlEnabled = true;
+
+    /**
+     * 是否统计请求线程上执行的Redis命令，用于慢请求采样
+     */
+    private boolean redisEnabled = true;
+
+    /**
+     * 请求耗时超过该值（毫秒）时记录该请求执行过的全部语句和Redis命令
+     */
+    private long slowRequestMillis = 500;
+
+    /**
+     * 保留最近多少个慢请求样本
+     */
+    private int slowSamples = 50;
+
+    /**
+     * Prometheus抓取 /admin/metrics/prometheus 时在 Authorization: Bearer 中携带的令牌，为空时不开放抓取
+     */
+    private String scrapeToken;
+
+    /**
+     * 同一条语句在一次请求中执行达到该次数时视为疑似N+1查询
+     */
+    private int repeatedCalls = 10;
+
+}
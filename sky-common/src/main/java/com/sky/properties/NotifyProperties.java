@@ -0,0 +1,40 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConfigurationProperties(prefix = "sky.notify")
+@Data
+public class NotifyProperties {
+
+    /**
+     * 当前店铺标识，订单提醒发布到这个店铺的通知流
+     */
+    private String shopId = "default";
+
+    /**
+     * 当前节点转发哪些店铺的通知，为空时只转发当前店铺
+     */
+    private List<String> subscribeShops = new ArrayList<>();
+
+    /**
+     * 每个店铺的通知流大约保留的消息数，客户端断线重连时最多能补发这么多条
+     */
+    private long streamMaxLen = 10000;
+
+    /**
+     * 客户端重连时最多补发的消息数
+     */
+    private int replayLimit = 500;
+
+    /**
+     * 读取通知流的阻塞等待时间（毫秒）
+     */
+    private long pollTimeoutMillis = 2000;
+
+}
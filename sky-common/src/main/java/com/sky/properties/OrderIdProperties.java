@@ -0,0 +1,42 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order-id")
+@Data
+public class OrderIdProperties {
+
+    /**
+     * 节点id，0 ~ 1023，每个节点必须不同；小于0时启动时从Redis租用
+     */
+    private long workerId = -1;
+
+    /**
+     * 租用的节点id的有效期（秒），节点宕机后超过这个时间才会被其他节点领取
+     */
+    private long workerLeaseSeconds = 60;
+
+    /**
+     * 租用的节点id的续期间隔（毫秒），应远小于有效期
+     */
+    private long workerHeartbeatMillis = 10000;
+
+    /**
+     * id的起始时间（毫秒时间戳），上线后不能修改，默认2024-01-01 00:00:00（UTC+8）
+     */
+    private long epoch = 1704038400000L;
+
+    /**
+     * 能容忍的时钟回拨（毫秒），超过后拒绝生成id
+     */
+    private long maxBackwardMillis = 10;
+
+    /**
+     * 是否同时用生成的id作为订单主键，开启前确认前端能处理超过2^53的整数
+     */
+    private boolean useForPrimaryKey = false;
+
+}
@@ -0,0 +1,44 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order")
+@Data
+public class OrderProperties {
+
+    /**
+     * 配送费
+     */
+    private BigDecimal deliveryFee = new BigDecimal("6");
+
+    /**
+     * 是否校验前端提交的订单金额，关闭时只按服务端计算的金额下单
+     */
+    private boolean checkAmount = true;
+
+    /**
+     * 支付超时时间（分钟），超时未支付的订单自动取消
+     */
+    private long payTimeoutMinutes = 15;
+
+    /**
+     * 检查到期订单的间隔（毫秒）
+     */
+    private long expirePollMillis = 1000;
+
+    /**
+     * 每次最多取消的到期订单数
+     */
+    private int expireBatchSize = 500;
+
+    /**
+     * 定时任务批量修改订单状态时每批的订单数
+     */
+    private int transitionBatchSize = 500;
+
+}
@@ -0,0 +1,67 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.report")
+@Data
+public class ReportProperties {
+
+    /**
+     * 导出报表时内存中保留的行数，超过的行写入临时文件
+     */
+    private int rowWindow = 200;
+
+    /**
+     * 是否压缩导出时的临时文件
+     */
+    private boolean compressTempFiles = true;
+
+    /**
+     * 一次最多导出的天数
+     */
+    private int maxDays = 3660;
+
+    /**
+     * 异步生成的报表文件存放目录，多个节点部署时应指向共享存储
+     */
+    private String cacheDir = System.getProperty("java.io.tmpdir") + "/sky-report";
+
+    /**
+     * 生成报表的线程数
+     */
+    private int jobThreads = 2;
+
+    /**
+     * 排队等待生成的报表任务数，超过时拒绝提交
+     */
+    private int jobQueueCapacity = 16;
+
+    /**
+     * 结束日期早于今天这么多天的区间数据不再变化，生成的报表永久缓存
+     */
+    private int settledDays = 2;
+
+    /**
+     * 包含近期数据的报表缓存时间（秒）
+     */
+    private long liveCacheSeconds = 300;
+
+    /**
+     * 报表任务状态保留时间（小时）
+     */
+    private long jobTtlHours = 24;
+
+    /**
+     * 单个报表任务的最长生成时间（分钟），超过后相同区间的请求可以重新生成
+     */
+    private long jobTimeoutMinutes = 10;
+
+    /**
+     * 清理过期报表文件的间隔（毫秒）
+     */
+    private long cacheSweepMillis = 3600000;
+
+}
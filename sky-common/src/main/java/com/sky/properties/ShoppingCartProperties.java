@@ -0,0 +1,27 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cart")
+@Data
+public class ShoppingCartProperties {
+
+    /**
+     * Redis中购物车的过期时间（秒），每次修改后重新计时，过期后从数据库重新加载
+     */
+    private long ttlSeconds = 7 * 24 * 3600;
+
+    /**
+     * 写回数据库的间隔（毫秒）
+     */
+    private long flushIntervalMillis = 5000;
+
+    /**
+     * 每次写回最多处理的用户数
+     */
+    private int flushBatchSize = 200;
+
+}
@@ -0,0 +1,27 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.websocket")
+@Data
+public class WebSocketProperties {
+
+    /**
+     * 每个连接最多排队等待发送的消息数，超过时丢弃最早的消息
+     */
+    private int queueCapacity = 256;
+
+    /**
+     * 连续丢弃这么多条消息仍未发送成功时，认为客户端接收过慢并关闭连接
+     */
+    private int maxDropped = 64;
+
+    /**
+     * 单条消息的发送超时时间（毫秒），超时后关闭连接
+     */
+    private long sendTimeoutMillis = 5000;
+
+}
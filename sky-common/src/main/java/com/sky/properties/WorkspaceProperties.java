@@ -0,0 +1,27 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.workspace")
+@Data
+public class WorkspaceProperties {
+
+    /**
+     * 工作台数据快照的缓存时间（毫秒），期间所有管理端共用同一份快照
+     */
+    private long dashboardTtlMillis = 3000;
+
+    /**
+     * 是否在工作台数据变化时通过websocket推送
+     */
+    private boolean dashboardPushEnabled = true;
+
+    /**
+     * 检查工作台数据是否变化的间隔（毫秒）
+     */
+    private long dashboardPushMillis = 5000;
+
+}
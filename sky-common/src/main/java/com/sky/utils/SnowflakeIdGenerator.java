@@ -0,0 +1,104 @@
+package com.sky.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 雪花算法id生成器
+ * id由 41位时间戳（毫秒，相对起始时间） + 10位节点id + 12位序列号 组成，同一节点内单调递增；
+ * 时间戳和序列号保存在同一个AtomicLong中，用CAS更新，不加锁
+ */
+public class SnowflakeIdGenerator {
+
+    public static final int WORKER_ID_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = WORKER_ID_BITS + SEQUENCE_BITS;
+
+    private final long workerId;
+
+    private final long epoch;
+
+    private final long maxBackwardMillis;
+
+    // 上一次生成id用到的 时间戳 << 12 | 序列号
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * @param workerId 节点id，0 ~ 1023，每个节点必须不同
+     * @param epoch 起始时间（毫秒时间戳）
+     * @param maxBackwardMillis 能容忍的时钟回拨（毫秒），回拨期间沿用上一个时间戳继续递增序列号
+     */
+    public SnowflakeIdGenerator(long workerId, long epoch, long maxBackwardMillis) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("节点id必须在0到" + MAX_WORKER_ID + "之间：" + workerId);
+        }
+        if (epoch > System.currentTimeMillis()) {
+            throw new IllegalArgumentException("起始时间不能晚于当前时间：" + epoch);
+        }
+        this.workerId = workerId;
+        this.epoch = epoch;
+        this.maxBackwardMillis = maxBackwardMillis;
+    }
+
+    /**
+     * 生成下一个id
+     * @return
+     */
+    public long nextId() {
+        while (true) {
+            // 先读状态再读时钟，线程在两次读取之间被挂起时也不会误判为时钟回拨
+            long prev = state.get();
+            long now = currentTime();
+            long prevTime = prev >>> SEQUENCE_BITS;
+            long next;
+            if (now > prevTime) {
+                // 新的一毫秒，序列号从0开始
+                next = now << SEQUENCE_BITS;
+            } else {
+                if (prevTime - now > maxBackwardMillis) {
+                    throw new IllegalStateException("时钟回拨" + (prevTime - now) + "毫秒，拒绝生成id");
+                }
+                // 同一毫秒或时钟回拨，序列号+1，用完后进位到下一毫秒
+                next = prev + 1;
+                if ((next >>> SEQUENCE_BITS) - now > maxBackwardMillis) {
+                    // 借用的时间超过容忍范围，等时钟追上来
+                    Thread.yield();
+                    continue;
+                }
+            }
+            if (state.compareAndSet(prev, next)) {
+                return ((next >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT)
+                        | (workerId << SEQUENCE_BITS)
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * 从id中取出生成时间（毫秒时间戳）
+     * @param id
+     * @return
+     */
+    public long timestampOf(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + epoch;
+    }
+
+    /**
+     * 从id中取出节点id
+     * @param id
+     * @return
+     */
+    public static long workerIdOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_WORKER_ID;
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    protected long currentTime() {
+        return System.currentTimeMillis() - epoch;
+    }
+}
@@ -0,0 +1,36 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * 按天汇总的营业数据
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DailyStatisticsDTO implements Serializable {
+    //日期
+    private LocalDate date;
+
+    //订单总数
+    private Integer orderCount;
+
+    //有效订单数（已完成）
+    private Integer validOrderCount;
+
+    //营业额（已完成订单金额）
+    private Double turnover;
+
+    //新增用户数
+    private Integer newUsers;
+
+    //截止当天的用户总量
+    private Integer totalUsers;
+}
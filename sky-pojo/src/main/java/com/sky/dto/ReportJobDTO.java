@@ -0,0 +1,20 @@
+package com.sky.dto;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Data
+public class ReportJobDTO implements Serializable {
+
+    //开始日期
+    private LocalDate begin;
+    //结束日期
+    private LocalDate end;
+    //报表格式，目前只支持xlsx
+    private String format;
+    //是否附带订单明细
+    private Boolean detail;
+
+}
@@ -0,0 +1,65 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 每日营业数据汇总
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BusinessDailyStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    //统计日期（按下单时间归属）
+    private LocalDate statDate;
+
+    //营业额（已完成订单金额）
+    private BigDecimal turnover;
+
+    //订单总数
+    private Integer totalOrderCount;
+
+    //有效订单数（已完成）
+    private Integer validOrderCount;
+
+    //新增用户数
+    private Integer newUsers;
+
+    //截止当天的用户总量
+    private Integer totalUsers;
+
+    //待付款订单数
+    private Integer pendingPaymentCount;
+
+    //待接单订单数
+    private Integer toBeConfirmedCount;
+
+    //已接单订单数
+    private Integer confirmedCount;
+
+    //派送中订单数
+    private Integer deliveryInProgressCount;
+
+    //已完成订单数
+    private Integer completedCount;
+
+    //已取消订单数
+    private Integer cancelledCount;
+
+    //是否已从源数据校对 0否 1是
+    private Integer reconciled;
+
+    //更新时间
+    private LocalDateTime updateTime;
+}
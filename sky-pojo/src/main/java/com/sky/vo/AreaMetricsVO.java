@@ -0,0 +1,34 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AreaMetricsVO implements Serializable {
+
+    //请求来源 admin/user/notify
+    private String area;
+
+    //请求次数
+    private Long calls;
+
+    //抛出异常或返回5xx的次数
+    private Long errors;
+
+    //返回4xx的次数
+    private Long rejected;
+
+    //错误率
+    private Double errorRate;
+
+    //正在处理的请求数
+    private Integer inFlight;
+
+}
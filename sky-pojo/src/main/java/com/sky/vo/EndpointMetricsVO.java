@@ -0,0 +1,56 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EndpointMetricsVO implements Serializable {
+
+    //请求来源 admin/user/notify
+    private String area;
+
+    //请求方法
+    private String method;
+
+    //路径模板，例如 /admin/order/details/{id}
+    private String pattern;
+
+    //请求次数
+    private Long calls;
+
+    //抛出异常或返回5xx的次数
+    private Long errors;
+
+    //返回4xx的次数
+    private Long rejected;
+
+    //错误率
+    private Double errorRate;
+
+    //正在处理的请求数
+    private Integer inFlight;
+
+    //累计耗时（毫秒）
+    private Long totalMillis;
+
+    //平均耗时（微秒）
+    private Long meanMicros;
+
+    //耗时分位数（微秒）
+    private Long p50Micros;
+
+    private Long p95Micros;
+
+    private Long p99Micros;
+
+    //最大耗时（微秒）
+    private Long maxMicros;
+
+}
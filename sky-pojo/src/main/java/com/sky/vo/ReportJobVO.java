@@ -0,0 +1,49 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportJobVO implements Serializable {
+
+    /**
+     * 任务状态 1排队中 2生成中 3已完成 4失败
+     */
+    public static final Integer WAITING = 1;
+    public static final Integer RUNNING = 2;
+    public static final Integer DONE = 3;
+    public static final Integer FAILED = 4;
+
+    //任务id
+    private String jobId;
+
+    //任务状态
+    private Integer status;
+
+    //开始日期
+    private LocalDate begin;
+
+    //结束日期
+    private LocalDate end;
+
+    //报表格式
+    private String format;
+
+    //是否附带订单明细
+    private Boolean detail;
+
+    //报表文件的内容地址，相同的请求对应同一个文件
+    private String contentKey;
+
+    //失败原因
+    private String message;
+
+}
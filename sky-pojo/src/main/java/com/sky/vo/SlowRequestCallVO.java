@@ -0,0 +1,31 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlowRequestCallVO implements Serializable {
+
+    //sql 或 redis
+    private String type;
+
+    //语句id或Redis命令
+    private String name;
+
+    //执行次数
+    private Integer calls;
+
+    //累计耗时（毫秒）
+    private Long millis;
+
+    //返回或影响的行数
+    private Long rows;
+
+}
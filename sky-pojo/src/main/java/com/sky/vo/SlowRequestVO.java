@@ -0,0 +1,52 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlowRequestVO implements Serializable {
+
+    //请求结束时间
+    private LocalDateTime time;
+
+    //请求方法
+    private String method;
+
+    //请求路径
+    private String uri;
+
+    //路径模板
+    private String pattern;
+
+    //响应状态码
+    private Integer status;
+
+    //是否出错
+    private Boolean failed;
+
+    //耗时（毫秒）
+    private Long millis;
+
+    //SQL执行次数和耗时（毫秒）
+    private Integer sqlCalls;
+
+    private Long sqlMillis;
+
+    //Redis命令次数和耗时（毫秒）
+    private Integer redisCalls;
+
+    private Long redisMillis;
+
+    //按语句和命令汇总的明细
+    private List<SlowRequestCallVO> calls;
+
+}
@@ -0,0 +1,59 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SqlStatementMetricsVO implements Serializable {
+
+    //语句id，例如 com.sky.mapper.OrderMapper.list
+    private String statementId;
+
+    //执行次数
+    private Long calls;
+
+    //执行失败次数
+    private Long errors;
+
+    //返回或影响的总行数
+    private Long rows;
+
+    //累计耗时（毫秒）
+    private Long totalMillis;
+
+    //平均耗时（微秒）
+    private Long meanMicros;
+
+    //耗时分位数（微秒）
+    private Long p50Micros;
+
+    private Long p95Micros;
+
+    private Long p99Micros;
+
+    //最大耗时（微秒）
+    private Long maxMicros;
+
+    //执行过该语句的请求数
+    private Long requests;
+
+    //每个请求平均执行次数
+    private Double callsPerRequest;
+
+    //单个请求中最多执行次数
+    private Long maxCallsPerRequest;
+
+    //单个请求中最多返回的行数
+    private Long maxRowsPerRequest;
+
+    //是否疑似N+1查询
+    private Boolean repeated;
+
+}
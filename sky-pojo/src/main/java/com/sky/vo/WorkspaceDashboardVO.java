@@ -0,0 +1,35 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 工作台数据快照
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkspaceDashboardVO implements Serializable {
+    //今日运营数据
+    private BusinessDataVO businessData;
+
+    //今日订单概览
+    private OrderOverViewVO orderOverview;
+
+    //菜品总览
+    private DishOverViewVO dishOverview;
+
+    //套餐总览
+    private SetmealOverViewVO setmealOverview;
+
+    //快照生成时间，比较数据是否变化时忽略
+    @EqualsAndHashCode.Exclude
+    private LocalDateTime generatedAt;
+}
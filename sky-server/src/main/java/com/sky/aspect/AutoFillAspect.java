@@ -2,27 +2,34 @@ package com.sky.aspect;
 
 import com.sky.annotation.AutoFill;
 import com.sky.annotation.CleanCache;
+import com.sky.constant.CacheConstant;
 import com.sky.constant.AutoFillConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.DishDTO;
 import com.sky.enumeration.CleanCacheType;
 import com.sky.enumeration.OperationType;
 import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetMealDishMapper;
 import com.sky.vo.DishVO;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
-import org.aspectj.lang.annotation.After;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.lang.reflect.Method;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -31,7 +38,6 @@ import java.util.Set;
 @Slf4j
 public class AutoFillAspect {
 
-    private static final String DISH_PATTERN = "dish_*";
     private static final String SETMEAL_PATTERN = "setMeal_*";
     private static final String CATEGORY_PATTERN = "category_*";
 
@@ -39,7 +45,10 @@ public class AutoFillAspect {
     private DishMapper dishMapper;
 
     @Autowired
-    private RedisTemplate redisTemplate;
+    private SetMealDishMapper setMealDishMapper;
+
+    @Autowired
+    private CacheManager cacheManager;
 
     @Pointcut("execution(* com.sky.mapper.*.*(..)) && @annotation(com.sky.annotation.AutoFill)")
     public void AutoFillPointCut(){}
@@ -47,8 +56,13 @@ public class AutoFillAspect {
     @Pointcut("execution(* com.sky.controller.admin.*.*(..)) && @annotation(com.sky.annotation.CleanCache)")
     public void CleanCachePointCut(){}
 
-    @Before("CleanCachePointCut()")
-    public void cleanCache(JoinPoint joinPoint){
+    /**
+     * 菜品修改成功后删除受影响的缓存
+     * 受影响的分类要在修改前查出来，菜品被删除或更换分类后就查不到原分类了；
+     * 删除放在方法返回之后，事务已经提交，避免其他请求在提交前把旧数据重新写回缓存
+     */
+    @Around("CleanCachePointCut()")
+    public Object cleanCache(ProceedingJoinPoint joinPoint) throws Throwable {
         log.info("开始自动清理缓存数据");
         // 通过链接点对象获取到指定的方法签名
         MethodSignature signature = (MethodSignature) joinPoint.getSignature();
@@ -62,34 +76,44 @@ public class AutoFillAspect {
         Class<?> declaringClass = signature.getMethod().getDeclaringClass();
         String className = declaringClass.getName();
         log.info("当前执行方法的属类是：{}",className);
+        // 需要删除的菜品分类缓存和套餐菜品缓存
+        Set<Long> categoryIds = new LinkedHashSet<>();
+        List<Long> setmealIds = new ArrayList<>();
         if (className.contains("DishController")){
             if (value == CleanCacheType.INSERT){
                 // 新增操作，只需要删除菜品所在的单一分类缓存
                 // 获取方法参数
                 Object[] args = joinPoint.getArgs();
                 DishDTO dishDTO = (DishDTO) args[0];
-                log.info("开始删除缓存");
                 Long categoryId = dishDTO.getCategoryId();
-                String key = "dish_" + categoryId;
-                log.info("新增菜品分类id:{}",key);
-                redisTemplate.delete(key);
+                log.info("新增菜品分类id:{}",categoryId);
+                categoryIds.add(categoryId);
             }
             if (value == CleanCacheType.UPDATE){
-                // 更新操作删除所有缓存数据
+                // 更新操作只删除受影响分类的缓存
                 if (methodName.equals("ChangeStatus")){
                     log.info("该操作正在修改方法的售卖状态");
                     // 拿到方法参数，获取菜品id,然后拿到分类id，清除缓存
                     Object[] args = joinPoint.getArgs();
                     Long id = (Long) args[1];
                     DishVO dishVO = dishMapper.selectByDishId(id);
-                    Long categoryId = dishVO.getCategoryId();
-                    String key = "dish_" + categoryId;
-                    redisTemplate.delete(key);
+                    if (dishVO != null){
+                        categoryIds.add(dishVO.getCategoryId());
+                    }
                 }else {
                     log.info("正在更新菜品数据");
-                    log.info("开始删除所有菜品缓存");
-                    Set keys = redisTemplate.keys(DISH_PATTERN);
-                    redisTemplate.delete(keys);
+                    // 菜品可能更换了分类，删除原分类和新分类的缓存
+                    Object[] args = joinPoint.getArgs();
+                    DishDTO dishDTO = (DishDTO) args[0];
+                    DishVO dishVO = dishMapper.selectByDishId(dishDTO.getId());
+                    if (dishVO != null){
+                        categoryIds.add(dishVO.getCategoryId());
+                    }
+                    if (dishDTO.getCategoryId() != null){
+                        categoryIds.add(dishDTO.getCategoryId());
+                    }
+                    // 套餐包含的菜品中也有菜品的名称、图片和描述，只删除包含该菜品的套餐
+                    setmealIds.addAll(setMealDishMapper.selectSetmealIdsByDishId(dishDTO.getId()));
                 }
             }
             if (value == CleanCacheType.DELETE){
@@ -97,19 +121,45 @@ public class AutoFillAspect {
                 // 获取方法参数
                 Object[] args = joinPoint.getArgs();
                 List<Long> ids = (List<Long>) args[0];
-                // 开始删除缓存
-                List<Long> categoryList = new ArrayList<>(ids.size());
                 for (Long id : ids) {
                     DishVO dishVO = dishMapper.selectByDishId(id);
-                    Long categoryId = dishVO.getCategoryId();
-                    categoryList.add(categoryId);
-                }
-                for (Long id : categoryList) {
-                    String key = "dish_" + id;
-                    redisTemplate.delete(key);
+                    if (dishVO != null){
+                        categoryIds.add(dishVO.getCategoryId());
+                    }
                 }
             }
         }
+        Object result = joinPoint.proceed();
+        afterCommit(() -> {
+            log.info("开始删除缓存，分类：{}，套餐：{}", categoryIds, setmealIds);
+            // 通过二级缓存删除，同时通知所有节点删除本地缓存
+            Cache dishCache = cacheManager.getCache(CacheConstant.DISH_CACHE);
+            for (Long categoryId : categoryIds) {
+                dishCache.evict(categoryId);
+            }
+            Cache setmealDishCache = cacheManager.getCache(CacheConstant.SETMEAL_DISH_CACHE);
+            for (Long setmealId : setmealIds) {
+                setmealDishCache.evict(setmealId);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 在外层事务提交后执行，没有事务时立即执行
+     * @param action
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
     @Before("AutoFillPointCut()")
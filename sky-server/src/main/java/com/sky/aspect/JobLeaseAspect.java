@@ -0,0 +1,52 @@
+package com.sky.aspect;
+
+import com.sky.lease.JobLeaseManager;
+import com.sky.properties.JobLeaseProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时任务只在持有租约的节点上执行
+ * com.sky.task 下的所有定时任务都按 类名.方法名 获取租约，其他节点本次跳过执行
+ */
+@Aspect
+@Component
+@Slf4j
+public class JobLeaseAspect {
+
+    @Autowired
+    private JobLeaseManager jobLeaseManager;
+
+    @Autowired
+    private JobLeaseProperties jobLeaseProperties;
+
+    @Pointcut("execution(* com.sky.task.*.*(..)) && @annotation(org.springframework.scheduling.annotation.Scheduled)")
+    public void scheduledJobPointCut(){}
+
+    @Around("scheduledJobPointCut()")
+    public Object runOnLeader(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!jobLeaseProperties.isLeaseEnabled()) {
+            return joinPoint.proceed();
+        }
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        String job = signature.getDeclaringType().getSimpleName() + "." + signature.getName();
+        long token;
+        try {
+            token = jobLeaseManager.acquire(job);
+        } catch (Exception e) {
+            // Redis不可用时无法确认只有一个节点执行，本次跳过
+            log.warn("获取任务{}的租约失败，跳过本次执行：{}", job, e.getMessage());
+            return null;
+        }
+        if (token == 0) {
+            return null;
+        }
+        return jobLeaseManager.runWithLease(job, token, joinPoint::proceed);
+    }
+}
@@ -0,0 +1,34 @@
+package com.sky.aspect;
+
+import com.sky.metrics.RedisCallRecorder;
+import com.sky.metrics.RequestQueryContext;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.stereotype.Component;
+
+/**
+ * 请求线程上取得的Redis连接包装为统计命令的连接，供慢请求采样使用
+ * 后台线程（消息监听、定时任务等）取得的连接不做包装
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(prefix = "sky.metrics", name = "redis-enabled", havingValue = "true", matchIfMissing = true)
+public class RedisMetricsAspect {
+
+    @Pointcut("execution(org.springframework.data.redis.connection.RedisConnection "
+            + "org.springframework.data.redis.connection.RedisConnectionFactory+.getConnection())")
+    public void getConnectionPointCut(){}
+
+    @Around("getConnectionPointCut()")
+    public Object recordInRequest(ProceedingJoinPoint joinPoint) throws Throwable {
+        Object connection = joinPoint.proceed();
+        if (connection == null || RequestQueryContext.current() == null) {
+            return connection;
+        }
+        return RedisCallRecorder.wrap((RedisConnection) connection);
+    }
+}
@@ -0,0 +1,27 @@
+package com.sky.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 缓存值及其加载信息，用于判断是否需要提前刷新
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheEnvelope implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    //缓存的值
+    private Object value;
+
+    //软过期时间（毫秒时间戳），超过后返回旧值并在后台刷新，0表示不过期
+    private long softExpireAt;
+
+    //加载一次耗时（毫秒），越慢的数据越早开始刷新
+    private long loadMillis;
+}
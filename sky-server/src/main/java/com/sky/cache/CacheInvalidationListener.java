@@ -0,0 +1,15 @@
+package com.sky.cache;
+
+/**
+ * 缓存失效监听器
+ * 本节点删除缓存和收到其他节点的删除通知时都会回调，写入缓存时不回调
+ */
+public interface CacheInvalidationListener {
+
+    /**
+     * 缓存失效
+     * @param cacheName
+     * @param key 为null时表示清空整个缓存
+     */
+    void onInvalidate(String cacheName, String key);
+}
@@ -0,0 +1,146 @@
+package com.sky.cache;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 菜单缓存的紧凑序列化器
+ * 使用带类型信息的JSON，省略null字段，超过阈值时再用Deflate压缩；
+ * 第一个字节标识数据格式，读取时兼容JDK序列化写入的旧数据
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    // 未压缩的JSON
+    private static final byte FORMAT_JSON = 1;
+    // Deflate压缩后的JSON
+    private static final byte FORMAT_DEFLATE = 2;
+    // 缓存的空值
+    private static final byte FORMAT_NULL = 3;
+    // JDK序列化数据的第一个字节
+    private static final byte JDK_MAGIC = (byte) 0xAC;
+
+    private final ObjectMapper objectMapper;
+
+    private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+
+    private final int compressThreshold;
+
+    public CompactRedisSerializer(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+        // 只允许反序列化项目和常用的JDK类型
+        PolymorphicTypeValidator typeValidator = BasicPolymorphicTypeValidator.builder()
+                .allowIfSubType("com.sky.")
+                .allowIfSubType("java.util.")
+                .allowIfSubType(Number.class)
+                .allowIfSubType("java.time.")
+                .allowIfSubType("com.github.pagehelper.")
+                .allowIfSubType("org.springframework.cache.support.")
+                .build();
+        this.objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .registerModule(new NullValueModule())
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .activateDefaultTyping(typeValidator, ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        if (value instanceof NullValue) {
+            return new byte[]{FORMAT_NULL};
+        }
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(value);
+        } catch (Exception e) {
+            throw new SerializationException("缓存数据序列化失败", e);
+        }
+        if (json.length < compressThreshold) {
+            return withHeader(FORMAT_JSON, json);
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(json);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 2 + 1);
+            out.write(FORMAT_DEFLATE);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        byte format = bytes[0];
+        if (format == JDK_MAGIC) {
+            return jdkSerializer.deserialize(bytes);
+        }
+        if (format == FORMAT_NULL) {
+            return NullValue.INSTANCE;
+        }
+        try {
+            if (format == FORMAT_JSON) {
+                return objectMapper.readValue(bytes, 1, bytes.length - 1, Object.class);
+            }
+            if (format == FORMAT_DEFLATE) {
+                byte[] json = inflate(bytes);
+                return objectMapper.readValue(json, Object.class);
+            }
+        } catch (Exception e) {
+            throw new SerializationException("缓存数据反序列化失败", e);
+        }
+        throw new SerializationException("未知的缓存数据格式：" + format);
+    }
+
+    private byte[] inflate(byte[] bytes) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, 1, bytes.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("压缩数据不完整");
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private byte[] withHeader(byte format, byte[] body) {
+        byte[] result = new byte[body.length + 1];
+        result[0] = format;
+        System.arraycopy(body, 0, result, 1, body.length);
+        return result;
+    }
+}
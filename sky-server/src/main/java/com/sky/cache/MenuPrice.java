@@ -0,0 +1,23 @@
+package com.sky.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 菜品或套餐的当前价格和售卖状态
+ */
+@Data
+@AllArgsConstructor
+public class MenuPrice {
+
+    //名称
+    private String name;
+
+    //当前价格
+    private BigDecimal price;
+
+    //售卖状态 0:停售 1:起售
+    private Integer status;
+}
@@ -0,0 +1,180 @@
+package com.sky.cache;
+
+import com.sky.constant.CacheConstant;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetMealMapper;
+import com.sky.properties.MenuCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 菜单价格索引
+ * 内存中保存所有菜品和套餐的当前价格与售卖状态，下单时校验价格不需要逐个查询数据库；
+ * 菜品或套餐缓存失效时延迟重新加载，另外定时全量刷新兜底
+ */
+@Slf4j
+@Component
+public class MenuPriceIndex implements CacheInvalidationListener {
+
+    // 价格索引中查不到商品时，距离上次加载超过这个时间才重新加载
+    private static final long MISS_RELOAD_INTERVAL_MILLIS = 1000;
+
+    @Autowired
+    private DishMapper dishMapper;
+
+    @Autowired
+    private SetMealMapper setMealMapper;
+
+    @Autowired
+    private MenuCacheProperties menuCacheProperties;
+
+    @Autowired
+    private TwoLevelCacheManager cacheManager;
+
+    // 当前的索引，每次加载整体替换
+    private volatile Snapshot snapshot;
+
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "menu-price-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 查询菜品的当前价格
+     * @param dishId
+     * @return 菜品不存在时返回null
+     */
+    public MenuPrice getDish(Long dishId) {
+        MenuPrice price = current().dishes.get(dishId);
+        if (price == null && reloadOnMiss()) {
+            price = current().dishes.get(dishId);
+        }
+        return price;
+    }
+
+    /**
+     * 查询套餐的当前价格
+     * @param setmealId
+     * @return 套餐不存在时返回null
+     */
+    public MenuPrice getSetmeal(Long setmealId) {
+        MenuPrice price = current().setmeals.get(setmealId);
+        if (price == null && reloadOnMiss()) {
+            price = current().setmeals.get(setmealId);
+        }
+        return price;
+    }
+
+    /**
+     * 从数据库重新加载价格索引
+     */
+    public synchronized void refresh() {
+        Map<Long, MenuPrice> dishes = new HashMap<>();
+        for (Dish dish : dishMapper.selectPriceIndex()) {
+            dishes.put(dish.getId(), new MenuPrice(dish.getName(), dish.getPrice(), dish.getStatus()));
+        }
+        Map<Long, MenuPrice> setmeals = new HashMap<>();
+        for (Setmeal setmeal : setMealMapper.selectPriceIndex()) {
+            setmeals.put(setmeal.getId(), new MenuPrice(setmeal.getName(), setmeal.getPrice(), setmeal.getStatus()));
+        }
+        snapshot = new Snapshot(dishes, setmeals, System.currentTimeMillis());
+        log.debug("价格索引已刷新，菜品{}个，套餐{}个", dishes.size(), setmeals.size());
+    }
+
+    /**
+     * 定时全量刷新
+     */
+    @Scheduled(fixedDelayString = "${sky.cache.price-index-refresh-interval-millis:60000}")
+    public void scheduledRefresh() {
+        refresh();
+    }
+
+    /**
+     * 菜品或套餐缓存失效，说明菜单被修改了
+     * 延迟一段时间再加载，一次修改会删除多个分类的缓存，期间的多次失效只加载一次
+     * @param cacheName
+     * @param key
+     */
+    @Override
+    public void onInvalidate(String cacheName, String key) {
+        if (!CacheConstant.DISH_CACHE.equals(cacheName) && !CacheConstant.SETMEAL_CACHE.equals(cacheName)) {
+            return;
+        }
+        if (refreshScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(() -> {
+                refreshScheduled.set(false);
+                try {
+                    refresh();
+                } catch (Exception e) {
+                    log.warn("价格索引刷新失败：{}", e.getMessage());
+                }
+            }, menuCacheProperties.getPriceIndexRefreshDelayMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PostConstruct
+    public void register() {
+        cacheManager.addInvalidationListener(this);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    refresh();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 新增的商品可能还没进入索引，限制频率重新加载一次
+     */
+    private synchronized boolean reloadOnMiss() {
+        if (System.currentTimeMillis() - snapshot.loadedAt < MISS_RELOAD_INTERVAL_MILLIS) {
+            return false;
+        }
+        refresh();
+        return true;
+    }
+
+    private static class Snapshot {
+
+        private final Map<Long, MenuPrice> dishes;
+
+        private final Map<Long, MenuPrice> setmeals;
+
+        private final long loadedAt;
+
+        Snapshot(Map<Long, MenuPrice> dishes, Map<Long, MenuPrice> setmeals, long loadedAt) {
+            this.dishes = Collections.unmodifiableMap(dishes);
+            this.setmeals = Collections.unmodifiableMap(setmeals);
+            this.loadedAt = loadedAt;
+        }
+    }
+}
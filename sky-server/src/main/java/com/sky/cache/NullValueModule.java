@@ -0,0 +1,47 @@
+package com.sky.cache;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.cache.support.NullValue;
+
+import java.io.IOException;
+
+/**
+ * 缓存空值的Jackson模块
+ * 空值保存在CacheEnvelope中，写成 {"@class":"org.springframework.cache.support.NullValue"}，
+ * 读取时返回同一个实例，缓存按引用判断空值
+ */
+public class NullValueModule extends SimpleModule {
+
+    private static final String CLASS_PROPERTY = "@class";
+
+    public NullValueModule() {
+        addSerializer(NullValue.class, new StdSerializer<NullValue>(NullValue.class) {
+            @Override
+            public void serialize(NullValue value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+                generator.writeStartObject();
+                generator.writeStringField(CLASS_PROPERTY, NullValue.class.getName());
+                generator.writeEndObject();
+            }
+
+            @Override
+            public void serializeWithType(NullValue value, JsonGenerator generator, SerializerProvider provider,
+                                          TypeSerializer typeSerializer) throws IOException {
+                serialize(value, generator, provider);
+            }
+        });
+        addDeserializer(NullValue.class, new StdDeserializer<NullValue>(NullValue.class) {
+            @Override
+            public NullValue deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+                parser.skipChildren();
+                return (NullValue) NullValue.INSTANCE;
+            }
+        });
+    }
+}
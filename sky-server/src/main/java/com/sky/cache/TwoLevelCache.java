@@ -0,0 +1,417 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.sky.properties.MenuCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 二级缓存：本地缓存 + Redis缓存
+ * 读取时先查本地缓存，未命中再查Redis并回填本地缓存；
+ * 写入和删除时同时更新两级缓存，并通知其他节点删除各自的本地缓存；
+ * 写入Redis的key记录在 缓存名:keys 集合中，清空缓存时只删除集合中的key，不扫描整个Redis；
+ * 缓存未命中时同一个key只加载一次：本节点内合并并发请求，节点之间用Redis短锁互斥；
+ * 配置软过期时间后，过期的数据先返回旧值再在后台刷新，并按加载耗时提前概率刷新
+ */
+@Slf4j
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    // 只删除自己持有的锁
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final String name;
+
+    private final Cache<Object, Object> localCache;
+
+    private final RedisTemplate redisTemplate;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final MenuCacheProperties menuCacheProperties;
+
+    private final Executor refreshExecutor;
+
+    private final TwoLevelCacheManager cacheManager;
+
+    // 正在加载的key，同一个key的并发请求等待同一次加载
+    private final ConcurrentMap<String, CompletableFuture<Object>> loadingMap = new ConcurrentHashMap<>();
+
+    // 正在后台刷新的key，与loadingMap分开，未命中的请求不会等待刷新
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    // 删除缓存的次数，刷新期间缓存被删除时丢弃刷新结果，避免把修改前读到的数据写回
+    private final AtomicLong evictions = new AtomicLong();
+
+    public TwoLevelCache(String name, Cache<Object, Object> localCache, RedisTemplate redisTemplate,
+                         StringRedisTemplate stringRedisTemplate, MenuCacheProperties menuCacheProperties,
+                         Executor refreshExecutor, TwoLevelCacheManager cacheManager) {
+        super(true);
+        this.name = name;
+        this.localCache = localCache;
+        this.redisTemplate = redisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.menuCacheProperties = menuCacheProperties;
+        this.refreshExecutor = refreshExecutor;
+        this.cacheManager = cacheManager;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return localCache;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        CacheEnvelope envelope = lookupEnvelope(String.valueOf(key));
+        return envelope == null ? null : envelope.getValue();
+    }
+
+    /**
+     * 读取缓存，未命中时只加载一次；数据需要刷新时先返回当前值，再在后台刷新
+     * @param key
+     * @param valueLoader
+     * @return
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String cacheKey = String.valueOf(key);
+        CacheEnvelope envelope = lookupEnvelope(cacheKey);
+        if (envelope != null) {
+            if (shouldRefresh(envelope)) {
+                refreshAsync(cacheKey, valueLoader);
+            }
+            return (T) fromStoreValue(envelope.getValue());
+        }
+        return (T) fromStoreValue(load(cacheKey, valueLoader));
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        doPut(String.valueOf(key), toStoreValue(value), 0);
+    }
+
+    @Override
+    public void evict(Object key) {
+        String cacheKey = String.valueOf(key);
+        evictions.incrementAndGet();
+        redisTemplate.delete(redisKey(cacheKey));
+        stringRedisTemplate.opsForSet().remove(keySetName(), redisKey(cacheKey));
+        localCache.invalidate(cacheKey);
+        cacheManager.publish(name, cacheKey);
+    }
+
+    /**
+     * 清空缓存，只删除登记过的key，代价与当前缓存的条目数有关，与Redis中的其他key无关
+     */
+    @Override
+    public void clear() {
+        evictions.incrementAndGet();
+        String keySetName = keySetName();
+        Set<String> keys = stringRedisTemplate.opsForSet().members(keySetName);
+        if (keys != null && !keys.isEmpty()) {
+            redisTemplate.delete(keys);
+            stringRedisTemplate.opsForSet().remove(keySetName, keys.toArray());
+        }
+        localCache.invalidateAll();
+        cacheManager.publish(name, null);
+    }
+
+    /**
+     * 收到其他节点的失效通知后，只删除本地缓存
+     * @param key 为null时清空本地缓存
+     */
+    void evictLocal(String key) {
+        evictions.incrementAndGet();
+        if (key == null) {
+            localCache.invalidateAll();
+        } else {
+            localCache.invalidate(key);
+        }
+    }
+
+    /**
+     * 先查本地缓存，再查Redis
+     * @param cacheKey
+     * @return
+     */
+    private CacheEnvelope lookupEnvelope(String cacheKey) {
+        Object value = localCache.getIfPresent(cacheKey);
+        if (value != null) {
+            return (CacheEnvelope) value;
+        }
+        CacheEnvelope envelope = lookupRedis(cacheKey);
+        if (envelope != null) {
+            localCache.put(cacheKey, envelope);
+        }
+        return envelope;
+    }
+
+    private CacheEnvelope lookupRedis(String cacheKey) {
+        Object value;
+        try {
+            value = redisTemplate.opsForValue().get(redisKey(cacheKey));
+        } catch (SerializationException e) {
+            // 旧格式或损坏的数据按未命中处理，重新加载后会被覆盖
+            log.warn("缓存数据无法反序列化，按未命中处理：{}", redisKey(cacheKey));
+            return null;
+        }
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof CacheEnvelope) {
+            return (CacheEnvelope) value;
+        }
+        // 旧版本直接写入的值，没有刷新信息
+        return new CacheEnvelope(value, 0, 0);
+    }
+
+    /**
+     * 同一个key同时只加载一次，其他请求等待加载结果
+     * @param cacheKey
+     * @param valueLoader
+     * @return
+     */
+    private Object load(String cacheKey, Callable<?> valueLoader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> loading = loadingMap.putIfAbsent(cacheKey, future);
+        if (loading != null) {
+            return await(loading, cacheKey, valueLoader);
+        }
+        try {
+            Object storeValue = loadWithLock(cacheKey, valueLoader);
+            future.complete(storeValue);
+            return storeValue;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadingMap.remove(cacheKey, future);
+        }
+    }
+
+    /**
+     * 节点之间用Redis短锁互斥，没拿到锁的节点等待持锁节点写入Redis
+     * @param cacheKey
+     * @param valueLoader
+     * @return
+     */
+    private Object loadWithLock(String cacheKey, Callable<?> valueLoader) {
+        String lockKey = lockKey(cacheKey);
+        String token = UUID.randomUUID().toString();
+        boolean locked = tryLock(lockKey, token);
+        try {
+            CacheEnvelope envelope = locked ? lookupRedis(cacheKey) : waitForRedis(cacheKey);
+            if (envelope != null) {
+                localCache.put(cacheKey, envelope);
+                return envelope.getValue();
+            }
+            // 拿到锁，或者等待超时，从数据源加载
+            return loadAndPut(cacheKey, valueLoader);
+        } finally {
+            if (locked) {
+                unlock(lockKey, token);
+            }
+        }
+    }
+
+    /**
+     * 后台刷新，本节点和其他节点正在加载或刷新这个key时跳过
+     * @param cacheKey
+     * @param valueLoader
+     */
+    private void refreshAsync(String cacheKey, Callable<?> valueLoader) {
+        if (loadingMap.containsKey(cacheKey) || !refreshing.add(cacheKey)) {
+            return;
+        }
+        long generation = evictions.get();
+        try {
+            refreshExecutor.execute(() -> {
+                String lockKey = lockKey(cacheKey);
+                String token = UUID.randomUUID().toString();
+                try {
+                    if (tryLock(lockKey, token)) {
+                        try {
+                            refresh(cacheKey, valueLoader, generation);
+                        } finally {
+                            unlock(lockKey, token);
+                        }
+                    }
+                } catch (Exception e) {
+                    // 刷新失败继续使用旧值
+                    log.warn("缓存后台刷新失败：{}，{}", redisKey(cacheKey), e.getMessage());
+                } finally {
+                    refreshing.remove(cacheKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(cacheKey);
+        }
+    }
+
+    private void refresh(String cacheKey, Callable<?> valueLoader, long generation) throws Exception {
+        long start = System.currentTimeMillis();
+        Object storeValue = toStoreValue(valueLoader.call());
+        if (evictions.get() != generation) {
+            // 刷新期间缓存被删除，读到的可能是修改前的数据，交给下一次未命中重新加载
+            log.debug("缓存在刷新期间被删除，丢弃刷新结果：{}", redisKey(cacheKey));
+            return;
+        }
+        doPut(cacheKey, storeValue, System.currentTimeMillis() - start);
+    }
+
+    private Object loadAndPut(String cacheKey, Callable<?> valueLoader) {
+        long start = System.currentTimeMillis();
+        Object value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(cacheKey, valueLoader, e);
+        }
+        Object storeValue = toStoreValue(value);
+        doPut(cacheKey, storeValue, System.currentTimeMillis() - start);
+        return storeValue;
+    }
+
+    private void doPut(String cacheKey, Object storeValue, long loadMillis) {
+        long softTtlSeconds = menuCacheProperties.getSoftTtlSeconds();
+        long softExpireAt = softTtlSeconds > 0 ? System.currentTimeMillis() + softTtlSeconds * 1000 : 0;
+        CacheEnvelope envelope = new CacheEnvelope(storeValue, softExpireAt, loadMillis);
+        // 先登记key再写入，清空缓存时不会漏掉正在写入的key
+        stringRedisTemplate.opsForSet().add(keySetName(), redisKey(cacheKey));
+        long redisTtlSeconds = menuCacheProperties.getRedisTtlSeconds();
+        if (redisTtlSeconds > 0) {
+            redisTemplate.opsForValue().set(redisKey(cacheKey), envelope, redisTtlSeconds, TimeUnit.SECONDS);
+        } else {
+            redisTemplate.opsForValue().set(redisKey(cacheKey), envelope);
+        }
+        localCache.put(cacheKey, envelope);
+        // 其他节点的本地缓存可能是旧数据
+        cacheManager.publishFill(name, cacheKey);
+    }
+
+    /**
+     * 超过软过期时间时需要刷新；未过期时按 加载耗时 * beta * -ln(随机数) 提前概率刷新，
+     * 越接近过期、加载越慢，提前刷新的概率越大
+     * @param envelope
+     * @return
+     */
+    private boolean shouldRefresh(CacheEnvelope envelope) {
+        long softExpireAt = envelope.getSoftExpireAt();
+        if (softExpireAt <= 0) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now >= softExpireAt) {
+            return true;
+        }
+        double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+        double gap = -envelope.getLoadMillis() * menuCacheProperties.getEarlyRefreshBeta() * Math.log(random);
+        return now + gap >= softExpireAt;
+    }
+
+    /**
+     * 等待持锁节点把数据写入Redis，超时返回null
+     * @param cacheKey
+     * @return
+     */
+    private CacheEnvelope waitForRedis(String cacheKey) {
+        long deadline = System.currentTimeMillis() + menuCacheProperties.getLockWaitMillis();
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(menuCacheProperties.getLockRetryMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            CacheEnvelope envelope = lookupRedis(cacheKey);
+            if (envelope != null) {
+                return envelope;
+            }
+        }
+        log.warn("等待其他节点加载缓存超时：{}", redisKey(cacheKey));
+        return null;
+    }
+
+    private Object await(CompletableFuture<Object> loading, String cacheKey, Callable<?> valueLoader) {
+        try {
+            return loading.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(cacheKey, valueLoader, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ValueRetrievalException(cacheKey, valueLoader, e.getCause());
+        }
+    }
+
+    private boolean tryLock(String lockKey, String token) {
+        try {
+            Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(lockKey, token,
+                    menuCacheProperties.getLockTimeoutMillis(), TimeUnit.MILLISECONDS);
+            return Boolean.TRUE.equals(locked);
+        } catch (Exception e) {
+            // Redis不可用时只保留本节点内的合并加载
+            log.warn("获取缓存加载锁失败：{}", e.getMessage());
+            return true;
+        }
+    }
+
+    private void unlock(String lockKey, String token) {
+        try {
+            stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), token);
+        } catch (Exception e) {
+            // 锁会自动过期
+            log.warn("释放缓存加载锁失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * Redis中的key沿用 缓存名_key 的格式，例如 dish_1
+     * @param key
+     * @return
+     */
+    private String redisKey(String key) {
+        return name + "_" + key;
+    }
+
+    /**
+     * 记录当前缓存所有Redis key的集合
+     * @return
+     */
+    private String keySetName() {
+        return name + ":keys";
+    }
+
+    private String lockKey(String key) {
+        return name + ":lock:" + key;
+    }
+}
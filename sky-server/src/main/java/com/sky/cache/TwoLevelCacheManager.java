@@ -0,0 +1,157 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.properties.MenuCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 二级缓存管理器
+ * 负责创建二级缓存，并通过Redis发布订阅在节点之间传递本地缓存失效通知
+ * 通知格式：节点id:类型:缓存名:key，清空整个缓存时key为空
+ * 类型为evict时表示数据被修改，本节点和其他节点都会回调注册的监听器；类型为fill时表示缓存被重新写入，只删除其他节点的本地缓存
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+
+    private static final String SEPARATOR = ":";
+
+    private static final String EVICT = "evict";
+
+    private static final String FILL = "fill";
+
+    private final ConcurrentMap<String, TwoLevelCache> cacheMap = new ConcurrentHashMap<>();
+
+    // 当前节点的id，用于忽略自己发出的通知
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final RedisTemplate redisTemplate;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final MenuCacheProperties menuCacheProperties;
+
+    private final List<CacheInvalidationListener> listeners = new CopyOnWriteArrayList<>();
+
+    // 后台刷新缓存的线程池，队列满时放弃本次刷新，继续使用旧值
+    private final ThreadPoolExecutor refreshExecutor = new ThreadPoolExecutor(1, 4, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(100), runnable -> {
+        Thread thread = new Thread(runnable, "cache-refresh");
+        thread.setDaemon(true);
+        return thread;
+    }, new ThreadPoolExecutor.AbortPolicy());
+
+    public TwoLevelCacheManager(RedisTemplate redisTemplate, StringRedisTemplate stringRedisTemplate,
+                                MenuCacheProperties menuCacheProperties) {
+        this.redisTemplate = redisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.menuCacheProperties = menuCacheProperties;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return cacheMap.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(cacheMap.keySet());
+    }
+
+    /**
+     * 注册缓存失效监听器
+     * @param listener
+     */
+    public void addInvalidationListener(CacheInvalidationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 缓存被删除，回调监听器并通知其他节点删除本地缓存
+     * @param cacheName
+     * @param key 为null时表示清空整个缓存
+     */
+    void publish(String cacheName, String key) {
+        notifyListeners(cacheName, key);
+        send(EVICT, cacheName, key);
+    }
+
+    /**
+     * 缓存被重新写入，数据没有变化，只通知其他节点删除可能过时的本地缓存，不回调监听器
+     * @param cacheName
+     * @param key
+     */
+    void publishFill(String cacheName, String key) {
+        send(FILL, cacheName, key);
+    }
+
+    private void send(String type, String cacheName, String key) {
+        String message = nodeId + SEPARATOR + type + SEPARATOR + cacheName + SEPARATOR + (key == null ? "" : key);
+        try {
+            stringRedisTemplate.convertAndSend(menuCacheProperties.getInvalidationChannel(), message);
+        } catch (Exception e) {
+            // 通知失败时其他节点的本地缓存依靠过期时间兜底
+            log.warn("发送缓存失效通知失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 收到缓存失效通知
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split(SEPARATOR, 4);
+        if (parts.length < 4 || nodeId.equals(parts[0])) {
+            return;
+        }
+        String key = parts[3].isEmpty() ? null : parts[3];
+        if (EVICT.equals(parts[1])) {
+            notifyListeners(parts[2], key);
+        }
+        TwoLevelCache cache = cacheMap.get(parts[2]);
+        if (cache == null) {
+            return;
+        }
+        log.debug("收到缓存失效通知：{}", body);
+        cache.evictLocal(key);
+    }
+
+    private void notifyListeners(String cacheName, String key) {
+        for (CacheInvalidationListener listener : listeners) {
+            try {
+                listener.onInvalidate(cacheName, key);
+            } catch (Exception e) {
+                log.warn("缓存失效监听器执行失败：{}", e.getMessage());
+            }
+        }
+    }
+
+    private TwoLevelCache createCache(String name) {
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> localCache = Caffeine.newBuilder()
+                .maximumSize(menuCacheProperties.getLocalMaxSize())
+                .expireAfterWrite(menuCacheProperties.getLocalTtlSeconds(), TimeUnit.SECONDS)
+                .build();
+        return new TwoLevelCache(name, localCache, redisTemplate, stringRedisTemplate, menuCacheProperties,
+                refreshExecutor, this);
+    }
+}
@@ -0,0 +1,223 @@
+package com.sky.cart;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.entity.ShoppingCart;
+import com.sky.properties.ShoppingCartProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Redis中的购物车
+ * 每个用户两个hash：cart:{userId} 保存商品数量，cart:{userId}:items 保存商品名称、图片、单价等信息，
+ * field 为 菜品/套餐id + 口味；数量用HINCRBY原子增减，修改过的用户记录在 cart:dirty 集合中等待写回数据库
+ */
+@Slf4j
+@Component
+public class ShoppingCartStore {
+
+    // 数量hash中的标记字段，表示已经从数据库加载过
+    public static final String LOADED_FIELD = "_loaded";
+
+    // 已加载标记不存在
+    public static final long NOT_LOADED = -2;
+
+    // 新商品缺少名称、单价等信息
+    public static final long ITEM_MISSING = -1;
+
+    private static final String DIRTY_KEY = "cart:dirty";
+
+    // 数量hash不存在时才从数据库数据初始化，避免覆盖并发的修改
+    private static final RedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 1 then return 0 end " +
+            "redis.call('hset', KEYS[1], '" + LOADED_FIELD + "', '1') " +
+            "for i = 2, #ARGV, 3 do " +
+            "redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1]) " +
+            "redis.call('hset', KEYS[2], ARGV[i], ARGV[i + 2]) " +
+            "end " +
+            "redis.call('expire', KEYS[1], ARGV[1]) redis.call('expire', KEYS[2], ARGV[1]) " +
+            "return 1",
+            Long.class);
+
+    // 增减数量，数量减到0时删除商品；新商品必须同时带上商品信息
+    private static final RedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 0 then return " + NOT_LOADED + " end " +
+            "local delta = tonumber(ARGV[2]) " +
+            "if delta > 0 and redis.call('hexists', KEYS[2], ARGV[1]) == 0 then " +
+            "if ARGV[4] == '' then return " + ITEM_MISSING + " end " +
+            "redis.call('hset', KEYS[2], ARGV[1], ARGV[4]) " +
+            "end " +
+            "local n = redis.call('hincrby', KEYS[1], ARGV[1], delta) " +
+            "if n <= 0 then redis.call('hdel', KEYS[1], ARGV[1]) redis.call('hdel', KEYS[2], ARGV[1]) n = 0 end " +
+            "redis.call('expire', KEYS[1], ARGV[3]) redis.call('expire', KEYS[2], ARGV[3]) " +
+            "return n",
+            Long.class);
+
+    // 清空购物车，保留已加载标记，避免从数据库加载回未写回的旧数据
+    private static final RedisScript<Long> CLEAR_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('del', KEYS[1], KEYS[2]) " +
+            "redis.call('hset', KEYS[1], '" + LOADED_FIELD + "', '1') " +
+            "redis.call('expire', KEYS[1], ARGV[1]) " +
+            "return 1",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ShoppingCartProperties shoppingCartProperties;
+
+    /**
+     * 购物车中商品的field
+     * @param dishId
+     * @param setmealId
+     * @param dishFlavor
+     * @return
+     */
+    public static String field(Long dishId, Long setmealId, String dishFlavor) {
+        if (dishId != null) {
+            return dishFlavor == null ? "d:" + dishId : "d:" + dishId + ":" + dishFlavor;
+        }
+        return "s:" + setmealId;
+    }
+
+    /**
+     * 购物车是否已经在Redis中
+     * @param userId
+     * @return
+     */
+    public boolean isLoaded(Long userId) {
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(quantityKey(userId)));
+    }
+
+    /**
+     * 用数据库中的购物车初始化Redis，已经存在时不做任何修改
+     * @param userId
+     * @param carts
+     */
+    public void load(Long userId, List<ShoppingCart> carts) {
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(shoppingCartProperties.getTtlSeconds()));
+        for (ShoppingCart cart : carts) {
+            args.add(field(cart.getDishId(), cart.getSetmealId(), cart.getDishFlavor()));
+            args.add(String.valueOf(cart.getNumber()));
+            args.add(toJson(cart));
+        }
+        stringRedisTemplate.execute(LOAD_SCRIPT, keys(userId), args.toArray());
+    }
+
+    /**
+     * 增减商品数量
+     * @param userId
+     * @param field
+     * @param delta
+     * @param item 新商品的信息，为null时若商品不在购物车中返回 ITEM_MISSING
+     * @return 修改后的数量；NOT_LOADED 表示购物车需要先从数据库加载
+     */
+    public long increment(Long userId, String field, int delta, ShoppingCart item) {
+        Long result = stringRedisTemplate.execute(INCREMENT_SCRIPT, keys(userId), field, String.valueOf(delta),
+                String.valueOf(shoppingCartProperties.getTtlSeconds()), item == null ? "" : toJson(item));
+        return result == null ? NOT_LOADED : result;
+    }
+
+    /**
+     * 查询购物车，按加入时间排序；购物车不在Redis中时返回null
+     * @param userId
+     * @return
+     */
+    public List<ShoppingCart> list(Long userId) {
+        Map<Object, Object> quantities = stringRedisTemplate.opsForHash().entries(quantityKey(userId));
+        if (quantities == null || quantities.isEmpty()) {
+            return null;
+        }
+        Map<Object, Object> items = stringRedisTemplate.opsForHash().entries(itemKey(userId));
+        List<ShoppingCart> list = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : quantities.entrySet()) {
+            if (LOADED_FIELD.equals(entry.getKey())) {
+                continue;
+            }
+            Object json = items.get(entry.getKey());
+            if (json == null) {
+                log.warn("购物车商品信息缺失，userId：{}，field：{}", userId, entry.getKey());
+                continue;
+            }
+            ShoppingCart cart = JSON.parseObject((String) json, ShoppingCart.class);
+            cart.setUserId(userId);
+            cart.setNumber(Integer.valueOf((String) entry.getValue()));
+            list.add(cart);
+        }
+        list.sort(Comparator.comparing(ShoppingCart::getCreateTime, Comparator.nullsLast(Comparator.naturalOrder())));
+        return list;
+    }
+
+    /**
+     * 清空购物车
+     * @param userId
+     */
+    public void clear(Long userId) {
+        stringRedisTemplate.execute(CLEAR_SCRIPT, keys(userId), String.valueOf(shoppingCartProperties.getTtlSeconds()));
+    }
+
+    /**
+     * 标记购物车需要写回数据库
+     * @param userId
+     */
+    public void markDirty(Long userId) {
+        stringRedisTemplate.opsForSet().add(DIRTY_KEY, String.valueOf(userId));
+    }
+
+    /**
+     * 取出一批需要写回数据库的用户
+     * @param count
+     * @return
+     */
+    public List<Long> popDirty(int count) {
+        List<String> members = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, count);
+        if (members == null || members.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> userIds = new ArrayList<>(members.size());
+        for (String member : members) {
+            userIds.add(Long.valueOf(member));
+        }
+        return userIds;
+    }
+
+    // 商品信息中不保存id、用户和数量，数量以数量hash为准
+    private String toJson(ShoppingCart cart) {
+        ShoppingCart item = ShoppingCart.builder()
+                .name(cart.getName())
+                .dishId(cart.getDishId())
+                .setmealId(cart.getSetmealId())
+                .dishFlavor(cart.getDishFlavor())
+                .amount(cart.getAmount())
+                .image(cart.getImage())
+                .createTime(cart.getCreateTime() == null ? LocalDateTime.now() : cart.getCreateTime())
+                .build();
+        return JSON.toJSONString(item);
+    }
+
+    // 用户id作为hash tag，两个key在集群中落在同一个slot，脚本才能同时操作
+    private List<String> keys(Long userId) {
+        return Arrays.asList(quantityKey(userId), itemKey(userId));
+    }
+
+    private String quantityKey(Long userId) {
+        return "cart:{" + userId + "}";
+    }
+
+    private String itemKey(Long userId) {
+        return "cart:{" + userId + "}:items";
+    }
+}
@@ -0,0 +1,99 @@
+package com.sky.config;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sky.cache.CompactRedisSerializer;
+import com.sky.cache.NullValueModule;
+import com.sky.cache.TwoLevelCacheManager;
+import com.sky.properties.MenuCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+@Configuration
+@EnableCaching
+@Slf4j
+public class CacheConfiguration {
+
+    @Bean
+    public TwoLevelCacheManager cacheManager(@Qualifier("menuCacheRedisTemplate") RedisTemplate menuCacheRedisTemplate,
+                                             StringRedisTemplate stringRedisTemplate,
+                                             MenuCacheProperties menuCacheProperties) {
+        log.info("开始创建二级缓存管理器：{}", menuCacheProperties);
+        return new TwoLevelCacheManager(menuCacheRedisTemplate, stringRedisTemplate, menuCacheProperties);
+    }
+
+    /**
+     * 菜单缓存专用的Redis模板，值的序列化方式可以配置
+     */
+    @Bean
+    public RedisTemplate<String, Object> menuCacheRedisTemplate(RedisConnectionFactory redisConnectionFactory,
+                                                                MenuCacheProperties menuCacheProperties) {
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(redisConnectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(menuCacheSerializer(menuCacheProperties));
+        return redisTemplate;
+    }
+
+    private RedisSerializer<Object> menuCacheSerializer(MenuCacheProperties menuCacheProperties) {
+        String serializer = menuCacheProperties.getSerializer();
+        if ("jdk".equals(serializer)) {
+            return new JdkSerializationRedisSerializer();
+        }
+        if ("json".equals(serializer)) {
+            return jsonSerializer();
+        }
+        return new CompactRedisSerializer(menuCacheProperties.getCompressThreshold());
+    }
+
+    /**
+     * 普通JSON序列化器，带类型信息，支持菜品和套餐中的LocalDateTime字段
+     * @return
+     */
+    public static RedisSerializer<Object> jsonSerializer() {
+        // 只允许反序列化项目和常用的JDK类型
+        PolymorphicTypeValidator typeValidator = BasicPolymorphicTypeValidator.builder()
+                .allowIfSubType("com.sky.")
+                .allowIfSubType("java.util.")
+                .allowIfSubType(Number.class)
+                .allowIfSubType("java.time.")
+                .allowIfSubType("com.github.pagehelper.")
+                .allowIfSubType("org.springframework.cache.support.")
+                .build();
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .registerModule(new NullValueModule())
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .activateDefaultTyping(typeValidator, ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        return new GenericJackson2JsonRedisSerializer(objectMapper);
+    }
+
+    /**
+     * 订阅缓存失效通知
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       TwoLevelCacheManager cacheManager,
+                                                                       MenuCacheProperties menuCacheProperties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(cacheManager, new ChannelTopic(menuCacheProperties.getInvalidationChannel()));
+        return container;
+    }
+}
@@ -0,0 +1,24 @@
+package com.sky.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@Slf4j
+public class FlywayConfiguration {
+
+    /**
+     * 已有的数据库没有迁移记录表，以版本0为基线，启动时执行 db/migration 下的全部脚本
+     * @return
+     */
+    @Bean
+    public FlywayConfigurationCustomizer flywayBaselineCustomizer() {
+        log.info("开始配置数据库迁移基线");
+        return configuration -> configuration
+                .baselineOnMigrate(true)
+                .baselineVersion("0");
+    }
+
+}
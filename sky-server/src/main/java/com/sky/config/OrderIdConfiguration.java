@@ -0,0 +1,43 @@
+package com.sky.config;
+
+import com.sky.lease.WorkerIdLease;
+import com.sky.properties.OrderIdProperties;
+import com.sky.utils.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Slf4j
+@Configuration
+public class OrderIdConfiguration {
+
+    @ConditionalOnMissingBean
+    @Bean
+    public SnowflakeIdGenerator orderIdGenerator(OrderIdProperties orderIdProperties,
+                                                 WorkerIdLease workerIdLease){
+        long workerId = orderIdProperties.getWorkerId();
+        if (workerId >= 0) {
+            log.info("开始创建订单id生成器，配置的节点id：{}", workerId);
+            return new SnowflakeIdGenerator(workerId,
+                    orderIdProperties.getEpoch(),
+                    orderIdProperties.getMaxBackwardMillis());
+        }
+        // 没有配置节点id时从Redis租用一个空闲的节点id，没有空闲的节点id时启动失败
+        workerId = workerIdLease.acquire();
+        log.info("开始创建订单id生成器，租用的节点id：{}", workerId);
+        return new SnowflakeIdGenerator(workerId,
+                orderIdProperties.getEpoch(),
+                orderIdProperties.getMaxBackwardMillis()) {
+            @Override
+            public long nextId() {
+                // 租约被其他节点领取后继续生成会与对方的订单号重复
+                if (!workerIdLease.isHeld()) {
+                    throw new IllegalStateException("订单id节点id" + getWorkerId() + "的租约已失效，拒绝生成id");
+                }
+                return super.nextId();
+            }
+        };
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.sky.controller.admin;
 
 import com.sky.annotation.CleanCache;
+import com.sky.constant.CacheConstant;
 import com.sky.dto.CategoryDTO;
 import com.sky.dto.CategoryPageQueryDTO;
 import com.sky.entity.Category;
@@ -12,7 +13,7 @@ import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.ibatis.annotations.Delete;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -87,7 +88,7 @@ public class CategoryController {
      * @param categoryDTO
      * @return
      */
-    @Cacheable
+    @CacheEvict(cacheNames = CacheConstant.DISH_CACHE,allEntries = true)
     @ApiOperation("修改分类")
     @PutMapping
     public Result ChangeCategory(@RequestBody CategoryDTO categoryDTO){
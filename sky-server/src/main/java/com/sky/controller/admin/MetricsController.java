@@ -0,0 +1,143 @@
+package com.sky.controller.admin;
+
+import com.sky.lease.JobLeaseManager;
+import com.sky.lease.JobLeaseStats;
+import com.sky.metrics.PrometheusWriter;
+import com.sky.metrics.RequestMetricsRegistry;
+import com.sky.metrics.SqlMetricsRegistry;
+import com.sky.properties.MetricsProperties;
+import com.sky.result.Result;
+import com.sky.vo.AreaMetricsVO;
+import com.sky.vo.EndpointMetricsVO;
+import com.sky.vo.SlowRequestVO;
+import com.sky.vo.SqlStatementMetricsVO;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+@RequestMapping("/admin/metrics")
+@Api(tags = "运行指标相关接口")
+@Slf4j
+@RestController
+public class MetricsController {
+
+    @Autowired
+    private SqlMetricsRegistry sqlMetricsRegistry;
+
+    @Autowired
+    private RequestMetricsRegistry requestMetricsRegistry;
+
+    @Autowired
+    private JobLeaseManager jobLeaseManager;
+
+    @Autowired
+    private MetricsProperties metricsProperties;
+
+    /**
+     * 各接口的耗时和错误统计，按累计耗时从高到低
+     * @return
+     */
+    @ApiOperation("接口请求统计")
+    @GetMapping("/requests")
+    public Result<List<EndpointMetricsVO>> requests() {
+        return Result.success(requestMetricsRegistry.endpoints());
+    }
+
+    /**
+     * 按管理端、用户端、支付回调汇总的请求数、错误率和正在处理的请求数
+     * @return
+     */
+    @ApiOperation("按来源汇总的请求统计")
+    @GetMapping("/areas")
+    public Result<List<AreaMetricsVO>> areas() {
+        return Result.success(requestMetricsRegistry.areas());
+    }
+
+    /**
+     * 最近的慢请求及其执行的SQL和Redis命令
+     * @return
+     */
+    @ApiOperation("慢请求样本")
+    @GetMapping("/slow")
+    public Result<List<SlowRequestVO>> slow() {
+        return Result.success(requestMetricsRegistry.slowRequests());
+    }
+
+    /**
+     * 清空接口请求统计和慢请求样本
+     * @return
+     */
+    @ApiOperation("清空接口请求统计")
+    @DeleteMapping("/requests")
+    public Result resetRequests() {
+        log.info("清空接口请求统计");
+        requestMetricsRegistry.reset();
+        return Result.success();
+    }
+
+    /**
+     * Prometheus抓取接口，不校验员工令牌，使用配置的抓取令牌
+     * @param request
+     * @param response
+     * @throws IOException
+     */
+    @ApiOperation("Prometheus抓取")
+    @GetMapping("/prometheus")
+    public void prometheus(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String token = metricsProperties.getScrapeToken();
+        String authorization = request.getHeader("Authorization");
+        if (token == null || token.isEmpty() || authorization == null || !MessageDigest.isEqual(
+                ("Bearer " + token).getBytes(StandardCharsets.UTF_8), authorization.getBytes(StandardCharsets.UTF_8))) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        response.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        response.getWriter().write(PrometheusWriter.write(requestMetricsRegistry.areas(),
+                requestMetricsRegistry.endpoints(), sqlMetricsRegistry.snapshot(), jobLeaseManager.stats().values()));
+    }
+
+    /**
+     * 本节点的定时任务租约统计：是否持有租约、防护令牌、接管/失去/跳过次数和最近一次易主时间
+     * @return
+     */
+    @ApiOperation("定时任务租约统计")
+    @GetMapping("/leases")
+    public Result<List<JobLeaseStats>> leases() {
+        return Result.success(new ArrayList<>(jobLeaseManager.stats().values()));
+    }
+
+    /**
+     * 每条mapper语句的耗时和行数统计，按累计耗时从高到低
+     * @return
+     */
+    @ApiOperation("SQL语句统计")
+    @GetMapping("/sql")
+    public Result<List<SqlStatementMetricsVO>> sql() {
+        return Result.success(sqlMetricsRegistry.snapshot());
+    }
+
+    /**
+     * 清空SQL语句统计
+     * @return
+     */
+    @ApiOperation("清空SQL语句统计")
+    @DeleteMapping("/sql")
+    public Result resetSql() {
+        log.info("清空SQL语句统计");
+        sqlMetricsRegistry.reset();
+        return Result.success();
+    }
+}
@@ -1,6 +1,8 @@
 package com.sky.controller.admin;
 
+import com.sky.dto.ReportJobDTO;
 import com.sky.result.Result;
+import com.sky.service.ReportJobService;
 import com.sky.service.ReportService;
 import com.sky.service.UserService;
 import com.sky.vo.*;
@@ -10,7 +12,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.servlet.http.HttpServletResponse;
@@ -25,6 +31,9 @@ public class ReportController {
     @Autowired
     private ReportService reportService;
 
+    @Autowired
+    private ReportJobService reportJobService;
+
     /**
      * 营业额统计
      * @param begin
@@ -90,12 +99,57 @@ public class ReportController {
     }
 
     /**
-     * 获取业务报表
+     * 获取业务报表，不传日期时导出最近30天
      * @param httpServletResponse
+     * @param begin
+     * @param end
+     * @param detail 是否附带订单明细
      */
     @ApiOperation("获取业务报表")
     @GetMapping("/export")
-    public void report(HttpServletResponse httpServletResponse){
-        reportService.report(httpServletResponse);
+    public void report
+    (
+        HttpServletResponse httpServletResponse,
+        @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+        @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end,
+        @RequestParam(defaultValue = "false") boolean detail
+    ){
+        log.info("正在导出业务报表,begin:{},end:{},detail:{}",begin,end,detail);
+        LocalDate last = end == null ? LocalDate.now().minusDays(1) : end;
+        reportService.report(httpServletResponse, begin == null ? last.minusDays(29) : begin, last, detail);
+    }
+
+    /**
+     * 提交报表任务，生成完成后通过websocket通知，也可以轮询任务状态
+     * @param reportJobDTO
+     * @return
+     */
+    @ApiOperation("提交报表任务")
+    @PostMapping("/jobs")
+    public Result<ReportJobVO> submitJob(@RequestBody ReportJobDTO reportJobDTO){
+        log.info("提交报表任务:{}",reportJobDTO);
+        return Result.success(reportJobService.submit(reportJobDTO));
+    }
+
+    /**
+     * 查询报表任务
+     * @param jobId
+     * @return
+     */
+    @ApiOperation("查询报表任务")
+    @GetMapping("/jobs/{jobId}")
+    public Result<ReportJobVO> getJob(@PathVariable String jobId){
+        return Result.success(reportJobService.getJob(jobId));
+    }
+
+    /**
+     * 下载报表任务生成的文件
+     * @param jobId
+     * @param httpServletResponse
+     */
+    @ApiOperation("下载报表")
+    @GetMapping("/jobs/{jobId}/file")
+    public void download(@PathVariable String jobId, HttpServletResponse httpServletResponse){
+        reportJobService.download(jobId, httpServletResponse);
     }
 }
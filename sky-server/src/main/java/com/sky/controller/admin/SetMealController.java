@@ -1,5 +1,6 @@
 package com.sky.controller.admin;
 
+import com.sky.constant.CacheConstant;
 import com.sky.dto.SetmealDTO;
 import com.sky.dto.SetmealPageQueryDTO;
 import com.sky.result.PageResult;
@@ -11,6 +12,7 @@ import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
@@ -91,6 +93,10 @@ public class SetMealController {
      * @param ids
      * @return
      */
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConstant.SETMEAL_CACHE,allEntries = true),
+            @CacheEvict(cacheNames = CacheConstant.SETMEAL_DISH_CACHE,allEntries = true)
+    })
     @Transactional
     @DeleteMapping
     @ApiOperation("删除套餐")
@@ -105,6 +111,10 @@ public class SetMealController {
      * @param setmealDTO
      * @return
      */
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConstant.SETMEAL_CACHE,allEntries = true),
+            @CacheEvict(cacheNames = CacheConstant.SETMEAL_DISH_CACHE,key = "#setmealDTO.id")
+    })
     @PutMapping
     @ApiOperation("修改套餐")
     public Result ChangeSetMeal(@RequestBody SetmealDTO setmealDTO){
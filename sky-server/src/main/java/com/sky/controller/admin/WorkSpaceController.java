@@ -73,4 +73,14 @@ public class WorkSpaceController {
         SetmealOverViewVO setmealOverViewVO = workSpaceService.overviewSetmeals();
         return Result.success(setmealOverViewVO);
     }
+
+    /**
+     * 工作台数据快照，包含今日运营数据、订单概览、菜品和套餐总览
+     * @return
+     */
+    @ApiOperation("工作台数据")
+    @GetMapping("/dashboard")
+    public Result<WorkspaceDashboardVO> dashboard(){
+        return Result.success(workSpaceService.getDashboard());
+    }
 }
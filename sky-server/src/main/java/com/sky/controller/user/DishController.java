@@ -1,5 +1,6 @@
 package com.sky.controller.user;
 
+import com.sky.constant.CacheConstant;
 import com.sky.context.BaseContext;
 import com.sky.result.Result;
 import com.sky.service.DishService;
@@ -8,11 +9,11 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.Set;
 
 @RestController("userDishController")
 @Slf4j
@@ -21,7 +22,7 @@ import java.util.Set;
 public class DishController {
 
     @Autowired
-    private RedisTemplate redisTemplate;
+    private CacheManager cacheManager;
 
     @Autowired
     private DishService dishService;
@@ -48,16 +49,9 @@ public class DishController {
     @ApiOperation("根据分类id查询菜品信息")
     public Result<List<DishVO>> SelectByCategoryId(Long categoryId){
         log.info("用户id:{},正在查询分类：{}", BaseContext.getCurrentId(),categoryId);
-        // 先判断缓存中有没有菜品数据
-        String key = "dish_" +categoryId;
-        List<DishVO> list = (List<DishVO>) redisTemplate.opsForValue().get(key);
-        // 如果存在就直接返回数据
-        if (list != null && list.size() > 0){
-            return Result.success(list);
-        }
-        // 如果不存在就进入数据库中查询，并且载入缓存中
-        list = dishService.SelectByCategoryId(categoryId);
-        redisTemplate.opsForValue().set(key,list);
+        // 先查本地缓存，再查Redis，都不存在时查询数据库并载入两级缓存
+        Cache cache = cacheManager.getCache(CacheConstant.DISH_CACHE);
+        List<DishVO> list = cache.get(categoryId, () -> dishService.SelectByCategoryId(categoryId));
         return Result.success(list);
     }
 
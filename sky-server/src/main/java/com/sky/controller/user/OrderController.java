@@ -28,14 +28,17 @@ public class OrderController {
 
     /**
      * 订单提交
+     * 客户端重试时带上同一个Idempotency-Key请求头，只会生成一个订单
      * @param ordersSubmitDTO
+     * @param idempotencyKey
      * @return
      */
     @ApiOperation("订单提交")
     @PostMapping("/submit")
-    public Result<OrderSubmitVO> submit(@RequestBody OrdersSubmitDTO ordersSubmitDTO){
-        log.info("正在提交订单,{}",ordersSubmitDTO);
-        OrderSubmitVO orderSubmitVO = orderService.submit(ordersSubmitDTO);
+    public Result<OrderSubmitVO> submit(@RequestBody OrdersSubmitDTO ordersSubmitDTO,
+                                        @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey){
+        log.info("正在提交订单,{}，幂等key：{}",ordersSubmitDTO,idempotencyKey);
+        OrderSubmitVO orderSubmitVO = orderService.submit(ordersSubmitDTO, idempotencyKey);
         return Result.success(orderSubmitVO);
     }
 
@@ -1,5 +1,6 @@
 package com.sky.controller.user;
 
+import com.sky.constant.CacheConstant;
 import com.sky.dto.SetmealDTO;
 import com.sky.dto.SetmealPageQueryDTO;
 import com.sky.entity.Dish;
@@ -35,7 +36,7 @@ public class SetMealController {
      * @param id
      * @return
      */
-    @Cacheable
+    @Cacheable(cacheNames = CacheConstant.SETMEAL_DISH_CACHE,key = "#id",sync = true)
     @ApiOperation("根据id查询套餐数据")
     @GetMapping("/dish/{id}")
     public Result<List<DishItemVO>> SelectById(@PathVariable Long id) {
@@ -49,7 +50,7 @@ public class SetMealController {
      * @param categoryId
      * @return
      */
-    @Cacheable(cacheNames = "SetMealCache",key = "#categoryId")
+    @Cacheable(cacheNames = "SetMealCache",key = "#categoryId",sync = true)
     @ApiOperation("套餐查询")
     @GetMapping("/list")
     public Result<List<Setmeal>> SelectByCategoryId(Long categoryId){
@@ -0,0 +1,164 @@
+package com.sky.explain;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.executor.keygen.SelectKeyGenerator;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
+import org.apache.ibatis.session.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 执行计划检查
+ * 对每条查询、修改、删除语句用示例参数执行EXPLAIN，热点表上出现没有可用索引的全表扫描（type为ALL且possible_keys为空）时报告；
+ * 只看有没有可用的索引，不看优化器最终是否选用，本地数据量很小时优化器也可能选择全表扫描
+ */
+@Slf4j
+public class QueryPlanAdvisor {
+
+    // FROM子句，到WHERE、JOIN等关键字为止，逗号分隔的多张表
+    private static final Pattern FROM_CLAUSE = Pattern.compile(
+            "\\bfrom\\s+(.+?)(?=\\bwhere\\b|\\bgroup\\b|\\border\\b|\\blimit\\b|\\bfor\\b|\\bon\\b|\\bleft\\b|\\bright\\b|\\binner\\b|\\bjoin\\b|\\)|$)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final Pattern JOIN_TABLE = Pattern.compile("\\bjoin\\s+(\\w+)(?:\\s+(?:as\\s+)?(\\w+))?",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "as", "on", "where", "left", "right", "inner", "join", "group", "order", "limit", "for", "set"));
+
+    private final Configuration configuration;
+
+    private final DataSource dataSource;
+
+    private final Set<String> hotTables;
+
+    private final Set<String> allowedScans;
+
+    private final SampleParameters sampleParameters;
+
+    public QueryPlanAdvisor(Configuration configuration, DataSource dataSource,
+                            Collection<String> hotTables, Collection<String> allowedScans) {
+        this.configuration = configuration;
+        this.dataSource = dataSource;
+        this.hotTables = new HashSet<>(hotTables);
+        this.allowedScans = new HashSet<>(allowedScans);
+        this.sampleParameters = new SampleParameters(configuration);
+    }
+
+    /**
+     * 检查全部mapper语句
+     * @return 发现的问题
+     */
+    public List<QueryPlanIssue> check() {
+        List<QueryPlanIssue> issues = new ArrayList<>();
+        // 语句同时以完整id和简写id注册，只取完整id
+        Set<String> ids = new TreeSet<>();
+        for (String name : configuration.getMappedStatementNames()) {
+            if (name.contains(".") && !name.endsWith(SelectKeyGenerator.SELECT_KEY_SUFFIX)) {
+                ids.add(name);
+            }
+        }
+        int explained = 0;
+        for (String id : ids) {
+            MappedStatement statement = configuration.getMappedStatement(id);
+            SqlCommandType type = statement.getSqlCommandType();
+            if (type == SqlCommandType.SELECT || type == SqlCommandType.UPDATE || type == SqlCommandType.DELETE) {
+                explain(statement, issues);
+                explained++;
+            }
+        }
+        log.info("执行计划检查完成，检查语句{}条，发现问题{}个", explained, issues.size());
+        return issues;
+    }
+
+    private void explain(MappedStatement statement, List<QueryPlanIssue> issues) {
+        String sql = null;
+        try (Connection connection = dataSource.getConnection()) {
+            Object parameter = sampleParameters.forStatement(statement.getId());
+            BoundSql boundSql = statement.getBoundSql(parameter);
+            sql = boundSql.getSql();
+            Map<String, String> aliases = tableAliases(sql);
+            try (PreparedStatement ps = connection.prepareStatement("explain " + sql)) {
+                new DefaultParameterHandler(statement, parameter, boundSql).setParameters(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String alias = rs.getString("table");
+                        String table = alias == null ? null : aliases.getOrDefault(alias.toLowerCase(), alias.toLowerCase());
+                        if (isUnindexedScan(rs.getString("type"), rs.getString("possible_keys"))
+                                && hotTables.contains(table) && !allowedScans.contains(statement.getId())) {
+                            issues.add(new QueryPlanIssue(QueryPlanIssue.FULL_SCAN, statement.getId(), table,
+                                    "rows=" + rs.getString("rows") + "，" + compact(sql)));
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            issues.add(new QueryPlanIssue(QueryPlanIssue.ERROR, statement.getId(), null,
+                    e.getMessage() + (sql == null ? "" : "，" + compact(sql))));
+        }
+    }
+
+    /**
+     * 全表扫描且没有任何可用的索引
+     * @param accessType
+     * @param possibleKeys
+     * @return
+     */
+    public static boolean isUnindexedScan(String accessType, String possibleKeys) {
+        return "ALL".equalsIgnoreCase(accessType) && (possibleKeys == null || possibleKeys.isEmpty());
+    }
+
+    /**
+     * 解析语句中的表别名，EXPLAIN结果中的table列是别名
+     * @param sql
+     * @return 别名（小写） -> 表名（小写），表名也映射到自身
+     */
+    public static Map<String, String> tableAliases(String sql) {
+        Map<String, String> aliases = new HashMap<>();
+        Matcher from = FROM_CLAUSE.matcher(sql);
+        while (from.find()) {
+            for (String item : from.group(1).split(",")) {
+                String[] words = item.trim().split("\\s+");
+                if (words[0].isEmpty() || words[0].startsWith("(")) {
+                    continue;
+                }
+                String table = words[0].replace("`", "").toLowerCase();
+                aliases.put(table, table);
+                String alias = words[words.length - 1].replace("`", "").toLowerCase();
+                if (words.length > 1 && !KEYWORDS.contains(alias)) {
+                    aliases.put(alias, table);
+                }
+            }
+        }
+        Matcher join = JOIN_TABLE.matcher(sql);
+        while (join.find()) {
+            String table = join.group(1).toLowerCase();
+            aliases.put(table, table);
+            if (join.group(2) != null && !KEYWORDS.contains(join.group(2).toLowerCase())) {
+                aliases.put(join.group(2).toLowerCase(), table);
+            }
+        }
+        return aliases;
+    }
+
+    private static String compact(String sql) {
+        return sql.replaceAll("\\s+", " ").trim();
+    }
+}
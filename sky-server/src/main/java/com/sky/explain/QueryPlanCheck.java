@@ -0,0 +1,50 @@
+package com.sky.explain;
+
+import com.sky.properties.ExplainProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * 启动时检查执行计划，开启 sky.explain.enabled 后生效
+ * 数据库迁移完成后对全部mapper语句执行EXPLAIN，热点表出现全表扫描时中止启动
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "sky.explain", name = "enabled", havingValue = "true")
+public class QueryPlanCheck implements ApplicationRunner {
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ExplainProperties explainProperties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<QueryPlanIssue> issues = new QueryPlanAdvisor(sqlSessionFactory.getConfiguration(), dataSource,
+                explainProperties.getHotTables(), explainProperties.getAllowedScans()).check();
+        long scans = 0;
+        for (QueryPlanIssue issue : issues) {
+            if (QueryPlanIssue.FULL_SCAN.equals(issue.getKind())) {
+                scans++;
+                log.error("执行计划检查：{}", issue);
+            } else {
+                log.warn("执行计划检查：{}", issue);
+            }
+        }
+        if (scans > 0 && explainProperties.isFailOnScan()) {
+            throw new IllegalStateException("热点表上有" + scans + "条语句没有可用的索引，详见日志");
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.sky.explain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * EXPLAIN发现的问题
+ */
+@Data
+@AllArgsConstructor
+public class QueryPlanIssue {
+
+    // 热点表全表扫描
+    public static final String FULL_SCAN = "FULL_SCAN";
+
+    // 语句无法执行EXPLAIN
+    public static final String ERROR = "ERROR";
+
+    //问题类型
+    private String kind;
+
+    //mapper语句id
+    private String statementId;
+
+    //涉及的表
+    private String table;
+
+    //执行计划或错误信息
+    private String detail;
+
+    @Override
+    public String toString() {
+        return kind + " " + statementId + (table == null ? "" : " [" + table + "]") + "：" + detail;
+    }
+}
@@ -0,0 +1,190 @@
+package com.sky.explain;
+
+import org.apache.ibatis.reflection.ParamNameResolver;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 为mapper语句生成示例参数
+ * 按mapper方法的参数类型生成非空的示例值，动态SQL中的条件全部生效，得到最完整的语句用于EXPLAIN
+ */
+public class SampleParameters {
+
+    private final Configuration configuration;
+
+    public SampleParameters(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * 生成语句的参数对象，和MyBatis调用mapper方法时传入的参数结构一致
+     * @param statementId
+     * @return
+     */
+    public Object forStatement(String statementId) {
+        Method method = mapperMethod(statementId);
+        if (method == null) {
+            return new SampleMap();
+        }
+        Type[] types = method.getGenericParameterTypes();
+        Object[] args = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            args[i] = sample(types[i]);
+        }
+        return new ParamNameResolver(configuration, method).getNamedParams(args);
+    }
+
+    private Method mapperMethod(String statementId) {
+        int dot = statementId.lastIndexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        try {
+            Class<?> mapper = Class.forName(statementId.substring(0, dot));
+            String name = statementId.substring(dot + 1);
+            for (Method method : mapper.getMethods()) {
+                if (method.getName().equals(name)) {
+                    return method;
+                }
+            }
+        } catch (ClassNotFoundException e) {
+            // 只在XML中定义的语句
+        }
+        return null;
+    }
+
+    private Object sample(Type type) {
+        Class<?> raw = rawClass(type);
+        if (raw == null || ResultHandler.class.isAssignableFrom(raw) || RowBounds.class.isAssignableFrom(raw)) {
+            return null;
+        }
+        if (Collection.class.isAssignableFrom(raw) || Iterable.class.equals(raw)) {
+            Type element = type instanceof ParameterizedType ? ((ParameterizedType) type).getActualTypeArguments()[0] : Long.class;
+            Object value = sample(element);
+            return Collections.singletonList(value == null ? 1L : value);
+        }
+        if (Map.class.isAssignableFrom(raw)) {
+            return new SampleMap();
+        }
+        Object value = simpleValue(raw);
+        return value != null ? value : bean(raw);
+    }
+
+    /**
+     * 实体和DTO：无参构造后给每个简单类型的字段赋示例值
+     */
+    private Object bean(Class<?> type) {
+        Object bean;
+        try {
+            bean = type.getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            return null;
+        }
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
+                    continue;
+                }
+                Object value = Collection.class.isAssignableFrom(field.getType())
+                        ? sample(field.getGenericType()) : simpleValue(field.getType());
+                if (value == null) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                    field.set(bean, value);
+                } catch (IllegalAccessException e) {
+                    // 跳过无法赋值的字段
+                }
+            }
+        }
+        return bean;
+    }
+
+    private static Class<?> rawClass(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        return null;
+    }
+
+    private static Object simpleValue(Class<?> type) {
+        if (type == Long.class || type == long.class) {
+            return 1L;
+        }
+        if (type == Integer.class || type == int.class) {
+            return 1;
+        }
+        if (type == Short.class || type == short.class) {
+            return (short) 1;
+        }
+        if (type == Double.class || type == double.class) {
+            return 1.0;
+        }
+        if (type == Boolean.class || type == boolean.class) {
+            return true;
+        }
+        if (type == String.class) {
+            return "1";
+        }
+        if (type == BigDecimal.class) {
+            return BigDecimal.ONE;
+        }
+        if (type == LocalDateTime.class) {
+            return LocalDateTime.now();
+        }
+        if (type == LocalDate.class) {
+            return LocalDate.now();
+        }
+        if (type == LocalTime.class) {
+            return LocalTime.now();
+        }
+        if (type == Date.class) {
+            return new Date();
+        }
+        return null;
+    }
+
+    /**
+     * 参数是Map时不知道调用方会放入哪些key，按key的名称猜测一个示例值
+     */
+    public static class SampleMap extends HashMap<String, Object> {
+
+        @Override
+        public Object get(Object key) {
+            if (containsKey(key)) {
+                return super.get(key);
+            }
+            String name = String.valueOf(key).toLowerCase();
+            if (name.endsWith("ids") || name.endsWith("list")) {
+                return Collections.singletonList(1L);
+            }
+            if (name.contains("time")) {
+                return LocalDateTime.now();
+            }
+            if (name.contains("date") || name.equals("begin") || name.equals("end")) {
+                return LocalDate.now();
+            }
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.sky.idempotent;
+
+import com.sky.properties.IdempotencyProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 幂等请求记录
+ * 第一次请求用SET NX占住幂等key，处理成功后把响应写入这个key，重复的请求直接返回保存的响应；
+ * 处理失败时删除占位，客户端可以用同一个幂等key重试。
+ * 每个请求的占位值都不同（PENDING:随机串），占位过期后被重试的请求占用时，先前的请求不会误删别人的占位
+ */
+@Component
+public class IdempotencyStore {
+
+    // 请求正在处理中的占位值前缀
+    public static final String PENDING_PREFIX = "PENDING:";
+
+    // 只删除处理中的占位，不删除已经保存的响应
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private IdempotencyProperties idempotencyProperties;
+
+    /**
+     * 生成本次请求的占位值
+     * @return
+     */
+    public String newToken() {
+        return PENDING_PREFIX + UUID.randomUUID();
+    }
+
+    /**
+     * 是否为处理中的占位值
+     * @param value
+     * @return
+     */
+    public static boolean isPending(String value) {
+        return value != null && value.startsWith(PENDING_PREFIX);
+    }
+
+    /**
+     * 占用幂等key
+     * @param key
+     * @param token 本次请求的占位值
+     * @return null表示占用成功；占位值表示同一个请求正在处理（用isPending判断）；其他值为之前保存的响应
+     */
+    public String acquire(String key, String token) {
+        Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(key, token,
+                idempotencyProperties.getPendingTtlSeconds(), TimeUnit.SECONDS);
+        if (Boolean.TRUE.equals(acquired)) {
+            return null;
+        }
+        String value = stringRedisTemplate.opsForValue().get(key);
+        // 占位刚好过期时按处理中返回，由客户端稍后重试
+        return value == null ? PENDING_PREFIX : value;
+    }
+
+    /**
+     * 保存处理结果，重复请求在有效期内都返回这个结果
+     * @param key
+     * @param response
+     */
+    public void complete(String key, String response) {
+        stringRedisTemplate.opsForValue().set(key, response,
+                idempotencyProperties.getResponseTtlSeconds(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * 处理失败，释放幂等key，只删除本次请求自己的占位
+     * @param key
+     * @param token 本次请求的占位值
+     */
+    public void release(String key, String token) {
+        stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(key), token);
+    }
+}
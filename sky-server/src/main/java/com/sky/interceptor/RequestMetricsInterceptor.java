@@ -0,0 +1,57 @@
+package com.sky.interceptor;
+
+import com.sky.metrics.EndpointMetrics;
+import com.sky.metrics.RequestMetricsRegistry;
+import com.sky.metrics.RequestQueryContext;
+import com.sky.metrics.SqlMetricsRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 请求统计的拦截器
+ * 在请求线程上开启SQL和Redis统计，请求结束时按路径模板记录耗时和错误，并对慢请求采样
+ */
+@Component
+public class RequestMetricsInterceptor implements HandlerInterceptor {
+
+    private static final String ENDPOINT = RequestMetricsInterceptor.class.getName() + ".ENDPOINT";
+
+    @Autowired
+    private SqlMetricsRegistry sqlMetricsRegistry;
+
+    @Autowired
+    private RequestMetricsRegistry requestMetricsRegistry;
+
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        //只统计Controller的方法，按路径模板归类，静态资源等不统计
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        EndpointMetrics endpoint = requestMetricsRegistry.begin(request.getMethod(),
+                pattern == null ? request.getRequestURI() : pattern.toString());
+        request.setAttribute(ENDPOINT, endpoint);
+        RequestQueryContext.begin(request.getMethod(), request.getRequestURI());
+        return true;
+    }
+
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        EndpointMetrics endpoint = (EndpointMetrics) request.getAttribute(ENDPOINT);
+        if (endpoint == null) {
+            return;
+        }
+        RequestQueryContext context = RequestQueryContext.end();
+        sqlMetricsRegistry.completeRequest(context);
+        //被全局异常处理器处理的异常不会传到这里，DispatcherServlet会把它放在请求属性中
+        boolean failed = ex != null || response.getStatus() >= 500
+                || request.getAttribute(DispatcherServlet.EXCEPTION_ATTRIBUTE) != null;
+        requestMetricsRegistry.complete(endpoint, context, response.getStatus(), failed);
+    }
+}
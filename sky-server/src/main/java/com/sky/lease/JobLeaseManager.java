@@ -0,0 +1,229 @@
+package com.sky.lease;
+
+import com.sky.properties.JobLeaseProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 定时任务租约
+ * 每个任务一个Redis租约 job:lease:{任务名}，只有持有租约的节点执行任务，持有者每次执行时续期，
+ * 宕机或停机后租约过期（或被主动释放），由下一个触发任务的节点接管。
+ * 每次租约易主都会从 job:lease:{任务名}:token 领取一个递增的防护令牌，
+ * 长任务执行过程中通过 {@link #renew()} 确认令牌仍然有效，失去租约的旧持有者会停止继续处理
+ */
+@Slf4j
+@Component
+public class JobLeaseManager {
+
+    private static final String LEASE_KEY_PREFIX = "job:lease:";
+
+    // 持有者续期并返回原令牌；租约空闲时领取新令牌；被其他节点持有时返回0
+    private static final RedisScript<List> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "local owner = redis.call('hget', KEYS[1], 'owner') " +
+            "if owner == ARGV[1] then " +
+            "  redis.call('pexpire', KEYS[1], ARGV[2]) " +
+            "  return {tonumber(redis.call('hget', KEYS[1], 'token')), 0} " +
+            "end " +
+            "if owner then return {0, 0} end " +
+            "local token = redis.call('incr', KEYS[2]) " +
+            "redis.call('hmset', KEYS[1], 'owner', ARGV[1], 'token', token) " +
+            "redis.call('pexpire', KEYS[1], ARGV[2]) " +
+            "return {token, 1}",
+            List.class);
+
+    // 令牌仍然有效时续期
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('hget', KEYS[1], 'token') == ARGV[1] then " +
+            "  return redis.call('pexpire', KEYS[1], ARGV[2]) " +
+            "end return 0",
+            Long.class);
+
+    // 只释放自己持有的租约
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('hget', KEYS[1], 'owner') == ARGV[1] then return redis.call('del', KEYS[1]) end return 0",
+            Long.class);
+
+    // 当前线程正在执行的任务及其令牌
+    private static final ThreadLocal<Lease> CURRENT = new ThreadLocal<>();
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private JobLeaseProperties jobLeaseProperties;
+
+    private String nodeId;
+
+    private final Map<String, JobLeaseStats> stats = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        nodeId = jobLeaseProperties.getNodeId();
+        if (nodeId == null || nodeId.isEmpty()) {
+            nodeId = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID().toString().substring(0, 8);
+        }
+        log.info("定时任务租约节点标识：{}", nodeId);
+    }
+
+    /**
+     * 获取或续期任务租约
+     * @param job
+     * @return 防护令牌，租约被其他节点持有时返回0
+     */
+    public long acquire(String job) {
+        List<Long> result = stringRedisTemplate.execute(ACQUIRE_SCRIPT, keys(job),
+                nodeId, String.valueOf(jobLeaseProperties.getLeaseMillis()));
+        long token = result.get(0);
+        JobLeaseStats jobStats = stats.computeIfAbsent(job, this::newStats);
+        synchronized (jobStats) {
+            if (token == 0) {
+                if (jobStats.isHeld()) {
+                    jobStats.setLost(jobStats.getLost() + 1);
+                    log.warn("任务{}的租约已由其他节点接管", job);
+                }
+                jobStats.setHeld(false);
+                jobStats.setSkipped(jobStats.getSkipped() + 1);
+                return 0;
+            }
+            if (result.get(1) == 1) {
+                jobStats.setAcquired(jobStats.getAcquired() + 1);
+                jobStats.setLastHandOver(LocalDateTime.now());
+                log.info("节点{}接管任务{}的租约，令牌{}", nodeId, job, token);
+            }
+            jobStats.setHeld(true);
+            jobStats.setToken(token);
+        }
+        return token;
+    }
+
+    /**
+     * 在租约保护下执行任务
+     * @param job
+     * @param token
+     * @param action
+     */
+    public <T> T runWithLease(String job, long token, LeasedAction<T> action) throws Throwable {
+        CURRENT.set(new Lease(job, token));
+        try {
+            return action.run();
+        } finally {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * 长任务分批处理时，每批之前确认当前节点仍持有租约并续期
+     * 不在租约保护下执行（例如关闭了租约）时总是返回true
+     * @return false表示租约已经易主，应停止处理
+     */
+    public boolean renew() {
+        Lease current = CURRENT.get();
+        if (current == null) {
+            return true;
+        }
+        Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(LEASE_KEY_PREFIX + current.job),
+                String.valueOf(current.token), String.valueOf(jobLeaseProperties.getLeaseMillis()));
+        if (renewed != null && renewed == 1) {
+            return true;
+        }
+        JobLeaseStats jobStats = stats.computeIfAbsent(current.job, this::newStats);
+        synchronized (jobStats) {
+            if (jobStats.isHeld() && jobStats.getToken() == current.token) {
+                jobStats.setHeld(false);
+                jobStats.setLost(jobStats.getLost() + 1);
+            }
+        }
+        log.warn("任务{}的租约（令牌{}）已失效，停止处理", current.job, current.token);
+        return false;
+    }
+
+    /**
+     * 各任务的租约统计
+     * @return
+     */
+    public Map<String, JobLeaseStats> stats() {
+        Map<String, JobLeaseStats> copy = new TreeMap<>();
+        stats.forEach((job, jobStats) -> {
+            JobLeaseStats snapshot = new JobLeaseStats();
+            synchronized (jobStats) {
+                snapshot.setJob(job);
+                snapshot.setNode(nodeId);
+                snapshot.setHeld(jobStats.isHeld());
+                snapshot.setToken(jobStats.getToken());
+                snapshot.setAcquired(jobStats.getAcquired());
+                snapshot.setLost(jobStats.getLost());
+                snapshot.setSkipped(jobStats.getSkipped());
+                snapshot.setLastHandOver(jobStats.getLastHandOver());
+            }
+            copy.put(job, snapshot);
+        });
+        return copy;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 停机时释放持有的租约，其他节点不必等到租约过期就能接管
+     */
+    @PreDestroy
+    public void releaseAll() {
+        stats.forEach((job, jobStats) -> {
+            if (!jobStats.isHeld()) {
+                return;
+            }
+            try {
+                stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(LEASE_KEY_PREFIX + job), nodeId);
+            } catch (Exception e) {
+                log.warn("释放任务{}的租约失败：{}", job, e.getMessage());
+            }
+        });
+    }
+
+    private List<String> keys(String job) {
+        return Arrays.asList(LEASE_KEY_PREFIX + job, LEASE_KEY_PREFIX + job + ":token");
+    }
+
+    private JobLeaseStats newStats(String job) {
+        JobLeaseStats jobStats = new JobLeaseStats();
+        jobStats.setJob(job);
+        return jobStats;
+    }
+
+    private static class Lease {
+
+        private final String job;
+
+        private final long token;
+
+        Lease(String job, long token) {
+            this.job = job;
+            this.token = token;
+        }
+    }
+
+    /**
+     * 租约保护下执行的任务
+     */
+    public interface LeasedAction<T> {
+
+        T run() throws Throwable;
+    }
+}
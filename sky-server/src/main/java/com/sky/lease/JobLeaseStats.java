@@ -0,0 +1,36 @@
+package com.sky.lease;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 定时任务租约统计
+ */
+@Data
+public class JobLeaseStats {
+
+    // 任务名称
+    private String job;
+
+    // 统计所在的节点
+    private String node;
+
+    // 当前节点是否持有租约
+    private boolean held;
+
+    // 当前节点持有的防护令牌，每次租约易主都会递增
+    private long token;
+
+    // 当前节点接管租约的次数
+    private long acquired;
+
+    // 当前节点失去租约的次数
+    private long lost;
+
+    // 租约由其他节点持有而跳过执行的次数
+    private long skipped;
+
+    // 最近一次租约易主的时间
+    private LocalDateTime lastHandOver;
+}
@@ -0,0 +1,137 @@
+package com.sky.lease;
+
+import com.sky.properties.OrderIdProperties;
+import com.sky.utils.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单id生成器的节点id租约
+ * 每个节点id对应一个Redis租约 order:id:worker:{节点id}，启动时用 SET NX 领取一个空闲的节点id，
+ * 之后定时续期；节点宕机后租约过期，节点id才会被新启动的节点领取，运行中的节点之间不会重复。
+ * 续期失败且节点id已被其他节点领取时，租约失效，拒绝继续生成订单号
+ */
+@Slf4j
+@Component
+public class WorkerIdLease {
+
+    private static final String WORKER_KEY_PREFIX = "order:id:worker:";
+
+    // 令牌仍然有效时续期
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) end return 0",
+            Long.class);
+
+    // 只释放自己持有的租约
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) end return 0",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private OrderIdProperties orderIdProperties;
+
+    // 本次启动的租约令牌
+    private final String token = UUID.randomUUID().toString();
+
+    // 领取到的节点id，未领取时为-1
+    private volatile long workerId = -1;
+
+    private volatile boolean held;
+
+    /**
+     * 领取一个空闲的节点id，从随机位置开始查找，减少同时启动的节点互相冲突
+     * @return 节点id
+     * @throws IllegalStateException 所有节点id都被占用
+     */
+    public synchronized long acquire() {
+        long slots = SnowflakeIdGenerator.MAX_WORKER_ID + 1;
+        long start = ThreadLocalRandom.current().nextLong(slots);
+        for (long i = 0; i < slots; i++) {
+            long candidate = (start + i) % slots;
+            if (tryAcquire(candidate)) {
+                workerId = candidate;
+                held = true;
+                log.info("领取订单id节点id：{}", candidate);
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("没有空闲的订单id节点id，" + slots + "个节点id都在使用中");
+    }
+
+    /**
+     * 定时续期；租约已经过期时重新领取同一个节点id，被其他节点领取后标记为失效
+     */
+    @Scheduled(fixedDelayString = "${sky.order-id.worker-heartbeat-millis:10000}")
+    public void renew() {
+        long current = workerId;
+        if (current < 0) {
+            return;
+        }
+        try {
+            Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(key(current)),
+                    token, String.valueOf(TimeUnit.SECONDS.toMillis(orderIdProperties.getWorkerLeaseSeconds())));
+            if ((renewed != null && renewed == 1) || tryAcquire(current)) {
+                held = true;
+                return;
+            }
+            held = false;
+            log.error("订单id节点id{}的租约已被其他节点领取，停止生成订单号", current);
+        } catch (Exception e) {
+            // Redis暂时不可用，租约在过期前仍然有效
+            log.warn("订单id节点id{}续期失败：{}", current, e.getMessage());
+        }
+    }
+
+    /**
+     * 当前节点是否仍然持有节点id
+     * @return
+     */
+    public boolean isHeld() {
+        return held;
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * 停机时释放节点id
+     */
+    @PreDestroy
+    public void release() {
+        long current = workerId;
+        if (current < 0 || !held) {
+            return;
+        }
+        held = false;
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(key(current)), token);
+        } catch (Exception e) {
+            log.warn("释放订单id节点id{}失败：{}", current, e.getMessage());
+        }
+    }
+
+    private boolean tryAcquire(long candidate) {
+        Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(key(candidate), token,
+                orderIdProperties.getWorkerLeaseSeconds(), TimeUnit.SECONDS);
+        return Boolean.TRUE.equals(acquired);
+    }
+
+    private String key(long candidate) {
+        return WORKER_KEY_PREFIX + candidate;
+    }
+}
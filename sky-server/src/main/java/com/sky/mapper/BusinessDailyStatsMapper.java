@@ -0,0 +1,33 @@
+package com.sky.mapper;
+
+import com.sky.entity.BusinessDailyStats;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Mapper
+public interface BusinessDailyStatsMapper {
+
+    /**
+     * 查询区间内的每日汇总
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select * from business_daily_stats where stat_date between #{begin} and #{end} order by stat_date")
+    List<BusinessDailyStats> selectByRange(LocalDate begin, LocalDate end);
+
+    /**
+     * 在当天汇总上累加增量，不存在则新建（未校对）
+     * @param delta
+     */
+    void applyDelta(BusinessDailyStats delta);
+
+    /**
+     * 用源数据重算的结果覆盖每日汇总
+     * @param list
+     */
+    void insertOrUpdateBatch(List<BusinessDailyStats> list);
+}
@@ -6,6 +6,7 @@ import com.sky.dto.DishPageQueryDTO;
 import com.sky.entity.Dish;
 import com.sky.enumeration.OperationType;
 import com.sky.vo.DishVO;
+import com.sky.vo.DishOverViewVO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
@@ -77,9 +78,28 @@ public interface DishMapper {
     @AutoFill(OperationType.UPDATE)
     void updateByDishId(Dish dish);
 
-    @Select("select id from dish where category_id = #{categoryId}")
-    List<Long> SelectByCategoryId(Long categoryId);
+    /**
+     * 根据分类id查询菜品，同时关联查询分类名称
+     * @param categoryId
+     * @return
+     */
+    List<DishVO> SelectByCategoryId(Long categoryId);
 
     @Select("select count(*) from dish where status = #{status}")
     Integer selectCountByStatus(Integer status);
+
+    /**
+     * 查询所有菜品的价格和售卖状态，用于构建价格索引
+     * @return
+     */
+    @Select("select id, name, price, status from dish")
+    List<Dish> selectPriceIndex();
+
+    /**
+     * 一次查询统计起售和停售的菜品数量
+     * @return
+     */
+    @Select("select coalesce(sum(case when status = 1 then 1 else 0 end), 0) sold, " +
+            "coalesce(sum(case when status = 0 then 1 else 0 end), 0) discontinued from dish")
+    DishOverViewVO selectOverview();
 }
@@ -24,6 +24,13 @@ public interface FlavorMapper {
     @Select("select * from dish_flavor where dish_id = #{id}")
     List<DishFlavor> SelectByDishId(Long id);
 
+    /**
+     * 根据菜品id批量查询口味
+     * @param dishIds
+     * @return
+     */
+    List<DishFlavor> selectByDishIds(List<Long> dishIds);
+
     /**
      *
      * @param ids
@@ -17,6 +17,13 @@ public interface OrderDetailMapper {
     @Select("select * from order_detail where order_id = #{id}")
     List<OrderDetail> selectByOrderId(Long id);
 
+    /**
+     * 根据订单id批量查询订单明细
+     * @param orderIds
+     * @return
+     */
+    List<OrderDetail> selectByOrderIds(List<Long> orderIds);
+
     @Delete("delete from order_detail where order_id = #{id}")
     void delete(Long id);
 
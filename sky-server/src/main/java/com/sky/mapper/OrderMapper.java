@@ -3,11 +3,13 @@ package com.sky.mapper;
 import com.github.pagehelper.Page;
 import com.sky.dto.OrdersConfirmDTO;
 import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.BusinessDailyStats;
 import com.sky.entity.Orders;
 import com.sky.vo.OrderVO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -67,13 +69,16 @@ public interface OrderMapper {
     void updateStatus(OrdersConfirmDTO ordersConfirmDTO);
 
     /**
-     * 获取超时未支付的订单
+     * 按主键分页查询下单时间早于指定时间且处于指定状态的订单id
      * @param status
      * @param time
+     * @param afterId 上一页最后一个订单id
+     * @param limit
      * @return
      */
-    @Select("select * from orders where status = #{status} and order_time < #{time}")
-    List<Orders> selectByStatus(Integer status, LocalDateTime time);
+    @Select("select id from orders where status = #{status} and order_time < #{time} and id > #{afterId} " +
+            "order by id limit #{limit}")
+    List<Long> selectIdsByStatus(Integer status, LocalDateTime time, Long afterId, int limit);
 
     /**
      * 获取每日营业额
@@ -89,6 +94,36 @@ public interface OrderMapper {
      */
     Integer selectCountByMap(Map map);
 
-    @Select("select *")
-    List<Integer> getAmountByDate(LocalDateTime beginTime, LocalDateTime endTime);
+    /**
+     * 按天汇总订单数、各状态订单数和营业额
+     * @param beginTime
+     * @param endTime
+     * @return
+     */
+    List<BusinessDailyStats> selectDailyStatistics(LocalDateTime beginTime, LocalDateTime endTime);
+
+    /**
+     * 锁定仍处于指定状态的订单，只查询更新汇总需要的字段
+     * @param ids
+     * @param status
+     * @return
+     */
+    List<Orders> selectByIdsForUpdate(List<Long> ids, Integer status);
+
+    /**
+     * 批量修改订单状态，只修改仍处于原状态的订单
+     * @param ids
+     * @param fromStatus 原状态
+     * @param target 新状态以及需要一并修改的取消原因、取消时间、送达时间
+     * @return 实际修改的订单数
+     */
+    int transitionByIds(List<Long> ids, Integer fromStatus, Orders target);
+
+    /**
+     * 按下单时间流式读取订单明细，每读到一行交给handler处理，不把整个结果集放进内存
+     * @param beginTime
+     * @param endTime
+     * @param handler
+     */
+    void streamByOrderTime(LocalDateTime beginTime, LocalDateTime endTime, ResultHandler<Orders> handler);
 }
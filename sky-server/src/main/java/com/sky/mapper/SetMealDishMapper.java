@@ -1,6 +1,7 @@
 package com.sky.mapper;
 
 import com.sky.entity.SetmealDish;
+import com.sky.vo.DishItemVO;
 import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
@@ -18,6 +19,14 @@ public interface SetMealDishMapper {
     @Select("select count(*) from setmeal_dish where dish_id = #{id}")
     Integer selectCountByDishId(Long id);
 
+    /**
+     * 查询包含该菜品的套餐id
+     * @param dishId
+     * @return
+     */
+    @Select("select distinct setmeal_id from setmeal_dish where dish_id = #{dishId}")
+    List<Long> selectSetmealIdsByDishId(Long dishId);
+
     /**
      * 保存套餐关联的菜品
      * @param list
@@ -34,4 +43,20 @@ public interface SetMealDishMapper {
 
     @Select("select * from setmeal_dish where setmeal_id = #{id}")
     List<SetmealDish> SelectBySetMealId(Long id);
+
+    /**
+     * 根据套餐id批量查询套餐关联的菜品
+     * @param setmealIds
+     * @return
+     */
+    List<SetmealDish> selectBySetmealIds(List<Long> setmealIds);
+
+    /**
+     * 查询套餐包含的菜品，同时关联查询菜品的图片和描述
+     * @param setmealId
+     * @return
+     */
+    @Select("select d.name, sd.copies, d.image, d.description from setmeal_dish sd " +
+            "left join dish d on sd.dish_id = d.id where sd.setmeal_id = #{setmealId}")
+    List<DishItemVO> selectDishItemsBySetmealId(Long setmealId);
 }
@@ -6,6 +6,7 @@ import com.sky.dto.SetmealPageQueryDTO;
 import com.sky.entity.Setmeal;
 import com.sky.enumeration.OperationType;
 import com.sky.vo.SetmealVO;
+import com.sky.vo.SetmealOverViewVO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
@@ -74,4 +75,19 @@ public interface SetMealMapper {
      */
     @Select("select COUNT(*) from setmeal where status = #{status}")
     Integer selectCountByStatus(Integer status);
+
+    /**
+     * 查询所有套餐的价格和售卖状态，用于构建价格索引
+     * @return
+     */
+    @Select("select id, name, price, status from setmeal")
+    List<Setmeal> selectPriceIndex();
+
+    /**
+     * 一次查询统计起售和停售的套餐数量
+     * @return
+     */
+    @Select("select coalesce(sum(case when status = 1 then 1 else 0 end), 0) sold, " +
+            "coalesce(sum(case when status = 0 then 1 else 0 end), 0) discontinued from setmeal")
+    SetmealOverViewVO selectOverview();
 }
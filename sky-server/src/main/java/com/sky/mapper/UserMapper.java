@@ -1,10 +1,12 @@
 package com.sky.mapper;
 
+import com.sky.dto.DailyStatisticsDTO;
 import com.sky.entity.User;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Mapper
 public interface UserMapper {
@@ -22,4 +24,14 @@ public interface UserMapper {
 
     @Select("select count(id) from user where create_time > #{beginTime} and create_time < #{endTime} ")
     Integer selectNewByDate(LocalDateTime beginTime, LocalDateTime endTime);
+
+    /**
+     * 按天汇总新增用户数
+     * @param beginTime
+     * @param endTime
+     * @return
+     */
+    @Select("select date(create_time) date, count(id) newUsers from user " +
+            "where create_time between #{beginTime} and #{endTime} group by date(create_time)")
+    List<DailyStatisticsDTO> selectDailyNewUsers(LocalDateTime beginTime, LocalDateTime endTime);
 }
@@ -0,0 +1,80 @@
+package com.sky.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个接口（请求方法 + 路径模板）的累计统计
+ */
+public class EndpointMetrics {
+
+    private final String area;
+
+    private final String method;
+
+    private final String pattern;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    // 抛出异常或返回5xx的请求，包括被全局异常处理器处理的业务异常
+    private final LongAdder errors = new LongAdder();
+
+    // 返回4xx的请求，例如令牌校验不通过
+    private final LongAdder rejected = new LongAdder();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public EndpointMetrics(String area, String method, String pattern) {
+        this.area = area;
+        this.method = method;
+        this.pattern = pattern;
+    }
+
+    void begin() {
+        inFlight.incrementAndGet();
+    }
+
+    void complete(long micros, boolean failed, boolean rejected) {
+        inFlight.decrementAndGet();
+        latency.record(micros);
+        if (failed) {
+            errors.increment();
+        } else if (rejected) {
+            this.rejected.increment();
+        }
+    }
+
+    void reset() {
+        latency.reset();
+        errors.reset();
+        rejected.reset();
+    }
+
+    public String getArea() {
+        return area;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
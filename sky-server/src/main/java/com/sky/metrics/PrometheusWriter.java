@@ -0,0 +1,123 @@
+package com.sky.metrics;
+
+import com.sky.lease.JobLeaseStats;
+import com.sky.vo.AreaMetricsVO;
+import com.sky.vo.EndpointMetricsVO;
+import com.sky.vo.SqlStatementMetricsVO;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 把请求、SQL和定时任务租约统计输出为Prometheus文本格式
+ * 耗时以summary输出0.5/0.95/0.99分位数，单位秒
+ */
+public class PrometheusWriter {
+
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private final StringBuilder out = new StringBuilder(4096);
+
+    private PrometheusWriter() {
+    }
+
+    /**
+     * 生成抓取内容
+     * @param areas
+     * @param endpoints
+     * @param statements
+     * @param leases
+     * @return
+     */
+    public static String write(List<AreaMetricsVO> areas, List<EndpointMetricsVO> endpoints,
+                               List<SqlStatementMetricsVO> statements, Collection<JobLeaseStats> leases) {
+        PrometheusWriter writer = new PrometheusWriter();
+
+        writer.type("sky_http_requests_in_flight", "gauge");
+        for (AreaMetricsVO area : areas) {
+            writer.sample("sky_http_requests_in_flight", labels("area", area.getArea()), area.getInFlight());
+        }
+
+        writer.type("sky_http_requests_total", "counter");
+        for (EndpointMetricsVO endpoint : endpoints) {
+            writer.sample("sky_http_requests_total", endpointLabels(endpoint), endpoint.getCalls());
+        }
+        writer.type("sky_http_request_errors_total", "counter");
+        for (EndpointMetricsVO endpoint : endpoints) {
+            writer.sample("sky_http_request_errors_total", endpointLabels(endpoint), endpoint.getErrors());
+        }
+        writer.type("sky_http_request_rejected_total", "counter");
+        for (EndpointMetricsVO endpoint : endpoints) {
+            writer.sample("sky_http_request_rejected_total", endpointLabels(endpoint), endpoint.getRejected());
+        }
+        writer.type("sky_http_request_duration_seconds", "summary");
+        for (EndpointMetricsVO endpoint : endpoints) {
+            writer.summary("sky_http_request_duration_seconds", endpointLabels(endpoint),
+                    new long[]{endpoint.getP50Micros(), endpoint.getP95Micros(), endpoint.getP99Micros()},
+                    endpoint.getTotalMillis(), endpoint.getCalls());
+        }
+
+        writer.type("sky_sql_statement_duration_seconds", "summary");
+        for (SqlStatementMetricsVO statement : statements) {
+            writer.summary("sky_sql_statement_duration_seconds", labels("statement", statement.getStatementId()),
+                    new long[]{statement.getP50Micros(), statement.getP95Micros(), statement.getP99Micros()},
+                    statement.getTotalMillis(), statement.getCalls());
+        }
+        writer.type("sky_sql_statement_errors_total", "counter");
+        for (SqlStatementMetricsVO statement : statements) {
+            writer.sample("sky_sql_statement_errors_total", labels("statement", statement.getStatementId()), statement.getErrors());
+        }
+        writer.type("sky_sql_statement_rows_total", "counter");
+        for (SqlStatementMetricsVO statement : statements) {
+            writer.sample("sky_sql_statement_rows_total", labels("statement", statement.getStatementId()), statement.getRows());
+        }
+
+        // 租约统计只包含本节点触发过的任务，各节点的held之和正常为1
+        writer.type("sky_job_lease_held", "gauge");
+        for (JobLeaseStats lease : leases) {
+            writer.sample("sky_job_lease_held", labels("job", lease.getJob()), lease.isHeld() ? 1 : 0);
+        }
+        writer.type("sky_job_lease_token", "gauge");
+        for (JobLeaseStats lease : leases) {
+            writer.sample("sky_job_lease_token", labels("job", lease.getJob()), lease.getToken());
+        }
+        writer.type("sky_job_lease_acquired_total", "counter");
+        for (JobLeaseStats lease : leases) {
+            writer.sample("sky_job_lease_acquired_total", labels("job", lease.getJob()), lease.getAcquired());
+        }
+        writer.type("sky_job_lease_lost_total", "counter");
+        for (JobLeaseStats lease : leases) {
+            writer.sample("sky_job_lease_lost_total", labels("job", lease.getJob()), lease.getLost());
+        }
+        writer.type("sky_job_lease_skipped_total", "counter");
+        for (JobLeaseStats lease : leases) {
+            writer.sample("sky_job_lease_skipped_total", labels("job", lease.getJob()), lease.getSkipped());
+        }
+        return writer.out.toString();
+    }
+
+    private void type(String name, String type) {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private void sample(String name, String labels, Number value) {
+        out.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private void summary(String name, String labels, long[] quantileMicros, long totalMillis, long count) {
+        for (int i = 0; i < QUANTILES.length; i++) {
+            sample(name, labels + ",quantile=\"" + QUANTILES[i] + "\"", quantileMicros[i] / 1e6);
+        }
+        sample(name + "_sum", labels, totalMillis / 1e3);
+        sample(name + "_count", labels, count);
+    }
+
+    private static String endpointLabels(EndpointMetricsVO endpoint) {
+        return labels("area", endpoint.getArea()) + "," + labels("method", endpoint.getMethod())
+                + "," + labels("uri", endpoint.getPattern());
+    }
+
+    private static String labels(String name, String value) {
+        return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+}
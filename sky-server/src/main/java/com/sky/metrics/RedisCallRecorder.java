@@ -0,0 +1,60 @@
+package com.sky.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 把Redis连接上执行的命令计入当前请求
+ * xxxCommands()返回的命令对象同样包装，直接通过它执行的命令也能统计到
+ */
+public class RedisCallRecorder implements MethodInterceptor {
+
+    private static final RedisCallRecorder INSTANCE = new RedisCallRecorder();
+
+    // 连接管理相关的方法，不算作命令
+    private static final Set<String> UNTRACKED = new HashSet<>(Arrays.asList(
+            "close", "isClosed", "getNativeConnection", "isQueueing", "isPipelined", "isSubscribed",
+            "getSubscription", "getSentinelConnection", "toString", "hashCode", "equals"));
+
+    /**
+     * 包装连接
+     * @param connection
+     * @return
+     */
+    public static RedisConnection wrap(RedisConnection connection) {
+        return (RedisConnection) proxy(connection);
+    }
+
+    private static Object proxy(Object target) {
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.addAdvice(INSTANCE);
+        return proxyFactory.getProxy();
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        String name = method.getName();
+        RequestQueryContext context = RequestQueryContext.current();
+        if (context == null || UNTRACKED.contains(name)) {
+            return invocation.proceed();
+        }
+        if (name.endsWith("Commands") && method.getParameterCount() == 0) {
+            Object commands = invocation.proceed();
+            return commands == null ? null : proxy(commands);
+        }
+        long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            context.recordRedis(name, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.sky.metrics;
+
+import com.sky.properties.MetricsProperties;
+import com.sky.vo.AreaMetricsVO;
+import com.sky.vo.EndpointMetricsVO;
+import com.sky.vo.SlowRequestCallVO;
+import com.sky.vo.SlowRequestVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 接口请求统计
+ * 按 请求方法 + 路径模板 累计耗时直方图、错误数和正在处理的请求数，按admin/user/notify汇总；
+ * 超过慢请求阈值的请求保留最近若干个样本，附带该请求执行过的SQL和Redis命令
+ */
+@Component
+@Slf4j
+public class RequestMetricsRegistry {
+
+    public static final String ADMIN = "admin";
+    public static final String USER = "user";
+    public static final String NOTIFY = "notify";
+    public static final String OTHER = "other";
+
+    @Autowired
+    private MetricsProperties metricsProperties;
+
+    private final Map<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    // 最近的慢请求，最新的在前
+    private final Deque<SlowRequestVO> slowRequests = new ArrayDeque<>();
+
+    /**
+     * 请求进入控制器
+     * @param method
+     * @param pattern 路径模板，保证统计项的数量有限
+     * @return
+     */
+    public EndpointMetrics begin(String method, String pattern) {
+        String key = method + " " + pattern;
+        EndpointMetrics endpoint = endpoints.get(key);
+        if (endpoint == null) {
+            endpoint = endpoints.computeIfAbsent(key, k -> new EndpointMetrics(area(pattern), method, pattern));
+        }
+        endpoint.begin();
+        return endpoint;
+    }
+
+    /**
+     * 请求结束
+     * @param endpoint
+     * @param context 本次请求执行过的SQL和Redis命令
+     * @param status 响应状态码
+     * @param failed 是否抛出异常
+     */
+    public void complete(EndpointMetrics endpoint, RequestQueryContext context, int status, boolean failed) {
+        long nanos = context.elapsedNanos();
+        endpoint.complete(nanos / 1000, failed, status >= 400 && status < 500);
+        long millis = nanos / 1_000_000;
+        if (millis < metricsProperties.getSlowRequestMillis()) {
+            return;
+        }
+        SlowRequestVO sample = sample(endpoint, context, status, failed, millis);
+        log.warn("慢请求：{} {} 耗时{}ms，执行SQL{}次共{}ms，Redis命令{}次共{}ms，{}", context.getMethod(), context.getUri(),
+                millis, context.getQueries(), context.getSqlMillis(), context.getRedisCalls(), context.getRedisMillis(),
+                describe(sample.getCalls()));
+        synchronized (slowRequests) {
+            slowRequests.addFirst(sample);
+            while (slowRequests.size() > metricsProperties.getSlowSamples()) {
+                slowRequests.removeLast();
+            }
+        }
+    }
+
+    /**
+     * 各接口的统计，按累计耗时从高到低
+     * @return
+     */
+    public List<EndpointMetricsVO> endpoints() {
+        List<EndpointMetricsVO> list = new ArrayList<>();
+        for (EndpointMetrics endpoint : endpoints.values()) {
+            LatencyHistogram latency = endpoint.getLatency();
+            long calls = latency.getCount();
+            list.add(EndpointMetricsVO.builder()
+                    .area(endpoint.getArea())
+                    .method(endpoint.getMethod())
+                    .pattern(endpoint.getPattern())
+                    .calls(calls)
+                    .errors(endpoint.getErrors())
+                    .rejected(endpoint.getRejected())
+                    .errorRate(rate(endpoint.getErrors(), calls))
+                    .inFlight(endpoint.getInFlight())
+                    .totalMillis(latency.getTotalMicros() / 1000)
+                    .meanMicros(latency.getMeanMicros())
+                    .p50Micros(latency.percentile(50))
+                    .p95Micros(latency.percentile(95))
+                    .p99Micros(latency.percentile(99))
+                    .maxMicros(latency.getMaxMicros())
+                    .build());
+        }
+        list.sort(Comparator.comparing(EndpointMetricsVO::getTotalMillis).reversed());
+        return list;
+    }
+
+    /**
+     * 按admin/user/notify汇总
+     * @return
+     */
+    public List<AreaMetricsVO> areas() {
+        Map<String, long[]> totals = new LinkedHashMap<>();
+        for (String area : new String[]{ADMIN, USER, NOTIFY}) {
+            totals.put(area, new long[4]);
+        }
+        for (EndpointMetrics endpoint : endpoints.values()) {
+            long[] total = totals.computeIfAbsent(endpoint.getArea(), area -> new long[4]);
+            total[0] += endpoint.getLatency().getCount();
+            total[1] += endpoint.getErrors();
+            total[2] += endpoint.getRejected();
+            total[3] += endpoint.getInFlight();
+        }
+        List<AreaMetricsVO> list = new ArrayList<>();
+        totals.forEach((area, total) -> list.add(AreaMetricsVO.builder()
+                .area(area)
+                .calls(total[0])
+                .errors(total[1])
+                .rejected(total[2])
+                .errorRate(rate(total[1], total[0]))
+                .inFlight((int) total[3])
+                .build()));
+        return list;
+    }
+
+    /**
+     * 最近的慢请求，最新的在前
+     * @return
+     */
+    public List<SlowRequestVO> slowRequests() {
+        synchronized (slowRequests) {
+            return new ArrayList<>(slowRequests);
+        }
+    }
+
+    /**
+     * 清空统计，正在处理的请求数不受影响
+     */
+    public void reset() {
+        endpoints.values().forEach(EndpointMetrics::reset);
+        synchronized (slowRequests) {
+            slowRequests.clear();
+        }
+    }
+
+    /**
+     * 按路径前缀区分请求来源
+     * @param path
+     * @return
+     */
+    public static String area(String path) {
+        if (path.startsWith("/" + ADMIN + "/")) {
+            return ADMIN;
+        }
+        if (path.startsWith("/" + USER + "/")) {
+            return USER;
+        }
+        if (path.startsWith("/" + NOTIFY + "/")) {
+            return NOTIFY;
+        }
+        return OTHER;
+    }
+
+    private SlowRequestVO sample(EndpointMetrics endpoint, RequestQueryContext context, int status,
+                                 boolean failed, long millis) {
+        List<SlowRequestCallVO> calls = new ArrayList<>();
+        context.getStatements().forEach((id, tally) -> calls.add(call("sql", SqlMetricsRegistry.shortId(id), tally)));
+        context.getRedisCommands().forEach((command, tally) -> calls.add(call("redis", command, tally)));
+        return SlowRequestVO.builder()
+                .time(LocalDateTime.now())
+                .method(context.getMethod())
+                .uri(context.getUri())
+                .pattern(endpoint.getPattern())
+                .status(status)
+                .failed(failed)
+                .millis(millis)
+                .sqlCalls(context.getQueries())
+                .sqlMillis(context.getSqlMillis())
+                .redisCalls(context.getRedisCalls())
+                .redisMillis(context.getRedisMillis())
+                .calls(calls)
+                .build();
+    }
+
+    private static SlowRequestCallVO call(String type, String name, RequestQueryContext.StatementTally tally) {
+        return SlowRequestCallVO.builder()
+                .type(type)
+                .name(name)
+                .calls(tally.getCalls())
+                .millis(tally.getMillis())
+                .rows(tally.getRows())
+                .build();
+    }
+
+    private static String describe(List<SlowRequestCallVO> calls) {
+        StringBuilder builder = new StringBuilder();
+        for (SlowRequestCallVO call : calls) {
+            if (builder.length() > 0) {
+                builder.append("，");
+            }
+            builder.append(call.getType()).append(":").append(call.getName()).append(" x").append(call.getCalls())
+                    .append(" ").append(call.getMillis()).append("ms");
+        }
+        return builder.length() == 0 ? "无SQL和Redis命令" : builder.toString();
+    }
+
+    private static double rate(long part, long total) {
+        return total == 0 ? 0.0 : (double) part / total;
+    }
+}
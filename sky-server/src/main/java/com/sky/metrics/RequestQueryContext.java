@@ -0,0 +1,155 @@
+package com.sky.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 当前请求执行过的mapper语句和Redis命令
+ * 由请求线程在进入和离开控制器时开启和结束，只统计请求线程上执行的语句，线程池中的异步任务不计入
+ */
+public class RequestQueryContext {
+
+    private static final ThreadLocal<RequestQueryContext> CURRENT = new ThreadLocal<>();
+
+    private final String method;
+
+    private final String uri;
+
+    private final long startNanos = System.nanoTime();
+
+    // 语句id -> 本次请求中的执行情况，按首次执行的顺序
+    private final Map<String, StatementTally> statements = new LinkedHashMap<>();
+
+    // Redis命令 -> 本次请求中的执行情况
+    private final Map<String, StatementTally> redisCommands = new LinkedHashMap<>();
+
+    private int queries;
+
+    private long sqlNanos;
+
+    private int redisCalls;
+
+    private long redisNanos;
+
+    private RequestQueryContext(String method, String uri) {
+        this.method = method;
+        this.uri = uri;
+    }
+
+    /**
+     * 开始统计当前线程上的请求
+     * @param method
+     * @param uri
+     * @return
+     */
+    public static RequestQueryContext begin(String method, String uri) {
+        RequestQueryContext context = new RequestQueryContext(method, uri);
+        CURRENT.set(context);
+        return context;
+    }
+
+    /**
+     * 当前线程上正在统计的请求，不在请求中时为null
+     * @return
+     */
+    public static RequestQueryContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 结束统计并返回本次请求的统计结果
+     * @return
+     */
+    public static RequestQueryContext end() {
+        RequestQueryContext context = CURRENT.get();
+        CURRENT.remove();
+        return context;
+    }
+
+    void record(String statementId, long nanos, long rows) {
+        tally(statements, statementId, nanos, rows);
+        queries++;
+        sqlNanos += nanos;
+    }
+
+    void recordRedis(String command, long nanos) {
+        tally(redisCommands, command, nanos, 0);
+        redisCalls++;
+        redisNanos += nanos;
+    }
+
+    private static void tally(Map<String, StatementTally> tallies, String name, long nanos, long rows) {
+        StatementTally tally = tallies.get(name);
+        if (tally == null) {
+            tally = new StatementTally();
+            tallies.put(name, tally);
+        }
+        tally.calls++;
+        tally.rows += rows;
+        tally.nanos += nanos;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public long elapsedMillis() {
+        return elapsedNanos() / 1_000_000;
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    public Map<String, StatementTally> getStatements() {
+        return statements;
+    }
+
+    public int getQueries() {
+        return queries;
+    }
+
+    public long getSqlMillis() {
+        return sqlNanos / 1_000_000;
+    }
+
+    public Map<String, StatementTally> getRedisCommands() {
+        return redisCommands;
+    }
+
+    public int getRedisCalls() {
+        return redisCalls;
+    }
+
+    public long getRedisMillis() {
+        return redisNanos / 1_000_000;
+    }
+
+    /**
+     * 一条语句或Redis命令在一次请求中的执行情况
+     */
+    public static class StatementTally {
+
+        private int calls;
+
+        private long rows;
+
+        private long nanos;
+
+        public int getCalls() {
+            return calls;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getMillis() {
+            return nanos / 1_000_000;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.sky.metrics;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 统计每条mapper语句耗时和行数的MyBatis插件
+ * 由MyBatis自动配置注册，分页插件在它之后注册、位于外层，因此分页的count语句（xxx_COUNT）会单独统计；
+ * 通过ResultHandler流式读取的查询没有返回值，行数记为0
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.metrics", name = "sql-enabled", havingValue = "true", matchIfMissing = true)
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})
+})
+public class SqlMetricsInterceptor implements Interceptor {
+
+    @Autowired
+    private SqlMetricsRegistry sqlMetricsRegistry;
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        String statementId = ((MappedStatement) invocation.getArgs()[0]).getId();
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = invocation.proceed();
+        } catch (Throwable e) {
+            sqlMetricsRegistry.record(statementId, System.nanoTime() - start, 0, true);
+            throw e;
+        }
+        sqlMetricsRegistry.record(statementId, System.nanoTime() - start, rows(result), false);
+        return result;
+    }
+
+    private static long rows(Object result) {
+        if (result instanceof List) {
+            return ((List<?>) result).size();
+        }
+        if (result instanceof Integer) {
+            return (Integer) result;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,110 @@
+package com.sky.metrics;
+
+import com.sky.properties.MetricsProperties;
+import com.sky.vo.SqlStatementMetricsVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * mapper语句统计
+ * 按语句id累计耗时直方图和行数；请求结束时汇总该请求中每条语句的执行次数，用于发现循环中逐条查询的N+1问题
+ */
+@Component
+@Slf4j
+public class SqlMetricsRegistry {
+
+    private static final String MAPPER_PACKAGE = "com.sky.mapper.";
+
+    @Autowired
+    private MetricsProperties metricsProperties;
+
+    private final Map<String, StatementMetrics> statements = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次语句执行，同时计入当前请求
+     * @param statementId
+     * @param nanos
+     * @param rows
+     * @param error
+     */
+    public void record(String statementId, long nanos, long rows, boolean error) {
+        StatementMetrics metrics = statements.get(statementId);
+        if (metrics == null) {
+            metrics = statements.computeIfAbsent(statementId, StatementMetrics::new);
+        }
+        metrics.record(nanos, rows, error);
+        RequestQueryContext context = RequestQueryContext.current();
+        if (context != null) {
+            context.record(statementId, nanos, rows);
+        }
+    }
+
+    /**
+     * 请求结束，累计每条语句的单请求执行次数，同一语句执行次数达到阈值时打印日志
+     * @param context
+     */
+    public void completeRequest(RequestQueryContext context) {
+        if (context == null) {
+            return;
+        }
+        for (Map.Entry<String, RequestQueryContext.StatementTally> entry : context.getStatements().entrySet()) {
+            StatementMetrics metrics = statements.get(entry.getKey());
+            if (metrics != null) {
+                metrics.recordRequest(entry.getValue().getCalls(), entry.getValue().getRows());
+            }
+            if (entry.getValue().getCalls() >= metricsProperties.getRepeatedCalls()) {
+                log.warn("疑似N+1查询：{} {} 中 {} 执行了{}次", context.getMethod(), context.getUri(),
+                        shortId(entry.getKey()), entry.getValue().getCalls());
+            }
+        }
+    }
+
+    /**
+     * 全部语句的统计，按累计耗时从高到低
+     * @return
+     */
+    public List<SqlStatementMetricsVO> snapshot() {
+        List<SqlStatementMetricsVO> list = new ArrayList<>();
+        for (StatementMetrics metrics : statements.values()) {
+            LatencyHistogram latency = metrics.getLatency();
+            long requests = metrics.getRequests();
+            list.add(SqlStatementMetricsVO.builder()
+                    .statementId(metrics.getStatementId())
+                    .calls(latency.getCount())
+                    .errors(metrics.getErrors())
+                    .rows(metrics.getRows())
+                    .totalMillis(latency.getTotalMicros() / 1000)
+                    .meanMicros(latency.getMeanMicros())
+                    .p50Micros(latency.percentile(50))
+                    .p95Micros(latency.percentile(95))
+                    .p99Micros(latency.percentile(99))
+                    .maxMicros(latency.getMaxMicros())
+                    .requests(requests)
+                    .callsPerRequest(requests == 0 ? 0.0 : (double) metrics.getCallsInRequests() / requests)
+                    .maxCallsPerRequest(metrics.getMaxCallsPerRequest())
+                    .maxRowsPerRequest(metrics.getMaxRowsPerRequest())
+                    .repeated(metrics.getMaxCallsPerRequest() >= metricsProperties.getRepeatedCalls())
+                    .build());
+        }
+        list.sort(Comparator.comparing(SqlStatementMetricsVO::getTotalMillis).reversed());
+        return list;
+    }
+
+    /**
+     * 清空统计
+     */
+    public void reset() {
+        statements.values().forEach(StatementMetrics::reset);
+    }
+
+    static String shortId(String statementId) {
+        return statementId.startsWith(MAPPER_PACKAGE) ? statementId.substring(MAPPER_PACKAGE.length()) : statementId;
+    }
+}
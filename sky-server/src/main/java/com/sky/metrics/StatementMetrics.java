@@ -0,0 +1,88 @@
+package com.sky.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一条mapper语句的累计统计
+ */
+public class StatementMetrics {
+
+    private final String statementId;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final LongAdder rows = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    // 执行过该语句的请求数及这些请求中的执行次数，用于计算每个请求平均执行几次
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder callsInRequests = new LongAdder();
+
+    private final LongAccumulator maxCallsPerRequest = new LongAccumulator(Math::max, 0);
+
+    private final LongAccumulator maxRowsPerRequest = new LongAccumulator(Math::max, 0);
+
+    public StatementMetrics(String statementId) {
+        this.statementId = statementId;
+    }
+
+    void record(long nanos, long rows, boolean error) {
+        latency.record(nanos / 1000);
+        this.rows.add(rows);
+        if (error) {
+            errors.increment();
+        }
+    }
+
+    void recordRequest(int calls, long rows) {
+        requests.increment();
+        callsInRequests.add(calls);
+        maxCallsPerRequest.accumulate(calls);
+        maxRowsPerRequest.accumulate(rows);
+    }
+
+    void reset() {
+        latency.reset();
+        rows.reset();
+        errors.reset();
+        requests.reset();
+        callsInRequests.reset();
+        maxCallsPerRequest.reset();
+        maxRowsPerRequest.reset();
+    }
+
+    public String getStatementId() {
+        return statementId;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getCallsInRequests() {
+        return callsInRequests.sum();
+    }
+
+    public long getMaxCallsPerRequest() {
+        return maxCallsPerRequest.get();
+    }
+
+    public long getMaxRowsPerRequest() {
+        return maxRowsPerRequest.get();
+    }
+}
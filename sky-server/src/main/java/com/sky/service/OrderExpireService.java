@@ -0,0 +1,40 @@
+package com.sky.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OrderExpireService {
+
+    /**
+     * 登记待支付订单的支付截止时间
+     * @param orderId
+     * @param orderTime 下单时间
+     */
+    void register(Long orderId, LocalDateTime orderTime);
+
+    /**
+     * 订单已支付或已取消，不再需要到期取消
+     * @param orderId
+     */
+    void remove(Long orderId);
+
+    /**
+     * 领取一批已到期的订单，同一个订单只会被一个节点领取
+     * @param limit
+     * @return
+     */
+    List<Long> claimDue(int limit);
+
+    /**
+     * 领取的订单处理失败，重新登记，下次再试
+     * @param orderIds
+     */
+    void requeue(List<Long> orderIds);
+
+    /**
+     * 批量取消仍未支付的订单
+     * @param orderIds
+     * @return 实际取消的订单数
+     */
+    int cancelExpired(List<Long> orderIds);
+}
@@ -11,9 +11,10 @@ public interface OrderService {
     /**
      * 提交订单
      * @param ordersSubmitDTO
+     * @param idempotencyKey 幂等key，相同的key只会下一次单，为null时不做幂等校验
      * @return
      */
-    OrderSubmitVO submit(OrdersSubmitDTO ordersSubmitDTO);
+    OrderSubmitVO submit(OrdersSubmitDTO ordersSubmitDTO, String idempotencyKey);
 
     /**
      * 订单支付
@@ -0,0 +1,17 @@
+package com.sky.service;
+
+import com.sky.entity.Orders;
+
+import java.util.List;
+
+public interface OrderTransitionService {
+
+    /**
+     * 批量修改一批订单的状态，只修改仍处于原状态的订单，并按实际修改的订单更新每日汇总
+     * @param orderIds
+     * @param fromStatus 原状态
+     * @param target 新状态以及需要一并修改的取消原因、取消时间、送达时间
+     * @return 实际修改的订单数
+     */
+    int transition(List<Long> orderIds, Integer fromStatus, Orders target);
+}
@@ -0,0 +1,30 @@
+package com.sky.service;
+
+import com.sky.dto.ReportJobDTO;
+import com.sky.vo.ReportJobVO;
+
+import javax.servlet.http.HttpServletResponse;
+
+public interface ReportJobService {
+
+    /**
+     * 提交报表任务，相同的请求只生成一次
+     * @param reportJobDTO
+     * @return
+     */
+    ReportJobVO submit(ReportJobDTO reportJobDTO);
+
+    /**
+     * 查询报表任务
+     * @param jobId
+     * @return
+     */
+    ReportJobVO getJob(String jobId);
+
+    /**
+     * 下载已生成的报表
+     * @param jobId
+     * @param httpServletResponse
+     */
+    void download(String jobId, HttpServletResponse httpServletResponse);
+}
@@ -6,6 +6,8 @@ import com.sky.vo.TurnoverReportVO;
 import com.sky.vo.UserReportVO;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 
 public interface ReportService {
@@ -46,4 +48,30 @@ public interface ReportService {
      * @param httpServletResponse
      */
     void report(HttpServletResponse httpServletResponse);
+
+    /**
+     * 导出任意日期区间的业务报表
+     * @param httpServletResponse
+     * @param begin
+     * @param end
+     * @param detail 是否附带订单明细
+     */
+    void report(HttpServletResponse httpServletResponse, LocalDate begin, LocalDate end, boolean detail);
+
+    /**
+     * 把业务报表写入输出流，不关闭输出流
+     * @param outputStream
+     * @param begin
+     * @param end
+     * @param detail 是否附带订单明细
+     * @throws IOException
+     */
+    void export(OutputStream outputStream, LocalDate begin, LocalDate end, boolean detail) throws IOException;
+
+    /**
+     * 校验导出的日期区间，不合法时抛出ReportBusinessException
+     * @param begin
+     * @param end
+     */
+    void checkRange(LocalDate begin, LocalDate end);
 }
@@ -13,4 +13,29 @@ public interface ShoppingCartService {
     void sub(ShoppingCartDTO shoppingCartDTO);
 
     void clean();
+
+    /**
+     * 查询指定用户的购物车
+     * @param userId
+     * @return
+     */
+    List<ShoppingCart> listByUserId(Long userId);
+
+    /**
+     * 批量加入购物车，已有的商品累加数量
+     * @param shoppingCarts
+     */
+    void addBatch(List<ShoppingCart> shoppingCarts);
+
+    /**
+     * 下单后清空指定用户的购物车
+     * @param userId
+     */
+    void cleanByUserId(Long userId);
+
+    /**
+     * 把Redis中的购物车写回数据库
+     * @param userId
+     */
+    void persist(Long userId);
 }
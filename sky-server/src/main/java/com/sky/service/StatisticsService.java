@@ -0,0 +1,46 @@
+package com.sky.service;
+
+import com.sky.dto.DailyStatisticsDTO;
+import com.sky.entity.BusinessDailyStats;
+import com.sky.entity.Orders;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface StatisticsService {
+
+    /**
+     * 按天统计营业数据，区间内没有数据的日期补0
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyStatisticsDTO> getDailyStatistics(LocalDate begin, LocalDate end);
+
+    /**
+     * 从订单表和用户表重建区间内的每日汇总
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<BusinessDailyStats> rebuild(LocalDate begin, LocalDate end);
+
+    /**
+     * 订单状态变化时增量更新每日汇总
+     * @param orderTime 下单时间，决定计入哪一天
+     * @param fromStatus 原状态，新订单传null
+     * @param toStatus 新状态
+     * @param amount 订单金额
+     */
+    void onOrderStatusChange(LocalDateTime orderTime, Integer fromStatus, Integer toStatus, BigDecimal amount);
+
+    /**
+     * 一批订单从同一个状态变为另一个状态时增量更新每日汇总，每天只更新一次
+     * @param orders 需要下单时间和订单金额
+     * @param fromStatus 原状态
+     * @param toStatus 新状态
+     */
+    void onOrdersStatusChange(List<Orders> orders, Integer fromStatus, Integer toStatus);
+}
@@ -4,6 +4,7 @@ import com.sky.vo.BusinessDataVO;
 import com.sky.vo.DishOverViewVO;
 import com.sky.vo.OrderOverViewVO;
 import com.sky.vo.SetmealOverViewVO;
+import com.sky.vo.WorkspaceDashboardVO;
 
 import java.time.LocalDateTime;
 
@@ -34,4 +35,10 @@ public interface WorkSpaceService {
      * @return
      */
     SetmealOverViewVO overviewSetmeals();
+
+    /**
+     * 工作台数据快照
+     * @return
+     */
+    WorkspaceDashboardVO getDashboard();
 }
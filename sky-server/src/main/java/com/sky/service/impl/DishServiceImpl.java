@@ -23,6 +23,8 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -78,10 +80,8 @@ public class DishServiceImpl implements DishService {
         // 编写SQL语句
         Page<DishVO> list = dishMapper.SelectByPage(dishPageQueryDTO);
         log.info("获取到菜品信息：{}",list);
-        for (DishVO dishVO : list) {
-            dishVO.setCategoryName(categoryMapper.SelectNameById(dishVO.getCategoryId()));
-            dishVO.setFlavors(flavorMapper.SelectByDishId(dishVO.getId()));
-        }
+        // 分类名称已在分页查询中关联，口味一次批量查询
+        fillFlavors(list);
         // 构建PageResult类型
         PageResult pageResult = new PageResult();
         pageResult.setTotal(list.getTotal());
@@ -135,7 +135,7 @@ public class DishServiceImpl implements DishService {
     @Override
     public DishVO selectByDishId(Long id) {
         DishVO dishVO = dishMapper.selectByDishId(id);
-        dishVO.setCategoryName(categoryMapper.SelectNameById(id));
+        dishVO.setCategoryName(categoryMapper.SelectNameById(dishVO.getCategoryId()));
         dishVO.setFlavors(flavorMapper.SelectByDishId(id));
         return dishVO;
     }
@@ -175,13 +175,26 @@ public class DishServiceImpl implements DishService {
      */
     @Override
     public List<DishVO> SelectByCategoryId(Long categoryId) {
-        List<Long> list = dishMapper.SelectByCategoryId(categoryId);
-        List<DishVO> newList = new ArrayList<>(list.size());
-        for (Long id : list) {
-            DishVO vo = selectByDishId(id);
-            newList.add(vo);
+        // 菜品和分类名称一次关联查询，口味一次批量查询
+        List<DishVO> list = dishMapper.SelectByCategoryId(categoryId);
+        fillFlavors(list);
+        return list;
+    }
+
+    /**
+     * 批量填充菜品口味，无论菜品数量多少只查询一次口味表
+     * @param dishVOList
+     */
+    private void fillFlavors(List<DishVO> dishVOList) {
+        if (dishVOList == null || dishVOList.isEmpty()) {
+            return;
+        }
+        List<Long> dishIds = dishVOList.stream().map(DishVO::getId).collect(Collectors.toList());
+        Map<Long, List<DishFlavor>> flavorMap = flavorMapper.selectByDishIds(dishIds).stream()
+                .collect(Collectors.groupingBy(DishFlavor::getDishId));
+        for (DishVO dishVO : dishVOList) {
+            dishVO.setFlavors(flavorMap.getOrDefault(dishVO.getId(), new ArrayList<>()));
         }
-        return newList;
     }
 
 }
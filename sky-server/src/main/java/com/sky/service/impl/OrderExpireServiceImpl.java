@@ -0,0 +1,112 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Orders;
+import com.sky.properties.OrderProperties;
+import com.sky.service.OrderExpireService;
+import com.sky.service.OrderTransitionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 待支付订单到期取消
+ * 支付截止时间保存在Redis有序集合 order:expire 中（score为截止时间的毫秒时间戳），重启和多节点部署都不会丢失；
+ * 定时任务每秒领取到期的订单，一条UPDATE批量取消
+ */
+@Slf4j
+@Service
+public class OrderExpireServiceImpl implements OrderExpireService {
+
+    private static final String EXPIRE_KEY = "order:expire";
+
+    // 取出到期的订单并从集合中删除，保证同一个订单只被一个节点领取
+    private static final RedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local ids = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2]) " +
+            "if #ids > 0 then redis.call('zrem', KEYS[1], unpack(ids)) end " +
+            "return ids",
+            List.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private OrderTransitionService orderTransitionService;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    /**
+     * 登记待支付订单的支付截止时间
+     * @param orderId
+     * @param orderTime
+     */
+    @Override
+    public void register(Long orderId, LocalDateTime orderTime) {
+        LocalDateTime deadline = orderTime.plusMinutes(orderProperties.getPayTimeoutMinutes());
+        long score = deadline.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        stringRedisTemplate.opsForZSet().add(EXPIRE_KEY, String.valueOf(orderId), score);
+    }
+
+    /**
+     * 订单已支付或已取消，不再需要到期取消
+     * @param orderId
+     */
+    @Override
+    public void remove(Long orderId) {
+        stringRedisTemplate.opsForZSet().remove(EXPIRE_KEY, String.valueOf(orderId));
+    }
+
+    /**
+     * 领取一批已到期的订单
+     * @param limit
+     * @return
+     */
+    @Override
+    public List<Long> claimDue(int limit) {
+        List<String> ids = stringRedisTemplate.execute(CLAIM_SCRIPT, Collections.singletonList(EXPIRE_KEY),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(limit));
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return ids.stream().map(Long::valueOf).collect(Collectors.toList());
+    }
+
+    /**
+     * 重新登记处理失败的订单，立即到期
+     * @param orderIds
+     */
+    @Override
+    public void requeue(List<Long> orderIds) {
+        long now = System.currentTimeMillis();
+        for (Long orderId : orderIds) {
+            stringRedisTemplate.opsForZSet().add(EXPIRE_KEY, String.valueOf(orderId), now);
+        }
+    }
+
+    /**
+     * 批量取消仍未支付的订单
+     * 已支付或已取消的订单不受影响，汇总只按实际取消的订单更新
+     * @param orderIds
+     * @return
+     */
+    @Override
+    public int cancelExpired(List<Long> orderIds) {
+        Orders target = Orders.builder()
+                .status(Orders.CANCELLED)
+                .cancelReason("付款超时")
+                .cancelTime(LocalDateTime.now())
+                .build();
+        int count = orderTransitionService.transition(orderIds, Orders.PENDING_PAYMENT, target);
+        log.info("取消超时未支付订单{}个", count);
+        return count;
+    }
+}
@@ -4,30 +4,43 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.MenuPrice;
+import com.sky.cache.MenuPriceIndex;
 import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.*;
 import com.sky.entity.*;
 import com.sky.exception.OrderBusinessException;
 import com.sky.exception.ShoppingCartBusinessException;
+import com.sky.idempotent.IdempotencyStore;
 import com.sky.mapper.*;
+import com.sky.properties.OrderIdProperties;
+import com.sky.properties.OrderProperties;
 import com.sky.result.PageResult;
+import com.sky.service.OrderExpireService;
 import com.sky.service.OrderService;
+import com.sky.service.ShoppingCartService;
+import com.sky.service.StatisticsService;
+import com.sky.utils.SnowflakeIdGenerator;
 import com.sky.utils.WeChatPayUtil;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
-import com.sky.webSocket.WebSocketServer;
+import com.sky.webSocket.NotificationBus;
+import com.sky.webSocket.OrderNotification;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -37,7 +50,7 @@ import java.util.stream.Collectors;
 public class OrderServiceImpl implements OrderService {
 
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private ShoppingCartService shoppingCartService;
 
     @Autowired
     private AddressBookMapper addressBookMapper;
@@ -55,16 +68,91 @@ public class OrderServiceImpl implements OrderService {
     private OrderMapper orderMapper;
 
     @Autowired
-    private WebSocketServer webSocketServer;
+    private NotificationBus notificationBus;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private SnowflakeIdGenerator orderIdGenerator;
+
+    @Autowired
+    private OrderIdProperties orderIdProperties;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private MenuPriceIndex menuPriceIndex;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    @Autowired
+    private OrderExpireService orderExpireService;
 
     /**
      * 订单提交
+     * 带幂等key时，同一个key只下一次单，重复的请求直接返回第一次的结果；
+     * 事务提交后才清空购物车和保存结果，事务回滚时释放幂等key
      * @param ordersSubmitDTO
+     * @param idempotencyKey
      * @return
      */
     @Transactional(rollbackFor = Exception.class)
     @Override
-    public OrderSubmitVO submit(OrdersSubmitDTO ordersSubmitDTO) {
+    public OrderSubmitVO submit(OrdersSubmitDTO ordersSubmitDTO, String idempotencyKey) {
+        Long userId = BaseContext.getCurrentId();
+        String key = idempotencyKey == null ? null : "idempotent:order:submit:" + userId + ":" + idempotencyKey;
+        String token = key == null ? null : idempotencyStore.newToken();
+        if (key != null) {
+            String previous = idempotencyStore.acquire(key, token);
+            if (IdempotencyStore.isPending(previous)) {
+                throw new OrderBusinessException(MessageConstant.ORDER_SUBMITTING);
+            }
+            if (previous != null) {
+                log.info("重复的下单请求，返回已提交的订单，幂等key：{}", idempotencyKey);
+                return JSON.parseObject(previous, OrderSubmitVO.class);
+            }
+        }
+        OrderSubmitVO orderSubmitVO;
+        try {
+            orderSubmitVO = doSubmit(ordersSubmitDTO, userId);
+        } catch (RuntimeException e) {
+            if (key != null) {
+                idempotencyStore.release(key, token);
+            }
+            throw e;
+        }
+        afterCompletion(() -> {
+            // 订单已提交，先保存幂等结果，后续步骤失败时重试也只会拿到这个订单
+            if (key != null) {
+                idempotencyStore.complete(key, JSON.toJSONString(orderSubmitVO));
+            }
+            // 最后我们就需要把这个用户购物车中的所有数据全部删除（清空购物车）
+            try {
+                shoppingCartService.cleanByUserId(userId);
+            } catch (RuntimeException e) {
+                log.warn("下单后清空购物车失败，用户id：{}，{}", userId, e.getMessage());
+            }
+            // 登记支付截止时间，到期未支付自动取消
+            try {
+                orderExpireService.register(orderSubmitVO.getId(), orderSubmitVO.getOrderTime());
+            } catch (RuntimeException e) {
+                log.warn("登记订单{}的支付截止时间失败，{}", orderSubmitVO.getId(), e.getMessage());
+            }
+        }, () -> {
+            if (key != null) {
+                idempotencyStore.release(key, token);
+            }
+        });
+        return orderSubmitVO;
+    }
+
+    /**
+     * 校验地址和购物车，写入订单和订单明细
+     */
+    private OrderSubmitVO doSubmit(OrdersSubmitDTO ordersSubmitDTO, Long userId) {
         // 我们需要先处理各种业务问题
         // 检验地址是否为空
         Long addressBookId = ordersSubmitDTO.getAddressBookId();
@@ -72,27 +160,35 @@ public class OrderServiceImpl implements OrderService {
         if (addressBook == null){
             throw new OrderBusinessException(MessageConstant.ADDRESS_BOOK_IS_NULL);
         }
-        // 检验购物车数据是否为空
-        Long userId = BaseContext.getCurrentId();
-        List<ShoppingCart> list = shoppingCartMapper.list(userId);
+        // 检验购物车数据是否为空，购物车从Redis中读取
+        List<ShoppingCart> list = shoppingCartService.listByUserId(userId);
         if (list == null || list.size() == 0){
             throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
         }
+        // 按当前价格重新计算订单金额，不信任前端提交的金额和加入购物车时的价格
+        BigDecimal amount = calculateAmount(list, ordersSubmitDTO);
         // 当用户提交过来数据时
         // 我们需要先向订单表之中插入一条数据
         Orders orders = new Orders();
         // 属性拷贝
         BeanUtils.copyProperties(ordersSubmitDTO,orders);
+        orders.setAmount(amount);
         orders.setOrderTime(LocalDateTime.now());
         orders.setPayStatus(Orders.UN_PAID);
         orders.setStatus(Orders.PENDING_PAYMENT);
-        orders.setNumber(String.valueOf(System.currentTimeMillis()));
+        // 订单号由雪花算法生成，并发下单也不会重复
+        long orderNo = orderIdGenerator.nextId();
+        orders.setNumber(String.valueOf(orderNo));
+        if (orderIdProperties.isUseForPrimaryKey()){
+            orders.setId(orderNo);
+        }
         orders.setUserId(userId);
         orders.setConsignee(addressBook.getConsignee());
         orders.setAddress(addressBook.getCityName() + addressBook.getDistrictName() + addressBook.getDetail());
         orders.setPhone(addressBook.getPhone());
         // 插入
         orderMapper.insert(orders);
+        statisticsService.onOrderStatusChange(orders.getOrderTime(), null, orders.getStatus(), orders.getAmount());
         // 然后将这个订单中的所有菜品以及套餐插入到订单明细表中
         Long orderId = orders.getId();
         List<OrderDetail> orderDetails = new ArrayList<>();
@@ -103,10 +199,8 @@ public class OrderServiceImpl implements OrderService {
             // 插入列表
             orderDetails.add(orderDetail);
         }
-        // 插入数据库
+        // 一条语句批量插入
         orderDetailMapper.insert(orderDetails);
-        // 最后我们就需要把这个用户购物车中的所有数据全部删除（清空购物车）
-        shoppingCartMapper.clean(userId);
         // 封装VO对象传回结果
         OrderSubmitVO orderSubmitVO = OrderSubmitVO.builder()
                 .id(orderId)
@@ -117,6 +211,55 @@ public class OrderServiceImpl implements OrderService {
         return orderSubmitVO;
     }
 
+    /**
+     * 用价格索引中的当前价格计算订单金额，同时把购物车中的单价更新为当前价格
+     * 商品停售或前端金额与计算结果不一致时拒绝下单
+     */
+    private BigDecimal calculateAmount(List<ShoppingCart> list, OrdersSubmitDTO ordersSubmitDTO) {
+        BigDecimal goodsAmount = BigDecimal.ZERO;
+        for (ShoppingCart cart : list) {
+            MenuPrice menuPrice = cart.getDishId() != null
+                    ? menuPriceIndex.getDish(cart.getDishId())
+                    : menuPriceIndex.getSetmeal(cart.getSetmealId());
+            if (menuPrice == null || !StatusConstant.ENABLE.equals(menuPrice.getStatus())) {
+                throw new OrderBusinessException(cart.getName() + MessageConstant.ITEM_NOT_ON_SALE);
+            }
+            cart.setAmount(menuPrice.getPrice());
+            goodsAmount = goodsAmount.add(menuPrice.getPrice().multiply(BigDecimal.valueOf(cart.getNumber())));
+        }
+        // 商品金额 + 打包费 + 配送费
+        Integer packAmount = ordersSubmitDTO.getPackAmount();
+        BigDecimal amount = goodsAmount
+                .add(packAmount == null ? BigDecimal.ZERO : BigDecimal.valueOf(packAmount))
+                .add(orderProperties.getDeliveryFee());
+        BigDecimal submitted = ordersSubmitDTO.getAmount();
+        if (orderProperties.isCheckAmount() && submitted != null && submitted.compareTo(amount) != 0) {
+            log.warn("订单金额不一致，提交：{}，计算：{}", submitted, amount);
+            throw new OrderBusinessException(MessageConstant.ORDER_AMOUNT_ERROR);
+        }
+        return amount;
+    }
+
+    /**
+     * 当前事务提交后执行onCommit，回滚后执行onRollback；没有事务时直接执行onCommit
+     */
+    private void afterCompletion(Runnable onCommit, Runnable onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            onCommit.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    onCommit.run();
+                } else {
+                    onRollback.run();
+                }
+            }
+        });
+    }
+
     /**
      * 订单支付
      *
@@ -167,15 +310,11 @@ public class OrderServiceImpl implements OrderService {
                 .build();
 
         orderMapper.update(orders);
+        statisticsService.onOrderStatusChange(ordersDB.getOrderTime(), ordersDB.getStatus(), orders.getStatus(), ordersDB.getAmount());
+        orderExpireService.remove(ordersDB.getId());
 
-        //通过websocket向客户端浏览器推送消息 type orderId content
-        Map map = new HashMap();
-        map.put("type", 1); // 1表示来单提醒 2表示客户催单
-        map.put("orderId", ordersDB.getId());
-        map.put("content", "订单号：" + outTradeNo);
-
-        String json = JSON.toJSONString(map);
-        webSocketServer.sendToAllClient(json);
+        //通过通知总线向所有节点上的客户端浏览器推送来单提醒
+        notificationBus.publish(OrderNotification.newOrder(ordersDB.getId(), outTradeNo));
     }
 
     /**
@@ -243,7 +382,8 @@ public class OrderServiceImpl implements OrderService {
         }
         order.setCancelTime(LocalDateTime.now());
         orderMapper.update(order);
-
+        statisticsService.onOrderStatusChange(orders.getOrderTime(), orders.getStatus(), order.getStatus(), orders.getAmount());
+        orderExpireService.remove(orders.getId());
     }
 
     /**
@@ -265,7 +405,7 @@ public class OrderServiceImpl implements OrderService {
             shoppingCarts.add(shoppingCart);
         }
         // 插入购物车
-        shoppingCartMapper.insertBatch(shoppingCarts);
+        shoppingCartService.addBatch(shoppingCarts);
     }
 
     /**
@@ -279,13 +419,8 @@ public class OrderServiceImpl implements OrderService {
         PageHelper.startPage(ordersPageQueryDTO.getPage(), ordersPageQueryDTO.getPageSize());
         // 查询订单数据
         Page<OrderVO> page =  orderMapper.list(ordersPageQueryDTO);
-        for (OrderVO orderVO : page) {
-            // 查询到菜品数据
-            List<OrderDetail> list = orderDetailMapper.selectByOrderId(orderVO.getId());
-            String detail = getDetailToStr(list);
-            orderVO.setOrderDishes(detail);
-            orderVO.setOrderDetailList(list);
-        }
+        // 一次查询当前页所有订单的菜品数据
+        fillOrderDetails(page);
         // 拿到结果
         long total = page.getTotal();
         List<OrderVO> result = page.getResult();
@@ -327,6 +462,7 @@ public class OrderServiceImpl implements OrderService {
         }
         ordersConfirmDTO.setStatus(3);
         orderMapper.updateStatus(ordersConfirmDTO);
+        statisticsService.onOrderStatusChange(orderVO.getOrderTime(), orderVO.getStatus(), ordersConfirmDTO.getStatus(), orderVO.getAmount());
     }
 
     /**
@@ -344,6 +480,7 @@ public class OrderServiceImpl implements OrderService {
             throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
         }
         orderMapper.updateStatus(ordersConfirmDTO);
+        statisticsService.onOrderStatusChange(orderVO.getOrderTime(), orderVO.getStatus(), ordersConfirmDTO.getStatus(), orderVO.getAmount());
     }
 
     /**
@@ -357,9 +494,11 @@ public class OrderServiceImpl implements OrderService {
         if (orderVO == null || orderVO.getStatus() != 4){
             throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
         }
+        Integer fromStatus = orderVO.getStatus();
         orderVO.setStatus(5);
         orderVO.setDeliveryTime(LocalDateTime.now());
         orderMapper.update(orderVO);
+        statisticsService.onOrderStatusChange(orderVO.getOrderTime(), fromStatus, orderVO.getStatus(), orderVO.getAmount());
     }
 
     /**
@@ -382,6 +521,7 @@ public class OrderServiceImpl implements OrderService {
                 .status(Orders.CANCELLED)
                 .build();
         orderMapper.update(orders);
+        statisticsService.onOrderStatusChange(orderVO.getOrderTime(), orderVO.getStatus(), orders.getStatus(), orderVO.getAmount());
     }
 
     /**
@@ -394,14 +534,26 @@ public class OrderServiceImpl implements OrderService {
         if (orderVO == null){
             throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
         }
-        //通过websocket向客户端浏览器推送消息 type orderId content
-        Map map = new HashMap();
-        map.put("type", 2); // 1表示来单提醒 2表示客户催单
-        map.put("orderId", orderVO.getId());
-        map.put("content", "订单号：" + orderVO);
-
-        String json = JSON.toJSONString(map);
-        webSocketServer.sendToAllClient(json);
+        //通过通知总线向所有节点上的客户端浏览器推送催单提醒
+        notificationBus.publish(OrderNotification.reminder(orderVO.getId(), orderVO.getNumber()));
+    }
+
+    /**
+     * 批量填充订单明细，一页订单只查询一次明细表，再按订单id分组
+     * @param orderVOList
+     */
+    private void fillOrderDetails(List<OrderVO> orderVOList) {
+        if (orderVOList == null || orderVOList.isEmpty()) {
+            return;
+        }
+        List<Long> orderIds = orderVOList.stream().map(OrderVO::getId).collect(Collectors.toList());
+        Map<Long, List<OrderDetail>> detailMap = orderDetailMapper.selectByOrderIds(orderIds).stream()
+                .collect(Collectors.groupingBy(OrderDetail::getOrderId));
+        for (OrderVO orderVO : orderVOList) {
+            List<OrderDetail> list = detailMap.getOrDefault(orderVO.getId(), new ArrayList<>());
+            orderVO.setOrderDishes(getDetailToStr(list));
+            orderVO.setOrderDetailList(list);
+        }
     }
 
     /**
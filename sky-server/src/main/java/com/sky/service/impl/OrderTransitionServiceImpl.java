@@ -0,0 +1,50 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.OrderTransitionService;
+import com.sky.service.StatisticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 订单状态批量修改
+ * 一批订单在一个事务中先锁定、再用一条UPDATE修改，每日汇总按锁定到的订单增量更新
+ */
+@Service
+public class OrderTransitionServiceImpl implements OrderTransitionService {
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    /**
+     * 批量修改一批订单的状态
+     * 已被其他请求改变状态的订单（例如刚刚支付）不会被锁定，也不计入汇总
+     * @param orderIds
+     * @param fromStatus
+     * @param target
+     * @return
+     */
+    @Transactional(rollbackFor = Exception.class)
+    @Override
+    public int transition(List<Long> orderIds, Integer fromStatus, Orders target) {
+        List<Orders> list = orderMapper.selectByIdsForUpdate(orderIds, fromStatus);
+        if (list.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = new ArrayList<>(list.size());
+        for (Orders orders : list) {
+            ids.add(orders.getId());
+        }
+        int count = orderMapper.transitionByIds(ids, fromStatus, target);
+        statisticsService.onOrdersStatusChange(list, fromStatus, target.getStatus());
+        return count;
+    }
+}
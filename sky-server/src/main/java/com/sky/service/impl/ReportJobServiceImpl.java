@@ -0,0 +1,372 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.dto.ReportJobDTO;
+import com.sky.exception.BaseException;
+import com.sky.exception.ReportBusinessException;
+import com.sky.properties.ReportProperties;
+import com.sky.service.ReportJobService;
+import com.sky.service.ReportService;
+import com.sky.vo.ReportJobVO;
+import com.sky.webSocket.NotificationBus;
+import com.sky.webSocket.OrderNotification;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 异步报表任务
+ * 报表在后台线程中生成，文件按请求内容的摘要命名保存，相同的请求只生成一次；
+ * 任务状态保存在Redis中，任意节点都能查询，生成完成后通过通知总线推送给管理端
+ */
+@Slf4j
+@Service
+public class ReportJobServiceImpl implements ReportJobService {
+
+    private static final String JOB_KEY_PREFIX = "report:job:";
+
+    // 内容地址 -> 报表文件名，存在时说明文件可以直接使用
+    private static final String CACHE_KEY_PREFIX = "report:cache:";
+
+    // 内容地址 -> 正在生成该文件的任务id
+    private static final String BUILDING_KEY_PREFIX = "report:building:";
+
+    private static final String FORMAT_XLSX = "xlsx";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final String XLSX_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    // 报表格式变化时修改，之前生成的文件不再命中
+    private static final String CONTENT_VERSION = "1";
+
+    @Autowired
+    private ReportService reportService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ReportProperties reportProperties;
+
+    @Autowired
+    private NotificationBus notificationBus;
+
+    private ThreadPoolExecutor jobExecutor;
+
+    @PostConstruct
+    public void start() {
+        int threads = reportProperties.getJobThreads();
+        jobExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(reportProperties.getJobQueueCapacity()), runnable -> {
+            Thread thread = new Thread(runnable, "report-job");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (jobExecutor != null) {
+            jobExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 提交报表任务，相同的请求只生成一次
+     * @param reportJobDTO
+     * @return
+     */
+    @Override
+    public ReportJobVO submit(ReportJobDTO reportJobDTO) {
+        String format = reportJobDTO.getFormat() == null ? FORMAT_XLSX : reportJobDTO.getFormat().toLowerCase();
+        if (!FORMAT_XLSX.equals(format)) {
+            throw new ReportBusinessException(MessageConstant.REPORT_FORMAT_ERROR);
+        }
+        reportService.checkRange(reportJobDTO.getBegin(), reportJobDTO.getEnd());
+        boolean detail = Boolean.TRUE.equals(reportJobDTO.getDetail());
+        ReportJobVO job = ReportJobVO.builder()
+                .jobId(UUID.randomUUID().toString().replace("-", ""))
+                .status(ReportJobVO.WAITING)
+                .begin(reportJobDTO.getBegin())
+                .end(reportJobDTO.getEnd())
+                .format(format)
+                .detail(detail)
+                .contentKey(contentKey(format, reportJobDTO.getBegin(), reportJobDTO.getEnd(), detail))
+                .build();
+
+        // 相同的报表已经生成过，直接完成
+        if (isCached(job.getContentKey())) {
+            job.setStatus(ReportJobVO.DONE);
+            save(job);
+            return job;
+        }
+        // 相同的报表正在生成，返回正在生成的任务
+        String buildingKey = BUILDING_KEY_PREFIX + job.getContentKey();
+        Boolean first = stringRedisTemplate.opsForValue().setIfAbsent(buildingKey, job.getJobId(),
+                reportProperties.getJobTimeoutMinutes(), TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(first)) {
+            String runningJobId = stringRedisTemplate.opsForValue().get(buildingKey);
+            ReportJobVO runningJob = runningJobId == null ? null : load(runningJobId);
+            if (runningJob != null) {
+                return runningJob;
+            }
+            // 正在生成的任务刚好结束，由本任务重新生成
+            stringRedisTemplate.opsForValue().set(buildingKey, job.getJobId(),
+                    reportProperties.getJobTimeoutMinutes(), TimeUnit.MINUTES);
+        }
+
+        save(job);
+        ReportJobVO task = new ReportJobVO();
+        BeanUtils.copyProperties(job, task);
+        try {
+            jobExecutor.execute(() -> run(task));
+        } catch (RejectedExecutionException e) {
+            stringRedisTemplate.delete(JOB_KEY_PREFIX + job.getJobId());
+            releaseBuilding(job);
+            throw new ReportBusinessException(MessageConstant.REPORT_JOB_BUSY);
+        }
+        log.info("提交报表任务：{}，{}至{}，明细：{}", job.getJobId(), job.getBegin(), job.getEnd(), detail);
+        return job;
+    }
+
+    /**
+     * 查询报表任务
+     * @param jobId
+     * @return
+     */
+    @Override
+    public ReportJobVO getJob(String jobId) {
+        ReportJobVO job = load(jobId);
+        if (job == null) {
+            throw new ReportBusinessException(MessageConstant.REPORT_JOB_NOT_FOUND);
+        }
+        return job;
+    }
+
+    /**
+     * 下载已生成的报表
+     * @param jobId
+     * @param httpServletResponse
+     */
+    @Override
+    public void download(String jobId, HttpServletResponse httpServletResponse) {
+        ReportJobVO job = getJob(jobId);
+        Path file = cacheFile(job.getContentKey());
+        if (!ReportJobVO.DONE.equals(job.getStatus()) || !Files.exists(file)) {
+            throw new ReportBusinessException(MessageConstant.REPORT_NOT_READY);
+        }
+        try {
+            httpServletResponse.setContentType(XLSX_CONTENT_TYPE);
+            httpServletResponse.setHeader("Content-Disposition",
+                    "attachment; filename=report_" + job.getBegin() + "_" + job.getEnd() + "." + job.getFormat());
+            httpServletResponse.setContentLengthLong(Files.size(file));
+            OutputStream outputStream = httpServletResponse.getOutputStream();
+            Files.copy(file, outputStream);
+            outputStream.flush();
+        } catch (IOException e) {
+            log.error("下载报表失败：{}", jobId, e);
+            throw new ReportBusinessException(MessageConstant.REPORT_EXPORT_FAILED);
+        }
+    }
+
+    /**
+     * 生成报表文件，先写临时文件再改名，下载时不会读到写了一半的文件
+     * @param job
+     */
+    private void run(ReportJobVO job) {
+        job.setStatus(ReportJobVO.RUNNING);
+        save(job);
+        Path file = cacheFile(job.getContentKey());
+        Path temp = file.resolveSibling(file.getFileName() + "." + job.getJobId() + TEMP_SUFFIX);
+        try {
+            Files.createDirectories(file.getParent());
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                reportService.export(outputStream, job.getBegin(), job.getEnd(), job.getDetail());
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            markCached(job);
+            job.setStatus(ReportJobVO.DONE);
+            save(job);
+            log.info("报表任务{}已完成，文件：{}", job.getJobId(), file);
+        } catch (Exception e) {
+            log.error("报表任务{}失败", job.getJobId(), e);
+            job.setStatus(ReportJobVO.FAILED);
+            job.setMessage(e instanceof BaseException ? e.getMessage() : MessageConstant.REPORT_EXPORT_FAILED);
+            save(job);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // 临时文件删除失败不影响任务结果
+            }
+        } finally {
+            releaseBuilding(job);
+        }
+        if (ReportJobVO.DONE.equals(job.getStatus())) {
+            try {
+                notificationBus.publish(OrderNotification.reportReady(job.getJobId()));
+            } catch (Exception e) {
+                // 管理端仍然可以轮询任务状态
+                log.warn("报表任务{}完成通知发送失败：{}", job.getJobId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 已经结束的日期区间数据不再变化，报表永久缓存；包含近期数据的报表只缓存一段时间
+     * @param job
+     */
+    private void markCached(ReportJobVO job) {
+        String cacheKey = CACHE_KEY_PREFIX + job.getContentKey();
+        String fileName = cacheFile(job.getContentKey()).getFileName().toString();
+        LocalDate settled = LocalDate.now().minusDays(reportProperties.getSettledDays());
+        if (job.getEnd().isAfter(settled)) {
+            stringRedisTemplate.opsForValue().set(cacheKey, fileName, reportProperties.getLiveCacheSeconds(), TimeUnit.SECONDS);
+        } else {
+            stringRedisTemplate.opsForValue().set(cacheKey, fileName);
+        }
+    }
+
+    private boolean isCached(String contentKey) {
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(CACHE_KEY_PREFIX + contentKey))) {
+            return false;
+        }
+        Path file = cacheFile(contentKey);
+        if (Files.exists(file)) {
+            try {
+                // 命中的文件按新生成的文件保留，引用它的任务在状态过期前都能下载
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                return true;
+            } catch (IOException e) {
+                // 文件刚好被清理，重新生成
+                log.warn("刷新报表文件时间失败：{}", file, e);
+            }
+        }
+        // 文件已被清理，需要重新生成
+        stringRedisTemplate.delete(CACHE_KEY_PREFIX + contentKey);
+        return false;
+    }
+
+    /**
+     * 定时清理报表文件：缓存标记已经过期、且超过任务状态保留时间没有被使用的文件，
+     * 以及超过任务最长生成时间仍未改名的临时文件。每个节点都会执行，多个节点共享目录时重复删除没有影响
+     */
+    @Scheduled(fixedDelayString = "${sky.report.cache-sweep-millis:3600000}")
+    public void sweepCache() {
+        Path dir = Paths.get(reportProperties.getCacheDir());
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long fileDeadline = now - TimeUnit.HOURS.toMillis(reportProperties.getJobTtlHours());
+        long tempDeadline = now - TimeUnit.MINUTES.toMillis(reportProperties.getJobTimeoutMinutes());
+        int deleted = 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                try {
+                    if (isExpired(file, fileDeadline, tempDeadline)) {
+                        Files.deleteIfExists(file);
+                        deleted++;
+                    }
+                } catch (IOException e) {
+                    log.warn("清理报表文件失败：{}", file, e);
+                }
+            }
+        } catch (IOException e) {
+            log.error("清理报表文件失败：{}", dir, e);
+            return;
+        }
+        if (deleted > 0) {
+            log.info("已清理{}个过期的报表文件", deleted);
+        }
+    }
+
+    private boolean isExpired(Path file, long fileDeadline, long tempDeadline) throws IOException {
+        String name = file.getFileName().toString();
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        if (name.endsWith(TEMP_SUFFIX)) {
+            return modified < tempDeadline;
+        }
+        String suffix = "." + FORMAT_XLSX;
+        if (!name.endsWith(suffix) || modified >= fileDeadline) {
+            return false;
+        }
+        String contentKey = name.substring(0, name.length() - suffix.length());
+        return !Boolean.TRUE.equals(stringRedisTemplate.hasKey(CACHE_KEY_PREFIX + contentKey));
+    }
+
+    private void releaseBuilding(ReportJobVO job) {
+        String buildingKey = BUILDING_KEY_PREFIX + job.getContentKey();
+        if (job.getJobId().equals(stringRedisTemplate.opsForValue().get(buildingKey))) {
+            stringRedisTemplate.delete(buildingKey);
+        }
+    }
+
+    private String contentKey(String format, LocalDate begin, LocalDate end, boolean detail) {
+        String content = CONTENT_VERSION + "|" + format + "|" + begin + "|" + end + "|" + detail;
+        return DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path cacheFile(String contentKey) {
+        return Paths.get(reportProperties.getCacheDir(), contentKey + "." + FORMAT_XLSX);
+    }
+
+    private void save(ReportJobVO job) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("status", String.valueOf(job.getStatus()));
+        fields.put("begin", job.getBegin().toString());
+        fields.put("end", job.getEnd().toString());
+        fields.put("format", job.getFormat());
+        fields.put("detail", String.valueOf(job.getDetail()));
+        fields.put("contentKey", job.getContentKey());
+        if (job.getMessage() != null) {
+            fields.put("message", job.getMessage());
+        }
+        String key = JOB_KEY_PREFIX + job.getJobId();
+        stringRedisTemplate.opsForHash().putAll(key, fields);
+        stringRedisTemplate.expire(key, reportProperties.getJobTtlHours(), TimeUnit.HOURS);
+    }
+
+    private ReportJobVO load(String jobId) {
+        Map<Object, Object> fields = stringRedisTemplate.opsForHash().entries(JOB_KEY_PREFIX + jobId);
+        if (fields == null || fields.isEmpty()) {
+            return null;
+        }
+        return ReportJobVO.builder()
+                .jobId(jobId)
+                .status(Integer.valueOf((String) fields.get("status")))
+                .begin(LocalDate.parse((String) fields.get("begin")))
+                .end(LocalDate.parse((String) fields.get("end")))
+                .format((String) fields.get("format"))
+                .detail(Boolean.valueOf((String) fields.get("detail")))
+                .contentKey((String) fields.get("contentKey"))
+                .message((String) fields.get("message"))
+                .build();
+    }
+}
@@ -1,16 +1,26 @@
 package com.sky.service.impl;
 
+import com.sky.constant.MessageConstant;
+import com.sky.dto.DailyStatisticsDTO;
 import com.sky.dto.GoodsSalesDTO;
 import com.sky.entity.Orders;
+import com.sky.exception.ReportBusinessException;
 import com.sky.mapper.OrderDetailMapper;
 import com.sky.mapper.OrderMapper;
-import com.sky.mapper.UserMapper;
+import com.sky.properties.ReportProperties;
 import com.sky.service.ReportService;
-import com.sky.service.WorkSpaceService;
+import com.sky.service.StatisticsService;
 import com.sky.vo.*;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFRow;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
@@ -21,23 +31,36 @@ import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @Slf4j
 @Service
 public class ReportServiceImpl implements ReportService {
 
-    @Autowired
-    private UserMapper userMapper;
+    // 运营数据报表模板，文件名只用ASCII字符，非UTF-8环境下构建时也能打包进classpath
+    private static final String TEMPLATE = "template/business_report_template.xlsx";
 
-    @Autowired
-    private WorkSpaceService workSpaceService;
+    private static final String XLSX_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    // 模板中第一条每日明细所在的行
+    private static final int DAY_FIRST_ROW = 7;
+
+    private static final String[] DETAIL_HEADERS = {"订单号", "下单时间", "订单状态", "支付状态", "实收金额", "收货人", "手机号", "地址"};
+
+    private static final int[] DETAIL_WIDTHS = {20, 20, 10, 10, 12, 12, 14, 40};
+
+    // 下标为订单状态
+    private static final String[] ORDER_STATUS = {null, "待付款", "待接单", "已接单", "派送中", "已完成", "已取消"};
+
+    // 下标为支付状态
+    private static final String[] PAY_STATUS = {"未支付", "已支付", "退款"};
 
     @Autowired
     private OrderDetailMapper orderDetailMapper;
@@ -45,6 +68,12 @@ public class ReportServiceImpl implements ReportService {
     @Autowired
     private OrderMapper orderMapper;
 
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private ReportProperties reportProperties;
+
     /**
      * 营业额统计
      * @param begin
@@ -55,20 +84,10 @@ public class ReportServiceImpl implements ReportService {
     public TurnoverReportVO turnOverStatistics(LocalDate begin, LocalDate end) {
         List<LocalDate> dateList = new ArrayList<>();
         List<Double> priceCountList = new ArrayList<>();
-        // 获得日期
-        while(begin.isBefore(end) || begin.isEqual(end)){
-            // 先查营业额
-            LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(begin, LocalTime.MAX);
-            Map map = new HashMap();
-            map.put("beginTime",beginTime);
-            map.put("endTime",endTime);
-            map.put("status",Orders.COMPLETED);
-            Double priceCount = orderMapper.selectAmountByMap(map);
-            priceCount = priceCount == null ? 0.0 : priceCount;
-            dateList.add(begin);
-            begin = begin.plusDays(1);
-            priceCountList.add(priceCount);
+        // 一次查询获得区间内每一天的营业额
+        for (DailyStatisticsDTO day : statisticsService.getDailyStatistics(begin, end)) {
+            dateList.add(day.getDate());
+            priceCountList.add(day.getTurnover());
         }
         return TurnoverReportVO
                 .builder()
@@ -89,21 +108,11 @@ public class ReportServiceImpl implements ReportService {
         List<LocalDate> dateList = new ArrayList<>();
         List<Integer> totalList = new ArrayList<>();
         List<Integer> newList = new ArrayList<>();
-        // 查询数据
-        while (begin.isBefore(end) || begin.isEqual(end)){
-            // 转换时间
-            LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(begin, LocalTime.MAX);
-            LocalDate nextDate = begin.plusDays(1);
-            // 查询用户总量
-            Integer userTotal = userMapper.selectByDate(endTime);
-            totalList.add(userTotal);
-            // 查询当日用户增加量
-            Integer newUser = userMapper.selectNewByDate(beginTime,endTime);
-            newList.add(newUser);
-            // 放入日期
-            dateList.add(begin);
-            begin = begin.plusDays(1);
+        // 查询数据，用户总量由新增用户逐日累加得到
+        for (DailyStatisticsDTO day : statisticsService.getDailyStatistics(begin, end)) {
+            dateList.add(day.getDate());
+            totalList.add(day.getTotalUsers());
+            newList.add(day.getNewUsers());
         }
         return UserReportVO
                 .builder()
@@ -129,30 +138,16 @@ public class ReportServiceImpl implements ReportService {
         Integer validOrderCount = 0;
         Double orderCompletionRate = 0.0;
         // 开始查询
-        while (begin.isBefore(end) || begin.isEqual(end)){
-            LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(begin, LocalTime.MAX);
-            // 查询数据
-            Map map = new HashMap();
-            map.put("beginTime",beginTime);
-            map.put("endTime",endTime);
-            // 每日订单数
-            Integer orderCount = orderMapper.selectCountByMap(map);
-            map.put("status",Orders.COMPLETED);
-            // 有效订单数
-            Integer validOrder = orderMapper.selectCountByMap(map);
-            orderCountList.add(orderCount);
-            validOrderCountList.add(validOrder);
-            dateList.add(begin);
-            begin = begin.plusDays(1);
-        }
-        for (Integer integer : orderCountList) {
-            totalOrderCount += integer;
-        }
-        for (Integer integer : validOrderCountList) {
-            validOrderCount += integer;
-        }
-        orderCompletionRate =validOrderCount.doubleValue() / totalOrderCount;
+        for (DailyStatisticsDTO day : statisticsService.getDailyStatistics(begin, end)) {
+            dateList.add(day.getDate());
+            orderCountList.add(day.getOrderCount());
+            validOrderCountList.add(day.getValidOrderCount());
+            totalOrderCount += day.getOrderCount();
+            validOrderCount += day.getValidOrderCount();
+        }
+        if (totalOrderCount != 0) {
+            orderCompletionRate = validOrderCount.doubleValue() / totalOrderCount;
+        }
         return OrderReportVO
                 .builder()
                 .totalOrderCount(totalOrderCount)
@@ -190,59 +185,253 @@ public class ReportServiceImpl implements ReportService {
     }
 
     /**
-     * 获取业务报表
+     * 获取业务报表，默认导出最近30天
      * @param httpServletResponse
      */
     @Override
     public void report(HttpServletResponse httpServletResponse) {
-        // 获取营业数据
-        LocalDate begin = LocalDate.now().minusDays(1);
-        LocalDate end = begin.minusDays(30);
-        LocalDateTime beginTime = LocalDateTime.of(end, LocalTime.MIN);
-        LocalDateTime endTime = LocalDateTime.of(begin, LocalTime.MAX);
-        BusinessDataVO businessData = workSpaceService.getBusinessData(beginTime,endTime);
-        // 获得输入流对象
-        InputStream template = this.getClass().getClassLoader().getResourceAsStream("template/运营数据报表模板.xlsx");
-        // 创建一个新的excel文件
+        LocalDate end = LocalDate.now().minusDays(1);
+        report(httpServletResponse, end.minusDays(29), end, false);
+    }
+
+    /**
+     * 导出任意日期区间的业务报表
+     * 每日数据来自一次区间汇总查询，订单明细逐行从数据库读出，
+     * 写excel时内存中只保留最近的若干行，其余行写入临时文件，导出一年甚至更长的数据内存也不会增长
+     * @param httpServletResponse
+     * @param begin
+     * @param end
+     * @param detail 是否附带订单明细
+     */
+    @Override
+    public void report(HttpServletResponse httpServletResponse, LocalDate begin, LocalDate end, boolean detail) {
+        checkRange(begin, end);
+        // 返回excel数据给到浏览器
+        httpServletResponse.setContentType(XLSX_CONTENT_TYPE);
         try {
-            XSSFWorkbook excel = new XSSFWorkbook(template);
+            ServletOutputStream outputStream = httpServletResponse.getOutputStream();
+            export(outputStream, begin, end, detail);
+            outputStream.flush();
+        } catch (IOException e) {
+            log.error("导出报表失败，{}至{}", begin, end, e);
+            throw new ReportBusinessException(MessageConstant.REPORT_EXPORT_FAILED);
+        }
+    }
+
+    /**
+     * 把业务报表写入输出流，不关闭输出流
+     * @param outputStream
+     * @param begin
+     * @param end
+     * @param detail 是否附带订单明细
+     * @throws IOException
+     */
+    @Override
+    public void export(OutputStream outputStream, LocalDate begin, LocalDate end, boolean detail) throws IOException {
+        checkRange(begin, end);
+        // 一次查询获得区间内每一天的营业数据
+        List<DailyStatisticsDTO> days = statisticsService.getDailyStatistics(begin, end);
+        SXSSFWorkbook excel = null;
+        // 获得输入流对象
+        try (InputStream template = this.getClass().getClassLoader().getResourceAsStream(TEMPLATE)) {
+            if (template == null) {
+                throw new IOException("报表模板不存在：" + TEMPLATE);
+            }
+            XSSFWorkbook workbook = new XSSFWorkbook(template);
             // 获取标签页
-            XSSFSheet sheet = excel.getSheetAt(0);
-            XSSFRow timeRow = sheet.getRow(1);
-            // 获取单元格
-            XSSFCell cell = timeRow.getCell(1);
+            XSSFSheet sheet = workbook.getSheetAt(0);
             // 设置时间
-            cell.setCellValue("表表日期：" + end + "至" + begin);
+            sheet.getRow(1).getCell(1).setCellValue("表表日期：" + begin + "至" + end);
             // 设置营业额等订单数据
+            BusinessDataVO businessData = summarize(days);
             sheet.getRow(3).getCell(2).setCellValue(businessData.getTurnover());
             sheet.getRow(3).getCell(4).setCellValue(businessData.getOrderCompletionRate());
             sheet.getRow(3).getCell(6).setCellValue(businessData.getNewUsers());
             sheet.getRow(4).getCell(2).setCellValue(businessData.getValidOrderCount());
             sheet.getRow(4).getCell(4).setCellValue(businessData.getUnitPrice());
+            // 记下模板中明细表头和明细行的样式，再删掉预留的空行，明细行改为逐行写出
+            CellStyle[] headerStyles = rowStyles(sheet.getRow(DAY_FIRST_ROW - 1));
+            CellStyle[] rowStyles = rowStyles(sheet.getRow(DAY_FIRST_ROW));
+            for (int i = sheet.getLastRowNum(); i >= DAY_FIRST_ROW; i--) {
+                XSSFRow row = sheet.getRow(i);
+                if (row != null) {
+                    sheet.removeRow(row);
+                }
+            }
+            excel = new SXSSFWorkbook(workbook, reportProperties.getRowWindow());
+            excel.setCompressTempFiles(reportProperties.isCompressTempFiles());
 
             //获取详细订单数据
-            for (int i = 0; i < 30; i++) {
-                LocalDate date = end.plusDays(i);
-                BusinessDataVO business = workSpaceService.getBusinessData(LocalDateTime.of(date, LocalTime.MIN), LocalDateTime.of(date, LocalTime.MAX));
-                // 插入数据
-                XSSFRow row = sheet.getRow(i + 7);
-                row.getCell(1).setCellValue(date.toString());
-                row.getCell(2).setCellValue(business.getTurnover());
-                row.getCell(3).setCellValue(business.getValidOrderCount());
-                row.getCell(4).setCellValue(business.getOrderCompletionRate());
-                row.getCell(5).setCellValue(business.getUnitPrice());
-                row.getCell(6).setCellValue(business.getNewUsers());
+            Sheet daySheet = excel.getSheetAt(0);
+            int rowNum = DAY_FIRST_ROW;
+            for (DailyStatisticsDTO day : days) {
+                BusinessDataVO business = toBusinessData(day.getTurnover(), day.getOrderCount(),
+                        day.getValidOrderCount(), day.getNewUsers());
+                Row row = daySheet.createRow(rowNum++);
+                setCell(row, 1, rowStyles).setCellValue(day.getDate().toString());
+                setCell(row, 2, rowStyles).setCellValue(business.getTurnover());
+                setCell(row, 3, rowStyles).setCellValue(business.getValidOrderCount());
+                setCell(row, 4, rowStyles).setCellValue(business.getOrderCompletionRate());
+                setCell(row, 5, rowStyles).setCellValue(business.getUnitPrice());
+                setCell(row, 6, rowStyles).setCellValue(business.getNewUsers());
+            }
+            if (detail) {
+                DetailSheetWriter writer = new DetailSheetWriter(excel, headerStyles[1], rowStyles[1], rowStyles[2]);
+                orderMapper.streamByOrderTime(LocalDateTime.of(begin, LocalTime.MIN), LocalDateTime.of(end, LocalTime.MAX), writer);
+                log.info("导出订单明细{}条，{}至{}", writer.getCount(), begin, end);
             }
 
-            // 返回excel数据给到浏览器
-            ServletOutputStream outputStream = httpServletResponse.getOutputStream();
             excel.write(outputStream);
-            // 释放内存
-            outputStream.close();
-            template.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+        } finally {
+            // 删除临时文件
+            if (excel != null) {
+                excel.dispose();
+            }
         }
+    }
 
+    /**
+     * 校验导出的日期区间
+     * @param begin
+     * @param end
+     */
+    @Override
+    public void checkRange(LocalDate begin, LocalDate end) {
+        if (begin == null || end == null || begin.isAfter(end)
+                || ChronoUnit.DAYS.between(begin, end) >= reportProperties.getMaxDays()) {
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_RANGE_ERROR);
+        }
+    }
+
+    /**
+     * 汇总区间内的营业数据
+     * @param days
+     * @return
+     */
+    private BusinessDataVO summarize(List<DailyStatisticsDTO> days) {
+        double turnover = 0;
+        int orderCount = 0;
+        int validOrderCount = 0;
+        int newUsers = 0;
+        for (DailyStatisticsDTO day : days) {
+            turnover += day.getTurnover();
+            orderCount += day.getOrderCount();
+            validOrderCount += day.getValidOrderCount();
+            newUsers += day.getNewUsers();
+        }
+        return toBusinessData(turnover, orderCount, validOrderCount, newUsers);
+    }
+
+    /**
+     * 计算订单完成率和平均客单价，和工作台的营业数据算法一致
+     */
+    private BusinessDataVO toBusinessData(Double turnover, Integer orderCount, Integer validOrderCount, Integer newUsers) {
+        return BusinessDataVO
+                .builder()
+                .turnover(turnover)
+                .validOrderCount(validOrderCount)
+                .orderCompletionRate(validOrderCount == 0 ? 0.0 : validOrderCount.doubleValue() / orderCount)
+                .unitPrice(validOrderCount == 0 ? 0.0 : turnover / validOrderCount)
+                .newUsers(newUsers)
+                .build();
+    }
+
+    private static CellStyle[] rowStyles(Row row) {
+        CellStyle[] styles = new CellStyle[Math.max(row.getLastCellNum(), 0)];
+        for (int i = 0; i < styles.length; i++) {
+            Cell cell = row.getCell(i);
+            styles[i] = cell == null ? null : cell.getCellStyle();
+        }
+        return styles;
+    }
+
+    private static Cell setCell(Row row, int column, CellStyle[] styles) {
+        Cell cell = row.createCell(column);
+        if (column < styles.length && styles[column] != null) {
+            cell.setCellStyle(styles[column]);
+        }
+        return cell;
+    }
+
+    /**
+     * 逐行写出订单明细，一个标签页写满后换到下一个
+     */
+    private static class DetailSheetWriter implements ResultHandler<Orders> {
+
+        private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+        private final SXSSFWorkbook excel;
+
+        private final CellStyle headerStyle;
+
+        private final CellStyle textStyle;
+
+        private final CellStyle numberStyle;
+
+        private Sheet sheet;
+
+        private int rowNum;
+
+        private long count;
+
+        DetailSheetWriter(SXSSFWorkbook excel, CellStyle headerStyle, CellStyle textStyle, CellStyle numberStyle) {
+            this.excel = excel;
+            this.headerStyle = headerStyle;
+            this.textStyle = textStyle;
+            this.numberStyle = numberStyle;
+        }
+
+        @Override
+        public void handleResult(ResultContext<? extends Orders> context) {
+            if (sheet == null || rowNum == SpreadsheetVersion.EXCEL2007.getMaxRows()) {
+                newSheet();
+            }
+            Orders order = context.getResultObject();
+            Row row = sheet.createRow(rowNum++);
+            text(row, 0, order.getNumber());
+            text(row, 1, order.getOrderTime() == null ? null : TIME_FORMATTER.format(order.getOrderTime()));
+            text(row, 2, label(ORDER_STATUS, order.getStatus()));
+            text(row, 3, label(PAY_STATUS, order.getPayStatus()));
+            Cell amount = row.createCell(4);
+            amount.setCellStyle(numberStyle);
+            if (order.getAmount() != null) {
+                amount.setCellValue(order.getAmount().doubleValue());
+            }
+            text(row, 5, order.getConsignee());
+            text(row, 6, order.getPhone());
+            text(row, 7, order.getAddress());
+            count++;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        private void newSheet() {
+            int index = excel.getNumberOfSheets();
+            sheet = excel.createSheet(index == 1 ? "订单明细" : "订单明细" + index);
+            for (int i = 0; i < DETAIL_HEADERS.length; i++) {
+                sheet.setColumnWidth(i, DETAIL_WIDTHS[i] * 256);
+            }
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < DETAIL_HEADERS.length; i++) {
+                Cell cell = header.createCell(i);
+                cell.setCellStyle(headerStyle);
+                cell.setCellValue(DETAIL_HEADERS[i]);
+            }
+            rowNum = 1;
+        }
+
+        private void text(Row row, int column, String value) {
+            Cell cell = row.createCell(column);
+            cell.setCellStyle(textStyle);
+            if (value != null) {
+                cell.setCellValue(value);
+            }
+        }
+
+        private static String label(String[] labels, Integer value) {
+            return value == null || value < 0 || value >= labels.length ? null : labels[value];
+        }
     }
 }
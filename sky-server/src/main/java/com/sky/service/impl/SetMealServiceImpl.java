@@ -10,14 +10,11 @@ import com.sky.entity.Dish;
 import com.sky.entity.Setmeal;
 import com.sky.entity.SetmealDish;
 import com.sky.exception.DeletionNotAllowedException;
-import com.sky.mapper.CategoryMapper;
-import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetMealDishMapper;
 import com.sky.mapper.SetMealMapper;
 import com.sky.result.PageResult;
 import com.sky.service.SetMealService;
 import com.sky.vo.DishItemVO;
-import com.sky.vo.DishVO;
 import com.sky.vo.SetmealVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -26,6 +23,9 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 @Slf4j
 @Service
 public class SetMealServiceImpl implements SetMealService {
@@ -36,12 +36,6 @@ public class SetMealServiceImpl implements SetMealService {
     @Autowired
     private SetMealMapper setMealMapper;
 
-    @Autowired
-    private DishMapper dishMapper;
-
-    @Autowired
-    private CategoryMapper categoryMapper;
-
     /**
      * 菜品分页查询
      * @param setmealPageQueryDTO
@@ -54,14 +48,11 @@ public class SetMealServiceImpl implements SetMealService {
         // 书写SQL语句，获得套餐数据
         Page<SetmealVO> page = setMealMapper.selectByPage(setmealPageQueryDTO);
         log.info("查询完毕");
-        // 封装剩余数据
-        for (SetmealVO setmealVO : page) {
-            setmealVO.setCategoryName(categoryMapper.SelectNameById(setmealVO.getCategoryId()));
-            setmealVO.setSetmealDishes(setMealDishMapper.selectByDishId(setmealVO.getId()));
-        }
+        // 分类名称已在分页查询中关联，套餐菜品一次批量查询
+        fillSetmealDishes(page);
         // 封装PageResult对象
         PageResult pageResult = new PageResult();
-        pageResult.setTotal(pageResult.getTotal());
+        pageResult.setTotal(page.getTotal());
         pageResult.setRecords(page.getResult());
         return pageResult;
     }
@@ -172,15 +163,23 @@ public class SetMealServiceImpl implements SetMealService {
      */
     @Override
     public List<DishItemVO> SelectByDishId(Long id) {
-        List<SetmealDish> dishList = setMealDishMapper.selectByDishId(id);
-        List<DishItemVO> list  = new ArrayList<>(dishList.size());
-        for (SetmealDish setmealDish : dishList) {
-            DishVO dishVO = dishMapper.selectByDishId(setmealDish.getDishId());
-            DishItemVO dishItemVO = new DishItemVO();
-            BeanUtils.copyProperties(dishVO,dishItemVO);
-            dishItemVO.setCopies(setmealDish.getCopies());
-            list.add(dishItemVO);
+        // 套餐菜品和菜品信息一次关联查询
+        return setMealDishMapper.selectDishItemsBySetmealId(id);
+    }
+
+    /**
+     * 批量填充套餐包含的菜品，一页套餐只查询一次套餐菜品表
+     * @param setmealVOList
+     */
+    private void fillSetmealDishes(List<SetmealVO> setmealVOList) {
+        if (setmealVOList == null || setmealVOList.isEmpty()) {
+            return;
+        }
+        List<Long> setmealIds = setmealVOList.stream().map(SetmealVO::getId).collect(Collectors.toList());
+        Map<Long, List<SetmealDish>> setmealDishMap = setMealDishMapper.selectBySetmealIds(setmealIds).stream()
+                .collect(Collectors.groupingBy(SetmealDish::getSetmealId));
+        for (SetmealVO setmealVO : setmealVOList) {
+            setmealVO.setSetmealDishes(setmealDishMap.getOrDefault(setmealVO.getId(), new ArrayList<>()));
         }
-        return list;
     }
 }
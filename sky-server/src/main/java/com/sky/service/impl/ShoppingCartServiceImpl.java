@@ -1,9 +1,11 @@
 package com.sky.service.impl;
 
+import com.sky.cart.ShoppingCartStore;
+import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.ShoppingCartDTO;
-import com.sky.entity.Dish;
 import com.sky.entity.ShoppingCart;
+import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetMealMapper;
 import com.sky.mapper.ShoppingCartMapper;
@@ -11,19 +13,26 @@ import com.sky.service.ShoppingCartService;
 import com.sky.vo.DishVO;
 import com.sky.vo.SetmealVO;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.ibatis.annotations.Mapper;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Supplier;
 
+/**
+ * 购物车保存在Redis中，增删改查都不访问数据库；
+ * 修改过的购物车由定时任务写回数据库
+ */
 @Slf4j
 @Service
 public class ShoppingCartServiceImpl implements ShoppingCartService {
 
+    // 购物车过期或并发删除商品时最多重试的次数
+    private static final int MAX_ATTEMPTS = 3;
+
     @Autowired
     private ShoppingCartMapper shoppingCartMapper;
 
@@ -33,49 +42,21 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     @Autowired
     private SetMealMapper setMealMapper;
 
+    @Autowired
+    private ShoppingCartStore shoppingCartStore;
+
     /**
      * 添加购物车
      * @param shoppingCartDTO
      */
     @Override
     public void add(ShoppingCartDTO shoppingCartDTO) {
-        // 我们需要先判断购物车数据库中是否有我们传进来的购物车DTO对象，
-        // 如果没有的话就需要进行一个插入操作，如果有的话就要进行一个更新操作，更新菜品的数量和价钱
-        // 我们现在有了菜品id和套餐id，我们需要拿到用户的id并且根据菜品的id来查询菜品的数据
-        // 新建购物车和菜品对象，方便下一步的插入和更新操作
+        // 商品已经在购物车中时直接数量+1，不需要查询商品信息
+        // 只有第一次加入购物车的商品才需要查询名称、图片和价格
         Long userId = BaseContext.getCurrentId();
-        ShoppingCart shoppingCart = new ShoppingCart();
-        BeanUtils.copyProperties(shoppingCartDTO,shoppingCart);
-        shoppingCart.setUserId(userId);
-
-        List<ShoppingCart> list = shoppingCartMapper.SelectByUserIdWithDTO(shoppingCart);
-        //如果获取到的数据不为空，那么就数量+1,更新到数据库中
-        if (list != null && list.size() > 0){
-            ShoppingCart cart = list.get(0);
-            cart.setNumber(cart.getNumber() + 1);
-            shoppingCartMapper.updateNumberById(cart);
-        }
-        // 如果商品不存在，那么就加入购物车
-        else {
-            // 如果前端传回来的是套餐对象,那么就需要封装套餐对象，并传入我们的购物车对象中
-            Long dishId = shoppingCartDTO.getDishId();
-            Long setmealId = shoppingCartDTO.getSetmealId();
-            if (dishId == null){
-                SetmealVO setmealVO = setMealMapper.SelectById(setmealId);
-                shoppingCart.setImage(setmealVO.getImage());
-                shoppingCart.setName(setmealVO.getName());
-                shoppingCart.setAmount(setmealVO.getPrice());
-            }else {
-                DishVO dishVO = dishMapper.selectByDishId(dishId);
-                shoppingCart.setImage(dishVO.getImage());
-                shoppingCart.setName(dishVO.getName());
-                shoppingCart.setAmount(dishVO.getPrice());
-            }
-            shoppingCart.setNumber(1);
-            shoppingCart.setCreateTime(LocalDateTime.now());
-            shoppingCartMapper.add(shoppingCart);
-        }
-
+        String field = ShoppingCartStore.field(shoppingCartDTO.getDishId(), shoppingCartDTO.getSetmealId(),
+                shoppingCartDTO.getDishFlavor());
+        increment(userId, field, 1, null, () -> buildItem(shoppingCartDTO));
     }
 
     /**
@@ -85,8 +66,7 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     @Override
     public List<ShoppingCart> list() {
         Long userId = BaseContext.getCurrentId();
-        List<ShoppingCart> list = shoppingCartMapper.list(userId);
-        return list;
+        return listByUserId(userId);
     }
 
     /**
@@ -95,24 +75,11 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
      */
     @Override
     public void sub(ShoppingCartDTO shoppingCartDTO) {
-        // 先判断商品的数量是多少
-        // 如果商品的数量大于一那么执行的就是更新操作
-        // 如果商品的数量等于一那么执行的就是删除操作
+        // 数量减一，减到0时Redis中直接删除这个商品
         Long userId = BaseContext.getCurrentId();
-        // 新建购物车对象，进行赋值
-        ShoppingCart shoppingCart = new ShoppingCart();
-        BeanUtils.copyProperties(shoppingCartDTO,shoppingCart);
-        shoppingCart.setUserId(userId);
-        // 搜索商品数量
-        List<ShoppingCart> list = shoppingCartMapper.SelectByUserIdWithDTO(shoppingCart);
-        ShoppingCart cart = list.get(0);
-        // 判断商品数量
-        if (cart.getNumber() > 1){
-            cart.setNumber(cart.getNumber() - 1);
-            shoppingCartMapper.updateNumberById(cart);
-        }else {
-            shoppingCartMapper.delete(cart);
-        }
+        String field = ShoppingCartStore.field(shoppingCartDTO.getDishId(), shoppingCartDTO.getSetmealId(),
+                shoppingCartDTO.getDishFlavor());
+        increment(userId, field, -1, null, () -> null);
     }
 
     /**
@@ -121,8 +88,115 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     @Override
     public void clean() {
         Long userId = BaseContext.getCurrentId();
+        shoppingCartStore.clear(userId);
+        shoppingCartStore.markDirty(userId);
+    }
+
+    /**
+     * 查询指定用户的购物车
+     * @param userId
+     * @return
+     */
+    @Override
+    public List<ShoppingCart> listByUserId(Long userId) {
+        List<ShoppingCart> list = shoppingCartStore.list(userId);
+        if (list == null) {
+            // Redis中没有这个用户的购物车，从数据库加载一次
+            load(userId);
+            list = shoppingCartStore.list(userId);
+        }
+        return list;
+    }
+
+    /**
+     * 批量加入购物车，已有的商品累加数量
+     * @param shoppingCarts
+     */
+    @Override
+    public void addBatch(List<ShoppingCart> shoppingCarts) {
+        for (ShoppingCart cart : shoppingCarts) {
+            String field = ShoppingCartStore.field(cart.getDishId(), cart.getSetmealId(), cart.getDishFlavor());
+            increment(cart.getUserId(), field, cart.getNumber(), cart, () -> cart);
+        }
+    }
+
+    /**
+     * 下单后清空指定用户的购物车，数据库中的数据由写回任务删除
+     * @param userId
+     */
+    @Override
+    public void cleanByUserId(Long userId) {
+        shoppingCartStore.clear(userId);
+        // 标记为待写回，同时防止正在执行的写回任务把旧数据留在数据库中
+        shoppingCartStore.markDirty(userId);
+    }
+
+    /**
+     * 把Redis中的购物车写回数据库
+     * @param userId
+     */
+    @Transactional(rollbackFor = Exception.class)
+    @Override
+    public void persist(Long userId) {
+        List<ShoppingCart> list = shoppingCartStore.list(userId);
+        if (list == null) {
+            // Redis中的购物车已经过期，数据库中的数据就是最新的
+            return;
+        }
         shoppingCartMapper.clean(userId);
+        if (!list.isEmpty()) {
+            shoppingCartMapper.insertBatch(list);
+        }
+    }
+
+    /**
+     * 增减购物车中商品的数量，购物车不在Redis中时先从数据库加载，新商品再查询商品信息
+     */
+    private void increment(Long userId, String field, int delta, ShoppingCart item, Supplier<ShoppingCart> itemLoader) {
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            long number = shoppingCartStore.increment(userId, field, delta, item);
+            if (number == ShoppingCartStore.NOT_LOADED) {
+                load(userId);
+            } else if (number == ShoppingCartStore.ITEM_MISSING) {
+                item = itemLoader.get();
+            } else {
+                shoppingCartStore.markDirty(userId);
+                return;
+            }
+        }
+        throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_BUSY);
+    }
+
+    /**
+     * 从数据库加载购物车到Redis
+     */
+    private void load(Long userId) {
+        List<ShoppingCart> list = shoppingCartMapper.list(userId);
+        shoppingCartStore.load(userId, list);
     }
 
+    /**
+     * 查询新加入购物车的菜品或套餐信息
+     */
+    private ShoppingCart buildItem(ShoppingCartDTO shoppingCartDTO) {
+        ShoppingCart shoppingCart = new ShoppingCart();
+        BeanUtils.copyProperties(shoppingCartDTO, shoppingCart);
+        // 如果前端传回来的是套餐对象,那么就需要封装套餐对象，并传入我们的购物车对象中
+        Long dishId = shoppingCartDTO.getDishId();
+        Long setmealId = shoppingCartDTO.getSetmealId();
+        if (dishId == null){
+            SetmealVO setmealVO = setMealMapper.SelectById(setmealId);
+            shoppingCart.setImage(setmealVO.getImage());
+            shoppingCart.setName(setmealVO.getName());
+            shoppingCart.setAmount(setmealVO.getPrice());
+        }else {
+            DishVO dishVO = dishMapper.selectByDishId(dishId);
+            shoppingCart.setImage(dishVO.getImage());
+            shoppingCart.setName(dishVO.getName());
+            shoppingCart.setAmount(dishVO.getPrice());
+        }
+        shoppingCart.setCreateTime(LocalDateTime.now());
+        return shoppingCart;
+    }
 
 }
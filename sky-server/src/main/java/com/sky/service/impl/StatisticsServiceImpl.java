@@ -0,0 +1,304 @@
+package com.sky.service.impl;
+
+import com.sky.dto.DailyStatisticsDTO;
+import com.sky.entity.BusinessDailyStats;
+import com.sky.entity.Orders;
+import com.sky.mapper.BusinessDailyStatsMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.service.StatisticsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Slf4j
+@Service
+public class StatisticsServiceImpl implements StatisticsService {
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private BusinessDailyStatsMapper businessDailyStatsMapper;
+
+    /**
+     * 按天统计营业数据
+     * 今天之前的日期读取每日汇总表，汇总表中缺失或未校对的日期按一个区间从源数据重建；
+     * 今天的数据实时计算，每个指标只查询一次，缺失的日期在内存中补0
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Override
+    public List<DailyStatisticsDTO> getDailyStatistics(LocalDate begin, LocalDate end) {
+        List<DailyStatisticsDTO> result = new ArrayList<>();
+        if (begin.isAfter(end)) {
+            return result;
+        }
+        LocalDate today = LocalDate.now();
+        Map<LocalDate, BusinessDailyStats> dailyMap = new LinkedHashMap<>();
+        // 历史日期读取汇总表
+        LocalDate historyEnd = end.isBefore(today) ? end : today.minusDays(1);
+        if (!begin.isAfter(historyEnd)) {
+            dailyMap.putAll(loadHistory(begin, historyEnd));
+        }
+        // 今天及以后的日期实时计算
+        LocalDate liveBegin = begin.isAfter(today) ? begin : today;
+        if (!liveBegin.isAfter(end)) {
+            Integer totalUsersBefore = null;
+            BusinessDailyStats yesterday = dailyMap.get(liveBegin.minusDays(1));
+            if (yesterday != null) {
+                totalUsersBefore = yesterday.getTotalUsers();
+            }
+            dailyMap.putAll(computeFromSource(liveBegin, end, totalUsersBefore));
+        }
+        for (BusinessDailyStats stats : dailyMap.values()) {
+            result.add(DailyStatisticsDTO.builder()
+                    .date(stats.getStatDate())
+                    .orderCount(stats.getTotalOrderCount())
+                    .validOrderCount(stats.getValidOrderCount())
+                    .turnover(stats.getTurnover().doubleValue())
+                    .newUsers(stats.getNewUsers())
+                    .totalUsers(stats.getTotalUsers())
+                    .build());
+        }
+        return result;
+    }
+
+    /**
+     * 从源数据重建每日汇总并写回汇总表
+     * 只有今天之前的日期标记为已校对，今天的新增用户仍在变化
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Override
+    public List<BusinessDailyStats> rebuild(LocalDate begin, LocalDate end) {
+        List<BusinessDailyStats> list = new ArrayList<>(computeFromSource(begin, end, null).values());
+        if (list.isEmpty()) {
+            return list;
+        }
+        LocalDate today = LocalDate.now();
+        LocalDateTime now = LocalDateTime.now();
+        for (BusinessDailyStats stats : list) {
+            stats.setReconciled(stats.getStatDate().isBefore(today) ? 1 : 0);
+            stats.setUpdateTime(now);
+        }
+        businessDailyStatsMapper.insertOrUpdateBatch(list);
+        log.info("每日营业汇总已重建：{}至{}", begin, end);
+        return list;
+    }
+
+    /**
+     * 订单状态变化时增量更新每日汇总
+     * 汇总失败不影响订单业务，由夜间校对修正
+     * @param orderTime
+     * @param fromStatus
+     * @param toStatus
+     * @param amount
+     */
+    @Override
+    public void onOrderStatusChange(LocalDateTime orderTime, Integer fromStatus, Integer toStatus, BigDecimal amount) {
+        if (orderTime == null) {
+            return;
+        }
+        BusinessDailyStats delta = emptyDay(orderTime.toLocalDate());
+        if (fromStatus == null) {
+            delta.setTotalOrderCount(1);
+        }
+        addStatus(delta, fromStatus, -1, amount);
+        addStatus(delta, toStatus, 1, amount);
+        delta.setUpdateTime(LocalDateTime.now());
+        try {
+            businessDailyStatsMapper.applyDelta(delta);
+        } catch (Exception e) {
+            log.warn("更新每日营业汇总失败，等待夜间校对：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 一批订单状态变化时按下单日期合并增量，每天只更新一次汇总
+     * @param orders
+     * @param fromStatus
+     * @param toStatus
+     */
+    @Override
+    public void onOrdersStatusChange(List<Orders> orders, Integer fromStatus, Integer toStatus) {
+        Map<LocalDate, BusinessDailyStats> deltas = new TreeMap<>();
+        for (Orders order : orders) {
+            if (order.getOrderTime() == null) {
+                continue;
+            }
+            BusinessDailyStats delta = deltas.computeIfAbsent(order.getOrderTime().toLocalDate(), this::emptyDay);
+            addStatus(delta, fromStatus, -1, order.getAmount());
+            addStatus(delta, toStatus, 1, order.getAmount());
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (BusinessDailyStats delta : deltas.values()) {
+            delta.setUpdateTime(now);
+            try {
+                businessDailyStatsMapper.applyDelta(delta);
+            } catch (Exception e) {
+                log.warn("更新每日营业汇总失败，等待夜间校对：{}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 读取历史日期的汇总，缺失或未校对的日期从源数据重建
+     * @param begin
+     * @param end
+     * @return
+     */
+    private Map<LocalDate, BusinessDailyStats> loadHistory(LocalDate begin, LocalDate end) {
+        Map<LocalDate, BusinessDailyStats> dailyMap = new LinkedHashMap<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            dailyMap.put(date, null);
+        }
+        for (BusinessDailyStats stats : businessDailyStatsMapper.selectByRange(begin, end)) {
+            if (Integer.valueOf(1).equals(stats.getReconciled()) && dailyMap.containsKey(stats.getStatDate())) {
+                dailyMap.put(stats.getStatDate(), stats);
+            }
+        }
+        // 找到需要重建的最小区间
+        LocalDate missingBegin = null;
+        LocalDate missingEnd = null;
+        for (Map.Entry<LocalDate, BusinessDailyStats> entry : dailyMap.entrySet()) {
+            if (entry.getValue() == null) {
+                if (missingBegin == null) {
+                    missingBegin = entry.getKey();
+                }
+                missingEnd = entry.getKey();
+            }
+        }
+        if (missingBegin != null) {
+            for (BusinessDailyStats stats : rebuild(missingBegin, missingEnd)) {
+                dailyMap.put(stats.getStatDate(), stats);
+            }
+        }
+        return dailyMap;
+    }
+
+    /**
+     * 从订单表和用户表计算区间内的每日汇总，每个指标只查询一次
+     * @param begin
+     * @param end
+     * @param totalUsersBefore 区间开始前的用户总量，未知时传null
+     * @return
+     */
+    private Map<LocalDate, BusinessDailyStats> computeFromSource(LocalDate begin, LocalDate end, Integer totalUsersBefore) {
+        // 先为区间内的每一天生成一条空数据
+        Map<LocalDate, BusinessDailyStats> dailyMap = new LinkedHashMap<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            dailyMap.put(date, emptyDay(date));
+        }
+        if (dailyMap.isEmpty()) {
+            return dailyMap;
+        }
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end, LocalTime.MAX);
+        // 订单数、各状态订单数、营业额
+        for (BusinessDailyStats row : orderMapper.selectDailyStatistics(beginTime, endTime)) {
+            BusinessDailyStats day = dailyMap.get(row.getStatDate());
+            if (day == null) {
+                continue;
+            }
+            day.setTotalOrderCount(orZero(row.getTotalOrderCount()));
+            day.setValidOrderCount(orZero(row.getValidOrderCount()));
+            day.setTurnover(row.getTurnover() == null ? BigDecimal.ZERO : row.getTurnover());
+            day.setPendingPaymentCount(orZero(row.getPendingPaymentCount()));
+            day.setToBeConfirmedCount(orZero(row.getToBeConfirmedCount()));
+            day.setConfirmedCount(orZero(row.getConfirmedCount()));
+            day.setDeliveryInProgressCount(orZero(row.getDeliveryInProgressCount()));
+            day.setCompletedCount(orZero(row.getCompletedCount()));
+            day.setCancelledCount(orZero(row.getCancelledCount()));
+        }
+        // 新增用户数
+        for (DailyStatisticsDTO row : userMapper.selectDailyNewUsers(beginTime, endTime)) {
+            BusinessDailyStats day = dailyMap.get(row.getDate());
+            if (day != null) {
+                day.setNewUsers(orZero(row.getNewUsers()));
+            }
+        }
+        // 用户总量 = 区间开始前的用户数 + 逐日累加的新增用户
+        Integer totalUsers = totalUsersBefore;
+        if (totalUsers == null) {
+            totalUsers = orZero(userMapper.selectByDate(beginTime));
+        }
+        for (BusinessDailyStats day : dailyMap.values()) {
+            totalUsers += day.getNewUsers();
+            day.setTotalUsers(totalUsers);
+        }
+        return dailyMap;
+    }
+
+    /**
+     * 按订单状态累加计数，已完成订单同时计入有效订单数和营业额
+     * @param stats
+     * @param status
+     * @param count
+     * @param amount
+     */
+    private void addStatus(BusinessDailyStats stats, Integer status, int count, BigDecimal amount) {
+        if (status == null) {
+            return;
+        }
+        if (Orders.PENDING_PAYMENT.equals(status)) {
+            stats.setPendingPaymentCount(stats.getPendingPaymentCount() + count);
+        } else if (Orders.TO_BE_CONFIRMED.equals(status)) {
+            stats.setToBeConfirmedCount(stats.getToBeConfirmedCount() + count);
+        } else if (Orders.CONFIRMED.equals(status)) {
+            stats.setConfirmedCount(stats.getConfirmedCount() + count);
+        } else if (Orders.DELIVERY_IN_PROGRESS.equals(status)) {
+            stats.setDeliveryInProgressCount(stats.getDeliveryInProgressCount() + count);
+        } else if (Orders.COMPLETED.equals(status)) {
+            stats.setCompletedCount(stats.getCompletedCount() + count);
+            stats.setValidOrderCount(stats.getValidOrderCount() + count);
+            if (amount != null) {
+                stats.setTurnover(stats.getTurnover().add(amount.multiply(BigDecimal.valueOf(count))));
+            }
+        } else if (Orders.CANCELLED.equals(status)) {
+            stats.setCancelledCount(stats.getCancelledCount() + count);
+        }
+    }
+
+    /**
+     * 构造没有任何数据的一天
+     * @param date
+     * @return
+     */
+    private BusinessDailyStats emptyDay(LocalDate date) {
+        return BusinessDailyStats.builder()
+                .statDate(date)
+                .turnover(BigDecimal.ZERO)
+                .totalOrderCount(0)
+                .validOrderCount(0)
+                .newUsers(0)
+                .totalUsers(0)
+                .pendingPaymentCount(0)
+                .toBeConfirmedCount(0)
+                .confirmedCount(0)
+                .deliveryInProgressCount(0)
+                .completedCount(0)
+                .cancelledCount(0)
+                .reconciled(0)
+                .build();
+    }
+
+    private Integer orZero(Integer value) {
+        return value == null ? 0 : value;
+    }
+}
@@ -1,23 +1,30 @@
 package com.sky.service.impl;
 
+import com.sky.dto.DailyStatisticsDTO;
+import com.sky.entity.BusinessDailyStats;
 import com.sky.entity.Orders;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.SetMealMapper;
 import com.sky.mapper.UserMapper;
+import com.sky.properties.WorkspaceProperties;
+import com.sky.service.StatisticsService;
 import com.sky.service.WorkSpaceService;
 import com.sky.vo.BusinessDataVO;
 import com.sky.vo.DishOverViewVO;
 import com.sky.vo.OrderOverViewVO;
 import com.sky.vo.SetmealOverViewVO;
+import com.sky.vo.WorkspaceDashboardVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
@@ -36,6 +43,16 @@ public class WorkSpaceServiceImpl implements WorkSpaceService {
     @Autowired
     private OrderMapper orderMapper;
 
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private WorkspaceProperties workspaceProperties;
+
+    private final Object dashboardLock = new Object();
+
+    private volatile DashboardSnapshot dashboardSnapshot;
+
     /**
      * 今日数据统计
      * @return
@@ -48,40 +65,36 @@ public class WorkSpaceServiceImpl implements WorkSpaceService {
 //        LocalDate localDate = LocalDate.now();
 //        LocalDateTime beginTime = LocalDateTime.of(localDate, LocalTime.MIN);
 //        LocalDateTime endTime = LocalDateTime.of(localDate, LocalTime.MAX);
-        Map map = new HashMap();
-        map.put("beginTime",begin);
-        map.put("endTime",end);
-        // 获取所有订单数
-        Integer totalOrderCount = orderMapper.selectCountByMap(map);
-        totalOrderCount = totalOrderCount == null ? 0 : totalOrderCount;
-        // 获取有效订单
-        map.put("status", Orders.COMPLETED);
-        Integer validOrderCount = orderMapper.selectCountByMap(map);
-        validOrderCount = validOrderCount == null ? 0 : validOrderCount;
-        // 今日营业额查询
-        Double turnOver = orderMapper.selectAmountByMap(map);
-        turnOver = turnOver == null ? 0.0 : turnOver;
-        // 获得订单完成率
-        Double orderCompletionRate = validOrderCount.doubleValue() / totalOrderCount;
-        if (validOrderCount == 0){
-            orderCompletionRate = 0.0;
+        Integer totalOrderCount = 0;
+        Integer validOrderCount = 0;
+        Double turnOver = 0.0;
+        Integer newUsers = 0;
+        if (isWholeDays(begin, end)) {
+            // 整天的区间读取每日汇总，只有今天实时计算
+            for (DailyStatisticsDTO day : statisticsService.getDailyStatistics(begin.toLocalDate(), end.toLocalDate())) {
+                totalOrderCount += day.getOrderCount();
+                validOrderCount += day.getValidOrderCount();
+                turnOver += day.getTurnover();
+                newUsers += day.getNewUsers();
+            }
+        } else {
+            Map map = new HashMap();
+            map.put("beginTime",begin);
+            map.put("endTime",end);
+            // 获取所有订单数
+            totalOrderCount = orderMapper.selectCountByMap(map);
+            totalOrderCount = totalOrderCount == null ? 0 : totalOrderCount;
+            // 获取有效订单
+            map.put("status", Orders.COMPLETED);
+            validOrderCount = orderMapper.selectCountByMap(map);
+            validOrderCount = validOrderCount == null ? 0 : validOrderCount;
+            // 今日营业额查询
+            turnOver = orderMapper.selectAmountByMap(map);
+            turnOver = turnOver == null ? 0.0 : turnOver;
+            // 获取新增用户数
+            newUsers = userMapper.selectNewByDate(begin, end);
         }
-        // 获取平均客单价
-        Double unitPrice = turnOver / validOrderCount;
-        if (turnOver == 0){
-            unitPrice = 0.0;
-        }
-        // 获取新增用户数
-        Integer newUsers = userMapper.selectNewByDate(begin, end);
-        // 封装
-        return BusinessDataVO
-                .builder()
-                .turnover(turnOver)
-                .validOrderCount(validOrderCount)
-                .orderCompletionRate(orderCompletionRate)
-                .unitPrice(unitPrice)
-                .newUsers(newUsers)
-                .build();
+        return buildBusinessData(totalOrderCount, validOrderCount, turnOver, newUsers);
 //        Map map = new HashMap();
 //        map.put("begin",begin);
 //        map.put("end",end);
@@ -119,41 +132,54 @@ public class WorkSpaceServiceImpl implements WorkSpaceService {
 //                .build();
     }
 
+    /**
+     * 计算订单完成率和平均客单价
+     * @param totalOrderCount
+     * @param validOrderCount
+     * @param turnOver
+     * @param newUsers
+     * @return
+     */
+    private BusinessDataVO buildBusinessData(Integer totalOrderCount, Integer validOrderCount, Double turnOver, Integer newUsers) {
+        // 获得订单完成率
+        Double orderCompletionRate = validOrderCount.doubleValue() / totalOrderCount;
+        if (validOrderCount == 0){
+            orderCompletionRate = 0.0;
+        }
+        // 获取平均客单价
+        Double unitPrice = turnOver / validOrderCount;
+        if (turnOver == 0){
+            unitPrice = 0.0;
+        }
+        // 封装
+        return BusinessDataVO
+                .builder()
+                .turnover(turnOver)
+                .validOrderCount(validOrderCount)
+                .orderCompletionRate(orderCompletionRate)
+                .unitPrice(unitPrice)
+                .newUsers(newUsers)
+                .build();
+    }
+
+    /**
+     * 判断区间是否由完整的自然日组成
+     * @param begin
+     * @param end
+     * @return
+     */
+    private boolean isWholeDays(LocalDateTime begin, LocalDateTime end) {
+        return begin.toLocalTime().equals(LocalTime.MIN) && end.toLocalTime().equals(LocalTime.MAX);
+    }
+
     /**
      * 订单数据统计
      * @return
      */
     @Override
     public OrderOverViewVO overviewOrders() {
-        // 获取到今日时间
-        LocalDate localDate = LocalDate.now();
-        LocalDateTime beginTime = LocalDateTime.of(localDate, LocalTime.MIN);
-        LocalDateTime endTime = LocalDateTime.of(localDate, LocalTime.MAX);
-        Map map = new HashMap();
-        map.put("beginTime",beginTime);
-        map.put("endTime",endTime);
-        // 获取到全部订单
-        Integer allOrders = orderMapper.selectCountByMap(map);
-        //获取到待接单订单
-        map.put("status",Orders.TO_BE_CONFIRMED);
-        Integer waitingOrders = orderMapper.selectCountByMap(map);
-        // 获取到带派送订单
-        map.replace("status",Orders.CONFIRMED);
-        Integer deliveredOrders = orderMapper.selectCountByMap(map);
-        // 获取到已取消订单
-        map.replace("status",Orders.CANCELLED);
-        Integer cancelledOrders = orderMapper.selectCountByMap(map);
-        // 获取到已完成订单
-        map.replace("status",Orders.COMPLETED);
-        Integer completedOrders = orderMapper.selectCountByMap(map);
-        return OrderOverViewVO
-                .builder()
-                .waitingOrders(waitingOrders)
-                .deliveredOrders(deliveredOrders)
-                .cancelledOrders(cancelledOrders)
-                .completedOrders(completedOrders)
-                .allOrders(allOrders)
-                .build();
+        // 一次查询统计今日各状态订单数
+        return buildOrderOverview(todayOrders());
     }
 
     /**
@@ -162,15 +188,8 @@ public class WorkSpaceServiceImpl implements WorkSpaceService {
      */
     @Override
     public DishOverViewVO overviewDishes() {
-        // 获取到已起售数量
-        Integer sold = dishMapper.selectCountByStatus(1);
-        // 获取到已停售数量
-        Integer discontinued = dishMapper.selectCountByStatus(0);
-        return DishOverViewVO
-                .builder()
-                .sold(sold)
-                .discontinued(discontinued)
-                .build();
+        // 一次查询统计起售和停售数量
+        return dishMapper.selectOverview();
     }
 
     /**
@@ -179,15 +198,100 @@ public class WorkSpaceServiceImpl implements WorkSpaceService {
      */
     @Override
     public SetmealOverViewVO overviewSetmeals() {
-        // 获取到已起售数量
-        Integer sold = setMealMapper.selectCountByStatus(1);
-        // 获取到已停售数量
-        Integer discontinued = setMealMapper.selectCountByStatus(0);
+        // 一次查询统计起售和停售数量
+        return setMealMapper.selectOverview();
+    }
+
+    /**
+     * 工作台数据快照，短时间内所有管理端共用同一份
+     * 快照过期后只有一个线程重新查询，其余线程等待它的结果
+     * @return
+     */
+    @Override
+    public WorkspaceDashboardVO getDashboard() {
+        DashboardSnapshot snapshot = dashboardSnapshot;
+        if (snapshot != null && snapshot.isFresh()) {
+            return snapshot.dashboard;
+        }
+        synchronized (dashboardLock) {
+            snapshot = dashboardSnapshot;
+            if (snapshot == null || !snapshot.isFresh()) {
+                snapshot = new DashboardSnapshot(loadDashboard(),
+                        System.currentTimeMillis() + workspaceProperties.getDashboardTtlMillis());
+                dashboardSnapshot = snapshot;
+            }
+            return snapshot.dashboard;
+        }
+    }
+
+    /**
+     * 查询工作台数据，每张表只查询一次
+     * @return
+     */
+    private WorkspaceDashboardVO loadDashboard() {
+        LocalDate localDate = LocalDate.now();
+        BusinessDailyStats orders = todayOrders();
+        Integer newUsers = userMapper.selectNewByDate(LocalDateTime.of(localDate, LocalTime.MIN), LocalDateTime.of(localDate, LocalTime.MAX));
+        BusinessDataVO businessData = buildBusinessData(orders.getTotalOrderCount(), orders.getValidOrderCount(),
+                orders.getTurnover().doubleValue(), newUsers == null ? 0 : newUsers);
+        return WorkspaceDashboardVO
+                .builder()
+                .businessData(businessData)
+                .orderOverview(buildOrderOverview(orders))
+                .dishOverview(dishMapper.selectOverview())
+                .setmealOverview(setMealMapper.selectOverview())
+                .generatedAt(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * 按状态汇总今日订单，没有订单时各项为0
+     * @return
+     */
+    private BusinessDailyStats todayOrders() {
+        LocalDate localDate = LocalDate.now();
+        List<BusinessDailyStats> list = orderMapper.selectDailyStatistics(LocalDateTime.of(localDate, LocalTime.MIN),
+                LocalDateTime.of(localDate, LocalTime.MAX));
+        if (list != null && !list.isEmpty()) {
+            return list.get(0);
+        }
+        return BusinessDailyStats
+                .builder()
+                .statDate(localDate)
+                .turnover(BigDecimal.ZERO)
+                .totalOrderCount(0)
+                .validOrderCount(0)
+                .toBeConfirmedCount(0)
+                .confirmedCount(0)
+                .completedCount(0)
+                .cancelledCount(0)
+                .build();
+    }
 
-        return SetmealOverViewVO
+    private OrderOverViewVO buildOrderOverview(BusinessDailyStats orders) {
+        return OrderOverViewVO
                 .builder()
-                .sold(sold)
-                .discontinued(discontinued)
+                .waitingOrders(orders.getToBeConfirmedCount())
+                .deliveredOrders(orders.getConfirmedCount())
+                .cancelledOrders(orders.getCancelledCount())
+                .completedOrders(orders.getCompletedCount())
+                .allOrders(orders.getTotalOrderCount())
                 .build();
     }
+
+    private static class DashboardSnapshot {
+
+        private final WorkspaceDashboardVO dashboard;
+
+        private final long expireAt;
+
+        DashboardSnapshot(WorkspaceDashboardVO dashboard, long expireAt) {
+            this.dashboard = dashboard;
+            this.expireAt = expireAt;
+        }
+
+        boolean isFresh() {
+            return System.currentTimeMillis() < expireAt;
+        }
+    }
 }
@@ -1,7 +1,11 @@
 package com.sky.task;
 
 import com.sky.entity.Orders;
+import com.sky.lease.JobLeaseManager;
 import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderProperties;
+import com.sky.service.OrderExpireService;
+import com.sky.service.OrderTransitionService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -21,23 +25,57 @@ public class OrderTask {
     @Autowired
     private OrderMapper orderMapper;
 
+    @Autowired
+    private OrderTransitionService orderTransitionService;
+
+    @Autowired
+    private OrderExpireService orderExpireService;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    @Autowired
+    private JobLeaseManager jobLeaseManager;
+
+    /**
+     * 取消到期未支付的订单
+     * 每秒领取一批到期的订单，一批取消不完且仍持有任务租约时继续领取；取消失败的订单重新登记
+     */
+    @Scheduled(fixedDelayString = "${sky.order.expire-poll-millis:1000}")
+    public void expireUnpaidOrders(){
+        int batchSize = orderProperties.getExpireBatchSize();
+        List<Long> orderIds;
+        do {
+            orderIds = orderExpireService.claimDue(batchSize);
+            if (orderIds.isEmpty()){
+                return;
+            }
+            try {
+                orderExpireService.cancelExpired(orderIds);
+            } catch (Exception e) {
+                log.error("取消超时未支付订单失败：{}", orderIds, e);
+                orderExpireService.requeue(orderIds);
+                return;
+            }
+        } while (orderIds.size() == batchSize && jobLeaseManager.renew());
+    }
+
     /**
      * 定时检查用户未支付状态
+     * 超时订单由到期队列准时取消，这里只兜底处理没有登记到队列中的订单
      */
-    @Scheduled(cron = "0 * * * * ?")
+    @Scheduled(cron = "0 */10 * * * ?")
     public void CheckOrderInUnPaid(){
         log.info("正在检查用户未支付状态:{}",new Date());
         // 获取到当前超时的订单
-        LocalDateTime time = LocalDateTime.now().minusMinutes(15);
-        List<Orders> list = orderMapper.selectByStatus(Orders.UN_PAID,time);
-        if (list != null && list.size() > 0){
-            for (Orders orders : list) {
-                orders.setStatus(Orders.CANCELLED);
-                orders.setCancelReason("付款超时");
-                orders.setCancelTime(LocalDateTime.now());
-                orderMapper.update(orders);
-            }
-        }
+        LocalDateTime time = LocalDateTime.now().minusMinutes(orderProperties.getPayTimeoutMinutes());
+        Orders target = Orders.builder()
+                .status(Orders.CANCELLED)
+                .cancelReason("付款超时")
+                .cancelTime(LocalDateTime.now())
+                .build();
+        int count = transitionBefore(Orders.PENDING_PAYMENT, time, target);
+        log.info("取消超时未支付订单{}个", count);
     }
 
     /**
@@ -48,13 +86,36 @@ public class OrderTask {
         log.info("正在定时处理打烊时送达的餐品：{}",new Date());
         // 查找数据
         LocalDateTime time = LocalDateTime.now().minusMinutes(60);
-        List<Orders> list = orderMapper.selectByStatus(Orders.DELIVERY_IN_PROGRESS, time);
-        // 更新
-        if (list != null && list.size() > 0){
-            for (Orders orders : list) {
-                orders.setStatus(Orders.COMPLETED);
-                orderMapper.update(orders);
+        int count = transitionBefore(Orders.DELIVERY_IN_PROGRESS, time, Orders.builder().status(Orders.COMPLETED).build());
+        log.info("完成派送中订单{}个", count);
+    }
+
+    /**
+     * 按主键分页扫描下单时间早于指定时间的订单，每页在一个事务中批量修改状态
+     * 只查询订单id，积压再多的订单也只占用一页的内存；某一页失败时跳过，下次执行再处理；
+     * 每页之前确认仍持有任务租约，租约已被其他节点接管时停止，剩余的订单由新的持有者处理
+     * @param fromStatus
+     * @param time
+     * @param target
+     * @return 实际修改的订单数
+     */
+    private int transitionBefore(Integer fromStatus, LocalDateTime time, Orders target){
+        int batchSize = orderProperties.getTransitionBatchSize();
+        int count = 0;
+        long afterId = 0;
+        List<Long> orderIds;
+        do {
+            orderIds = orderMapper.selectIdsByStatus(fromStatus, time, afterId, batchSize);
+            if (orderIds.isEmpty()){
+                break;
+            }
+            afterId = orderIds.get(orderIds.size() - 1);
+            try {
+                count += orderTransitionService.transition(orderIds, fromStatus, target);
+            } catch (Exception e) {
+                log.error("批量修改订单状态失败：{}", orderIds, e);
             }
-        }
+        } while (orderIds.size() == batchSize && jobLeaseManager.renew());
+        return count;
     }
 }
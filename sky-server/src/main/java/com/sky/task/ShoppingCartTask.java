@@ -0,0 +1,51 @@
+package com.sky.task;
+
+import com.sky.cart.ShoppingCartStore;
+import com.sky.properties.ShoppingCartProperties;
+import com.sky.service.ShoppingCartService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 购物车定时任务类
+ */
+@Slf4j
+@Component
+public class ShoppingCartTask {
+
+    @Autowired
+    private ShoppingCartStore shoppingCartStore;
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    @Autowired
+    private ShoppingCartProperties shoppingCartProperties;
+
+    /**
+     * 把修改过的购物车写回数据库
+     * 每次取出一批待写回的用户，写回失败的用户重新标记，下次再试
+     */
+    @Scheduled(fixedDelayString = "${sky.cart.flush-interval-millis:5000}")
+    public void flushDirtyCarts(){
+        List<Long> userIds = shoppingCartStore.popDirty(shoppingCartProperties.getFlushBatchSize());
+        if (userIds.isEmpty()){
+            return;
+        }
+        int failed = 0;
+        for (Long userId : userIds) {
+            try {
+                shoppingCartService.persist(userId);
+            } catch (Exception e) {
+                failed++;
+                shoppingCartStore.markDirty(userId);
+                log.error("购物车写回数据库失败，userId：{}", userId, e);
+            }
+        }
+        log.debug("购物车写回数据库：{}个用户，失败{}个", userIds.size(), failed);
+    }
+}
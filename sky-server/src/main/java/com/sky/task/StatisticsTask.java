@@ -0,0 +1,32 @@
+package com.sky.task;
+
+import com.sky.service.StatisticsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+/**
+ * 营业数据汇总定时任务类
+ */
+@Slf4j
+@Component
+public class StatisticsTask {
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    /**
+     * 每晚从源数据校对前两天的营业汇总
+     * 在打烊订单处理之后执行，前天的数据一并校对以覆盖跨天完成的订单
+     */
+    @Scheduled(cron = "0 0 2 * * ?")
+    public void reconcileDailyStats(){
+        log.info("正在校对每日营业汇总:{}",new Date());
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        statisticsService.rebuild(yesterday.minusDays(1), yesterday);
+    }
+}
@@ -0,0 +1,66 @@
+package com.sky.webSocket;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.properties.WorkspaceProperties;
+import com.sky.service.WorkSpaceService;
+import com.sky.vo.WorkspaceDashboardVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 工作台数据推送
+ * 定时检查工作台快照，数据变化时推送给连接在本节点上的管理端，管理端打开页面时查询一次，之后不再轮询；
+ * 每个节点都要推送给自己的连接，所以不放在com.sky.task下（那里的任务只在持有租约的节点上执行）
+ */
+@Slf4j
+@Component
+public class DashboardPusher {
+
+    // 消息类型，1、2、3见OrderNotification
+    public static final int DASHBOARD = 4;
+
+    // 还没发出的快照只保留最新的一份
+    private static final String COALESCE_KEY = "dashboard";
+
+    @Autowired
+    private WorkSpaceService workSpaceService;
+
+    @Autowired
+    private WebSocketServer webSocketServer;
+
+    @Autowired
+    private WorkspaceProperties workspaceProperties;
+
+    private WorkspaceDashboardVO lastPushed;
+
+    /**
+     * 工作台数据变化时推送
+     */
+    @Scheduled(fixedDelayString = "${sky.workspace.dashboard-push-millis:5000}")
+    public void push() {
+        if (!workspaceProperties.isDashboardPushEnabled() || webSocketServer.getSessionCount() == 0) {
+            return;
+        }
+        WorkspaceDashboardVO dashboard;
+        try {
+            dashboard = workSpaceService.getDashboard();
+        } catch (Exception e) {
+            log.warn("查询工作台数据失败：{}", e.getMessage());
+            return;
+        }
+        // 比较时忽略快照生成时间
+        if (dashboard.equals(lastPushed)) {
+            return;
+        }
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", DASHBOARD);
+        frame.put("dashboard", dashboard);
+        webSocketServer.sendToAllClient(JSON.toJSONString(frame), COALESCE_KEY);
+        lastPushed = dashboard;
+    }
+}
@@ -0,0 +1,163 @@
+package com.sky.webSocket;
+
+import com.sky.properties.NotifyProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisZSetCommands.Limit;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.stream.StreamListener;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer.StreamMessageListenerContainerOptions;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer.StreamReadRequest;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 跨节点通知总线
+ * 订单提醒写入店铺的Redis通知流 notify:shop:{店铺}，每个节点都读取自己转发的店铺的通知流，
+ * 再推送给连接在本节点上的该店铺的客户端；推送的消息带上通知流中的id，
+ * 客户端断线重连时带上最后收到的id，从通知流中补发断线期间的消息
+ */
+@Slf4j
+@Component
+public class NotificationBus implements StreamListener<String, MapRecord<String, String, String>> {
+
+    private static final String STREAM_KEY_PREFIX = "notify:shop:";
+
+    // 读取失败后等待一段时间再重试，Redis不可用时避免空转
+    private static final long ERROR_BACKOFF_MILLIS = 1000;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisConnectionFactory redisConnectionFactory;
+
+    @Autowired
+    private NotifyProperties notifyProperties;
+
+    @Autowired
+    private WebSocketServer webSocketServer;
+
+    private StreamMessageListenerContainer<String, MapRecord<String, String, String>> container;
+
+    /**
+     * 向当前店铺发布通知
+     * @param notification
+     * @return 消息在通知流中的id
+     */
+    public RecordId publish(OrderNotification notification) {
+        return publish(notifyProperties.getShopId(), notification);
+    }
+
+    /**
+     * 向指定店铺发布通知
+     * @param shopId
+     * @param notification
+     * @return 消息在通知流中的id
+     */
+    public RecordId publish(String shopId, OrderNotification notification) {
+        String key = STREAM_KEY_PREFIX + shopId;
+        RecordId id = stringRedisTemplate.opsForStream().add(StreamRecords.newRecord().in(key).ofMap(notification.toFields()));
+        stringRedisTemplate.opsForStream().trim(key, notifyProperties.getStreamMaxLen(), true);
+        return id;
+    }
+
+    /**
+     * 把通知流中的消息推送给本节点上该店铺的客户端
+     * 每条消息只生成一次文本帧，所有连接共用
+     * @param record
+     */
+    @Override
+    public void onMessage(MapRecord<String, String, String> record) {
+        String shopId = record.getStream().substring(STREAM_KEY_PREFIX.length());
+        OrderNotification notification = OrderNotification.fromFields(record.getValue());
+        webSocketServer.sendToShop(shopId, notification.encode(record.getId().getValue()), notification.coalesceKey());
+    }
+
+    /**
+     * 补发客户端最后收到的消息之后的通知
+     * @param shopId
+     * @param lastId 客户端最后收到的消息id
+     * @param consumer 按顺序接收补发的消息
+     * @return 补发的消息数
+     */
+    public int replay(String shopId, String lastId, Consumer<String> consumer) {
+        List<MapRecord<String, Object, Object>> records;
+        try {
+            records = stringRedisTemplate.opsForStream().range(STREAM_KEY_PREFIX + shopId,
+                    Range.rightUnbounded(Range.Bound.inclusive(lastId)),
+                    Limit.limit().count(notifyProperties.getReplayLimit() + 1));
+        } catch (Exception e) {
+            log.warn("补发店铺{}的通知失败，lastId：{}，{}", shopId, lastId, e.getMessage());
+            return 0;
+        }
+        int count = 0;
+        for (MapRecord<String, Object, Object> record : records) {
+            // 范围包含客户端已经收到的那一条
+            if (lastId.equals(record.getId().getValue()) || count >= notifyProperties.getReplayLimit()) {
+                continue;
+            }
+            consumer.accept(OrderNotification.fromFields(record.getValue()).encode(record.getId().getValue()));
+            count++;
+        }
+        return count;
+    }
+
+    @PostConstruct
+    public void start() {
+        StreamMessageListenerContainerOptions<String, MapRecord<String, String, String>> options =
+                StreamMessageListenerContainerOptions.builder()
+                        .pollTimeout(Duration.ofMillis(notifyProperties.getPollTimeoutMillis()))
+                        .build();
+        container = StreamMessageListenerContainer.create(redisConnectionFactory, options);
+        for (String shopId : subscribeShops()) {
+            // 从订阅时的最新消息开始，之后按最后读到的id继续读取，Redis断线重连后不会漏掉消息
+            StreamOffset<String> offset = StreamOffset.create(STREAM_KEY_PREFIX + shopId, ReadOffset.latest());
+            container.register(StreamReadRequest.builder(offset)
+                    .cancelOnError(e -> false)
+                    .errorHandler(this::onError)
+                    .build(), this);
+        }
+        container.start();
+        log.info("通知总线已订阅店铺：{}", subscribeShops());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (container != null) {
+            container.stop();
+        }
+    }
+
+    private Set<String> subscribeShops() {
+        Set<String> shops = new LinkedHashSet<>(notifyProperties.getSubscribeShops());
+        if (shops.isEmpty()) {
+            shops.add(notifyProperties.getShopId());
+        }
+        return shops;
+    }
+
+    private void onError(Throwable e) {
+        log.warn("读取通知流失败：{}", e.getMessage());
+        try {
+            Thread.sleep(ERROR_BACKOFF_MILLIS);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
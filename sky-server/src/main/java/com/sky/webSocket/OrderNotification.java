@@ -0,0 +1,180 @@
+package com.sky.webSocket;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 推送给管理端的订单提醒
+ * 消息格式 {"type":1,"orderId":1,"content":"订单号：xxx","id":"通知流id"}，
+ * 报表生成完成时为 {"type":3,"jobId":"报表任务id","content":"报表已生成","id":"通知流id"}，
+ * 每条提醒只拼接一次文本帧，所有连接共用同一个字符串
+ */
+public class OrderNotification {
+
+    // 来单提醒
+    public static final int NEW_ORDER = 1;
+
+    // 客户催单
+    public static final int REMINDER = 2;
+
+    // 报表生成完成
+    public static final int REPORT_READY = 3;
+
+    private static final String FIELD_TYPE = "type";
+
+    private static final String FIELD_ORDER_ID = "orderId";
+
+    private static final String FIELD_NUMBER = "number";
+
+    private static final String FIELD_JOB_ID = "jobId";
+
+    private final int type;
+
+    // 订单id和订单号，报表通知时为空
+    private final Long orderId;
+
+    private final String number;
+
+    // 报表任务id，订单提醒时为空
+    private final String jobId;
+
+    private OrderNotification(int type, Long orderId, String number, String jobId) {
+        this.type = type;
+        this.orderId = orderId;
+        this.number = number;
+        this.jobId = jobId;
+    }
+
+    /**
+     * 来单提醒
+     * @param orderId
+     * @param number 订单号
+     * @return
+     */
+    public static OrderNotification newOrder(Long orderId, String number) {
+        return new OrderNotification(NEW_ORDER, orderId, number, null);
+    }
+
+    /**
+     * 客户催单
+     * @param orderId
+     * @param number 订单号
+     * @return
+     */
+    public static OrderNotification reminder(Long orderId, String number) {
+        return new OrderNotification(REMINDER, orderId, number, null);
+    }
+
+    /**
+     * 报表生成完成
+     * @param jobId 报表任务id
+     * @return
+     */
+    public static OrderNotification reportReady(String jobId) {
+        return new OrderNotification(REPORT_READY, null, null, jobId);
+    }
+
+    /**
+     * 从通知流的字段还原
+     * @param fields
+     * @return
+     */
+    public static OrderNotification fromFields(Map<?, ?> fields) {
+        Object orderId = fields.get(FIELD_ORDER_ID);
+        Object number = fields.get(FIELD_NUMBER);
+        Object jobId = fields.get(FIELD_JOB_ID);
+        return new OrderNotification(Integer.parseInt(String.valueOf(fields.get(FIELD_TYPE))),
+                orderId == null ? null : Long.valueOf(String.valueOf(orderId)),
+                number == null ? null : String.valueOf(number),
+                jobId == null ? null : String.valueOf(jobId));
+    }
+
+    /**
+     * 写入通知流的字段，为空的字段不写
+     * @return
+     */
+    public Map<String, String> toFields() {
+        Map<String, String> fields = new HashMap<>();
+        fields.put(FIELD_TYPE, String.valueOf(type));
+        if (orderId != null) {
+            fields.put(FIELD_ORDER_ID, String.valueOf(orderId));
+        }
+        if (number != null) {
+            fields.put(FIELD_NUMBER, number);
+        }
+        if (jobId != null) {
+            fields.put(FIELD_JOB_ID, jobId);
+        }
+        return fields;
+    }
+
+    /**
+     * 合并key，同一个订单的同一种提醒还没发出时只保留一条，与订单无关的通知不合并
+     * @return
+     */
+    public String coalesceKey() {
+        return orderId == null ? null : type + ":" + orderId;
+    }
+
+    /**
+     * 生成推送给客户端的文本帧
+     * @param id 通知流id，客户端重连时用来补发
+     * @return
+     */
+    public String encode(String id) {
+        StringBuilder frame = new StringBuilder(128);
+        frame.append("{\"type\":").append(type);
+        if (orderId != null) {
+            frame.append(",\"orderId\":").append(orderId);
+        }
+        if (jobId != null) {
+            frame.append(",\"jobId\":\"");
+            appendEscaped(frame, jobId);
+            frame.append('"');
+        }
+        frame.append(",\"content\":\"");
+        if (number != null) {
+            frame.append("订单号：");
+            appendEscaped(frame, number);
+        } else {
+            frame.append("报表已生成");
+        }
+        frame.append('"');
+        if (id != null) {
+            frame.append(",\"id\":\"").append(id).append('"');
+        }
+        return frame.append('}').toString();
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public String getNumber() {
+        return number;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    /**
+     * 订单号由服务端生成，这里只转义JSON字符串中必须转义的字符
+     */
+    private static void appendEscaped(StringBuilder frame, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                frame.append('\\').append(c);
+            } else if (c < 0x20) {
+                frame.append(String.format("\\u%04x", (int) c));
+            } else {
+                frame.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.sky.webSocket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.websocket.CloseReason;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 单个WebSocket连接的发送队列
+ * 推送消息只入队，由异步发送逐条取出，同一时刻只有一条消息在发送，调用方不会被慢客户端阻塞；
+ * 队列满时丢弃最早的消息，连续丢弃过多时关闭连接；带合并key的消息在发送前被同key的新消息替换
+ */
+@Slf4j
+public class SessionOutbox {
+
+    private final String sid;
+
+    private final Session session;
+
+    private final int capacity;
+
+    private final int maxDropped;
+
+    private final Deque<Pending> queue = new ArrayDeque<>();
+
+    // 是否有消息正在发送
+    private boolean sending;
+
+    private boolean closed;
+
+    // 上次发送成功后丢弃的消息数
+    private int dropped;
+
+    private long droppedTotal;
+
+    private long coalescedTotal;
+
+    public SessionOutbox(String sid, Session session, int capacity, int maxDropped, long sendTimeoutMillis) {
+        this.sid = sid;
+        this.session = session;
+        this.capacity = capacity;
+        this.maxDropped = maxDropped;
+        session.getAsyncRemote().setSendTimeout(sendTimeoutMillis);
+    }
+
+    /**
+     * 消息入队
+     * @param message
+     * @param coalesceKey 合并key，为空时不合并
+     * @return false表示连接已关闭
+     */
+    public boolean offer(String message, String coalesceKey) {
+        boolean start;
+        boolean slow;
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            if (coalesceKey != null) {
+                for (Pending pending : queue) {
+                    if (coalesceKey.equals(pending.key)) {
+                        pending.message = message;
+                        coalescedTotal++;
+                        return true;
+                    }
+                }
+            }
+            if (queue.size() >= capacity) {
+                queue.pollFirst();
+                dropped++;
+                droppedTotal++;
+            }
+            queue.addLast(new Pending(message, coalesceKey));
+            start = !sending;
+            sending = true;
+            slow = dropped >= maxDropped;
+        }
+        if (slow) {
+            close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "客户端接收过慢"));
+            return false;
+        }
+        if (start) {
+            drain();
+        }
+        return true;
+    }
+
+    /**
+     * 发送队首的消息，发送完成后继续发送下一条
+     */
+    private void drain() {
+        String message;
+        synchronized (this) {
+            Pending pending = queue.pollFirst();
+            if (pending == null || closed) {
+                sending = false;
+                return;
+            }
+            message = pending.message;
+        }
+        try {
+            session.getAsyncRemote().sendText(message, this::onSent);
+        } catch (Exception e) {
+            log.warn("WebSocket消息发送失败，sid：{}，{}", sid, e.getMessage());
+            close(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "发送失败"));
+        }
+    }
+
+    private void onSent(SendResult result) {
+        if (!result.isOK()) {
+            log.warn("WebSocket消息发送失败，sid：{}，{}", sid,
+                    result.getException() == null ? null : result.getException().getMessage());
+            close(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "发送失败"));
+            return;
+        }
+        synchronized (this) {
+            dropped = 0;
+        }
+        drain();
+    }
+
+    /**
+     * 关闭连接并清空队列
+     * @param reason
+     */
+    public void close(CloseReason reason) {
+        synchronized (this) {
+            closed = true;
+            sending = false;
+            queue.clear();
+        }
+        try {
+            if (session.isOpen()) {
+                session.close(reason);
+            }
+        } catch (IOException e) {
+            log.debug("关闭WebSocket连接失败，sid：{}，{}", sid, e.getMessage());
+        }
+    }
+
+    public synchronized int size() {
+        return queue.size();
+    }
+
+    public synchronized long getDroppedTotal() {
+        return droppedTotal;
+    }
+
+    public synchronized long getCoalescedTotal() {
+        return coalescedTotal;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    private static class Pending {
+
+        private String message;
+
+        private final String key;
+
+        Pending(String message, String key) {
+            this.message = message;
+            this.key = key;
+        }
+    }
+}
@@ -1,33 +1,84 @@
 package com.sky.webSocket;
 
+import com.sky.properties.NotifyProperties;
+import com.sky.properties.WebSocketProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import javax.websocket.CloseReason;
 import javax.websocket.OnClose;
+import javax.websocket.OnError;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.Session;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * WebSocket服务
+ * 每个连接有自己的发送队列，群发只把消息放入各个队列，由异步发送推送给客户端，
+ * 推送耗时与连接数量和客户端网速无关。
+ * 客户端连接时可以带上参数 shop（所属店铺，默认当前店铺）和 lastId（最后收到的通知id，用于断线补发）
  */
+@Slf4j
 @Component
 @ServerEndpoint("/ws/{sid}")
 public class WebSocketServer {
 
-    //存放会话对象
-    private static Map<String, Session> sessionMap = new HashMap();
+    //存放会话对象，端点实例由容器为每个连接单独创建，所以使用静态变量
+    private static final Map<String, SessionOutbox> sessionMap = new ConcurrentHashMap<>();
+
+    // 会话属性：客户端所属店铺
+    private static final String SHOP_ID = "shopId";
+
+    private static WebSocketProperties webSocketProperties = new WebSocketProperties();
+
+    private static NotifyProperties notifyProperties = new NotifyProperties();
+
+    // 通知总线依赖本类转发消息，延迟获取避免循环依赖
+    private static ObjectProvider<NotificationBus> notificationBus;
+
+    @Autowired
+    public void setWebSocketProperties(WebSocketProperties webSocketProperties) {
+        WebSocketServer.webSocketProperties = webSocketProperties;
+    }
+
+    @Autowired
+    public void setNotifyProperties(NotifyProperties notifyProperties) {
+        WebSocketServer.notifyProperties = notifyProperties;
+    }
+
+    @Autowired
+    public void setNotificationBus(ObjectProvider<NotificationBus> notificationBus) {
+        WebSocketServer.notificationBus = notificationBus;
+    }
 
     /**
      * 连接建立成功调用的方法
      */
     @OnOpen
     public void onOpen(Session session, @PathParam("sid") String sid) {
-        System.out.println("客户端：" + sid + "建立连接");
-        sessionMap.put(sid, session);
+        String shopId = parameter(session, "shop", notifyProperties.getShopId());
+        log.info("客户端：{}建立连接，店铺：{}", sid, shopId);
+        session.getUserProperties().put(SHOP_ID, shopId);
+        SessionOutbox outbox = new SessionOutbox(sid, session, webSocketProperties.getQueueCapacity(),
+                webSocketProperties.getMaxDropped(), webSocketProperties.getSendTimeoutMillis());
+        SessionOutbox previous = sessionMap.put(sid, outbox);
+        // 同一个客户端重复连接时关闭旧连接
+        if (previous != null) {
+            previous.close(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "重复连接"));
+        }
+        // 先登记连接再补发，补发期间的新消息不会丢失，重复的消息由客户端按id去重
+        String lastId = parameter(session, "lastId", null);
+        NotificationBus bus = notificationBus == null ? null : notificationBus.getIfAvailable();
+        if (lastId != null && bus != null) {
+            int count = bus.replay(shopId, lastId, message -> outbox.offer(message, null));
+            log.info("客户端：{}重连，补发通知{}条", sid, count);
+        }
     }
 
     /**
@@ -37,7 +88,7 @@ public class WebSocketServer {
      */
     @OnMessage
     public void onMessage(String message, @PathParam("sid") String sid) {
-        System.out.println("收到来自客户端：" + sid + "的信息:" + message);
+        log.info("收到来自客户端：{}的信息:{}", sid, message);
     }
 
     /**
@@ -46,9 +97,20 @@ public class WebSocketServer {
      * @param sid
      */
     @OnClose
-    public void onClose(@PathParam("sid") String sid) {
-        System.out.println("连接断开:" + sid);
-        sessionMap.remove(sid);
+    public void onClose(Session session, @PathParam("sid") String sid) {
+        log.info("连接断开:{}", sid);
+        remove(session, sid);
+    }
+
+    /**
+     * 连接出错调用的方法
+     *
+     * @param sid
+     */
+    @OnError
+    public void onError(Session session, Throwable error, @PathParam("sid") String sid) {
+        log.warn("连接出错:{}，{}", sid, error.getMessage());
+        remove(session, sid);
     }
 
     /**
@@ -57,15 +119,66 @@ public class WebSocketServer {
      * @param message
      */
     public void sendToAllClient(String message) {
-        Collection<Session> sessions = sessionMap.values();
-        for (Session session : sessions) {
-            try {
-                //服务器向客户端发送消息
-                session.getBasicRemote().sendText(message);
-            } catch (Exception e) {
-                e.printStackTrace();
+        sendToAllClient(message, null);
+    }
+
+    /**
+     * 群发，消息只进入各个连接的发送队列，不等待发送完成
+     * 同一个合并key的消息还没发出时只保留最新的一条
+     *
+     * @param message
+     * @param coalesceKey 合并key，为空时不合并
+     */
+    public void sendToAllClient(String message, String coalesceKey) {
+        sessionMap.forEach((sid, outbox) -> {
+            if (!outbox.offer(message, coalesceKey)) {
+                sessionMap.remove(sid, outbox);
+            }
+        });
+    }
+
+    /**
+     * 向指定店铺的客户端群发
+     *
+     * @param shopId
+     * @param message
+     * @param coalesceKey 合并key，为空时不合并
+     */
+    public void sendToShop(String shopId, String message, String coalesceKey) {
+        sessionMap.forEach((sid, outbox) -> {
+            if (!shopId.equals(outbox.getSession().getUserProperties().get(SHOP_ID))) {
+                return;
             }
+            if (!outbox.offer(message, coalesceKey)) {
+                sessionMap.remove(sid, outbox);
+            }
+        });
+    }
+
+    /**
+     * 当前连接数
+     *
+     * @return
+     */
+    public int getSessionCount() {
+        return sessionMap.size();
+    }
+
+    private String parameter(Session session, String name, String defaultValue) {
+        Map<String, List<String>> parameters = session.getRequestParameterMap();
+        List<String> values = parameters == null ? null : parameters.get(name);
+        if (values == null || values.isEmpty() || values.get(0).isEmpty()) {
+            return defaultValue;
         }
+        return values.get(0);
     }
 
+    private void remove(Session session, String sid) {
+        SessionOutbox outbox = sessionMap.get(sid);
+        // 只移除当前会话，重复连接后旧连接的关闭事件不影响新连接
+        if (outbox != null && outbox.getSession() == session) {
+            sessionMap.remove(sid, outbox);
+            outbox.close(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, null));
+        }
+    }
 }
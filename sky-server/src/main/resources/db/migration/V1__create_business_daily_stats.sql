@@ -0,0 +1,19 @@
+-- 每日营业数据汇总表，按下单日期归属，由订单状态流转增量维护，每晚从源数据校对
+create table if not exists business_daily_stats
+(
+    stat_date                  date           not null comment '统计日期',
+    turnover                   decimal(12, 2) not null default 0 comment '营业额',
+    total_order_count          int            not null default 0 comment '订单总数',
+    valid_order_count          int            not null default 0 comment '有效订单数',
+    new_users                  int            not null default 0 comment '新增用户数',
+    total_users                int            not null default 0 comment '截止当天的用户总量',
+    pending_payment_count      int            not null default 0 comment '待付款订单数',
+    to_be_confirmed_count      int            not null default 0 comment '待接单订单数',
+    confirmed_count            int            not null default 0 comment '已接单订单数',
+    delivery_in_progress_count int            not null default 0 comment '派送中订单数',
+    completed_count            int            not null default 0 comment '已完成订单数',
+    cancelled_count            int            not null default 0 comment '已取消订单数',
+    reconciled                 tinyint        not null default 0 comment '是否已从源数据校对 0否 1是',
+    update_time                datetime       null comment '更新时间',
+    primary key (stat_date)
+) comment '每日营业数据汇总';
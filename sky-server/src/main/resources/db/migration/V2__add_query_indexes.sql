@@ -0,0 +1,32 @@
+-- 各mapper语句依赖的索引，二级索引末尾隐含主键id，(order_time, status, amount) 等索引可以覆盖汇总查询，不需要回表
+
+-- 按下单时间区间统计订单数、营业额、每日汇总，按下单时间导出订单明细
+create index idx_orders_order_time on orders (order_time, status, amount);
+-- 按状态查询超时订单、按状态统计、销量排行
+create index idx_orders_status_time on orders (status, order_time);
+-- 用户查询历史订单
+create index idx_orders_user_time on orders (user_id, order_time);
+-- 支付回调按订单号查询
+create index idx_orders_number on orders (number);
+
+-- 按订单查询明细，销量排行按订单关联后直接从索引中读取名称和数量
+create index idx_order_detail_order on order_detail (order_id, name, number);
+
+-- 查询用户购物车
+create index idx_shopping_cart_user on shopping_cart (user_id, dish_id, setmeal_id);
+
+-- 微信登录按openid查询用户，按注册时间统计新增用户
+create index idx_user_openid on user (openid);
+create index idx_user_create_time on user (create_time);
+
+-- 查询用户地址和默认地址
+create index idx_address_book_user on address_book (user_id, is_default);
+
+-- 按分类查询菜品和套餐
+create index idx_dish_category on dish (category_id, status);
+create index idx_setmeal_category on setmeal (category_id, status);
+
+-- 菜品口味、套餐菜品关系
+create index idx_dish_flavor_dish on dish_flavor (dish_id);
+create index idx_setmeal_dish_setmeal on setmeal_dish (setmeal_id);
+create index idx_setmeal_dish_dish on setmeal_dish (dish_id);
@@ -0,0 +1,268 @@
+package com.sky.test;
+
+import com.sky.cache.CacheEnvelope;
+import com.sky.cache.TwoLevelCacheManager;
+import com.sky.properties.MenuCacheProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * TwoLevelCache stampede Test
+ * Runs concurrent misses against an in-memory Redis shared by two cache managers (two nodes)
+ * and counts how many times the database loader runs per invalidation
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TwoLevelCache Stampede Test")
+class CacheStampedeTest {
+
+    private static final int THREADS = 50;
+
+    private static final long LOAD_MILLIS = 100;
+
+    @Mock
+    private RedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations valueOperations;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> stringValueOperations;
+
+    @Mock
+    private SetOperations<String, String> setOperations;
+
+    private final Map<String, Object> redis = new ConcurrentHashMap<>();
+
+    private final AtomicInteger dbQueries = new AtomicInteger();
+
+    private MenuCacheProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MenuCacheProperties();
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(stringRedisTemplate.opsForValue()).thenReturn(stringValueOperations);
+        lenient().when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+        lenient().when(valueOperations.get(anyString()))
+                .thenAnswer(invocation -> redis.get(invocation.<String>getArgument(0)));
+        lenient().doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOperations).set(anyString(), any());
+        lenient().doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOperations).set(anyString(), any(), anyLong(), any(TimeUnit.class));
+        lenient().when(redisTemplate.delete(anyString()))
+                .thenAnswer(invocation -> redis.remove(invocation.<String>getArgument(0)) != null);
+        lenient().when(stringValueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenAnswer(invocation -> redis.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        lenient().when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any()))
+                .thenAnswer(invocation -> {
+                    List<String> keys = invocation.getArgument(1);
+                    return redis.remove(keys.get(0), invocation.getArgument(2)) ? 1L : 0L;
+                });
+    }
+
+    @Test
+    @DisplayName("Should query the database once for concurrent misses on one node")
+    void testSingleNode_OneQueryPerMiss() throws Exception {
+        // Given
+        Cache cache = new TwoLevelCacheManager(redisTemplate, stringRedisTemplate, properties).getCache("dish");
+
+        // When
+        List<Object> results = runConcurrently(Arrays.asList(cache), 1L);
+
+        // Then
+        assertEquals(1, dbQueries.get());
+        assertEquals(THREADS, results.size());
+        results.forEach(result -> assertEquals(menu(1L), result));
+    }
+
+    @Test
+    @DisplayName("Should query the database once for concurrent misses across two nodes")
+    void testTwoNodes_OneQueryPerMiss() throws Exception {
+        // Given
+        Cache node1 = new TwoLevelCacheManager(redisTemplate, stringRedisTemplate, properties).getCache("dish");
+        Cache node2 = new TwoLevelCacheManager(redisTemplate, stringRedisTemplate, properties).getCache("dish");
+
+        // When
+        List<Object> results = runConcurrently(Arrays.asList(node1, node2), 2L);
+
+        // Then
+        assertEquals(1, dbQueries.get());
+        results.forEach(result -> assertEquals(menu(2L), result));
+    }
+
+    @Test
+    @DisplayName("Should query the database once per invalidation")
+    void testEvict_OneQueryPerInvalidation() throws Exception {
+        // Given
+        Cache cache = new TwoLevelCacheManager(redisTemplate, stringRedisTemplate, properties).getCache("dish");
+
+        // When
+        for (int round = 0; round < 3; round++) {
+            runConcurrently(Arrays.asList(cache), 3L);
+            cache.evict(3L);
+        }
+
+        // Then
+        assertEquals(3, dbQueries.get());
+    }
+
+    @Test
+    @DisplayName("Should serve the stale value and refresh it in the background once")
+    void testStaleWhileRevalidate() throws Exception {
+        // Given
+        properties.setSoftTtlSeconds(60);
+        Cache cache = new TwoLevelCacheManager(redisTemplate, stringRedisTemplate, properties).getCache("dish");
+        List<String> stale = Arrays.asList("stale");
+        redis.put("dish_4", new CacheEnvelope(stale, System.currentTimeMillis() - 1, 10));
+
+        // When
+        List<Object> results = runConcurrently(Arrays.asList(cache), 4L);
+
+        // Then: every caller got the stale value without waiting, one refresh ran
+        results.forEach(result -> assertEquals(stale, result));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!(redis.get("dish_4") instanceof CacheEnvelope
+                && menu(4L).equals(((CacheEnvelope) redis.get("dish_4")).getValue()))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(menu(4L), ((CacheEnvelope) redis.get("dish_4")).getValue());
+        assertEquals(1, dbQueries.get());
+    }
+
+    @Test
+    @DisplayName("Should load the current value when a key is evicted and read during a slow refresh")
+    void testEvictDuringRefresh() throws Exception {
+        // Given: a stale value whose background refresh is stuck reading the pre-edit menu
+        properties.setSoftTtlSeconds(60);
+        properties.setLockWaitMillis(200);
+        Cache cache = new TwoLevelCacheManager(redisTemplate, stringRedisTemplate, properties).getCache("dish");
+        redis.put("dish_6", new CacheEnvelope(Arrays.asList("stale"), System.currentTimeMillis() - 1, 10));
+        CountDownLatch refreshStarted = new CountDownLatch(1);
+        CountDownLatch releaseRefresh = new CountDownLatch(1);
+        assertEquals(Arrays.asList("stale"), cache.get(6L, () -> {
+            refreshStarted.countDown();
+            releaseRefresh.await();
+            return Arrays.asList("before-edit");
+        }));
+        assertTrue(refreshStarted.await(5, TimeUnit.SECONDS));
+
+        // When: an admin edit evicts the key and a user reads it while the refresh is still running
+        cache.evict(6L);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Object result;
+        try {
+            result = pool.submit(() -> cache.get(6L, () -> loadFromDb(6L))).get(5, TimeUnit.SECONDS);
+        } finally {
+            releaseRefresh.countDown();
+            pool.shutdown();
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (redis.containsKey("dish:lock:6") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // Then: the reader got the current menu and the refresh did not write the old one back
+        assertEquals(menu(6L), result);
+        assertFalse(redis.containsKey("dish:lock:6"));
+        assertEquals(menu(6L), ((CacheEnvelope) redis.get("dish_6")).getValue());
+        assertEquals(1, dbQueries.get());
+    }
+
+    @Test
+    @DisplayName("Should propagate a loader failure to all waiters and retry on the next request")
+    void testLoaderFailure() throws Exception {
+        // Given
+        Cache cache = new TwoLevelCacheManager(redisTemplate, stringRedisTemplate, properties).getCache("dish");
+        Callable<List<String>> failing = () -> {
+            dbQueries.incrementAndGet();
+            Thread.sleep(LOAD_MILLIS);
+            throw new IllegalStateException("db down");
+        };
+
+        // When
+        ExecutorService pool = Executors.newFixedThreadPool(10);
+        List<Future<List<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(pool.submit(() -> cache.get(5L, failing)));
+        }
+        int failures = 0;
+        for (Future<List<String>> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                failures++;
+            }
+        }
+        pool.shutdown();
+
+        // Then
+        assertEquals(10, failures);
+        assertTrue(dbQueries.get() < 10);
+        assertEquals(menu(5L), cache.get(5L, () -> menu(5L)));
+        assertFalse(redis.containsKey("dish:lock:5"));
+    }
+
+    /**
+     * 每个节点启动相同数量的线程同时读取同一个key
+     */
+    private List<Object> runConcurrently(List<Cache> nodes, Long categoryId) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Cache cache = nodes.get(i % nodes.size());
+            futures.add(pool.submit(() -> {
+                start.await();
+                return cache.get(categoryId, () -> loadFromDb(categoryId));
+            }));
+        }
+        start.countDown();
+        List<Object> results = new ArrayList<>();
+        for (Future<Object> future : futures) {
+            results.add(future.get(10, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+        return results;
+    }
+
+    private Object loadFromDb(Long categoryId) throws InterruptedException {
+        dbQueries.incrementAndGet();
+        Thread.sleep(LOAD_MILLIS);
+        return menu(categoryId);
+    }
+
+    private List<String> menu(Long categoryId) {
+        return Arrays.asList("dish-of-" + categoryId);
+    }
+}
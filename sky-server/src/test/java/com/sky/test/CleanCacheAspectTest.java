@@ -0,0 +1,149 @@
+package com.sky.test;
+
+import com.sky.annotation.CleanCache;
+import com.sky.aspect.AutoFillAspect;
+import com.sky.constant.CacheConstant;
+import com.sky.dto.DishDTO;
+import com.sky.enumeration.CleanCacheType;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetMealDishMapper;
+import com.sky.vo.DishVO;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * CleanCache aspect Test
+ * Checks that the dish cache is evicted only after the admin write has returned (and, inside a
+ * transaction, after it commits), and that the old category is looked up before the write
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CleanCache Aspect Test")
+class CleanCacheAspectTest {
+
+    @Mock
+    private DishMapper dishMapper;
+
+    @Mock
+    private SetMealDishMapper setMealDishMapper;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private Cache dishCache;
+
+    @Mock
+    private Cache setmealDishCache;
+
+    @Mock
+    private ProceedingJoinPoint joinPoint;
+
+    @Mock
+    private MethodSignature signature;
+
+    @InjectMocks
+    private AutoFillAspect autoFillAspect;
+
+    private DishDTO dishDTO;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        lenient().when(cacheManager.getCache(CacheConstant.DISH_CACHE)).thenReturn(dishCache);
+        lenient().when(cacheManager.getCache(CacheConstant.SETMEAL_DISH_CACHE)).thenReturn(setmealDishCache);
+        dishDTO = new DishDTO();
+        dishDTO.setId(1L);
+        dishDTO.setCategoryId(20L);
+        when(joinPoint.getSignature()).thenReturn(signature);
+        when(signature.getMethod()).thenReturn(AdminDishController.class.getDeclaredMethod("ChangeDish", DishDTO.class));
+        when(joinPoint.getArgs()).thenReturn(new Object[]{dishDTO});
+        DishVO old = new DishVO();
+        old.setCategoryId(10L);
+        when(dishMapper.selectByDishId(1L)).thenReturn(old);
+        when(setMealDishMapper.selectSetmealIdsByDishId(1L)).thenReturn(Collections.singletonList(5L));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Should evict the old and new category after the write returns")
+    void testEvictAfterWrite() throws Throwable {
+        // Given
+        when(joinPoint.proceed()).thenReturn("ok");
+
+        // When
+        Object result = autoFillAspect.cleanCache(joinPoint);
+
+        // Then: the old category was read before the write, the caches were evicted after it
+        assertEquals("ok", result);
+        InOrder inOrder = inOrder(dishMapper, joinPoint, dishCache, setmealDishCache);
+        inOrder.verify(dishMapper).selectByDishId(1L);
+        inOrder.verify(joinPoint).proceed();
+        inOrder.verify(dishCache).evict(10L);
+        inOrder.verify(dishCache).evict(20L);
+        inOrder.verify(setmealDishCache).evict(5L);
+    }
+
+    @Test
+    @DisplayName("Should wait for the surrounding transaction to commit before evicting")
+    void testEvictAfterCommit() throws Throwable {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        autoFillAspect.cleanCache(joinPoint);
+
+        // Then
+        verifyNoInteractions(dishCache, setmealDishCache);
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        verify(dishCache).evict(10L);
+        verify(dishCache).evict(20L);
+    }
+
+    @Test
+    @DisplayName("Should keep the cache when the write fails")
+    void testNoEvictOnFailure() throws Throwable {
+        // Given
+        when(joinPoint.proceed()).thenThrow(new IllegalStateException("db down"));
+
+        // When
+        assertThrows(IllegalStateException.class, () -> autoFillAspect.cleanCache(joinPoint));
+
+        // Then
+        verifyNoInteractions(dishCache, setmealDishCache);
+    }
+
+    /**
+     * Stands in for the admin DishController, the aspect matches on the class name
+     */
+    static class AdminDishController {
+
+        @CleanCache(CleanCacheType.UPDATE)
+        public void ChangeDish(DishDTO dishDTO) {
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.sky.test;
+
+import com.sky.cache.CacheEnvelope;
+import com.sky.cache.CompactRedisSerializer;
+import com.sky.config.CacheConfiguration;
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.vo.DishVO;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CompactRedisSerializer Test
+ * Compares bytes per cached category and encode/decode time against the JDK and Jackson serializers,
+ * and checks round trips, legacy JDK payloads and corrupted data
+ */
+@Slf4j
+@DisplayName("CompactRedisSerializer Test")
+class CompactRedisSerializerTest {
+
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 5_000;
+
+    private final CompactRedisSerializer compactSerializer = new CompactRedisSerializer(512);
+
+    @Test
+    @DisplayName("Should store a dish category in fewer bytes than JDK and Jackson serializers")
+    void testBytesPerCategory() {
+        // Given
+        List<DishVO> category = buildCategory(20);
+
+        // When
+        int jdkBytes = new JdkSerializationRedisSerializer().serialize(category).length;
+        int jsonBytes = CacheConfiguration.jsonSerializer().serialize(category).length;
+        int compactBytes = compactSerializer.serialize(category).length;
+        log.info("bytes per category (20 dishes): jdk={} json={} compact={}", jdkBytes, jsonBytes, compactBytes);
+
+        // Then
+        assertTrue(compactBytes < jdkBytes / 2);
+        assertTrue(compactBytes < jsonBytes);
+    }
+
+    @Test
+    @DisplayName("Should report encode and decode time of each serializer")
+    void testEncodeDecodeTime() {
+        List<DishVO> category = buildCategory(20);
+        report("jdk", new JdkSerializationRedisSerializer(), category);
+        report("json", CacheConfiguration.jsonSerializer(), category);
+        report("compact", compactSerializer, category);
+    }
+
+    @Test
+    @DisplayName("Should restore dishes, setmeals and flavors unchanged")
+    void testRoundTrip() {
+        // Given
+        List<DishVO> category = buildCategory(20);
+        List<Setmeal> setmeals = new ArrayList<>();
+        setmeals.add(Setmeal.builder().id(1L).categoryId(13L).name("套餐A").price(new BigDecimal("58.00"))
+                .status(1).image("a.png").build());
+
+        // When / Then
+        assertEquals(category, compactSerializer.deserialize(compactSerializer.serialize(category)));
+        assertEquals(setmeals, compactSerializer.deserialize(compactSerializer.serialize(setmeals)));
+        assertEquals(NullValue.INSTANCE, compactSerializer.deserialize(compactSerializer.serialize(NullValue.INSTANCE)));
+    }
+
+    @Test
+    @DisplayName("Should restore a cached null value inside an envelope")
+    void testEnvelopeNullValue() {
+        // Given
+        CacheEnvelope envelope = new CacheEnvelope(NullValue.INSTANCE, 1700000000000L, 5);
+
+        // When
+        CacheEnvelope restored = (CacheEnvelope) compactSerializer.deserialize(compactSerializer.serialize(envelope));
+
+        // Then
+        assertSame(NullValue.INSTANCE, restored.getValue());
+        assertEquals(1700000000000L, restored.getSoftExpireAt());
+        assertEquals(5, restored.getLoadMillis());
+    }
+
+    @Test
+    @DisplayName("Should restore dishes with update times through the JSON serializer")
+    void testJsonRoundTrip() {
+        // Given
+        RedisSerializer<Object> jsonSerializer = CacheConfiguration.jsonSerializer();
+        List<DishVO> category = buildCategory(3);
+
+        // When / Then
+        assertEquals(category, jsonSerializer.deserialize(jsonSerializer.serialize(category)));
+        CacheEnvelope missing = (CacheEnvelope) jsonSerializer.deserialize(
+                jsonSerializer.serialize(new CacheEnvelope(NullValue.INSTANCE, 0, 5)));
+        assertSame(NullValue.INSTANCE, missing.getValue());
+    }
+
+    @Test
+    @DisplayName("Should read values written by the JDK serializer")
+    void testReadLegacyJdkValue() {
+        // Given
+        List<DishVO> category = buildCategory(3);
+        byte[] legacy = new JdkSerializationRedisSerializer().serialize(category);
+
+        // When / Then
+        assertEquals(category, compactSerializer.deserialize(legacy));
+    }
+
+    @Test
+    @DisplayName("Should fail with SerializationException on corrupted data")
+    void testCorruptedValue() {
+        byte[] bytes = compactSerializer.serialize(buildCategory(20));
+        byte[] truncated = new byte[bytes.length / 2];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+
+        assertThrows(SerializationException.class, () -> compactSerializer.deserialize(truncated));
+        assertThrows(SerializationException.class, () -> compactSerializer.deserialize(new byte[]{9, 1, 2}));
+    }
+
+    private void report(String name, RedisSerializer<Object> serializer, Object value) {
+        byte[] bytes = serializer.serialize(value);
+        for (int i = 0; i < WARMUP; i++) {
+            serializer.deserialize(serializer.serialize(value));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            bytes = serializer.serialize(value);
+        }
+        long encodeNs = (System.nanoTime() - start) / ITERATIONS;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertNotNull(serializer.deserialize(bytes));
+        }
+        long decodeNs = (System.nanoTime() - start) / ITERATIONS;
+        log.info("{} bytes={} encode={} ns decode={} ns", name, bytes.length, encodeNs, decodeNs);
+    }
+
+    private List<DishVO> buildCategory(int size) {
+        List<DishVO> list = new ArrayList<>(size);
+        for (long i = 1; i <= size; i++) {
+            List<DishFlavor> flavors = new ArrayList<>();
+            flavors.add(DishFlavor.builder().id(i * 10).dishId(i).name("辣度")
+                    .value("[\"不辣\",\"微辣\",\"中辣\",\"重辣\"]").build());
+            flavors.add(DishFlavor.builder().id(i * 10 + 1).dishId(i).name("忌口")
+                    .value("[\"不要葱\",\"不要蒜\",\"不要香菜\",\"不要辣\"]").build());
+            DishVO dishVO = new DishVO();
+            dishVO.setId(i);
+            dishVO.setName("菜品" + i);
+            dishVO.setCategoryId(11L);
+            dishVO.setCategoryName("热菜");
+            dishVO.setPrice(new BigDecimal("38.00"));
+            dishVO.setImage("https://sky-take-out.oss-cn-beijing.aliyuncs.com/" + i + ".png");
+            dishVO.setDescription("招牌菜品，选用新鲜食材现做");
+            dishVO.setStatus(1);
+            dishVO.setUpdateTime(LocalDateTime.of(2024, 1, 1, 12, 30, 15));
+            dishVO.setFlavors(flavors);
+            list.add(dishVO);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,225 @@
+package com.sky.test;
+
+import com.sky.aspect.JobLeaseAspect;
+import com.sky.controller.admin.MetricsController;
+import com.sky.lease.JobLeaseManager;
+import com.sky.lease.JobLeaseStats;
+import com.sky.metrics.PrometheusWriter;
+import com.sky.properties.JobLeaseProperties;
+import com.sky.task.OrderTask;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * JobLeaseManager Test
+ * Runs several nodes against one in-memory lease store and checks a scheduled job runs on
+ * exactly one of them, fencing tokens grow on every hand-over, a stale holder stops,
+ * and the per-node stats are readable through the metrics endpoints
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("JobLeaseManager Test")
+class JobLeaseManagerTest {
+
+    private static final String JOB = "OrderTask.CheckOrderInUnPaid";
+
+    private static final int NODES = 4;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    // 模拟Redis：租约key -> {owner, token}，令牌key -> 计数
+    private final Map<String, String[]> leases = new HashMap<>();
+
+    private final Map<String, Long> tokens = new HashMap<>();
+
+    private final List<JobLeaseManager> managers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    RedisScript<?> script = invocation.getArgument(0);
+                    List<String> keys = invocation.getArgument(1);
+                    String arg = invocation.getArgument(2);
+                    synchronized (leases) {
+                        String[] lease = leases.get(keys.get(0));
+                        if (script.getScriptAsString().contains("incr")) {
+                            if (lease != null) {
+                                return lease[0].equals(arg) ? Arrays.asList(Long.valueOf(lease[1]), 0L) : Arrays.asList(0L, 0L);
+                            }
+                            long token = tokens.merge(keys.get(1), 1L, Long::sum);
+                            leases.put(keys.get(0), new String[]{arg, String.valueOf(token)});
+                            return Arrays.asList(token, 1L);
+                        }
+                        return lease != null && lease[1].equals(arg) ? 1L : 0L;
+                    }
+                });
+        lenient().when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString()))
+                .thenAnswer(invocation -> {
+                    List<String> keys = invocation.getArgument(1);
+                    synchronized (leases) {
+                        String[] lease = leases.get(keys.get(0));
+                        if (lease != null && lease[0].equals(invocation.getArgument(2))) {
+                            leases.remove(keys.get(0));
+                            return 1L;
+                        }
+                        return 0L;
+                    }
+                });
+        for (int i = 0; i < NODES; i++) {
+            JobLeaseProperties properties = new JobLeaseProperties();
+            properties.setNodeId("node-" + i);
+            JobLeaseManager manager = new JobLeaseManager();
+            ReflectionTestUtils.setField(manager, "stringRedisTemplate", stringRedisTemplate);
+            ReflectionTestUtils.setField(manager, "jobLeaseProperties", properties);
+            manager.init();
+            managers.add(manager);
+        }
+    }
+
+    @Test
+    @DisplayName("Should run each trigger of a job on exactly one node")
+    void testRunsOncePerCluster() throws Throwable {
+        // Given
+        AtomicInteger runs = new AtomicInteger();
+        List<JobLeaseAspect> aspects = new ArrayList<>();
+        for (JobLeaseManager manager : managers) {
+            aspects.add(aspect(manager));
+        }
+
+        // When: every node fires the job 10 times
+        for (int trigger = 0; trigger < 10; trigger++) {
+            for (JobLeaseAspect aspect : aspects) {
+                aspect.runOnLeader(joinPoint(runs));
+            }
+        }
+
+        // Then
+        assertEquals(10, runs.get());
+        JobLeaseStats leader = managers.get(0).stats().get(JOB);
+        assertTrue(leader.isHeld());
+        assertEquals(1, leader.getAcquired());
+        assertEquals(1, leader.getToken());
+        for (int i = 1; i < NODES; i++) {
+            JobLeaseStats follower = managers.get(i).stats().get(JOB);
+            assertFalse(follower.isHeld());
+            assertEquals(10, follower.getSkipped());
+        }
+    }
+
+    @Test
+    @DisplayName("Should hand the lease over with a larger fencing token and stop the stale holder")
+    void testHandOverFencing() throws Throwable {
+        // Given
+        JobLeaseManager first = managers.get(0);
+        JobLeaseManager second = managers.get(1);
+        long firstToken = first.acquire(JOB);
+
+        // When: the first holder stalls long enough for its lease to expire
+        leases.clear();
+        long secondToken = second.acquire(JOB);
+        boolean[] renewed = new boolean[2];
+        first.runWithLease(JOB, firstToken, () -> renewed[0] = first.renew());
+        second.runWithLease(JOB, secondToken, () -> renewed[1] = second.renew());
+
+        // Then
+        assertEquals(1, firstToken);
+        assertEquals(2, secondToken);
+        assertFalse(renewed[0]);
+        assertTrue(renewed[1]);
+        assertEquals(1, first.stats().get(JOB).getLost());
+        assertEquals(0, first.acquire(JOB));
+        assertEquals(1, second.stats().get(JOB).getAcquired());
+    }
+
+    @Test
+    @DisplayName("Should expose the lease stats of each node through the metrics endpoints after a hand-over")
+    void testStatsExposedAfterHandOver() {
+        // Given: node-0 holds the lease, then stalls and node-1 takes over
+        managers.get(0).acquire(JOB);
+        managers.get(1).acquire(JOB);
+        leases.clear();
+        managers.get(1).acquire(JOB);
+        managers.get(0).acquire(JOB);
+
+        // When
+        List<JobLeaseStats> firstLeases = controller(managers.get(0)).leases().getData();
+        List<JobLeaseStats> secondLeases = controller(managers.get(1)).leases().getData();
+        String text = PrometheusWriter.write(Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), managers.get(1).stats().values());
+
+        // Then
+        assertEquals(1, firstLeases.size());
+        JobLeaseStats stale = firstLeases.get(0);
+        assertEquals("node-0", stale.getNode());
+        assertFalse(stale.isHeld());
+        assertEquals(1, stale.getLost());
+        JobLeaseStats leader = secondLeases.get(0);
+        assertEquals("node-1", leader.getNode());
+        assertTrue(leader.isHeld());
+        assertEquals(2, leader.getToken());
+        assertEquals(1, leader.getSkipped());
+        assertNotNull(leader.getLastHandOver());
+        assertTrue(text.contains("sky_job_lease_held{job=\"" + JOB + "\"} 1\n"), text);
+        assertTrue(text.contains("sky_job_lease_token{job=\"" + JOB + "\"} 2\n"), text);
+        assertTrue(text.contains("sky_job_lease_acquired_total{job=\"" + JOB + "\"} 1\n"), text);
+    }
+
+    @Test
+    @DisplayName("Should release held leases on shutdown so another node takes over at once")
+    void testReleaseOnShutdown() {
+        // Given
+        assertEquals(1, managers.get(0).acquire(JOB));
+        assertEquals(0, managers.get(1).acquire(JOB));
+
+        // When
+        managers.get(0).releaseAll();
+
+        // Then
+        assertEquals(2, managers.get(1).acquire(JOB));
+    }
+
+    private MetricsController controller(JobLeaseManager manager) {
+        MetricsController controller = new MetricsController();
+        ReflectionTestUtils.setField(controller, "jobLeaseManager", manager);
+        return controller;
+    }
+
+    private JobLeaseAspect aspect(JobLeaseManager manager) {
+        JobLeaseAspect aspect = new JobLeaseAspect();
+        ReflectionTestUtils.setField(aspect, "jobLeaseManager", manager);
+        ReflectionTestUtils.setField(aspect, "jobLeaseProperties", new JobLeaseProperties());
+        return aspect;
+    }
+
+    private ProceedingJoinPoint joinPoint(AtomicInteger runs) throws Throwable {
+        MethodSignature signature = mock(MethodSignature.class);
+        when(signature.getDeclaringType()).thenReturn(OrderTask.class);
+        when(signature.getName()).thenReturn("CheckOrderInUnPaid");
+        ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+        when(joinPoint.getSignature()).thenReturn(signature);
+        lenient().when(joinPoint.proceed()).thenAnswer(invocation -> runs.incrementAndGet());
+        return joinPoint;
+    }
+}
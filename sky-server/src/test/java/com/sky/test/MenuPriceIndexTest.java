@@ -0,0 +1,234 @@
+package com.sky.test;
+
+import com.sky.cache.MenuPrice;
+import com.sky.cache.MenuPriceIndex;
+import com.sky.constant.CacheConstant;
+import com.sky.constant.StatusConstant;
+import com.sky.context.BaseContext;
+import com.sky.dto.OrdersSubmitDTO;
+import com.sky.entity.AddressBook;
+import com.sky.entity.Dish;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.entity.Setmeal;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.AddressBookMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.SetMealMapper;
+import com.sky.properties.MenuCacheProperties;
+import com.sky.properties.OrderIdProperties;
+import com.sky.properties.OrderProperties;
+import com.sky.service.OrderExpireService;
+import com.sky.service.ShoppingCartService;
+import com.sky.service.StatisticsService;
+import com.sky.service.impl.OrderServiceImpl;
+import com.sky.utils.SnowflakeIdGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * MenuPriceIndex Test
+ * Recomputes order totals at submit from the in-memory price index without per-item queries,
+ * and checks the index reloads once after a burst of menu cache invalidations
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MenuPriceIndex Test")
+class MenuPriceIndexTest {
+
+    private static final Long USER_ID = 3L;
+
+    private static final int CART_ITEMS = 30;
+
+    @Mock
+    private DishMapper dishMapper;
+
+    @Mock
+    private SetMealMapper setMealMapper;
+
+    @Mock
+    private AddressBookMapper addressBookMapper;
+
+    @Mock
+    private OrderMapper orderMapper;
+
+    @Mock
+    private OrderDetailMapper orderDetailMapper;
+
+    @Mock
+    private ShoppingCartService shoppingCartService;
+
+    @Mock
+    private StatisticsService statisticsService;
+
+    @Mock
+    private OrderExpireService orderExpireService;
+
+    @Spy
+    private SnowflakeIdGenerator orderIdGenerator = new SnowflakeIdGenerator(1, 1704038400000L, 10);
+
+    @Spy
+    private OrderIdProperties orderIdProperties = new OrderIdProperties();
+
+    @Spy
+    private OrderProperties orderProperties = new OrderProperties();
+
+    @InjectMocks
+    private OrderServiceImpl orderService;
+
+    private MenuPriceIndex menuPriceIndex;
+
+    private List<Dish> dishes;
+
+    private OrdersSubmitDTO dto;
+
+    @BeforeEach
+    void setUp() {
+        MenuCacheProperties properties = new MenuCacheProperties();
+        properties.setPriceIndexRefreshDelayMillis(50);
+        menuPriceIndex = new MenuPriceIndex();
+        ReflectionTestUtils.setField(menuPriceIndex, "dishMapper", dishMapper);
+        ReflectionTestUtils.setField(menuPriceIndex, "setMealMapper", setMealMapper);
+        ReflectionTestUtils.setField(menuPriceIndex, "menuCacheProperties", properties);
+        ReflectionTestUtils.setField(orderService, "menuPriceIndex", menuPriceIndex);
+
+        dishes = new ArrayList<>();
+        List<ShoppingCart> cart = new ArrayList<>();
+        for (long i = 1; i <= CART_ITEMS; i++) {
+            dishes.add(Dish.builder().id(i).name("菜品" + i).price(new BigDecimal("10.00"))
+                    .status(StatusConstant.ENABLE).build());
+            // 加入购物车时的价格已经过时
+            cart.add(ShoppingCart.builder().dishId(i).name("菜品" + i).number(2).amount(new BigDecimal("8.00")).build());
+        }
+        lenient().when(dishMapper.selectPriceIndex()).thenAnswer(invocation -> new ArrayList<>(dishes));
+        lenient().when(setMealMapper.selectPriceIndex()).thenReturn(Collections.singletonList(
+                Setmeal.builder().id(100L).name("套餐A").price(new BigDecimal("50.00")).status(StatusConstant.DISABLE).build()));
+        lenient().when(shoppingCartService.listByUserId(USER_ID)).thenReturn(cart);
+        lenient().when(addressBookMapper.getById(1L)).thenReturn(AddressBook.builder().id(1L)
+                .consignee("李四").phone("13900000000").cityName("上海市").districtName("浦东新区").detail("2号").build());
+        lenient().doAnswer(invocation -> {
+            invocation.<Orders>getArgument(0).setId(1L);
+            return null;
+        }).when(orderMapper).insert(any(Orders.class));
+
+        dto = new OrdersSubmitDTO();
+        dto.setAddressBookId(1L);
+        dto.setPackAmount(CART_ITEMS);
+        dto.setTablewareNumber(1);
+        dto.setTablewareStatus(0);
+        // 30个菜品 * 2份 * 10元 + 打包费30元 + 配送费6元
+        dto.setAmount(new BigDecimal("636.00"));
+        BaseContext.setCurrentId(USER_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        menuPriceIndex.shutdown();
+        BaseContext.removeCurrentId();
+    }
+
+    @Test
+    @DisplayName("Should price every cart item from the index with one load and no per-item query")
+    void testSubmit_RecomputesAmount() {
+        // When
+        orderService.submit(dto, null);
+        orderService.submit(dto, null);
+
+        // Then
+        ArgumentCaptor<Orders> orders = ArgumentCaptor.forClass(Orders.class);
+        verify(orderMapper, times(2)).insert(orders.capture());
+        assertEquals(0, new BigDecimal("636.00").compareTo(orders.getValue().getAmount()));
+        ArgumentCaptor<List<OrderDetail>> details = ArgumentCaptor.forClass(List.class);
+        verify(orderDetailMapper, times(2)).insert(details.capture());
+        details.getValue().forEach(detail -> assertEquals(new BigDecimal("10.00"), detail.getAmount()));
+        verify(dishMapper, times(1)).selectPriceIndex();
+        verify(dishMapper, never()).selectByDishId(anyLong());
+    }
+
+    @Test
+    @DisplayName("Should reject a submitted amount that does not match the current prices")
+    void testSubmit_AmountMismatch() {
+        // Given
+        dto.setAmount(new BigDecimal("516.00"));
+
+        // When / Then
+        assertThrows(OrderBusinessException.class, () -> orderService.submit(dto, null));
+        verify(orderMapper, never()).insert(any(Orders.class));
+    }
+
+    @Test
+    @DisplayName("Should reject a cart containing an item that is no longer on sale")
+    void testSubmit_ItemNotOnSale() {
+        // Given
+        dishes.set(4, Dish.builder().id(5L).name("菜品5").price(new BigDecimal("10.00"))
+                .status(StatusConstant.DISABLE).build());
+
+        // When / Then
+        OrderBusinessException e = assertThrows(OrderBusinessException.class, () -> orderService.submit(dto, null));
+        assertTrue(e.getMessage().startsWith("菜品5"));
+        verify(orderMapper, never()).insert(any(Orders.class));
+    }
+
+    @Test
+    @DisplayName("Should reload the index once after a burst of menu cache invalidations")
+    void testInvalidation_DebouncedReload() throws Exception {
+        // Given
+        assertEquals(new BigDecimal("10.00"), menuPriceIndex.getDish(1L).getPrice());
+        dishes.set(0, Dish.builder().id(1L).name("菜品1").price(new BigDecimal("12.00"))
+                .status(StatusConstant.ENABLE).build());
+
+        // When
+        for (int i = 0; i < 20; i++) {
+            menuPriceIndex.onInvalidate(CacheConstant.DISH_CACHE, String.valueOf(i));
+        }
+        menuPriceIndex.onInvalidate("other", null);
+        Thread.sleep(300);
+
+        // Then
+        MenuPrice price = menuPriceIndex.getDish(1L);
+        assertEquals(new BigDecimal("12.00"), price.getPrice());
+        verify(dishMapper, times(2)).selectPriceIndex();
+        assertEquals(StatusConstant.DISABLE, menuPriceIndex.getSetmeal(100L).getStatus());
+    }
+
+    @Test
+    @DisplayName("Should pick up a dish added after the last load")
+    void testMiss_ReloadsNewDish() throws Exception {
+        // Given
+        assertNull(findWithoutReload(200L));
+        dishes.add(Dish.builder().id(200L).name("新菜").price(new BigDecimal("18.00"))
+                .status(StatusConstant.ENABLE).build());
+        Thread.sleep(1100);
+
+        // When
+        MenuPrice price = menuPriceIndex.getDish(200L);
+
+        // Then
+        assertEquals(new BigDecimal("18.00"), price.getPrice());
+    }
+
+    private MenuPrice findWithoutReload(Long dishId) {
+        menuPriceIndex.refresh();
+        return menuPriceIndex.getDish(dishId);
+    }
+}
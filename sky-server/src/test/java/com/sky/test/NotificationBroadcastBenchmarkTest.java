@@ -0,0 +1,145 @@
+package com.sky.test;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.properties.WebSocketProperties;
+import com.sky.webSocket.OrderNotification;
+import com.sky.webSocket.WebSocketServer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Order notification broadcast benchmark
+ * Pushes typed notifications to 1000 connected sessions whose async sends complete at once,
+ * reports events/sec and checks every session receives the same pre-built frame instance
+ */
+@Slf4j
+@DisplayName("Order Notification Broadcast Benchmark")
+class NotificationBroadcastBenchmarkTest {
+
+    private static final int SESSIONS = 1000;
+
+    private static final int WARMUP_EVENTS = 200;
+
+    private static final int EVENTS = 2000;
+
+    private final WebSocketServer webSocketServer = new WebSocketServer();
+
+    private final List<Session> sessions = new ArrayList<>();
+
+    private final Set<String> frames = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private final AtomicLong delivered = new AtomicLong();
+
+    @AfterEach
+    void tearDown() {
+        for (int i = 0; i < sessions.size(); i++) {
+            webSocketServer.onClose(sessions.get(i), "admin-" + i);
+        }
+    }
+
+    @Test
+    @DisplayName("Should fan out one shared frame per event to 1000 sessions")
+    void testBroadcastThroughput() {
+        // Given
+        webSocketServer.setWebSocketProperties(new WebSocketProperties());
+        for (int i = 0; i < SESSIONS; i++) {
+            Session session = session();
+            sessions.add(session);
+            webSocketServer.onOpen(session, "admin-" + i);
+        }
+        for (int i = 0; i < WARMUP_EVENTS; i++) {
+            publish(i);
+        }
+        frames.clear();
+        delivered.set(0);
+
+        // When
+        long begin = System.nanoTime();
+        for (int i = 0; i < EVENTS; i++) {
+            publish(WARMUP_EVENTS + i);
+        }
+        long elapsedNanos = System.nanoTime() - begin;
+
+        // Then
+        double eventsPerSecond = EVENTS * 1e9 / elapsedNanos;
+        log.info("broadcast {} events to {} sessions in {} ms, {} events/sec, {} frames/sec",
+                EVENTS, SESSIONS, elapsedNanos / 1_000_000, Math.round(eventsPerSecond), Math.round(eventsPerSecond * SESSIONS));
+        assertEquals((long) EVENTS * SESSIONS, delivered.get());
+        assertEquals(EVENTS, frames.size());
+        assertTrue(eventsPerSecond > 100, "only " + eventsPerSecond + " events/sec");
+    }
+
+    @Test
+    @DisplayName("Should encode the same JSON the console parsed before")
+    void testFrameFormat() {
+        // When
+        String frame = OrderNotification.reminder(12L, "1718000000123").encode("1718000000000-3");
+
+        // Then
+        Map<?, ?> json = JSON.parseObject(frame);
+        assertEquals(2, json.get("type"));
+        assertEquals(12, json.get("orderId"));
+        assertEquals("订单号：1718000000123", json.get("content"));
+        assertEquals("1718000000000-3", json.get("id"));
+        assertEquals("{\"type\":1,\"orderId\":1,\"content\":\"订单号：a\\\"b\"}",
+                OrderNotification.newOrder(1L, "a\"b").encode(null));
+    }
+
+    /**
+     * Same path as NotificationBus.onMessage: build the frame once, then enqueue it for every session
+     */
+    private void publish(int orderId) {
+        OrderNotification notification = OrderNotification.newOrder((long) orderId, String.valueOf(1718000000000L + orderId));
+        webSocketServer.sendToShop("default", notification.encode("1718000000000-" + orderId), notification.coalesceKey());
+    }
+
+    private Session session() {
+        RemoteEndpoint.Async remote = (RemoteEndpoint.Async) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{RemoteEndpoint.Async.class}, (proxy, method, args) -> {
+                    if ("sendText".equals(method.getName()) && args.length == 2) {
+                        frames.add((String) args[0]);
+                        delivered.incrementAndGet();
+                        ((SendHandler) args[1]).onResult(new SendResult());
+                    }
+                    return null;
+                });
+        Map<String, Object> userProperties = new HashMap<>();
+        return (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Session.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "getAsyncRemote":
+                            return remote;
+                        case "getUserProperties":
+                            return userProperties;
+                        case "getRequestParameterMap":
+                            return Collections.emptyMap();
+                        case "isOpen":
+                            return true;
+                        default:
+                            return method.getReturnType() == boolean.class ? false : null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,162 @@
+package com.sky.test;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.NotifyProperties;
+import com.sky.webSocket.NotificationBus;
+import com.sky.webSocket.OrderNotification;
+import com.sky.webSocket.WebSocketServer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisZSetCommands.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * NotificationBus Test
+ * Checks notifications are appended to the shop stream, relayed to local sessions of that shop
+ * with their stream id, and replayed after the last id a reconnecting console has seen
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("NotificationBus Test")
+class NotificationBusTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private StreamOperations<String, Object, Object> streamOperations;
+
+    @Mock
+    private WebSocketServer webSocketServer;
+
+    @Spy
+    private NotifyProperties notifyProperties = new NotifyProperties();
+
+    @InjectMocks
+    private NotificationBus notificationBus;
+
+    @Test
+    @DisplayName("Should append to the shop stream and trim it")
+    void testPublish() {
+        // Given
+        when(stringRedisTemplate.opsForStream()).thenReturn(streamOperations);
+        when(streamOperations.add(any(MapRecord.class))).thenReturn(RecordId.of("1700000000000-0"));
+
+        // When
+        RecordId id = notificationBus.publish(OrderNotification.reminder(7L, "1700000000007"));
+
+        // Then
+        assertEquals("1700000000000-0", id.getValue());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<MapRecord<String, String, String>> record = ArgumentCaptor.forClass((Class) MapRecord.class);
+        verify(streamOperations).add(record.capture());
+        assertEquals("notify:shop:default", record.getValue().getStream());
+        assertEquals("2", record.getValue().getValue().get("type"));
+        assertEquals("7", record.getValue().getValue().get("orderId"));
+        assertEquals("1700000000007", record.getValue().getValue().get("number"));
+        verify(streamOperations).trim("notify:shop:default", 10000L, true);
+    }
+
+    @Test
+    @DisplayName("Should relay a stream record to the shop's local sessions with its id")
+    void testRelay() {
+        // Given
+        Map<String, String> fields = OrderNotification.newOrder(5L, "123").toFields();
+        MapRecord<String, String, String> record = StreamRecords.newRecord()
+                .in("notify:shop:default").withId(RecordId.of("1700000000001-0")).ofMap(fields);
+
+        // When
+        notificationBus.onMessage(record);
+
+        // Then
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(webSocketServer).sendToShop(eq("default"), message.capture(), eq("1:5"));
+        JSONObject json = JSON.parseObject(message.getValue());
+        assertEquals("1700000000001-0", json.getString("id"));
+        assertEquals(1, json.getIntValue("type"));
+        assertEquals(5, json.getIntValue("orderId"));
+        assertEquals("订单号：123", json.getString("content"));
+    }
+
+    @Test
+    @DisplayName("Should relay a report-ready record with its job id and without coalescing")
+    void testRelayReportReady() {
+        // Given
+        Map<String, String> fields = OrderNotification.reportReady("job-1").toFields();
+        MapRecord<String, String, String> record = StreamRecords.newRecord()
+                .in("notify:shop:default").withId(RecordId.of("1700000000002-0")).ofMap(fields);
+
+        // When
+        notificationBus.onMessage(record);
+
+        // Then
+        assertFalse(fields.containsKey("orderId"));
+        assertFalse(fields.containsKey("number"));
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(webSocketServer).sendToShop(eq("default"), message.capture(), isNull());
+        JSONObject json = JSON.parseObject(message.getValue());
+        assertEquals(3, json.getIntValue("type"));
+        assertEquals("job-1", json.getString("jobId"));
+        assertFalse(json.containsKey("orderId"));
+        assertEquals("报表已生成", json.getString("content"));
+    }
+
+    @Test
+    @DisplayName("Should replay records after the last seen id up to the replay limit")
+    void testReplay() {
+        // Given
+        notifyProperties.setReplayLimit(2);
+        when(stringRedisTemplate.opsForStream()).thenReturn(streamOperations);
+        List<MapRecord<String, Object, Object>> records = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Map<Object, Object> fields = new HashMap<>(OrderNotification.newOrder((long) i, "n" + i).toFields());
+            records.add(StreamRecords.newRecord().in("notify:shop:default")
+                    .withId(RecordId.of("1700000000000-" + i)).ofMap(fields));
+        }
+        when(streamOperations.range(eq("notify:shop:default"), any(Range.class), any(Limit.class))).thenReturn(records);
+
+        // When
+        List<String> replayed = new ArrayList<>();
+        int count = notificationBus.replay("default", "1700000000000-0", replayed::add);
+
+        // Then: the record the console already has is skipped
+        assertEquals(2, count);
+        assertEquals("1700000000000-1", JSON.parseObject(replayed.get(0)).getString("id"));
+        assertEquals("1700000000000-2", JSON.parseObject(replayed.get(1)).getString("id"));
+    }
+
+    @Test
+    @DisplayName("Should skip the replay when the stream cannot be read")
+    void testReplayFailure() {
+        // Given
+        when(stringRedisTemplate.opsForStream()).thenReturn(streamOperations);
+        when(streamOperations.range(anyString(), any(Range.class), any(Limit.class)))
+                .thenThrow(new IllegalStateException("bad id"));
+
+        // When
+        int count = notificationBus.replay("default", "not-an-id", message -> fail());
+
+        // Then
+        assertEquals(0, count);
+    }
+}
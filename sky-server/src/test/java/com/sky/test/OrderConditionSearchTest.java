@@ -0,0 +1,133 @@
+package com.sky.test;
+
+import com.github.pagehelper.Page;
+import com.github.pagehelper.PageHelper;
+import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.OrderDetail;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.result.PageResult;
+import com.sky.service.impl.OrderServiceImpl;
+import com.sky.vo.OrderVO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * OrderServiceImpl.conditionSearch Test
+ * Compares the number of detail queries of the batched loader against the previous per-order loop
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("OrderServiceImpl conditionSearch Test")
+class OrderConditionSearchTest {
+
+    private static final int PAGE_SIZE = 50;
+
+    @Mock
+    private OrderMapper orderMapper;
+
+    @Mock
+    private OrderDetailMapper orderDetailMapper;
+
+    @InjectMocks
+    private OrderServiceImpl orderService;
+
+    private OrdersPageQueryDTO queryDTO;
+
+    @BeforeEach
+    void setUp() {
+        queryDTO = new OrdersPageQueryDTO();
+        queryDTO.setPage(1);
+        queryDTO.setPageSize(PAGE_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        PageHelper.clearPage();
+    }
+
+    @Test
+    @DisplayName("Should load details of a full page with one query instead of one per order")
+    void testConditionSearch_OneDetailQueryPerPage() {
+        // Given
+        Page<OrderVO> page = buildPage(PAGE_SIZE);
+        List<OrderDetail> details = new ArrayList<>();
+        for (long id = 1; id <= PAGE_SIZE; id++) {
+            details.add(OrderDetail.builder().orderId(id).name("dish" + id).number(1).build());
+            details.add(OrderDetail.builder().orderId(id).name("rice").number(2).build());
+        }
+        when(orderMapper.list(queryDTO)).thenReturn(page);
+        when(orderDetailMapper.selectByOrderIds(anyList())).thenReturn(details);
+
+        // When
+        PageResult result = orderService.conditionSearch(queryDTO);
+
+        // Then: 1 page query + 1 detail query, the previous loop issued 1 + PAGE_SIZE
+        int batchedQueries = 1 + mockingDetails(orderDetailMapper).getInvocations().size();
+        assertEquals(2, batchedQueries);
+        assertTrue(batchedQueries < 1 + PAGE_SIZE);
+        verify(orderDetailMapper, never()).selectByOrderId(anyLong());
+        verify(orderDetailMapper).selectByOrderIds(argThat(ids -> ids.size() == PAGE_SIZE));
+
+        assertEquals(PAGE_SIZE, result.getTotal());
+        OrderVO first = (OrderVO) result.getRecords().get(0);
+        assertEquals(2, first.getOrderDetailList().size());
+        assertEquals("dish1*1;rice*2;", first.getOrderDishes());
+    }
+
+    @Test
+    @DisplayName("Should give orders without details an empty list")
+    void testConditionSearch_OrderWithoutDetails() {
+        // Given
+        Page<OrderVO> page = buildPage(2);
+        List<OrderDetail> details = new ArrayList<>();
+        details.add(OrderDetail.builder().orderId(1L).name("dish1").number(3).build());
+        when(orderMapper.list(queryDTO)).thenReturn(page);
+        when(orderDetailMapper.selectByOrderIds(anyList())).thenReturn(details);
+
+        // When
+        PageResult result = orderService.conditionSearch(queryDTO);
+
+        // Then
+        OrderVO second = (OrderVO) result.getRecords().get(1);
+        assertTrue(second.getOrderDetailList().isEmpty());
+        assertEquals("", second.getOrderDishes());
+    }
+
+    @Test
+    @DisplayName("Should not query details for an empty page")
+    void testConditionSearch_EmptyPage() {
+        // Given
+        when(orderMapper.list(queryDTO)).thenReturn(buildPage(0));
+
+        // When
+        PageResult result = orderService.conditionSearch(queryDTO);
+
+        // Then
+        assertEquals(0, result.getTotal());
+        verifyNoInteractions(orderDetailMapper);
+    }
+
+    private Page<OrderVO> buildPage(int size) {
+        Page<OrderVO> page = new Page<>(1, PAGE_SIZE);
+        for (long id = 1; id <= size; id++) {
+            OrderVO orderVO = new OrderVO();
+            orderVO.setId(id);
+            page.add(orderVO);
+        }
+        page.setTotal(size);
+        return page;
+    }
+}
@@ -0,0 +1,117 @@
+package com.sky.test;
+
+import com.sky.entity.Orders;
+import com.sky.lease.JobLeaseManager;
+import com.sky.properties.OrderProperties;
+import com.sky.service.OrderExpireService;
+import com.sky.service.OrderTransitionService;
+import com.sky.service.impl.OrderExpireServiceImpl;
+import com.sky.task.OrderTask;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * OrderExpireServiceImpl Test
+ * Verifies unpaid orders are registered at their deadline, claimed batches are cancelled together,
+ * and a batch that fails is put back on the queue
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("OrderExpireServiceImpl Test")
+class OrderExpireServiceTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    @Mock
+    private OrderTransitionService orderTransitionService;
+
+    @Spy
+    private OrderProperties orderProperties = new OrderProperties();
+
+    @InjectMocks
+    private OrderExpireServiceImpl orderExpireService;
+
+    @Test
+    @DisplayName("Should register the order at order time plus the pay timeout")
+    void testRegister() {
+        // Given
+        when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        LocalDateTime orderTime = LocalDateTime.of(2024, 3, 1, 12, 0, 0);
+
+        // When
+        orderExpireService.register(42L, orderTime);
+
+        // Then
+        long deadline = orderTime.plusMinutes(15).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        verify(zSetOperations).add("order:expire", "42", (double) deadline);
+    }
+
+    @Test
+    @DisplayName("Should cancel claimed orders that are still pending payment as one batch")
+    void testCancelExpired() {
+        // Given
+        List<Long> claimed = Arrays.asList(1L, 2L, 3L);
+        when(orderTransitionService.transition(eq(claimed), eq(Orders.PENDING_PAYMENT), any(Orders.class))).thenReturn(2);
+
+        // When
+        int cancelled = orderExpireService.cancelExpired(claimed);
+
+        // Then
+        assertEquals(2, cancelled);
+        ArgumentCaptor<Orders> target = ArgumentCaptor.forClass(Orders.class);
+        verify(orderTransitionService, times(1)).transition(eq(claimed), eq(Orders.PENDING_PAYMENT), target.capture());
+        assertEquals(Orders.CANCELLED, target.getValue().getStatus());
+        assertEquals("付款超时", target.getValue().getCancelReason());
+        assertNotNull(target.getValue().getCancelTime());
+    }
+
+    @Test
+    @DisplayName("Should keep claiming full batches and requeue a batch that fails")
+    void testTask_DrainsAndRequeues() {
+        // Given
+        OrderExpireService service = mock(OrderExpireService.class);
+        OrderProperties properties = new OrderProperties();
+        properties.setExpireBatchSize(2);
+        OrderTask orderTask = new OrderTask();
+        ReflectionTestUtils.setField(orderTask, "orderExpireService", service);
+        ReflectionTestUtils.setField(orderTask, "orderProperties", properties);
+        JobLeaseManager jobLeaseManager = mock(JobLeaseManager.class);
+        when(jobLeaseManager.renew()).thenReturn(true);
+        ReflectionTestUtils.setField(orderTask, "jobLeaseManager", jobLeaseManager);
+        List<Long> first = Arrays.asList(1L, 2L);
+        List<Long> second = Arrays.asList(3L, 4L);
+        when(service.claimDue(2)).thenReturn(first, second, new ArrayList<>());
+        when(service.cancelExpired(first)).thenReturn(2);
+        when(service.cancelExpired(second)).thenThrow(new IllegalStateException("db down"));
+
+        // When
+        orderTask.expireUnpaidOrders();
+
+        // Then
+        verify(service, times(2)).claimDue(2);
+        verify(service).requeue(second);
+        verify(service, never()).requeue(first);
+    }
+}
@@ -0,0 +1,281 @@
+package com.sky.test;
+
+import com.sky.cache.MenuPrice;
+import com.sky.cache.MenuPriceIndex;
+import com.sky.constant.StatusConstant;
+import com.sky.context.BaseContext;
+import com.sky.dto.OrdersSubmitDTO;
+import com.sky.entity.AddressBook;
+import com.sky.entity.Orders;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.OrderBusinessException;
+import com.sky.idempotent.IdempotencyStore;
+import com.sky.mapper.AddressBookMapper;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.IdempotencyProperties;
+import com.sky.properties.OrderIdProperties;
+import com.sky.properties.OrderProperties;
+import com.sky.service.OrderExpireService;
+import com.sky.service.ShoppingCartService;
+import com.sky.service.StatisticsService;
+import com.sky.service.impl.OrderServiceImpl;
+import com.sky.utils.SnowflakeIdGenerator;
+import com.sky.vo.OrderSubmitVO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * OrderServiceImpl.submit idempotency Test
+ * Replays and races submits carrying the same Idempotency-Key against an in-memory Redis
+ * and checks that exactly one order is written and every caller sees the same response
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("OrderServiceImpl Submit Idempotency Test")
+class OrderSubmitIdempotencyTest {
+
+    private static final Long USER_ID = 9L;
+
+    private static final int THREADS = 50;
+
+    @Mock
+    private AddressBookMapper addressBookMapper;
+
+    @Mock
+    private OrderMapper orderMapper;
+
+    @Mock
+    private OrderDetailMapper orderDetailMapper;
+
+    @Mock
+    private ShoppingCartService shoppingCartService;
+
+    @Mock
+    private StatisticsService statisticsService;
+
+    @Mock
+    private OrderExpireService orderExpireService;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Spy
+    private SnowflakeIdGenerator orderIdGenerator = new SnowflakeIdGenerator(1, 1704038400000L, 10);
+
+    @Spy
+    private OrderIdProperties orderIdProperties = new OrderIdProperties();
+
+    @Spy
+    private OrderProperties orderProperties = new OrderProperties();
+
+    @Mock
+    private MenuPriceIndex menuPriceIndex;
+
+    @InjectMocks
+    private OrderServiceImpl orderService;
+
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+
+    private final AtomicLong orderIds = new AtomicLong();
+
+    private OrdersSubmitDTO dto;
+
+    private IdempotencyStore idempotencyStore;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyStore = new IdempotencyStore();
+        ReflectionTestUtils.setField(idempotencyStore, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(idempotencyStore, "idempotencyProperties", new IdempotencyProperties());
+        ReflectionTestUtils.setField(orderService, "idempotencyStore", idempotencyStore);
+
+        lenient().when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenAnswer(invocation -> redis.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        lenient().when(valueOperations.get(anyString()))
+                .thenAnswer(invocation -> redis.get(invocation.<String>getArgument(0)));
+        lenient().doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOperations).set(anyString(), anyString(), anyLong(), any(TimeUnit.class));
+        lenient().when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any()))
+                .thenAnswer(invocation -> {
+                    List<String> keys = invocation.getArgument(1);
+                    return redis.remove(keys.get(0), invocation.getArgument(2)) ? 1L : 0L;
+                });
+
+        lenient().when(addressBookMapper.getById(1L)).thenReturn(AddressBook.builder().id(1L)
+                .consignee("张三").phone("13800000000").cityName("北京市").districtName("海淀区").detail("1号").build());
+        lenient().when(shoppingCartService.listByUserId(USER_ID)).thenReturn(Collections.singletonList(
+                ShoppingCart.builder().dishId(1L).name("宫保鸡丁").number(2).amount(new BigDecimal("28.00")).build()));
+        lenient().when(menuPriceIndex.getDish(1L))
+                .thenReturn(new MenuPrice("宫保鸡丁", new BigDecimal("28.00"), StatusConstant.ENABLE));
+        lenient().doAnswer(invocation -> {
+            Orders orders = invocation.getArgument(0);
+            orders.setId(orderIds.incrementAndGet());
+            // 模拟数据库写入耗时，让并发请求互相重叠
+            Thread.sleep(20);
+            return null;
+        }).when(orderMapper).insert(any(Orders.class));
+
+        dto = new OrdersSubmitDTO();
+        dto.setAddressBookId(1L);
+        dto.setPackAmount(2);
+        dto.setTablewareNumber(1);
+        dto.setTablewareStatus(0);
+        dto.setAmount(new BigDecimal("64.00"));
+        BaseContext.setCurrentId(USER_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    @Test
+    @DisplayName("Should return the first response for a replayed key without writing again")
+    void testReplay() {
+        // When
+        OrderSubmitVO first = orderService.submit(dto, "key-1");
+        OrderSubmitVO second = orderService.submit(dto, "key-1");
+
+        // Then
+        assertEquals(first, second);
+        verify(orderMapper, times(1)).insert(any(Orders.class));
+        verify(orderDetailMapper, times(1)).insert(anyList());
+        verify(shoppingCartService, times(1)).cleanByUserId(USER_ID);
+        verify(addressBookMapper, times(1)).getById(1L);
+    }
+
+    @Test
+    @DisplayName("Should create one order when concurrent requests share a key")
+    void testConcurrentSameKey() throws Exception {
+        // Given
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<OrderSubmitVO>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(pool.submit(() -> {
+                BaseContext.setCurrentId(USER_ID);
+                start.await();
+                return orderService.submit(dto, "key-2");
+            }));
+        }
+
+        // When
+        start.countDown();
+        List<OrderSubmitVO> results = new ArrayList<>();
+        int inFlight = 0;
+        for (Future<OrderSubmitVO> future : futures) {
+            try {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            } catch (Exception e) {
+                assertTrue(e.getCause() instanceof OrderBusinessException);
+                inFlight++;
+            }
+        }
+        pool.shutdown();
+
+        // Then: one order was written, the others were told it is in flight or got the same response
+        verify(orderMapper, times(1)).insert(any(Orders.class));
+        assertEquals(THREADS, results.size() + inFlight);
+        results.forEach(result -> assertEquals(results.get(0), result));
+        assertEquals(results.get(0), orderService.submit(dto, "key-2"));
+    }
+
+    @Test
+    @DisplayName("Should release the key when the submit fails so the client can retry")
+    void testFailureReleasesKey() {
+        // Given
+        dto.setAddressBookId(2L);
+
+        // When
+        assertThrows(OrderBusinessException.class, () -> orderService.submit(dto, "key-3"));
+        dto.setAddressBookId(1L);
+        OrderSubmitVO retried = orderService.submit(dto, "key-3");
+
+        // Then
+        assertNotNull(retried.getId());
+        verify(orderMapper, times(1)).insert(any(Orders.class));
+    }
+
+    @Test
+    @DisplayName("Should not release a retry's placeholder after the first request's placeholder expired")
+    void testExpiredPlaceholderNotReleasedByOwner() {
+        // Given: the first submit outlives its placeholder and a retry takes the key
+        String key = "idempotent:order:submit:" + USER_ID + ":key-5";
+        String first = idempotencyStore.newToken();
+        String retry = idempotencyStore.newToken();
+        assertNull(idempotencyStore.acquire(key, first));
+        redis.remove(key);
+        assertNull(idempotencyStore.acquire(key, retry));
+
+        // When: the first submit rolls back
+        idempotencyStore.release(key, first);
+
+        // Then: the retry still owns the key and a third request sees it in flight
+        assertNotEquals(first, retry);
+        assertEquals(retry, redis.get(key));
+        assertTrue(IdempotencyStore.isPending(idempotencyStore.acquire(key, idempotencyStore.newToken())));
+        assertThrows(OrderBusinessException.class, () -> orderService.submit(dto, "key-5"));
+        verify(orderMapper, never()).insert(any(Orders.class));
+    }
+
+    @Test
+    @DisplayName("Should keep the stored response when a post-commit side effect fails")
+    void testSideEffectFailureKeepsResponse() {
+        // Given
+        doThrow(new IllegalStateException("redis down")).when(shoppingCartService).cleanByUserId(USER_ID);
+        doThrow(new IllegalStateException("redis down")).when(orderExpireService).register(any(), any());
+
+        // When
+        OrderSubmitVO first = orderService.submit(dto, "key-4");
+        OrderSubmitVO retried = orderService.submit(dto, "key-4");
+
+        // Then: the retry replays the first order instead of creating a second one
+        assertEquals(first, retried);
+        verify(orderMapper, times(1)).insert(any(Orders.class));
+    }
+
+    @Test
+    @DisplayName("Should create a new order for each submit without a key")
+    void testWithoutKey() {
+        // When
+        OrderSubmitVO first = orderService.submit(dto, null);
+        OrderSubmitVO second = orderService.submit(dto, null);
+
+        // Then
+        assertNotEquals(first.getOrderNumber(), second.getOrderNumber());
+        verify(orderMapper, times(2)).insert(any(Orders.class));
+        verifyNoInteractions(stringRedisTemplate);
+    }
+}
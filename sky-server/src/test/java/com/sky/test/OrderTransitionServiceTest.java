@@ -0,0 +1,141 @@
+package com.sky.test;
+
+import com.sky.entity.Orders;
+import com.sky.lease.JobLeaseManager;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderProperties;
+import com.sky.service.OrderTransitionService;
+import com.sky.service.StatisticsService;
+import com.sky.service.impl.OrderTransitionServiceImpl;
+import com.sky.task.OrderTask;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * OrderTransitionServiceImpl Test
+ * Verifies a batch is transitioned with one status-guarded UPDATE and exact rollup deltas,
+ * and that OrderTask walks a large backlog page by page by primary key without loading entities
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("OrderTransitionServiceImpl Test")
+class OrderTransitionServiceTest {
+
+    @Mock
+    private OrderMapper orderMapper;
+
+    @Mock
+    private StatisticsService statisticsService;
+
+    @InjectMocks
+    private OrderTransitionServiceImpl orderTransitionService;
+
+    @Test
+    @DisplayName("Should transition only orders still in the source status with one UPDATE")
+    void testTransition() {
+        // Given: order 2 was paid after it was scanned
+        List<Long> scanned = Arrays.asList(1L, 2L, 3L);
+        List<Orders> locked = Arrays.asList(order(1L), order(3L));
+        when(orderMapper.selectByIdsForUpdate(scanned, Orders.PENDING_PAYMENT)).thenReturn(locked);
+        when(orderMapper.transitionByIds(anyList(), eq(Orders.PENDING_PAYMENT), any(Orders.class))).thenReturn(2);
+        Orders target = Orders.builder().status(Orders.CANCELLED).cancelReason("付款超时").build();
+
+        // When
+        int count = orderTransitionService.transition(scanned, Orders.PENDING_PAYMENT, target);
+
+        // Then
+        assertEquals(2, count);
+        verify(orderMapper, times(1)).transitionByIds(Arrays.asList(1L, 3L), Orders.PENDING_PAYMENT, target);
+        verify(statisticsService).onOrdersStatusChange(locked, Orders.PENDING_PAYMENT, Orders.CANCELLED);
+        verify(orderMapper, never()).update(any(Orders.class));
+    }
+
+    @Test
+    @DisplayName("Should skip the UPDATE when no order is still in the source status")
+    void testTransition_NothingLocked() {
+        // Given
+        when(orderMapper.selectByIdsForUpdate(anyList(), eq(Orders.DELIVERY_IN_PROGRESS))).thenReturn(Collections.emptyList());
+
+        // When
+        int count = orderTransitionService.transition(Arrays.asList(5L), Orders.DELIVERY_IN_PROGRESS,
+                Orders.builder().status(Orders.COMPLETED).build());
+
+        // Then
+        assertEquals(0, count);
+        verify(orderMapper, never()).transitionByIds(anyList(), any(), any(Orders.class));
+        verifyNoInteractions(statisticsService);
+    }
+
+    @Test
+    @DisplayName("Should clear a 100k backlog in keyset pages and keep going past a failed page")
+    void testTask_KeysetBacklog() {
+        // Given: 100k stale unpaid orders
+        TreeSet<Long> backlog = new TreeSet<>();
+        for (long id = 1; id <= 100_000; id++) {
+            backlog.add(id);
+        }
+        OrderProperties properties = new OrderProperties();
+        OrderTransitionService service = mock(OrderTransitionService.class);
+        OrderTask orderTask = new OrderTask();
+        ReflectionTestUtils.setField(orderTask, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(orderTask, "orderTransitionService", service);
+        ReflectionTestUtils.setField(orderTask, "orderProperties", properties);
+        JobLeaseManager jobLeaseManager = mock(JobLeaseManager.class);
+        when(jobLeaseManager.renew()).thenReturn(true);
+        ReflectionTestUtils.setField(orderTask, "jobLeaseManager", jobLeaseManager);
+        when(orderMapper.selectIdsByStatus(eq(Orders.PENDING_PAYMENT), any(LocalDateTime.class), anyLong(), anyInt()))
+                .thenAnswer(invocation -> {
+                    Long afterId = invocation.getArgument(2);
+                    int limit = invocation.getArgument(3);
+                    List<Long> page = new ArrayList<>();
+                    for (Long id : backlog.tailSet(afterId, false)) {
+                        if (page.size() == limit) {
+                            break;
+                        }
+                        page.add(id);
+                    }
+                    return page;
+                });
+        when(service.transition(anyList(), eq(Orders.PENDING_PAYMENT), any(Orders.class)))
+                .thenAnswer(invocation -> {
+                    List<Long> ids = invocation.getArgument(0);
+                    if (ids.get(0) == 1001L) {
+                        throw new IllegalStateException("lock wait timeout");
+                    }
+                    return ids.size();
+                });
+
+        // When
+        orderTask.CheckOrderInUnPaid();
+
+        // Then: 200 pages of 500 plus the empty page that ends the scan, the failed page is skipped
+        verify(orderMapper, times(201)).selectIdsByStatus(eq(Orders.PENDING_PAYMENT), any(LocalDateTime.class),
+                anyLong(), eq(properties.getTransitionBatchSize()));
+        ArgumentCaptor<Orders> target = ArgumentCaptor.forClass(Orders.class);
+        verify(service, times(200)).transition(anyList(), eq(Orders.PENDING_PAYMENT), target.capture());
+        assertEquals(Orders.CANCELLED, target.getValue().getStatus());
+        verify(orderMapper, never()).update(any(Orders.class));
+    }
+
+    private Orders order(Long id) {
+        return Orders.builder().id(id).status(Orders.PENDING_PAYMENT)
+                .orderTime(LocalDateTime.of(2024, 3, 1, 12, 0)).amount(new BigDecimal("30.00")).build();
+    }
+}
@@ -0,0 +1,165 @@
+package com.sky.test;
+
+import com.sky.explain.QueryPlanAdvisor;
+import com.sky.explain.QueryPlanIssue;
+import com.sky.explain.SampleParameters;
+import com.sky.properties.ExplainProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Query plan Test
+ * Loads every mapper statement the way MyBatis does and checks sample parameters bind all of them.
+ * With -Dsky.explain.url=jdbc:mysql://localhost:3306/sky_take_out (plus sky.explain.username / password)
+ * it also migrates that local database and fails when a hot table is scanned without any usable index
+ */
+@Slf4j
+@DisplayName("Query Plan Test")
+class QueryPlanTest {
+
+    @Test
+    @DisplayName("Should bind every mapper statement with sample parameters")
+    void testSampleParametersBindEveryStatement() throws Exception {
+        // Given
+        Configuration configuration = mapperConfiguration();
+        SampleParameters sampleParameters = new SampleParameters(configuration);
+        List<String> failures = new ArrayList<>();
+
+        // When
+        int bound = 0;
+        for (String id : configuration.getMappedStatementNames()) {
+            if (!id.contains(".")) {
+                continue;
+            }
+            MappedStatement statement = configuration.getMappedStatement(id);
+            try {
+                statement.getBoundSql(sampleParameters.forStatement(id)).getSql();
+                bound++;
+            } catch (Exception e) {
+                failures.add(id + ": " + e.getMessage());
+            }
+        }
+
+        // Then
+        assertTrue(failures.isEmpty(), String.join("\n", failures));
+        assertTrue(bound > 50, "only " + bound + " statements loaded");
+    }
+
+    @Test
+    @DisplayName("Should turn on every dynamic condition so the plan covers the widest query")
+    void testDynamicConditions() throws Exception {
+        // Given
+        Configuration configuration = mapperConfiguration();
+        SampleParameters sampleParameters = new SampleParameters(configuration);
+
+        // When
+        String count = sql(configuration, sampleParameters, "com.sky.mapper.OrderMapper.selectCountByMap");
+        String transition = sql(configuration, sampleParameters, "com.sky.mapper.OrderMapper.transitionByIds");
+        String stream = sql(configuration, sampleParameters, "com.sky.mapper.OrderMapper.streamByOrderTime");
+
+        // Then
+        assertTrue(count.contains("order_time >") && count.contains("order_time <") && count.contains("status ="), count);
+        assertTrue(transition.contains("id in") && transition.contains("cancel_reason"), transition);
+        assertTrue(stream.contains("order_time between"), stream);
+    }
+
+    @Test
+    @DisplayName("Should resolve table aliases from comma joins and explicit joins")
+    void testTableAliases() {
+        // When
+        Map<String, String> top10 = QueryPlanAdvisor.tableAliases("select od.name, sum(od.number) number "
+                + "from order_detail od , orders o where od.order_id = o.id and o.status = 5 group by od.name");
+        Map<String, String> page = QueryPlanAdvisor.tableAliases("select d.*, c.name categoryName from dish d "
+                + "left join category c on d.category_id = c.id where d.status = ?");
+        Map<String, String> plain = QueryPlanAdvisor.tableAliases("select count(*) from orders where status = ?");
+
+        // Then
+        assertEquals("order_detail", top10.get("od"));
+        assertEquals("orders", top10.get("o"));
+        assertEquals("dish", page.get("d"));
+        assertEquals("category", page.get("c"));
+        assertEquals("orders", plain.get("orders"));
+        assertFalse(plain.containsKey("where"));
+        assertTrue(QueryPlanAdvisor.isUnindexedScan("ALL", null));
+        assertFalse(QueryPlanAdvisor.isUnindexedScan("ALL", "idx_orders_status_time"));
+        assertFalse(QueryPlanAdvisor.isUnindexedScan("range", null));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "sky.explain.url", matches = ".+")
+    @DisplayName("Should find an index for every statement on the hot tables")
+    void testExplainAgainstLocalDatabase() throws Exception {
+        // Given: the local database carries every migration
+        String url = System.getProperty("sky.explain.url");
+        String username = System.getProperty("sky.explain.username", "root");
+        String password = System.getProperty("sky.explain.password", "");
+        Flyway.configure().dataSource(url, username, password)
+                .baselineOnMigrate(true).baselineVersion("0")
+                .load().migrate();
+        ExplainProperties explainProperties = new ExplainProperties();
+
+        // When
+        List<QueryPlanIssue> issues = new QueryPlanAdvisor(mapperConfiguration(),
+                new DriverManagerDataSource(url, username, password),
+                explainProperties.getHotTables(), explainProperties.getAllowedScans()).check();
+
+        // Then
+        List<String> scans = new ArrayList<>();
+        for (QueryPlanIssue issue : issues) {
+            log.info("{}", issue);
+            if (QueryPlanIssue.FULL_SCAN.equals(issue.getKind())) {
+                scans.add(issue.toString());
+            }
+        }
+        assertTrue(scans.isEmpty(), String.join("\n", scans));
+    }
+
+    private String sql(Configuration configuration, SampleParameters sampleParameters, String id) {
+        return configuration.getMappedStatement(id).getBoundSql(sampleParameters.forStatement(id)).getSql()
+                .replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Parses the XML mappers, then the mappers that only use annotations, like the MyBatis starter does
+     */
+    private static Configuration mapperConfiguration() throws Exception {
+        Configuration configuration = new Configuration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        // Same as mybatis.type-aliases-package: the XML mappers use entity simple names as resultType
+        configuration.getTypeAliasRegistry().registerAliases("com.sky.entity");
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        for (Resource xml : resolver.getResources("classpath*:mapper/*.xml")) {
+            try (InputStream inputStream = xml.getInputStream()) {
+                new XMLMapperBuilder(inputStream, configuration, xml.getURL().toString(),
+                        configuration.getSqlFragments()).parse();
+            }
+        }
+        for (Resource type : resolver.getResources("classpath*:com/sky/mapper/*.class")) {
+            String name = type.getFilename();
+            if (name == null || name.contains("$")) {
+                continue;
+            }
+            Class<?> mapper = Class.forName("com.sky.mapper." + name.substring(0, name.length() - ".class".length()));
+            if (mapper.isInterface() && !configuration.hasMapper(mapper)) {
+                configuration.addMapper(mapper);
+            }
+        }
+        return configuration;
+    }
+}
@@ -0,0 +1,236 @@
+package com.sky.test;
+
+import com.sky.dto.DailyStatisticsDTO;
+import com.sky.entity.Orders;
+import com.sky.exception.ReportBusinessException;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.ReportProperties;
+import com.sky.service.StatisticsService;
+import com.sky.service.impl.ReportServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Report export Test
+ * Streams a year of daily rows plus per-order detail sheets and checks the layout,
+ * and that heap stays flat while 500k detail rows are written
+ */
+@Slf4j
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Report Export Test")
+class ReportExportTest {
+
+    private static final int DETAIL_ROWS = 500_000;
+
+    private static final int SAMPLE_EVERY = 50_000;
+
+    // allowed growth of the used heap between the first and the last sample
+    private static final long MAX_HEAP_GROWTH = 32L * 1024 * 1024;
+
+    @Mock
+    private StatisticsService statisticsService;
+
+    @Mock
+    private OrderMapper orderMapper;
+
+    @Mock
+    private OrderDetailMapper orderDetailMapper;
+
+    @Mock
+    private HttpServletResponse response;
+
+    @Spy
+    private ReportProperties reportProperties = new ReportProperties();
+
+    @InjectMocks
+    private ReportServiceImpl reportService;
+
+    @Test
+    @DisplayName("Should write a year of daily rows and a detail sheet in one export")
+    void testExportLayout() throws Exception {
+        // Given
+        LocalDate begin = LocalDate.of(2024, 1, 1);
+        LocalDate end = LocalDate.of(2024, 12, 31);
+        when(statisticsService.getDailyStatistics(begin, end)).thenReturn(days(begin, end));
+        streamOrders(1000, null);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(servletStream(body));
+
+        // When
+        reportService.report(response, begin, end, true);
+
+        // Then
+        try (XSSFWorkbook excel = new XSSFWorkbook(new ByteArrayInputStream(body.toByteArray()))) {
+            Sheet overview = excel.getSheetAt(0);
+            assertEquals("表表日期：2024-01-01至2024-12-31", overview.getRow(1).getCell(1).getStringCellValue());
+            assertEquals(366 * 100.0, overview.getRow(3).getCell(2).getNumericCellValue(), 0.001);
+            assertEquals("日期", overview.getRow(6).getCell(1).getStringCellValue());
+            assertEquals("2024-01-01", overview.getRow(7).getCell(1).getStringCellValue());
+            assertEquals("2024-12-31", overview.getRow(7 + 365).getCell(1).getStringCellValue());
+            assertEquals(0.5, overview.getRow(7).getCell(4).getNumericCellValue(), 0.001);
+            assertEquals(7 + 365, overview.getLastRowNum());
+
+            Sheet detail = excel.getSheet("订单明细");
+            assertEquals("订单号", detail.getRow(0).getCell(0).getStringCellValue());
+            assertEquals(1000, detail.getLastRowNum());
+            assertEquals("已完成", detail.getRow(1).getCell(2).getStringCellValue());
+            assertEquals(25.5, detail.getRow(1).getCell(4).getNumericCellValue(), 0.001);
+        }
+        verify(response).setContentType(startsWith("application/vnd.openxmlformats"));
+    }
+
+    @Test
+    @DisplayName("Should keep heap flat while exporting 500k detail rows")
+    void testHeapStaysFlat() throws Exception {
+        // Given
+        LocalDate begin = LocalDate.of(2024, 1, 1);
+        LocalDate end = LocalDate.of(2024, 12, 31);
+        when(statisticsService.getDailyStatistics(begin, end)).thenReturn(days(begin, end));
+        List<Long> samples = new ArrayList<>();
+        streamOrders(DETAIL_ROWS, samples);
+        CountingOutputStream body = new CountingOutputStream();
+        when(response.getOutputStream()).thenReturn(servletStream(body));
+
+        // When
+        reportService.report(response, begin, end, true);
+
+        // Then
+        long growth = samples.get(samples.size() - 1) - samples.get(0);
+        log.info("exported {} detail rows, {} bytes, heap samples (MB): {}", DETAIL_ROWS, body.count, toMegabytes(samples));
+        assertEquals(DETAIL_ROWS / SAMPLE_EVERY, samples.size());
+        assertTrue(growth < MAX_HEAP_GROWTH, "heap grew " + growth / 1024 / 1024 + "MB while streaming");
+        assertTrue(body.count > 0);
+    }
+
+    @Test
+    @DisplayName("Should reject a range whose begin is after its end")
+    void testInvalidRange() {
+        // When / Then
+        assertThrows(ReportBusinessException.class, () -> reportService.report(response,
+                LocalDate.of(2024, 2, 1), LocalDate.of(2024, 1, 1), false));
+        verifyNoInteractions(statisticsService, orderMapper);
+    }
+
+    private List<DailyStatisticsDTO> days(LocalDate begin, LocalDate end) {
+        List<DailyStatisticsDTO> days = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            days.add(new DailyStatisticsDTO(date, 4, 2, 100.0, 1, days.size() + 1));
+        }
+        return days;
+    }
+
+    /**
+     * Feeds generated orders to the export's result handler one at a time, like a streaming result set,
+     * and samples the used heap after a full GC every SAMPLE_EVERY rows when samples is given
+     */
+    private void streamOrders(int rows, List<Long> samples) {
+        doAnswer(invocation -> {
+            ResultHandler<Orders> handler = invocation.getArgument(2);
+            DefaultResultContext<Orders> context = new DefaultResultContext<>();
+            LocalDateTime orderTime = LocalDateTime.of(2024, 1, 1, 8, 0);
+            for (int i = 0; i < rows; i++) {
+                Orders order = Orders.builder()
+                        .id((long) i)
+                        .number(String.valueOf(1704067200000L + i))
+                        .status(Orders.COMPLETED)
+                        .payStatus(Orders.PAID)
+                        .amount(new BigDecimal("25.50"))
+                        .orderTime(orderTime.plusSeconds(i * 60L))
+                        .consignee("顾客" + i)
+                        .phone("138" + String.format("%08d", i))
+                        .address("某区某路" + i + "号")
+                        .build();
+                context.nextResultObject(order);
+                handler.handleResult(context);
+                if (samples != null && (i + 1) % SAMPLE_EVERY == 0) {
+                    samples.add(usedHeap());
+                }
+            }
+            return null;
+        }).when(orderMapper).streamByOrderTime(any(), any(), any());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static List<Long> toMegabytes(List<Long> samples) {
+        List<Long> megabytes = new ArrayList<>();
+        for (Long sample : samples) {
+            megabytes.add(sample / 1024 / 1024);
+        }
+        return megabytes;
+    }
+
+    private static ServletOutputStream servletStream(OutputStream target) {
+        return new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) throws java.io.IOException {
+                target.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws java.io.IOException {
+                target.write(b, off, len);
+            }
+        };
+    }
+
+    /**
+     * Discards the workbook bytes so the response body does not count against the heap
+     */
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
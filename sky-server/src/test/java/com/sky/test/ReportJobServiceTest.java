@@ -0,0 +1,298 @@
+package com.sky.test;
+
+import com.sky.dto.ReportJobDTO;
+import com.sky.exception.ReportBusinessException;
+import com.sky.properties.ReportProperties;
+import com.sky.service.ReportService;
+import com.sky.service.impl.ReportJobServiceImpl;
+import com.sky.vo.ReportJobVO;
+import com.sky.webSocket.NotificationBus;
+import com.sky.webSocket.OrderNotification;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ReportJobService Test
+ * Runs report jobs on the real job executor against mocked Redis and checks identical requests
+ * are generated once, settled ranges are cached without expiry, failures are recorded and files
+ * whose cache marker expired are swept
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ReportJobService Test")
+class ReportJobServiceTest {
+
+    private static final long WAIT_MILLIS = 5000;
+
+    @TempDir
+    Path cacheDir;
+
+    @Mock
+    private ReportService reportService;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private NotificationBus notificationBus;
+
+    @Spy
+    private ReportProperties reportProperties = new ReportProperties();
+
+    @InjectMocks
+    private ReportJobServiceImpl reportJobService;
+
+    private final Map<String, Map<Object, Object>> jobs = new HashMap<>();
+
+    private final Map<String, String> values = new HashMap<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        reportProperties.setCacheDir(cacheDir.toString());
+        lenient().when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        // a tiny in-memory Redis for the keys the job service touches
+        lenient().doAnswer(invocation -> {
+            synchronized (jobs) {
+                jobs.computeIfAbsent(invocation.getArgument(0), key -> new HashMap<>()).putAll(invocation.getArgument(1));
+            }
+            return null;
+        }).when(hashOperations).putAll(anyString(), anyMap());
+        lenient().when(hashOperations.entries(anyString())).thenAnswer(invocation -> {
+            synchronized (jobs) {
+                return new HashMap<>(jobs.getOrDefault(invocation.<String>getArgument(0), new HashMap<>()));
+            }
+        });
+        lenient().when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenAnswer(invocation -> {
+            synchronized (values) {
+                return values.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null;
+            }
+        });
+        lenient().when(valueOperations.get(anyString())).thenAnswer(invocation -> {
+            synchronized (values) {
+                return values.get(invocation.<String>getArgument(0));
+            }
+        });
+        lenient().doAnswer(invocation -> {
+            synchronized (values) {
+                values.put(invocation.getArgument(0), invocation.getArgument(1));
+            }
+            return null;
+        }).when(valueOperations).set(anyString(), anyString());
+        lenient().doAnswer(invocation -> {
+            synchronized (values) {
+                values.put(invocation.getArgument(0), invocation.getArgument(1));
+            }
+            return null;
+        }).when(valueOperations).set(anyString(), anyString(), anyLong(), any(TimeUnit.class));
+        lenient().when(stringRedisTemplate.hasKey(anyString())).thenAnswer(invocation -> {
+            synchronized (values) {
+                return values.containsKey(invocation.<String>getArgument(0));
+            }
+        });
+        lenient().when(stringRedisTemplate.delete(anyString())).thenAnswer(invocation -> {
+            synchronized (values) {
+                return values.remove(invocation.<String>getArgument(0)) != null;
+            }
+        });
+        lenient().doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("xlsx".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(reportService).export(any(OutputStream.class), any(LocalDate.class), any(LocalDate.class), anyBoolean());
+        reportJobService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reportJobService.stop();
+    }
+
+    @Test
+    @DisplayName("Should generate a settled range once and serve later requests from the cache")
+    void testGenerateOnceAndCache() throws Exception {
+        // Given
+        ReportJobDTO request = request(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31));
+
+        // When
+        ReportJobVO job = reportJobService.submit(request);
+        ArgumentCaptor<OrderNotification> notification = ArgumentCaptor.forClass(OrderNotification.class);
+        verify(notificationBus, timeout(WAIT_MILLIS)).publish(notification.capture());
+
+        // Then
+        assertEquals(OrderNotification.REPORT_READY, notification.getValue().getType());
+        assertEquals(job.getJobId(), notification.getValue().getJobId());
+        ReportJobVO done = reportJobService.getJob(job.getJobId());
+        assertEquals(ReportJobVO.DONE, done.getStatus());
+        Path file = cacheDir.resolve(job.getContentKey() + ".xlsx");
+        assertEquals("xlsx", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        verify(valueOperations).set("report:cache:" + job.getContentKey(), job.getContentKey() + ".xlsx");
+        assertFalse(values.containsKey("report:building:" + job.getContentKey()));
+
+        // When: the same range is requested again
+        ReportJobVO again = reportJobService.submit(request(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31)));
+
+        // Then
+        assertEquals(ReportJobVO.DONE, again.getStatus());
+        assertEquals(job.getContentKey(), again.getContentKey());
+        verify(reportService, times(1)).export(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    @DisplayName("Should hand back the running job for an identical request")
+    void testShareRunningJob() throws Exception {
+        // Given: the first job blocks inside the export
+        Object gate = new Object();
+        doAnswer(invocation -> {
+            synchronized (gate) {
+                gate.wait(WAIT_MILLIS);
+            }
+            return null;
+        }).when(reportService).export(any(OutputStream.class), any(LocalDate.class), any(LocalDate.class), anyBoolean());
+        ReportJobVO first = reportJobService.submit(request(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)));
+
+        // When
+        ReportJobVO second = reportJobService.submit(request(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)));
+        ReportJobVO other = reportJobService.submit(request(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29)));
+
+        // Then
+        assertEquals(first.getJobId(), second.getJobId());
+        assertNotEquals(first.getJobId(), other.getJobId());
+        synchronized (gate) {
+            gate.notifyAll();
+        }
+    }
+
+    @Test
+    @DisplayName("Should cache a range that includes recent days only for a while")
+    void testLiveRangeExpires() {
+        // Given
+        LocalDate today = LocalDate.now();
+
+        // When
+        ReportJobVO job = reportJobService.submit(request(today.minusDays(6), today));
+
+        // Then
+        verify(valueOperations, timeout(WAIT_MILLIS)).set("report:cache:" + job.getContentKey(),
+                job.getContentKey() + ".xlsx", 300L, TimeUnit.SECONDS);
+        verify(valueOperations, never()).set("report:cache:" + job.getContentKey(), job.getContentKey() + ".xlsx");
+    }
+
+    @Test
+    @DisplayName("Should record a failed job and leave no file behind")
+    void testFailure() throws Exception {
+        // Given
+        doThrow(new IllegalStateException("db down"))
+                .when(reportService).export(any(OutputStream.class), any(LocalDate.class), any(LocalDate.class), anyBoolean());
+
+        // When
+        ReportJobVO job = reportJobService.submit(request(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)));
+
+        // Then
+        ArgumentCaptor<Map<String, String>> fields = ArgumentCaptor.forClass(Map.class);
+        verify(hashOperations, timeout(WAIT_MILLIS).times(3)).putAll(eq("report:job:" + job.getJobId()), fields.capture());
+        assertEquals(String.valueOf(ReportJobVO.FAILED), fields.getValue().get("status"));
+        assertEquals("报表导出失败", fields.getValue().get("message"));
+        try (java.util.stream.Stream<Path> files = Files.list(cacheDir)) {
+            assertEquals(0, files.count());
+        }
+        verify(notificationBus, never()).publish(any(OrderNotification.class));
+    }
+
+    @Test
+    @DisplayName("Should reject an unsupported format")
+    void testUnsupportedFormat() {
+        // Given
+        ReportJobDTO request = request(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31));
+        request.setFormat("pdf");
+
+        // When / Then
+        assertThrows(ReportBusinessException.class, () -> reportJobService.submit(request));
+    }
+
+    @Test
+    @DisplayName("Should delete old files whose cache marker expired and stale temp files")
+    void testSweepCache() throws Exception {
+        // Given
+        long old = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(25);
+        Path expired = file("expired.xlsx", old);
+        Path settled = file("settled.xlsx", old);
+        Path recent = file("recent.xlsx", System.currentTimeMillis());
+        Path staleTemp = file("expired.xlsx.job-1.tmp", old);
+        Path runningTemp = file("recent.xlsx.job-2.tmp", System.currentTimeMillis());
+        values.put("report:cache:settled", "settled.xlsx");
+
+        // When
+        reportJobService.sweepCache();
+
+        // Then: a file just produced, or still referenced by a job, stays even without a marker
+        assertFalse(Files.exists(expired));
+        assertTrue(Files.exists(settled));
+        assertTrue(Files.exists(recent));
+        assertFalse(Files.exists(staleTemp));
+        assertTrue(Files.exists(runningTemp));
+    }
+
+    @Test
+    @DisplayName("Should keep a cache hit from being swept while its job can still be downloaded")
+    void testCacheHitKeepsFile() throws Exception {
+        // Given: a settled report generated long ago
+        ReportJobVO job = reportJobService.submit(request(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)));
+        verify(notificationBus, timeout(WAIT_MILLIS)).publish(any(OrderNotification.class));
+        Path file = cacheDir.resolve(job.getContentKey() + ".xlsx");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(25)));
+
+        // When: it is hit again, then its marker goes away
+        ReportJobVO again = reportJobService.submit(request(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)));
+        values.remove("report:cache:" + job.getContentKey());
+        reportJobService.sweepCache();
+
+        // Then
+        assertEquals(ReportJobVO.DONE, again.getStatus());
+        assertTrue(Files.exists(file));
+    }
+
+    private Path file(String name, long modified) throws Exception {
+        Path file = Files.write(cacheDir.resolve(name), "xlsx".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified));
+        return file;
+    }
+
+    private ReportJobDTO request(LocalDate begin, LocalDate end) {
+        ReportJobDTO request = new ReportJobDTO();
+        request.setBegin(begin);
+        request.setEnd(end);
+        request.setDetail(true);
+        return request;
+    }
+}
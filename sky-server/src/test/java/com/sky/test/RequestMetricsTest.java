@@ -0,0 +1,217 @@
+package com.sky.test;
+
+import com.sky.interceptor.RequestMetricsInterceptor;
+import com.sky.metrics.PrometheusWriter;
+import com.sky.metrics.RedisCallRecorder;
+import com.sky.metrics.RequestMetricsRegistry;
+import com.sky.metrics.RequestQueryContext;
+import com.sky.metrics.SqlMetricsRegistry;
+import com.sky.properties.MetricsProperties;
+import com.sky.vo.AreaMetricsVO;
+import com.sky.vo.EndpointMetricsVO;
+import com.sky.vo.SlowRequestCallVO;
+import com.sky.vo.SlowRequestVO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Request metrics Test
+ * Drives the request interceptor with mock servlet requests and checks per-endpoint latency,
+ * in-flight counts and error rates split by admin/user/notify, the slow-request sample with
+ * the SQL and Redis calls of that request, and the Prometheus scrape text
+ */
+@DisplayName("Request Metrics Test")
+class RequestMetricsTest {
+
+    private final MetricsProperties metricsProperties = new MetricsProperties();
+
+    private final SqlMetricsRegistry sqlMetricsRegistry = new SqlMetricsRegistry();
+
+    private final RequestMetricsRegistry requestMetricsRegistry = new RequestMetricsRegistry();
+
+    private final RequestMetricsInterceptor interceptor = new RequestMetricsInterceptor();
+
+    private HandlerMethod handler;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(sqlMetricsRegistry, "metricsProperties", metricsProperties);
+        ReflectionTestUtils.setField(requestMetricsRegistry, "metricsProperties", metricsProperties);
+        ReflectionTestUtils.setField(interceptor, "sqlMetricsRegistry", sqlMetricsRegistry);
+        ReflectionTestUtils.setField(interceptor, "requestMetricsRegistry", requestMetricsRegistry);
+        handler = new HandlerMethod(this, RequestMetricsTest.class.getDeclaredMethod("setUp"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestQueryContext.end();
+    }
+
+    @Test
+    @DisplayName("Should split calls, errors and in-flight requests by admin, user and notify")
+    void testAreas() throws Exception {
+        // Given: an admin request still in progress
+        MockHttpServletRequest open = request("GET", "/admin/order/details/7", "/admin/order/details/{id}");
+        interceptor.preHandle(open, new MockHttpServletResponse(), handler);
+        Map<String, AreaMetricsVO> during = byArea();
+
+        // When
+        complete(open, 200);
+        complete(request("GET", "/admin/order/details/8", "/admin/order/details/{id}"), 200);
+        MockHttpServletRequest failed = request("POST", "/user/order/submit", "/user/order/submit");
+        failed.setAttribute(DispatcherServlet.EXCEPTION_ATTRIBUTE, new IllegalStateException("库存不足"));
+        complete(failed, 200);
+        complete(request("POST", "/user/order/submit", "/user/order/submit"), 401);
+        complete(request("POST", "/notify/paySuccess", "/notify/paySuccess"), 500);
+
+        // Then
+        assertEquals(1, during.get(RequestMetricsRegistry.ADMIN).getInFlight());
+        Map<String, AreaMetricsVO> areas = byArea();
+        assertEquals(2, areas.get(RequestMetricsRegistry.ADMIN).getCalls());
+        assertEquals(0, areas.get(RequestMetricsRegistry.ADMIN).getInFlight());
+        assertEquals(0.0, areas.get(RequestMetricsRegistry.ADMIN).getErrorRate());
+        assertEquals(2, areas.get(RequestMetricsRegistry.USER).getCalls());
+        assertEquals(1, areas.get(RequestMetricsRegistry.USER).getErrors());
+        assertEquals(1, areas.get(RequestMetricsRegistry.USER).getRejected());
+        assertEquals(0.5, areas.get(RequestMetricsRegistry.USER).getErrorRate());
+        assertEquals(1.0, areas.get(RequestMetricsRegistry.NOTIFY).getErrorRate());
+        Map<String, EndpointMetricsVO> endpoints = requestMetricsRegistry.endpoints().stream()
+                .collect(Collectors.toMap(e -> e.getMethod() + " " + e.getPattern(), Function.identity()));
+        assertEquals(2, endpoints.get("GET /admin/order/details/{id}").getCalls());
+        assertEquals(2, endpoints.get("POST /user/order/submit").getCalls());
+        assertTrue(requestMetricsRegistry.slowRequests().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should sample a slow request with the SQL and Redis calls it made")
+    void testSlowRequestSample() throws Exception {
+        // Given
+        metricsProperties.setSlowRequestMillis(0);
+        MockHttpServletRequest request = request("GET", "/user/order/historyOrders", "/user/order/historyOrders");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RedisConnection connection = RedisCallRecorder.wrap(mock(RedisConnection.class));
+
+        // When: the request runs one page query, three detail queries and two Redis commands
+        interceptor.preHandle(request, response, handler);
+        sqlMetricsRegistry.record("com.sky.mapper.OrderMapper.list", 2_000_000, 10, false);
+        for (int i = 0; i < 3; i++) {
+            sqlMetricsRegistry.record("com.sky.mapper.OrderDetailMapper.getByOrderId", 1_000_000, 2, false);
+        }
+        connection.get("SHOP_STATUS".getBytes(StandardCharsets.UTF_8));
+        connection.hGetAll("cart:1".getBytes(StandardCharsets.UTF_8));
+        connection.isClosed();
+        interceptor.afterCompletion(request, response, handler, null);
+
+        // Then
+        assertNull(RequestQueryContext.current());
+        List<SlowRequestVO> samples = requestMetricsRegistry.slowRequests();
+        assertEquals(1, samples.size());
+        SlowRequestVO sample = samples.get(0);
+        assertEquals("/user/order/historyOrders", sample.getPattern());
+        assertEquals(4, sample.getSqlCalls());
+        assertEquals(5, sample.getSqlMillis());
+        assertEquals(2, sample.getRedisCalls());
+        Map<String, SlowRequestCallVO> calls = sample.getCalls().stream()
+                .collect(Collectors.toMap(SlowRequestCallVO::getName, Function.identity()));
+        assertEquals(3, calls.get("OrderDetailMapper.getByOrderId").getCalls());
+        assertEquals(6, calls.get("OrderDetailMapper.getByOrderId").getRows());
+        assertEquals("redis", calls.get("hGetAll").getType());
+        assertEquals(1, calls.get("get").getCalls());
+        assertFalse(calls.containsKey("isClosed"));
+    }
+
+    @Test
+    @DisplayName("Should keep only the newest slow samples")
+    void testSlowSampleLimit() throws Exception {
+        // Given
+        metricsProperties.setSlowRequestMillis(0);
+        metricsProperties.setSlowSamples(3);
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            complete(request("GET", "/admin/order/details/" + i, "/admin/order/details/{id}"), 200);
+        }
+
+        // Then
+        List<SlowRequestVO> samples = requestMetricsRegistry.slowRequests();
+        assertEquals(3, samples.size());
+        assertEquals("/admin/order/details/4", samples.get(0).getUri());
+    }
+
+    @Test
+    @DisplayName("Should not track Redis calls outside a request")
+    void testRedisOutsideRequest() {
+        // Given
+        RedisConnection raw = mock(RedisConnection.class);
+        RedisConnection connection = RedisCallRecorder.wrap(raw);
+
+        // When
+        connection.get("SHOP_STATUS".getBytes(StandardCharsets.UTF_8));
+
+        // Then
+        verify(raw).get(any(byte[].class));
+        assertNull(RequestQueryContext.current());
+    }
+
+    @Test
+    @DisplayName("Should render Prometheus text with escaped labels and second-based summaries")
+    void testPrometheus() throws Exception {
+        // Given
+        complete(request("GET", "/admin/order/details/1", "/admin/order/details/{id}"), 200);
+        sqlMetricsRegistry.record("com.sky.mapper.OrderMapper.getById", 1500, 1, false);
+
+        // When
+        String text = PrometheusWriter.write(requestMetricsRegistry.areas(), requestMetricsRegistry.endpoints(),
+                sqlMetricsRegistry.snapshot(), Collections.emptyList());
+
+        // Then
+        assertTrue(text.contains("# TYPE sky_http_request_duration_seconds summary\n"), text);
+        assertTrue(text.contains("sky_http_requests_total{area=\"admin\",method=\"GET\",uri=\"/admin/order/details/{id}\"} 1\n"), text);
+        assertTrue(text.contains("sky_http_requests_in_flight{area=\"notify\"} 0\n"), text);
+        assertTrue(text.contains("sky_http_request_duration_seconds_count{area=\"admin\",method=\"GET\",uri=\"/admin/order/details/{id}\"} 1\n"), text);
+        assertTrue(text.contains("sky_sql_statement_duration_seconds{statement=\"com.sky.mapper.OrderMapper.getById\",quantile=\"0.99\"}"), text);
+        assertTrue(text.contains("sky_sql_statement_rows_total{statement=\"com.sky.mapper.OrderMapper.getById\"} 1\n"), text);
+        for (String line : text.split("\n")) {
+            assertTrue(line.startsWith("# TYPE ") || line.matches("[a-z_]+\\{.*} \\S+"), line);
+        }
+    }
+
+    private Map<String, AreaMetricsVO> byArea() {
+        return requestMetricsRegistry.areas().stream()
+                .collect(Collectors.toMap(AreaMetricsVO::getArea, Function.identity()));
+    }
+
+    private void complete(MockHttpServletRequest request, int status) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        if (request.getAttribute(RequestMetricsInterceptor.class.getName() + ".ENDPOINT") == null) {
+            interceptor.preHandle(request, response, handler);
+        }
+        response.setStatus(status);
+        interceptor.afterCompletion(request, response, handler, null);
+    }
+
+    private MockHttpServletRequest request(String method, String uri, String pattern) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+        return request;
+    }
+}
@@ -0,0 +1,159 @@
+package com.sky.test;
+
+import com.sky.cart.ShoppingCartStore;
+import com.sky.context.BaseContext;
+import com.sky.dto.ShoppingCartDTO;
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetMealMapper;
+import com.sky.mapper.ShoppingCartMapper;
+import com.sky.service.impl.ShoppingCartServiceImpl;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ShoppingCartServiceImpl Test
+ * Verifies add/sub/list are served from the Redis cart without touching shopping_cart,
+ * and that the cart is loaded from and written back to the database only when needed
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ShoppingCartServiceImpl Test")
+class ShoppingCartServiceImplTest {
+
+    private static final Long USER_ID = 7L;
+
+    @Mock
+    private ShoppingCartMapper shoppingCartMapper;
+
+    @Mock
+    private DishMapper dishMapper;
+
+    @Mock
+    private SetMealMapper setMealMapper;
+
+    @Mock
+    private ShoppingCartStore shoppingCartStore;
+
+    @InjectMocks
+    private ShoppingCartServiceImpl shoppingCartService;
+
+    private ShoppingCartDTO dto;
+
+    @BeforeEach
+    void setUp() {
+        BaseContext.setCurrentId(USER_ID);
+        dto = new ShoppingCartDTO();
+        dto.setDishId(1L);
+        dto.setDishFlavor("微辣");
+    }
+
+    @AfterEach
+    void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    @Test
+    @DisplayName("Should increment an item already in the cart without any database query")
+    void testAdd_ExistingItem() {
+        // Given
+        when(shoppingCartStore.increment(USER_ID, "d:1:微辣", 1, null)).thenReturn(2L);
+
+        // When
+        shoppingCartService.add(dto);
+
+        // Then
+        verify(shoppingCartStore).markDirty(USER_ID);
+        verifyNoInteractions(shoppingCartMapper, dishMapper, setMealMapper);
+    }
+
+    @Test
+    @DisplayName("Should look up the dish once when it is added for the first time")
+    void testAdd_NewItem() {
+        // Given
+        DishVO dishVO = new DishVO();
+        dishVO.setName("宫保鸡丁");
+        dishVO.setPrice(new BigDecimal("28.00"));
+        dishVO.setImage("a.png");
+        when(dishMapper.selectByDishId(1L)).thenReturn(dishVO);
+        when(shoppingCartStore.increment(eq(USER_ID), eq("d:1:微辣"), eq(1), any()))
+                .thenReturn(ShoppingCartStore.ITEM_MISSING, 1L);
+
+        // When
+        shoppingCartService.add(dto);
+
+        // Then
+        ArgumentCaptor<ShoppingCart> item = ArgumentCaptor.forClass(ShoppingCart.class);
+        verify(shoppingCartStore, times(2)).increment(eq(USER_ID), eq("d:1:微辣"), eq(1), item.capture());
+        assertNull(item.getAllValues().get(0));
+        assertEquals("宫保鸡丁", item.getAllValues().get(1).getName());
+        assertEquals(new BigDecimal("28.00"), item.getAllValues().get(1).getAmount());
+        verify(dishMapper, times(1)).selectByDishId(1L);
+        verifyNoInteractions(shoppingCartMapper);
+    }
+
+    @Test
+    @DisplayName("Should load the cart from the database once when it is not in Redis")
+    void testSub_NotLoaded() {
+        // Given
+        List<ShoppingCart> rows = Collections.singletonList(ShoppingCart.builder()
+                .dishId(1L).dishFlavor("微辣").number(2).build());
+        when(shoppingCartMapper.list(USER_ID)).thenReturn(rows);
+        when(shoppingCartStore.increment(USER_ID, "d:1:微辣", -1, null))
+                .thenReturn(ShoppingCartStore.NOT_LOADED, 1L);
+
+        // When
+        shoppingCartService.sub(dto);
+
+        // Then
+        verify(shoppingCartStore).load(USER_ID, rows);
+        verify(shoppingCartStore).markDirty(USER_ID);
+        verify(shoppingCartMapper, times(1)).list(USER_ID);
+    }
+
+    @Test
+    @DisplayName("Should replace the database rows with the Redis cart on write-behind")
+    void testPersist() {
+        // Given
+        List<ShoppingCart> cart = Arrays.asList(
+                ShoppingCart.builder().userId(USER_ID).dishId(1L).number(2).build(),
+                ShoppingCart.builder().userId(USER_ID).setmealId(3L).number(1).build());
+        when(shoppingCartStore.list(USER_ID)).thenReturn(cart);
+
+        // When
+        shoppingCartService.persist(USER_ID);
+
+        // Then
+        verify(shoppingCartMapper).clean(USER_ID);
+        verify(shoppingCartMapper).insertBatch(cart);
+    }
+
+    @Test
+    @DisplayName("Should leave the database untouched when the Redis cart has expired")
+    void testPersist_Expired() {
+        // Given
+        when(shoppingCartStore.list(USER_ID)).thenReturn(null);
+
+        // When
+        shoppingCartService.persist(USER_ID);
+
+        // Then
+        verifyNoInteractions(shoppingCartMapper);
+    }
+}
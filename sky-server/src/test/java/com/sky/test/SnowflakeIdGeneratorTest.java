@@ -0,0 +1,148 @@
+package com.sky.test;
+
+import com.sky.utils.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SnowflakeIdGenerator Test
+ * Generates millions of ids from concurrent threads and checks they are unique and increasing,
+ * then drives a fake clock through sequence overflow and clock skew
+ */
+@Slf4j
+@DisplayName("SnowflakeIdGenerator Test")
+class SnowflakeIdGeneratorTest {
+
+    private static final long EPOCH = 1704038400000L;
+
+    private static final int THREADS = 8;
+
+    private static final int IDS_PER_THREAD = 500_000;
+
+    @Test
+    @DisplayName("Should generate unique ids from concurrent threads at over 1M ids/sec")
+    void testConcurrentUniqueness() throws Exception {
+        // Given
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(5, EPOCH, 10);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                long[] ids = new long[IDS_PER_THREAD];
+                for (int i = 0; i < IDS_PER_THREAD; i++) {
+                    ids[i] = generator.nextId();
+                }
+                return ids;
+            }));
+        }
+
+        // When
+        long begin = System.nanoTime();
+        start.countDown();
+        long[] all = new long[THREADS * IDS_PER_THREAD];
+        int offset = 0;
+        for (Future<long[]> future : futures) {
+            long[] ids = future.get(60, TimeUnit.SECONDS);
+            // Then: ids of one thread are strictly increasing
+            for (int i = 1; i < ids.length; i++) {
+                assertTrue(ids[i] > ids[i - 1]);
+            }
+            System.arraycopy(ids, 0, all, offset, ids.length);
+            offset += ids.length;
+        }
+        long elapsedNanos = System.nanoTime() - begin;
+        pool.shutdown();
+        log.info("generated {} ids in {} ms, {} ids/sec",
+                all.length, elapsedNanos / 1_000_000, Math.round(all.length * 1e9 / elapsedNanos));
+
+        // Then: no duplicates across threads and every id carries the node id
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertNotEquals(all[i - 1], all[i]);
+        }
+        assertEquals(5, SnowflakeIdGenerator.workerIdOf(all[0]));
+        assertEquals(5, SnowflakeIdGenerator.workerIdOf(all[all.length - 1]));
+    }
+
+    @Test
+    @DisplayName("Should carry into the next millisecond when the sequence runs out")
+    void testSequenceOverflow() {
+        // Given: the clock never moves until the generator has borrowed one millisecond
+        AtomicLong clock = new AtomicLong(1000);
+        SnowflakeIdGenerator generator = new FakeClockGenerator(1, 1, clock);
+
+        // When
+        long last = 0;
+        for (int i = 0; i < 4096 * 2; i++) {
+            long id = generator.nextId();
+            assertTrue(id > last);
+            last = id;
+        }
+
+        // Then
+        assertEquals(1001 + EPOCH, generator.timestampOf(last));
+    }
+
+    @Test
+    @DisplayName("Should keep ids increasing within the tolerated clock skew and reject larger skew")
+    void testClockSkew() {
+        // Given
+        AtomicLong clock = new AtomicLong(5000);
+        SnowflakeIdGenerator generator = new FakeClockGenerator(2, 10, clock);
+        long before = generator.nextId();
+
+        // When: the clock moves back 5 ms
+        clock.set(4995);
+        long during = generator.nextId();
+
+        // Then
+        assertTrue(during > before);
+        assertEquals(5000 + EPOCH, generator.timestampOf(during));
+
+        // When: the clock moves back 20 ms
+        clock.set(4980);
+
+        // Then
+        assertThrows(IllegalStateException.class, generator::nextId);
+    }
+
+    @Test
+    @DisplayName("Should reject node ids outside the 10-bit range")
+    void testInvalidWorkerId() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1, EPOCH, 10));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(1024, EPOCH, 10));
+    }
+
+    /**
+     * 用可控的时钟生成id
+     */
+    private static class FakeClockGenerator extends SnowflakeIdGenerator {
+
+        private final AtomicLong clock;
+
+        FakeClockGenerator(long workerId, long maxBackwardMillis, AtomicLong clock) {
+            super(workerId, EPOCH, maxBackwardMillis);
+            this.clock = clock;
+        }
+
+        @Override
+        protected long currentTime() {
+            return clock.get();
+        }
+    }
+}
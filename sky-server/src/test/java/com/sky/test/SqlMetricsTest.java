@@ -0,0 +1,198 @@
+package com.sky.test;
+
+import com.sky.metrics.LatencyHistogram;
+import com.sky.metrics.RequestQueryContext;
+import com.sky.metrics.SqlMetricsInterceptor;
+import com.sky.metrics.SqlMetricsRegistry;
+import com.sky.properties.MetricsProperties;
+import com.sky.vo.SqlStatementMetricsVO;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SQL metrics Test
+ * Drives the MyBatis interceptor against a stub executor and checks per-statement histograms,
+ * per-request call counts that expose N+1 loops. The overhead benchmark runs only with -Dsky.benchmark=true
+ */
+@Slf4j
+@DisplayName("SQL Metrics Test")
+class SqlMetricsTest {
+
+    private static final String DETAIL = "com.sky.mapper.OrderDetailMapper.getByOrderId";
+
+    private static final String LIST = "com.sky.mapper.OrderMapper.list";
+
+    private static final int WARMUP_CALLS = 200_000;
+
+    private static final int CALLS = 1_000_000;
+
+    private final Configuration configuration = new Configuration();
+
+    private final SqlMetricsRegistry registry = new SqlMetricsRegistry();
+
+    private final SqlMetricsInterceptor interceptor = new SqlMetricsInterceptor();
+
+    private final List<Object> rows = Arrays.asList(1, 2, 3);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(registry, "metricsProperties", new MetricsProperties());
+        ReflectionTestUtils.setField(interceptor, "sqlMetricsRegistry", registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestQueryContext.end();
+    }
+
+    @Test
+    @DisplayName("Should estimate percentiles within one bucket")
+    void testHistogramPercentiles() {
+        // Given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // When
+        for (int micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros);
+        }
+
+        // Then
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000, histogram.getMaxMicros());
+        assertEquals(5000, histogram.getMeanMicros());
+        assertEquals(5000, histogram.percentile(50), 5000 * 0.125);
+        assertEquals(9900, histogram.percentile(99), 9900 * 0.125);
+        assertEquals(10_000, histogram.percentile(100));
+        assertEquals(3, histogram.percentile(0.03));
+
+        // When
+        histogram.reset();
+
+        // Then
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.percentile(99));
+    }
+
+    @Test
+    @DisplayName("Should count calls and rows per statement and flag a statement repeated inside one request")
+    void testRepeatedStatementInRequest() throws Throwable {
+        // Given: one page query followed by a detail query per order
+        RequestQueryContext.begin("GET", "/admin/order/conditionSearch");
+
+        // When
+        interceptor.intercept(invocation(LIST, args -> rows));
+        for (int i = 0; i < 12; i++) {
+            interceptor.intercept(invocation(DETAIL, args -> rows));
+        }
+        RequestQueryContext context = RequestQueryContext.end();
+        registry.completeRequest(context);
+
+        // Then
+        assertEquals(13, context.getQueries());
+        assertEquals(12, context.getStatements().get(DETAIL).getCalls());
+        assertEquals(36, context.getStatements().get(DETAIL).getRows());
+        SqlStatementMetricsVO detail = find(DETAIL);
+        assertEquals(12, detail.getCalls());
+        assertEquals(36, detail.getRows());
+        assertEquals(1, detail.getRequests());
+        assertEquals(12.0, detail.getCallsPerRequest());
+        assertEquals(12, detail.getMaxCallsPerRequest());
+        assertTrue(detail.getRepeated());
+        assertFalse(find(LIST).getRepeated());
+    }
+
+    @Test
+    @DisplayName("Should record a failed statement and rethrow")
+    void testError() {
+        // When / Then
+        assertThrows(InvocationTargetException.class, () -> interceptor.intercept(invocation(LIST, args -> {
+            throw new IllegalStateException(new SQLException("gone away"));
+        })));
+        assertEquals(1, find(LIST).getErrors());
+        assertEquals(1, find(LIST).getCalls());
+    }
+
+    @Test
+    @DisplayName("Should not count statements outside a request")
+    void testOutsideRequest() throws Throwable {
+        // When
+        interceptor.intercept(invocation(LIST, args -> rows));
+
+        // Then
+        assertNull(RequestQueryContext.current());
+        assertEquals(1, find(LIST).getCalls());
+        assertEquals(0, find(LIST).getRequests());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "sky.benchmark", matches = "true")
+    @DisplayName("Should add well under a few microseconds per statement")
+    void testOverhead() throws Throwable {
+        // Given
+        Invocation invocation = invocation(DETAIL, args -> rows);
+        RequestQueryContext.begin("GET", "/user/order/historyOrders");
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            invocation.proceed();
+            interceptor.intercept(invocation);
+        }
+
+        // When
+        long begin = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            invocation.proceed();
+        }
+        long bare = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            interceptor.intercept(invocation);
+        }
+        long instrumented = System.nanoTime() - begin;
+
+        // Then
+        double overheadNanos = (double) (instrumented - bare) / CALLS;
+        log.info("SQL metrics overhead: {} ns per statement", Math.round(overheadNanos));
+        assertTrue(overheadNanos < 2000, "overhead " + overheadNanos + " ns");
+        assertEquals(WARMUP_CALLS + CALLS, find(DETAIL).getCalls());
+    }
+
+    private SqlStatementMetricsVO find(String statementId) {
+        return registry.snapshot().stream()
+                .collect(Collectors.toMap(SqlStatementMetricsVO::getStatementId, vo -> vo))
+                .get(statementId);
+    }
+
+    private Invocation invocation(String statementId, Function<Object[], Object> result) throws Exception {
+        MappedStatement statement = new MappedStatement.Builder(configuration, statementId,
+                new StaticSqlSource(configuration, "select 1"), SqlCommandType.SELECT).build();
+        Executor executor = (Executor) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Executor.class}, (proxy, method, args) -> result.apply(args));
+        Method query = Executor.class.getMethod("query",
+                MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class);
+        return new Invocation(executor, query,
+                new Object[]{statement, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER});
+    }
+}
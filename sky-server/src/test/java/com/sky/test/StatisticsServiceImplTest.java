@@ -0,0 +1,198 @@
+package com.sky.test;
+
+import com.sky.dto.DailyStatisticsDTO;
+import com.sky.entity.BusinessDailyStats;
+import com.sky.entity.Orders;
+import com.sky.mapper.BusinessDailyStatsMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.service.impl.StatisticsServiceImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * StatisticsServiceImpl Test
+ * Verifies the range report is built from a fixed number of aggregated queries,
+ * that days without data are filled in memory and that reconciled days are read from the rollup
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("StatisticsServiceImpl Test")
+class StatisticsServiceImplTest {
+
+    @Mock
+    private OrderMapper orderMapper;
+
+    @Mock
+    private UserMapper userMapper;
+
+    @Mock
+    private BusinessDailyStatsMapper businessDailyStatsMapper;
+
+    @InjectMocks
+    private StatisticsServiceImpl statisticsService;
+
+    @Test
+    @DisplayName("Should query each metric once for a 90 day range without rollup data")
+    void testGetDailyStatistics_ConstantQueryCount() {
+        // Given
+        LocalDate begin = LocalDate.of(2024, 1, 1);
+        LocalDate end = begin.plusDays(89);
+        when(businessDailyStatsMapper.selectByRange(begin, end)).thenReturn(Collections.emptyList());
+        when(orderMapper.selectDailyStatistics(any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(Collections.emptyList());
+        when(userMapper.selectDailyNewUsers(any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(Collections.emptyList());
+        when(userMapper.selectByDate(any(LocalDateTime.class))).thenReturn(0);
+
+        // When
+        List<DailyStatisticsDTO> result = statisticsService.getDailyStatistics(begin, end);
+
+        // Then
+        assertEquals(90, result.size());
+        verify(orderMapper, times(1)).selectDailyStatistics(any(LocalDateTime.class), any(LocalDateTime.class));
+        verify(userMapper, times(1)).selectDailyNewUsers(any(LocalDateTime.class), any(LocalDateTime.class));
+        verify(userMapper, times(1)).selectByDate(any(LocalDateTime.class));
+        verify(businessDailyStatsMapper, times(1)).insertOrUpdateBatch(argThat(list -> list.size() == 90));
+        verifyNoMoreInteractions(orderMapper, userMapper);
+    }
+
+    @Test
+    @DisplayName("Should fill missing days and accumulate total users")
+    void testGetDailyStatistics_FillMissingDays() {
+        // Given
+        LocalDate begin = LocalDate.of(2024, 1, 1);
+        LocalDate end = LocalDate.of(2024, 1, 3);
+        BusinessDailyStats orders = BusinessDailyStats.builder()
+                .statDate(LocalDate.of(2024, 1, 2))
+                .totalOrderCount(4)
+                .validOrderCount(3)
+                .completedCount(3)
+                .cancelledCount(1)
+                .turnover(new BigDecimal("120.50"))
+                .build();
+        DailyStatisticsDTO firstDayUsers = DailyStatisticsDTO.builder()
+                .date(LocalDate.of(2024, 1, 1))
+                .newUsers(2)
+                .build();
+        DailyStatisticsDTO lastDayUsers = DailyStatisticsDTO.builder()
+                .date(LocalDate.of(2024, 1, 3))
+                .newUsers(5)
+                .build();
+        when(businessDailyStatsMapper.selectByRange(begin, end)).thenReturn(Collections.emptyList());
+        when(orderMapper.selectDailyStatistics(any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(Collections.singletonList(orders));
+        when(userMapper.selectDailyNewUsers(any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(Arrays.asList(firstDayUsers, lastDayUsers));
+        when(userMapper.selectByDate(any(LocalDateTime.class))).thenReturn(10);
+
+        // When
+        List<DailyStatisticsDTO> result = statisticsService.getDailyStatistics(begin, end);
+
+        // Then
+        assertEquals(3, result.size());
+        assertEquals(0, result.get(0).getOrderCount());
+        assertEquals(0.0, result.get(0).getTurnover());
+        assertEquals(4, result.get(1).getOrderCount());
+        assertEquals(3, result.get(1).getValidOrderCount());
+        assertEquals(120.5, result.get(1).getTurnover());
+        assertEquals(0, result.get(1).getNewUsers());
+        assertEquals(12, result.get(0).getTotalUsers());
+        assertEquals(12, result.get(1).getTotalUsers());
+        assertEquals(17, result.get(2).getTotalUsers());
+    }
+
+    @Test
+    @DisplayName("Should read reconciled days from the rollup without scanning source tables")
+    void testGetDailyStatistics_ReadFromRollup() {
+        // Given
+        LocalDate begin = LocalDate.of(2024, 1, 1);
+        LocalDate end = LocalDate.of(2024, 1, 30);
+        List<BusinessDailyStats> rollup = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            rollup.add(BusinessDailyStats.builder()
+                    .statDate(date)
+                    .totalOrderCount(2)
+                    .validOrderCount(1)
+                    .turnover(new BigDecimal("10"))
+                    .newUsers(1)
+                    .totalUsers(100)
+                    .reconciled(1)
+                    .build());
+        }
+        when(businessDailyStatsMapper.selectByRange(begin, end)).thenReturn(rollup);
+
+        // When
+        List<DailyStatisticsDTO> result = statisticsService.getDailyStatistics(begin, end);
+
+        // Then
+        assertEquals(30, result.size());
+        assertEquals(2, result.get(29).getOrderCount());
+        assertEquals(10.0, result.get(29).getTurnover());
+        verify(businessDailyStatsMapper, never()).insertOrUpdateBatch(anyList());
+        verifyNoInteractions(orderMapper, userMapper);
+    }
+
+    @Test
+    @DisplayName("Should return empty list without querying when begin is after end")
+    void testGetDailyStatistics_EmptyRange() {
+        // When
+        List<DailyStatisticsDTO> result = statisticsService.getDailyStatistics(
+                LocalDate.of(2024, 1, 2), LocalDate.of(2024, 1, 1));
+
+        // Then
+        assertTrue(result.isEmpty());
+        verifyNoInteractions(orderMapper, userMapper, businessDailyStatsMapper);
+    }
+
+    @Test
+    @DisplayName("Should move counts and turnover when an order is completed")
+    void testOnOrderStatusChange_Complete() {
+        // Given
+        LocalDateTime orderTime = LocalDateTime.of(2024, 1, 2, 12, 0);
+
+        // When
+        statisticsService.onOrderStatusChange(orderTime, Orders.DELIVERY_IN_PROGRESS, Orders.COMPLETED,
+                new BigDecimal("35.00"));
+
+        // Then
+        verify(businessDailyStatsMapper).applyDelta(argThat(delta ->
+                LocalDate.of(2024, 1, 2).equals(delta.getStatDate()) &&
+                delta.getTotalOrderCount() == 0 &&
+                delta.getDeliveryInProgressCount() == -1 &&
+                delta.getCompletedCount() == 1 &&
+                delta.getValidOrderCount() == 1 &&
+                new BigDecimal("35.00").compareTo(delta.getTurnover()) == 0
+        ));
+    }
+
+    @Test
+    @DisplayName("Should count a new order as pending payment")
+    void testOnOrderStatusChange_Submit() {
+        // When
+        statisticsService.onOrderStatusChange(LocalDateTime.of(2024, 1, 2, 12, 0), null,
+                Orders.PENDING_PAYMENT, new BigDecimal("35.00"));
+
+        // Then
+        verify(businessDailyStatsMapper).applyDelta(argThat(delta ->
+                delta.getTotalOrderCount() == 1 &&
+                delta.getPendingPaymentCount() == 1 &&
+                BigDecimal.ZERO.compareTo(delta.getTurnover()) == 0
+        ));
+    }
+}
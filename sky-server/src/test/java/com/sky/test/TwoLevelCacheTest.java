@@ -0,0 +1,228 @@
+package com.sky.test;
+
+import com.sky.cache.CacheEnvelope;
+import com.sky.cache.CacheInvalidationListener;
+import com.sky.cache.TwoLevelCacheManager;
+import com.sky.properties.MenuCacheProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * TwoLevelCache Test
+ * Verifies reads are served from the local cache after the first Redis hit
+ * and that invalidation messages from other nodes drop the local copy.
+ * Clearing a cache must only touch its tracked keys, never scan the keyspace,
+ * and only evictions, not fills, reach the invalidation listeners
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TwoLevelCache Test")
+class TwoLevelCacheTest {
+
+    private static final String CHANNEL = "sky:cache:invalidation";
+
+    @Mock
+    private RedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations valueOperations;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private SetOperations<String, String> setOperations;
+
+    @Mock
+    private ValueOperations<String, String> stringValueOperations;
+
+    private TwoLevelCacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        MenuCacheProperties properties = new MenuCacheProperties();
+        properties.setInvalidationChannel(CHANNEL);
+        cacheManager = new TwoLevelCacheManager(redisTemplate, stringRedisTemplate, properties);
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+        lenient().when(stringRedisTemplate.opsForValue()).thenReturn(stringValueOperations);
+        lenient().when(stringValueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenReturn(true);
+    }
+
+    @Test
+    @DisplayName("Should serve repeated reads from the local cache")
+    void testGet_LocalHitAfterRedisHit() {
+        // Given
+        List<String> dishes = Arrays.asList("dish1", "dish2");
+        when(valueOperations.get("dish_1")).thenReturn(dishes);
+        Cache cache = cacheManager.getCache("dish");
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            assertEquals(dishes, cache.get(1L).get());
+        }
+
+        // Then
+        verify(valueOperations, times(1)).get("dish_1");
+    }
+
+    @Test
+    @DisplayName("Should load from the loader once and write both levels")
+    void testGet_LoaderOnMiss() {
+        // Given
+        Cache cache = cacheManager.getCache("dish");
+        List<String> dishes = Arrays.asList("dish1");
+
+        // When
+        List<String> first = cache.get(2L, () -> dishes);
+        List<String> second = cache.get(2L, () -> fail("loader should not run again"));
+
+        // Then
+        assertEquals(dishes, first);
+        assertEquals(dishes, second);
+        verify(valueOperations).set(eq("dish_2"),
+                argThat(value -> dishes.equals(((CacheEnvelope) value).getValue())), eq(3600L), eq(TimeUnit.SECONDS));
+        verify(setOperations).add("dish:keys", "dish_2");
+        verify(stringRedisTemplate).convertAndSend(eq(CHANNEL), endsWith(":fill:dish:2"));
+    }
+
+    @Test
+    @DisplayName("Should drop the local copy when another node publishes an eviction")
+    void testOnMessage_EvictsLocal() {
+        // Given
+        List<String> dishes = Arrays.asList("dish1");
+        when(valueOperations.get("dish_3")).thenReturn(dishes);
+        Cache cache = cacheManager.getCache("dish");
+        cache.get(3L);
+
+        // When
+        cacheManager.onMessage(message("other-node:evict:dish:3"), null);
+        cache.get(3L);
+
+        // Then
+        verify(valueOperations, times(2)).get("dish_3");
+    }
+
+    @Test
+    @DisplayName("Should ignore invalidation messages published by itself")
+    void testOnMessage_IgnoresOwnMessage() {
+        // Given
+        Cache cache = cacheManager.getCache("dish");
+        cache.put(4L, Arrays.asList("dish1"));
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(stringRedisTemplate).convertAndSend(eq(CHANNEL), captor.capture());
+
+        // When
+        cacheManager.onMessage(message(captor.getValue()), null);
+        cache.get(4L);
+
+        // Then
+        verify(valueOperations, never()).get(anyString());
+    }
+
+    @Test
+    @DisplayName("Should clear only tracked keys regardless of unrelated keys in Redis")
+    void testClear_ConstantCostWithUnrelatedKeys() {
+        // Given: 100k unrelated keys in the same Redis instance and 3 cached categories
+        Set<String> keyspace = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            keyspace.add("tenant" + (i % 10) + ":session:" + i);
+        }
+        Set<String> tracked = new HashSet<>(Arrays.asList("dish_1", "dish_2", "dish_3"));
+        keyspace.addAll(tracked);
+        AtomicInteger touchedKeys = new AtomicInteger();
+        lenient().when(redisTemplate.keys(anyString())).thenAnswer(invocation -> {
+            touchedKeys.addAndGet(keyspace.size());
+            return keyspace;
+        });
+        when(setOperations.members("dish:keys")).thenReturn(tracked);
+        when(redisTemplate.delete(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> keys = invocation.getArgument(0);
+            touchedKeys.addAndGet(keys.size());
+            keyspace.removeAll(keys);
+            return (long) keys.size();
+        });
+        Cache cache = cacheManager.getCache("dish");
+
+        // When
+        cache.clear();
+
+        // Then: cost is the 3 tracked keys, the 100k unrelated keys are never scanned
+        assertEquals(3, touchedKeys.get());
+        assertEquals(100_000, keyspace.size());
+        verify(redisTemplate, never()).keys(anyString());
+        ArgumentCaptor<Object> removed = ArgumentCaptor.forClass(Object.class);
+        verify(setOperations).remove(eq("dish:keys"), removed.capture());
+        assertEquals(tracked, new HashSet<>(removed.getAllValues()));
+    }
+
+    @Test
+    @DisplayName("Should untrack a key when it is evicted")
+    void testEvict_Untracks() {
+        // Given
+        Cache cache = cacheManager.getCache("dish");
+
+        // When
+        cache.evict(5L);
+
+        // Then
+        verify(redisTemplate).delete("dish_5");
+        verify(setOperations).remove("dish:keys", "dish_5");
+        verify(stringRedisTemplate).convertAndSend(eq(CHANNEL), endsWith(":evict:dish:5"));
+    }
+
+    @Test
+    @DisplayName("Should notify listeners on evict and clear but not when a value is filled")
+    void testListeners_OnlyOnInvalidation() {
+        // Given
+        CacheInvalidationListener listener = mock(CacheInvalidationListener.class);
+        cacheManager.addInvalidationListener(listener);
+        Cache cache = cacheManager.getCache("dish");
+
+        // When: local fills and a fill from another node
+        cache.put(6L, Arrays.asList("dish1"));
+        cache.get(7L, () -> Arrays.asList("dish2"));
+        cacheManager.onMessage(message("other-node:fill:dish:8"), null);
+
+        // Then
+        verifyNoInteractions(listener);
+
+        // When: local evict and clear, and an eviction from another node
+        cache.evict(6L);
+        cache.clear();
+        cacheManager.onMessage(message("other-node:evict:dish:8"), null);
+
+        // Then
+        verify(listener).onInvalidate("dish", "6");
+        verify(listener).onInvalidate("dish", null);
+        verify(listener).onInvalidate("dish", "8");
+    }
+
+    private DefaultMessage message(String body) {
+        return new DefaultMessage(CHANNEL.getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+}
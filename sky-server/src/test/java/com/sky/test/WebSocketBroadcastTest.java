@@ -0,0 +1,220 @@
+package com.sky.test;
+
+import com.sky.properties.WebSocketProperties;
+import com.sky.webSocket.SessionOutbox;
+import com.sky.webSocket.WebSocketServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.websocket.CloseReason;
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * WebSocketServer broadcast Test
+ * Uses async remotes that never complete on their own to check a broadcast only enqueues,
+ * each session sends one message at a time in order, pending messages coalesce by key,
+ * a consumer that stops reading is dropped then closed, and shop notifications stay in their shop
+ */
+@DisplayName("WebSocketServer Broadcast Test")
+class WebSocketBroadcastTest {
+
+    private final WebSocketServer webSocketServer = new WebSocketServer();
+
+    private final List<Client> clients = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (Client client : clients) {
+            webSocketServer.onClose(client.session, client.sid);
+        }
+    }
+
+    @Test
+    @DisplayName("Should return without waiting for any client to read")
+    void testBroadcastDoesNotBlock() {
+        // Given: 200 admin browsers that never acknowledge a frame
+        webSocketServer.setWebSocketProperties(new WebSocketProperties());
+        for (int i = 0; i < 200; i++) {
+            connect("admin-" + i);
+        }
+
+        // When
+        long begin = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            webSocketServer.sendToAllClient("{\"type\":1,\"orderId\":" + i + "}");
+        }
+        long elapsedMillis = (System.nanoTime() - begin) / 1_000_000;
+
+        // Then: one frame in flight per client, the rest queued
+        assertTrue(elapsedMillis < 1000, "broadcast took " + elapsedMillis + "ms");
+        for (Client client : clients) {
+            assertEquals(1, client.handlers.size());
+        }
+        assertEquals(200, webSocketServer.getSessionCount());
+    }
+
+    @Test
+    @DisplayName("Should send queued messages one at a time in order as each send completes")
+    void testSendsInOrder() {
+        // Given
+        Client client = new Client("admin");
+        SessionOutbox outbox = new SessionOutbox(client.sid, client.session, 10, 5, 1000);
+
+        // When
+        outbox.offer("a", null);
+        outbox.offer("b", null);
+        outbox.offer("c", null);
+        client.completeAll();
+
+        // Then
+        assertEquals(3, client.sent.size());
+        assertEquals("a", client.sent.get(0));
+        assertEquals("b", client.sent.get(1));
+        assertEquals("c", client.sent.get(2));
+        assertEquals(0, outbox.size());
+    }
+
+    @Test
+    @DisplayName("Should keep only the latest pending message for a coalesce key")
+    void testCoalesce() {
+        // Given: the first frame is still in flight
+        Client client = new Client("admin");
+        SessionOutbox outbox = new SessionOutbox(client.sid, client.session, 10, 5, 1000);
+        outbox.offer("new order 1", "1:1");
+
+        // When: the customer presses remind three times
+        outbox.offer("remind 7 (1)", "2:7");
+        outbox.offer("remind 7 (2)", "2:7");
+        outbox.offer("remind 7 (3)", "2:7");
+        client.completeAll();
+
+        // Then
+        assertEquals(2, client.sent.size());
+        assertEquals("remind 7 (3)", client.sent.get(1));
+        assertEquals(2, outbox.getCoalescedTotal());
+    }
+
+    @Test
+    @DisplayName("Should drop the oldest messages when full and close a consumer that stays stuck")
+    void testSlowConsumer() throws Exception {
+        // Given
+        Client client = new Client("admin");
+        SessionOutbox outbox = new SessionOutbox(client.sid, client.session, 4, 3, 1000);
+        outbox.offer("m0", null);
+
+        // When: m0 is in flight, m1..m4 fill the queue, m5 and m6 push out m1 and m2
+        for (int i = 1; i <= 6; i++) {
+            assertTrue(outbox.offer("m" + i, null));
+        }
+
+        // Then
+        assertEquals(2, outbox.getDroppedTotal());
+        assertEquals(4, outbox.size());
+        verify(client.session, never()).close(any(CloseReason.class));
+
+        // When: one more drop reaches the limit
+        assertFalse(outbox.offer("m7", null));
+
+        // Then
+        verify(client.session).close(any(CloseReason.class));
+        assertEquals(0, outbox.size());
+        assertFalse(outbox.offer("m8", null));
+    }
+
+    @Test
+    @DisplayName("Should close the session when a send fails")
+    void testSendFailure() throws Exception {
+        // Given
+        Client client = new Client("admin");
+        SessionOutbox outbox = new SessionOutbox(client.sid, client.session, 4, 3, 1000);
+        outbox.offer("m0", null);
+        outbox.offer("m1", null);
+
+        // When
+        client.handlers.remove(0).onResult(new SendResult(new java.io.IOException("broken pipe")));
+
+        // Then
+        verify(client.session).close(any(CloseReason.class));
+        assertEquals(1, client.sent.size());
+    }
+
+    @Test
+    @DisplayName("Should deliver a shop notification only to that shop's consoles")
+    void testSendToShop() {
+        // Given
+        webSocketServer.setWebSocketProperties(new WebSocketProperties());
+        Client own = connect("admin-1");
+        Client other = connect("admin-2", "shop-2");
+
+        // When
+        webSocketServer.sendToShop("default", "{\"type\":1}", null);
+
+        // Then
+        assertEquals(1, own.sent.size());
+        assertTrue(other.sent.isEmpty());
+    }
+
+    private Client connect(String sid) {
+        Client client = new Client(sid);
+        clients.add(client);
+        webSocketServer.onOpen(client.session, sid);
+        return client;
+    }
+
+    private Client connect(String sid, String shopId) {
+        Client client = new Client(sid);
+        clients.add(client);
+        Map<String, List<String>> parameters = new HashMap<>();
+        parameters.put("shop", Collections.singletonList(shopId));
+        when(client.session.getRequestParameterMap()).thenReturn(parameters);
+        webSocketServer.onOpen(client.session, sid);
+        return client;
+    }
+
+    /**
+     * A client whose async sends only complete when the test says so
+     */
+    private static class Client {
+
+        private final String sid;
+
+        private final Session session = mock(Session.class);
+
+        private final RemoteEndpoint.Async remote = mock(RemoteEndpoint.Async.class);
+
+        private final List<String> sent = new ArrayList<>();
+
+        private final List<SendHandler> handlers = new ArrayList<>();
+
+        Client(String sid) {
+            this.sid = sid;
+            when(session.getAsyncRemote()).thenReturn(remote);
+            lenient().when(session.getUserProperties()).thenReturn(new HashMap<>());
+            lenient().when(session.isOpen()).thenReturn(true);
+            doAnswer(invocation -> {
+                sent.add(invocation.getArgument(0));
+                handlers.add(invocation.getArgument(1));
+                return null;
+            }).when(remote).sendText(anyString(), any(SendHandler.class));
+        }
+
+        void completeAll() {
+            while (!handlers.isEmpty()) {
+                handlers.remove(0).onResult(new SendResult());
+            }
+        }
+    }
+}
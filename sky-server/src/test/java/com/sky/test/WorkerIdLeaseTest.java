@@ -0,0 +1,146 @@
+package com.sky.test;
+
+import com.sky.config.OrderIdConfiguration;
+import com.sky.lease.WorkerIdLease;
+import com.sky.properties.OrderIdProperties;
+import com.sky.utils.SnowflakeIdGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * WorkerIdLease Test
+ * Leases order id worker ids from an in-memory Redis and checks running nodes never share one,
+ * startup fails when every id is taken, and a node that lost its id stops generating order numbers
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("WorkerIdLease Test")
+class WorkerIdLeaseTest {
+
+    private static final int SLOTS = (int) SnowflakeIdGenerator.MAX_WORKER_ID + 1;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    // 模拟Redis：租约key -> 令牌，过期用删除key模拟
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+
+    private final OrderIdProperties properties = new OrderIdProperties();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenAnswer(invocation -> redis.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        lenient().when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any()))
+                .thenAnswer(invocation -> {
+                    RedisScript<?> script = invocation.getArgument(0);
+                    List<String> keys = invocation.getArgument(1);
+                    String token = invocation.getArgument(2);
+                    if (!token.equals(redis.get(keys.get(0)))) {
+                        return 0L;
+                    }
+                    if (script.getScriptAsString().contains("del")) {
+                        redis.remove(keys.get(0));
+                    }
+                    return 1L;
+                });
+    }
+
+    @Test
+    @DisplayName("Should give every running node a different worker id and refuse the 1025th")
+    void testDistinctIdsAndFullFleet() {
+        // When
+        Set<Long> workerIds = new HashSet<>();
+        for (int i = 0; i < SLOTS; i++) {
+            workerIds.add(lease().acquire());
+        }
+
+        // Then
+        assertEquals(SLOTS, workerIds.size());
+        assertThrows(IllegalStateException.class, () -> lease().acquire());
+    }
+
+    @Test
+    @DisplayName("Should hand out a worker id again only after its holder stopped")
+    void testReuseAfterRelease() {
+        // Given: every id is taken
+        WorkerIdLease first = lease();
+        long workerId = first.acquire();
+        for (int i = 1; i < SLOTS; i++) {
+            lease().acquire();
+        }
+
+        // When
+        first.release();
+
+        // Then
+        assertEquals(workerId, lease().acquire());
+    }
+
+    @Test
+    @DisplayName("Should keep the id on heartbeat and stop generating once another node took it")
+    void testHeartbeatAndLoss() {
+        // Given
+        WorkerIdLease lease = lease();
+        SnowflakeIdGenerator generator = new OrderIdConfiguration().orderIdGenerator(properties, lease);
+        String key = "order:id:worker:" + generator.getWorkerId();
+
+        // When: a heartbeat, then the lease expires during a long pause and another node claims the id
+        lease.renew();
+        long id = generator.nextId();
+        redis.put(key, "other-node");
+        lease.renew();
+
+        // Then
+        assertEquals(generator.getWorkerId(), SnowflakeIdGenerator.workerIdOf(id));
+        assertFalse(lease.isHeld());
+        assertThrows(IllegalStateException.class, generator::nextId);
+        assertEquals("other-node", redis.get(key));
+    }
+
+    @Test
+    @DisplayName("Should reclaim the same id when it expired but nobody else took it")
+    void testReclaimAfterExpiry() {
+        // Given
+        WorkerIdLease lease = lease();
+        long workerId = lease.acquire();
+
+        // When
+        redis.remove("order:id:worker:" + workerId);
+        lease.renew();
+
+        // Then
+        assertTrue(lease.isHeld());
+        assertEquals(workerId, lease.getWorkerId());
+        assertTrue(redis.containsKey("order:id:worker:" + workerId));
+    }
+
+    private WorkerIdLease lease() {
+        WorkerIdLease lease = new WorkerIdLease();
+        ReflectionTestUtils.setField(lease, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(lease, "orderIdProperties", properties);
+        return lease;
+    }
+}
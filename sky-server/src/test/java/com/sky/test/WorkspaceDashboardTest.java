@@ -0,0 +1,245 @@
+package com.sky.test;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.entity.BusinessDailyStats;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.SetMealMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.properties.WorkspaceProperties;
+import com.sky.service.WorkSpaceService;
+import com.sky.service.impl.WorkSpaceServiceImpl;
+import com.sky.vo.DishOverViewVO;
+import com.sky.vo.SetmealOverViewVO;
+import com.sky.vo.WorkspaceDashboardVO;
+import com.sky.webSocket.DashboardPusher;
+import com.sky.webSocket.WebSocketServer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Workspace dashboard Test
+ * Checks the snapshot is built from one aggregated query per table, shared by concurrent
+ * admin requests while fresh, and pushed over WebSocket only when the data changes
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Workspace Dashboard Test")
+class WorkspaceDashboardTest {
+
+    @Mock
+    private OrderMapper orderMapper;
+
+    @Mock
+    private UserMapper userMapper;
+
+    @Mock
+    private DishMapper dishMapper;
+
+    @Mock
+    private SetMealMapper setMealMapper;
+
+    @Spy
+    private WorkspaceProperties workspaceProperties = new WorkspaceProperties();
+
+    @InjectMocks
+    private WorkSpaceServiceImpl workSpaceService;
+
+    @Test
+    @DisplayName("Should build the snapshot with one query per table")
+    void testSnapshot() {
+        // Given
+        givenTables(todayStats(10, 6, "300.00"));
+
+        // When
+        WorkspaceDashboardVO dashboard = workSpaceService.getDashboard();
+
+        // Then
+        assertEquals(300.0, dashboard.getBusinessData().getTurnover());
+        assertEquals(6, dashboard.getBusinessData().getValidOrderCount());
+        assertEquals(0.6, dashboard.getBusinessData().getOrderCompletionRate(), 0.0001);
+        assertEquals(50.0, dashboard.getBusinessData().getUnitPrice(), 0.0001);
+        assertEquals(3, dashboard.getBusinessData().getNewUsers());
+        assertEquals(10, dashboard.getOrderOverview().getAllOrders());
+        assertEquals(2, dashboard.getOrderOverview().getWaitingOrders());
+        assertEquals(1, dashboard.getOrderOverview().getDeliveredOrders());
+        assertEquals(6, dashboard.getOrderOverview().getCompletedOrders());
+        assertEquals(1, dashboard.getOrderOverview().getCancelledOrders());
+        assertEquals(8, dashboard.getDishOverview().getSold());
+        assertEquals(1, dashboard.getSetmealOverview().getDiscontinued());
+        verify(orderMapper, times(1)).selectDailyStatistics(any(), any());
+        verify(userMapper, times(1)).selectNewByDate(any(), any());
+        verify(dishMapper, times(1)).selectOverview();
+        verify(setMealMapper, times(1)).selectOverview();
+        verify(orderMapper, never()).selectCountByMap(any());
+    }
+
+    @Test
+    @DisplayName("Should report zeros when there are no orders today")
+    void testNoOrdersToday() {
+        // Given
+        when(orderMapper.selectDailyStatistics(any(), any())).thenReturn(Collections.emptyList());
+        when(userMapper.selectNewByDate(any(), any())).thenReturn(0);
+        when(dishMapper.selectOverview()).thenReturn(new DishOverViewVO(0, 0));
+        when(setMealMapper.selectOverview()).thenReturn(new SetmealOverViewVO(0, 0));
+
+        // When
+        WorkspaceDashboardVO dashboard = workSpaceService.getDashboard();
+
+        // Then
+        assertEquals(0.0, dashboard.getBusinessData().getTurnover());
+        assertEquals(0.0, dashboard.getBusinessData().getOrderCompletionRate());
+        assertEquals(0.0, dashboard.getBusinessData().getUnitPrice());
+        assertEquals(0, dashboard.getOrderOverview().getAllOrders());
+    }
+
+    @Test
+    @DisplayName("Should share one snapshot across 200 concurrent admin refreshes")
+    void testSharedAcrossSessions() throws Exception {
+        // Given
+        workspaceProperties.setDashboardTtlMillis(60_000);
+        givenTables(todayStats(10, 6, "300.00"));
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<WorkspaceDashboardVO>> results = new ArrayList<>();
+
+        // When
+        try {
+            for (int i = 0; i < 200; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return workSpaceService.getDashboard();
+                }));
+            }
+            start.countDown();
+            WorkspaceDashboardVO first = results.get(0).get();
+            for (Future<WorkspaceDashboardVO> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Then
+        verify(orderMapper, times(1)).selectDailyStatistics(any(), any());
+        verify(dishMapper, times(1)).selectOverview();
+    }
+
+    @Test
+    @DisplayName("Should reload the snapshot once it expires")
+    void testExpiry() {
+        // Given
+        workspaceProperties.setDashboardTtlMillis(0);
+        givenTables(todayStats(10, 6, "300.00"));
+
+        // When
+        workSpaceService.getDashboard();
+        workSpaceService.getDashboard();
+
+        // Then
+        verify(orderMapper, times(2)).selectDailyStatistics(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should push the dashboard only when it changes")
+    void testPushOnChange() {
+        // Given
+        WorkSpaceService service = mock(WorkSpaceService.class);
+        WebSocketServer webSocketServer = mock(WebSocketServer.class);
+        DashboardPusher pusher = new DashboardPusher();
+        ReflectionTestUtils.setField(pusher, "workSpaceService", service);
+        ReflectionTestUtils.setField(pusher, "webSocketServer", webSocketServer);
+        ReflectionTestUtils.setField(pusher, "workspaceProperties", new WorkspaceProperties());
+        when(webSocketServer.getSessionCount()).thenReturn(3);
+        workspaceProperties.setDashboardTtlMillis(0);
+        givenTables(todayStats(10, 6, "300.00"));
+        WorkspaceDashboardVO before = workSpaceService.getDashboard();
+        WorkspaceDashboardVO same = copyAt(before, LocalDateTime.now().plusSeconds(5));
+        givenTables(todayStats(11, 7, "350.00"));
+        WorkspaceDashboardVO after = workSpaceService.getDashboard();
+        when(service.getDashboard()).thenReturn(before, same, after);
+
+        // When
+        pusher.push();
+        pusher.push();
+        pusher.push();
+
+        // Then: the unchanged snapshot with a newer timestamp is not pushed again
+        ArgumentCaptor<String> frames = ArgumentCaptor.forClass(String.class);
+        verify(webSocketServer, times(2)).sendToAllClient(frames.capture(), eq("dashboard"));
+        JSONObject last = JSON.parseObject(frames.getValue());
+        assertEquals(DashboardPusher.DASHBOARD, last.getIntValue("type"));
+        assertEquals(11, last.getJSONObject("dashboard").getJSONObject("orderOverview").getIntValue("allOrders"));
+    }
+
+    @Test
+    @DisplayName("Should not query anything when no admin is connected")
+    void testNoSessions() {
+        // Given
+        WorkSpaceService service = mock(WorkSpaceService.class);
+        WebSocketServer webSocketServer = mock(WebSocketServer.class);
+        DashboardPusher pusher = new DashboardPusher();
+        ReflectionTestUtils.setField(pusher, "workSpaceService", service);
+        ReflectionTestUtils.setField(pusher, "webSocketServer", webSocketServer);
+        ReflectionTestUtils.setField(pusher, "workspaceProperties", new WorkspaceProperties());
+
+        // When
+        pusher.push();
+
+        // Then
+        verifyNoInteractions(service);
+        verify(webSocketServer, never()).sendToAllClient(anyString(), anyString());
+    }
+
+    private void givenTables(BusinessDailyStats orders) {
+        lenient().when(orderMapper.selectDailyStatistics(any(), any())).thenReturn(Collections.singletonList(orders));
+        lenient().when(userMapper.selectNewByDate(any(), any())).thenReturn(3);
+        lenient().when(dishMapper.selectOverview()).thenReturn(new DishOverViewVO(8, 2));
+        lenient().when(setMealMapper.selectOverview()).thenReturn(new SetmealOverViewVO(4, 1));
+    }
+
+    private BusinessDailyStats todayStats(int total, int completed, String turnover) {
+        return BusinessDailyStats.builder()
+                .statDate(LocalDate.now())
+                .totalOrderCount(total)
+                .validOrderCount(completed)
+                .turnover(new BigDecimal(turnover))
+                .toBeConfirmedCount(2)
+                .confirmedCount(1)
+                .completedCount(completed)
+                .cancelledCount(total - completed - 3)
+                .build();
+    }
+
+    private WorkspaceDashboardVO copyAt(WorkspaceDashboardVO dashboard, LocalDateTime generatedAt) {
+        return WorkspaceDashboardVO.builder()
+                .businessData(dashboard.getBusinessData())
+                .orderOverview(dashboard.getOrderOverview())
+                .dishOverview(dashboard.getDishOverview())
+                .setmealOverview(dashboard.getSetmealOverview())
+                .generatedAt(generatedAt)
+                .build();
+    }
+}